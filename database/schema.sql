@@ -98,6 +98,11 @@ CREATE TABLE IF NOT EXISTS face_embeddings (
     id INT PRIMARY KEY AUTO_INCREMENT,
     biometric_data_id INT NOT NULL,
     embedding_data BLOB NOT NULL,
+    -- Format : 1 = 128 float32 little-endian ; 2 = idem + version int8 quantifiée dans quantized_data
+    -- Bases existantes : ALTER TABLE face_embeddings ADD COLUMN embedding_format TINYINT NOT NULL DEFAULT 1,
+    --                    ADD COLUMN quantized_data VARBINARY(132);
+    embedding_format TINYINT NOT NULL DEFAULT 1,
+    quantized_data VARBINARY(132),
     image_path VARCHAR(500),
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (biometric_data_id) REFERENCES biometric_data(id) ON DELETE CASCADE,
@@ -0,0 +1,92 @@
+package ma.mondial2030.bench;
+
+import ma.mondial2030.biometric.FaceEmbeddings;
+import ma.mondial2030.biometric.FaceGallery;
+import ma.mondial2030.biometric.FaceMatch;
+import ma.mondial2030.biometric.ScalarFaceMatcher;
+import ma.mondial2030.biometric.VectorFaceMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recherche faciale 1:N exacte sur un cœur : boucle scalaire et Vector API,
+ * sur une galerie synthétique d'empreintes aléatoires (128 floats normalisés).
+ * Lancer avec : mvn -Pbenchmark verify exec:exec -Djmh.args="FaceMatcherBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class FaceMatcherBenchmark {
+
+    @Param({"10000", "100000"})
+    public int gallerySize;
+
+    @Param({"10"})
+    public int k;
+
+    private ScalarFaceMatcher scalar;
+    private VectorFaceMatcher vector;
+    private float[] query;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(2030);
+        FaceGallery.Builder builder = FaceGallery.builder(gallerySize);
+        float[] probe = null;
+        for (int userId = 1; userId <= gallerySize; userId++) {
+            float[] embedding = randomEmbedding(random);
+            builder.add(userId, embedding);
+            if (userId == gallerySize / 2) {
+                probe = embedding;
+            }
+        }
+        FaceGallery gallery = builder.build();
+        scalar = new ScalarFaceMatcher(gallery);
+        vector = new VectorFaceMatcher(gallery);
+
+        // Visage enrôlé, légèrement bruité (nouvelle prise de vue)
+        query = probe.clone();
+        for (int i = 0; i < query.length; i++) {
+            query[i] += (float) (random.nextGaussian() * 0.02);
+        }
+        int expected = scalar.search(query, 1).get(0).getUserId();
+        if (expected != gallerySize / 2 || vector.search(query, 1).get(0).getUserId() != expected) {
+            throw new IllegalStateException("Les deux recherches ne retrouvent pas le visage enrôlé");
+        }
+    }
+
+    @Benchmark
+    public List<FaceMatch> scalar() {
+        return scalar.search(query, k);
+    }
+
+    @Benchmark
+    public List<FaceMatch> vector() {
+        return vector.search(query, k);
+    }
+
+    private static float[] randomEmbedding(Random random) {
+        float[] embedding = new float[FaceEmbeddings.DIMENSIONS];
+        for (int i = 0; i < embedding.length; i++) {
+            embedding[i] = (float) random.nextGaussian();
+        }
+        FaceEmbeddings.normalize(embedding);
+        return embedding;
+    }
+}
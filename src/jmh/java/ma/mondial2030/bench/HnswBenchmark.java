@@ -0,0 +1,159 @@
+package ma.mondial2030.bench;
+
+import ma.mondial2030.biometric.FaceEmbeddings;
+import ma.mondial2030.biometric.FaceGallery;
+import ma.mondial2030.biometric.FaceMatch;
+import ma.mondial2030.biometric.FaceMatcher;
+import ma.mondial2030.biometric.HnswIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recherche faciale 1:N approchée (HnswIndex) comparée à la recherche exacte (FaceMatcher.exact)
+ * Galerie synthétique de visages : 128 dimensions engendrées par 24 facteurs latents plus un bruit,
+ * comme des embeddings réels (dimension intrinsèque faible) ; chaque requête est un visage enrôlé
+ * bruité (nouvelle prise de vue). Le rappel (recall@1, recall@10 par rapport à la recherche exacte)
+ * est calculé et affiché à la préparation. L'index est construit une fois puis relu depuis
+ * son instantané dans target/, ce qui mesure aussi le chargement.
+ * Lancer avec : mvn -Pbenchmark verify exec:exec -Djmh.args="HnswBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class HnswBenchmark {
+    private static final int LATENT_FACTORS = 24;
+    private static final int QUERIES = 256;
+    private static final int RECALL_QUERIES = 500;
+
+    @Param({"100000"})
+    public int gallerySize;
+
+    @Param({"16", "32", "64"})
+    public int efSearch;
+
+    @Param({"10"})
+    public int k;
+
+    private HnswIndex hnsw;
+    private FaceMatcher exact;
+    private float[][] queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(2030);
+        float[][] projection = new float[FaceEmbeddings.DIMENSIONS][LATENT_FACTORS];
+        for (float[] row : projection) {
+            for (int i = 0; i < LATENT_FACTORS; i++) {
+                row[i] = (float) random.nextGaussian();
+            }
+        }
+        float[][] faces = new float[gallerySize][];
+        FaceGallery.Builder gallery = FaceGallery.builder(gallerySize);
+        for (int userId = 0; userId < gallerySize; userId++) {
+            faces[userId] = syntheticFace(random, projection);
+            gallery.add(userId, faces[userId]);
+        }
+        exact = FaceMatcher.exact(gallery.build());
+
+        Path snapshot = Path.of("target", "bench-hnsw-" + gallerySize + ".hnsw");
+        long start = System.nanoTime();
+        if (Files.exists(snapshot)) {
+            hnsw = HnswIndex.load(snapshot);
+            System.out.printf("%nIndex relu depuis %s en %d ms%n", snapshot, (System.nanoTime() - start) / 1_000_000);
+        } else {
+            hnsw = new HnswIndex(HnswIndex.DEFAULT_M, HnswIndex.DEFAULT_EF_CONSTRUCTION, gallerySize);
+            for (int userId = 0; userId < gallerySize; userId++) {
+                hnsw.add(userId + 1, userId, faces[userId]);
+            }
+            System.out.printf("%nIndex construit en %d ms%n", (System.nanoTime() - start) / 1_000_000);
+            hnsw.save(snapshot);
+        }
+        hnsw.setEfSearch(efSearch);
+
+        queries = new float[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = recapture(random, faces[random.nextInt(gallerySize)]);
+        }
+        reportRecall(random, faces);
+    }
+
+    @Benchmark
+    public List<FaceMatch> hnsw() {
+        return hnsw.search(queries[next++ & (QUERIES - 1)], k);
+    }
+
+    @Benchmark
+    public List<FaceMatch> exact() {
+        return exact.search(queries[next++ & (QUERIES - 1)], k);
+    }
+
+    private void reportRecall(Random random, float[][] faces) {
+        int top1 = 0;
+        int topK = 0;
+        for (int i = 0; i < RECALL_QUERIES; i++) {
+            float[] query = recapture(random, faces[random.nextInt(gallerySize)]);
+            List<FaceMatch> expected = exact.search(query, k);
+            List<FaceMatch> found = hnsw.search(query, k);
+            if (!found.isEmpty() && found.get(0).getUserId() == expected.get(0).getUserId()) {
+                top1++;
+            }
+            Set<Integer> expectedUsers = new HashSet<>();
+            for (FaceMatch match : expected) {
+                expectedUsers.add(match.getUserId());
+            }
+            for (FaceMatch match : found) {
+                if (expectedUsers.contains(match.getUserId())) {
+                    topK++;
+                }
+            }
+        }
+        System.out.printf("efSearch=%d : recall@1=%.3f recall@%d=%.3f%n", efSearch,
+                          (double) top1 / RECALL_QUERIES, k, (double) topK / (RECALL_QUERIES * k));
+    }
+
+    private static float[] syntheticFace(Random random, float[][] projection) {
+        float[] latent = new float[LATENT_FACTORS];
+        for (int i = 0; i < LATENT_FACTORS; i++) {
+            latent[i] = (float) random.nextGaussian();
+        }
+        float[] face = new float[FaceEmbeddings.DIMENSIONS];
+        for (int d = 0; d < face.length; d++) {
+            float value = 0;
+            for (int i = 0; i < LATENT_FACTORS; i++) {
+                value += projection[d][i] * latent[i];
+            }
+            face[d] = value + (float) (random.nextGaussian() * 0.1);
+        }
+        return face;
+    }
+
+    private static float[] recapture(Random random, float[] face) {
+        float[] query = face.clone();
+        for (int i = 0; i < query.length; i++) {
+            query[i] += (float) (random.nextGaussian() * 0.3);
+        }
+        return query;
+    }
+}
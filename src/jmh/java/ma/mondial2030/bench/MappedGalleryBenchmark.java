@@ -0,0 +1,148 @@
+package ma.mondial2030.bench;
+
+import ma.mondial2030.biometric.FaceEmbeddings;
+import ma.mondial2030.biometric.FaceGallery;
+import ma.mondial2030.biometric.FaceMatch;
+import ma.mondial2030.biometric.FaceMatcher;
+import ma.mondial2030.biometric.MappedFaceGallery;
+import ma.mondial2030.biometric.MappedFaceMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Galerie projetée depuis ses fichiers (MappedFaceMatcher) comparée à la galerie int8 sur le tas
+ * (FaceMatcher.quantized), sur la même galerie synthétique que HnswBenchmark
+ * La base est écrite dans target/ avec un delta de DELTA_SIZE réenrôlements ; open mesure le
+ * démarrage d'un poste (projection des fichiers et masquage des lignes remplacées).
+ * Lancer avec : mvn -Pbenchmark verify exec:exec -Djmh.args="MappedGalleryBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class MappedGalleryBenchmark {
+    private static final int LATENT_FACTORS = 24;
+    private static final int QUERIES = 256;
+    private static final int DELTA_SIZE = 500;
+    private static final int MATCH_EVENT_ID = 1;
+
+    @Param({"100000"})
+    public int gallerySize;
+
+    @Param({"10"})
+    public int k;
+
+    private Path directory;
+    private FaceMatcher heap;
+    private MappedFaceMatcher mapped;
+    private float[][] queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(2030);
+        float[][] projection = new float[FaceEmbeddings.DIMENSIONS][LATENT_FACTORS];
+        for (float[] row : projection) {
+            for (int i = 0; i < LATENT_FACTORS; i++) {
+                row[i] = (float) random.nextGaussian();
+            }
+        }
+        float[][] faces = new float[gallerySize][];
+        FaceGallery.Builder gallery = FaceGallery.builder(gallerySize);
+        MappedFaceGallery.Writer base = MappedFaceGallery.writer(gallerySize);
+        for (int userId = 0; userId < gallerySize; userId++) {
+            faces[userId] = syntheticFace(random, projection);
+            base.add(userId, faces[userId], null);
+        }
+        MappedFaceGallery.Writer delta = MappedFaceGallery.writer(DELTA_SIZE);
+        for (int i = 0; i < DELTA_SIZE; i++) {
+            int userId = random.nextInt(gallerySize);
+            faces[userId] = syntheticFace(random, projection);
+            delta.add(userId, faces[userId], null);
+        }
+        for (int userId = 0; userId < gallerySize; userId++) {
+            gallery.add(userId, faces[userId]);
+        }
+        heap = FaceMatcher.quantized(gallery.build());
+
+        directory = Path.of("target", "bench-gallery-" + gallerySize);
+        Files.createDirectories(directory);
+        base.write(MappedFaceGallery.basePath(directory, MATCH_EVENT_ID), MATCH_EVENT_ID, gallerySize, 0);
+        delta.write(MappedFaceGallery.deltaPath(directory, MATCH_EVENT_ID, 1), MATCH_EVENT_ID,
+                    gallerySize + DELTA_SIZE, 0);
+        mapped = open();
+        System.out.printf("%nFichiers : %d Mo, %d empreintes actives%n",
+                          (Files.size(MappedFaceGallery.basePath(directory, MATCH_EVENT_ID)) >> 20), mapped.size());
+
+        queries = new float[QUERIES][];
+        int agreements = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = recapture(random, faces[random.nextInt(gallerySize)]);
+            if (userIds(heap.search(queries[i], k)).equals(userIds(mapped.search(queries[i], k)))) {
+                agreements++;
+            }
+        }
+        System.out.printf("Résultats identiques à la galerie sur le tas : %d/%d requêtes%n", agreements, QUERIES);
+    }
+
+    @Benchmark
+    public MappedFaceMatcher open() throws IOException {
+        return MappedFaceMatcher.open(directory, MATCH_EVENT_ID);
+    }
+
+    @Benchmark
+    public List<FaceMatch> mapped() {
+        return mapped.search(queries[next++ & (QUERIES - 1)], k);
+    }
+
+    @Benchmark
+    public List<FaceMatch> heap() {
+        return heap.search(queries[next++ & (QUERIES - 1)], k);
+    }
+
+    private static List<Integer> userIds(List<FaceMatch> matches) {
+        return matches.stream().map(FaceMatch::getUserId).toList();
+    }
+
+    private static float[] syntheticFace(Random random, float[][] projection) {
+        float[] latent = new float[LATENT_FACTORS];
+        for (int i = 0; i < LATENT_FACTORS; i++) {
+            latent[i] = (float) random.nextGaussian();
+        }
+        float[] face = new float[FaceEmbeddings.DIMENSIONS];
+        for (int d = 0; d < face.length; d++) {
+            float value = 0;
+            for (int i = 0; i < LATENT_FACTORS; i++) {
+                value += projection[d][i] * latent[i];
+            }
+            face[d] = value + (float) (random.nextGaussian() * 0.1);
+        }
+        return face;
+    }
+
+    private static float[] recapture(Random random, float[] face) {
+        float[] query = face.clone();
+        for (int i = 0; i < query.length; i++) {
+            query[i] += (float) (random.nextGaussian() * 0.3);
+        }
+        return query;
+    }
+}
@@ -0,0 +1,51 @@
+package ma.mondial2030.bench;
+
+import ma.mondial2030.security.PasswordHasher;
+import org.mindrot.jbcrypt.BCrypt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût d'une connexion : vérification BCrypt selon le nombre de tours du hash stocké
+ * (10 tours en production, voir PasswordHasher)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PasswordHasherBenchmark {
+    private static final String PASSWORD = "Mondial2030!";
+
+    @Param({"4", "8", "10", "12"})
+    public int rounds;
+
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        hash = BCrypt.hashpw(PASSWORD, BCrypt.gensalt(rounds));
+    }
+
+    @Benchmark
+    public boolean verifyPassword() {
+        return PasswordHasher.verifyPassword(PASSWORD, hash);
+    }
+
+    @Benchmark
+    public boolean rejectWrongPassword() {
+        return PasswordHasher.verifyPassword("mauvais-mot-de-passe", hash);
+    }
+}
@@ -0,0 +1,116 @@
+package ma.mondial2030.bench;
+
+import com.google.zxing.common.BitMatrix;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import ma.mondial2030.util.BufferedImageLuminanceSource;
+import ma.mondial2030.util.QRCodeGenerator;
+import ma.mondial2030.util.QRCodeReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Génération et lecture des QR Codes de tickets : encodage, rastérisation,
+ * image JavaFX complète, décodage ZXing et conversion en luminance ligne à ligne
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QRCodecBenchmark {
+
+    @Param({"FULL", "SIGNED"})
+    public String payload;
+
+    @Param({"300"})
+    public int size;
+
+    private String qrData;
+    private BitMatrix modules;
+    private int moduleScale;
+    private int outputSize;
+    private int[] argbBuffer;
+    private Image image;
+    private BufferedImageLuminanceSource luminance;
+    private byte[] rowBuffer;
+
+    @Setup
+    public void setUp() {
+        qrData = "SIGNED".equals(payload)
+                 ? QRCodeGenerator.generateSignedTicketQRData("TKT-1A2B3C4D5E6F", 4821, 17,
+                                                              1_900_000_000L, 1_900_050_000L)
+                 : QRCodeGenerator.generateTicketQRData("TKT-1A2B3C4D5E6F", 4821, 17);
+        modules = QRCodeGenerator.encodeModules(qrData);
+        moduleScale = Math.max(1, size / modules.getWidth());
+        outputSize = Math.max(size, modules.getWidth() * moduleScale);
+        argbBuffer = new int[outputSize * outputSize];
+
+        image = QRCodeGenerator.generateQRCode(qrData, size);
+        if (!qrData.equals(QRCodeReader.readQRCode(image))) {
+            throw new IllegalStateException("QR Code illisible : le benchmark de lecture serait faussé");
+        }
+        BufferedImage bufferedImage = SwingFXUtils.fromFXImage(image, null);
+        luminance = new BufferedImageLuminanceSource(bufferedImage);
+        rowBuffer = new byte[luminance.getWidth()];
+    }
+
+    /**
+     * Encodage seul (ZXing), sans rastérisation
+     */
+    @Benchmark
+    public BitMatrix encodeModules() {
+        return QRCodeGenerator.encodeModules(qrData);
+    }
+
+    /**
+     * Rastérisation dans un tampon réutilisé (impression en masse)
+     */
+    @Benchmark
+    public int[] renderIntoBuffer() {
+        return QRCodeGenerator.renderArgb(modules, moduleScale, outputSize, argbBuffer);
+    }
+
+    /**
+     * Chemin complet de l'écran Tickets : encodage, rastérisation et image JavaFX
+     */
+    @Benchmark
+    public Image generateQRCode() {
+        return QRCodeGenerator.generateQRCode(qrData, size);
+    }
+
+    /**
+     * Chemin complet du scan depuis une image JavaFX
+     */
+    @Benchmark
+    public String readQRCode() {
+        return QRCodeReader.readQRCode(image);
+    }
+
+    /**
+     * Conversion en luminance de toutes les lignes, tampon de ligne réutilisé
+     * (accès fait par le binariseur ZXing)
+     */
+    @Benchmark
+    public void luminanceRows(Blackhole blackhole) {
+        int height = luminance.getHeight();
+        for (int y = 0; y < height; y++) {
+            rowBuffer = luminance.getRow(y, rowBuffer);
+        }
+        blackhole.consume(rowBuffer);
+    }
+}
@@ -0,0 +1,155 @@
+package ma.mondial2030.bench;
+
+import ma.mondial2030.biometric.FaceEmbeddings;
+import ma.mondial2030.biometric.FaceGallery;
+import ma.mondial2030.biometric.FaceMatch;
+import ma.mondial2030.biometric.FaceMatcher;
+import ma.mondial2030.biometric.QuantizedFaceGallery;
+import ma.mondial2030.biometric.QuantizedFaceMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recherche faciale 1:N exacte en float comparée à la recherche sur la galerie int8,
+ * sans puis avec re-classement des meilleurs candidats en float
+ * Même galerie synthétique que HnswBenchmark (24 facteurs latents plus un bruit) : les visages
+ * proches y sont nombreux, ce qui fait ressortir les inversions dues à la quantification.
+ * La taille mémoire des deux galeries et le rappel par rapport à la recherche float sont
+ * affichés à la préparation.
+ * Lancer avec : mvn -Pbenchmark verify exec:exec -Djmh.args="QuantizedMatcherBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class QuantizedMatcherBenchmark {
+    private static final int LATENT_FACTORS = 24;
+    private static final int QUERIES = 256;
+    private static final int RECALL_QUERIES = 200;
+
+    @Param({"100000"})
+    public int gallerySize;
+
+    @Param({"10"})
+    public int k;
+
+    private FaceMatcher exact;
+    private FaceMatcher int8;
+    private FaceMatcher int8Rerank;
+    private float[][] queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(2030);
+        float[][] projection = new float[FaceEmbeddings.DIMENSIONS][LATENT_FACTORS];
+        for (float[] row : projection) {
+            for (int i = 0; i < LATENT_FACTORS; i++) {
+                row[i] = (float) random.nextGaussian();
+            }
+        }
+        float[][] faces = new float[gallerySize][];
+        FaceGallery.Builder builder = FaceGallery.builder(gallerySize);
+        for (int userId = 0; userId < gallerySize; userId++) {
+            faces[userId] = syntheticFace(random, projection);
+            builder.add(userId, faces[userId]);
+        }
+        FaceGallery gallery = builder.build();
+        QuantizedFaceGallery quantized = QuantizedFaceGallery.of(gallery);
+        exact = FaceMatcher.exact(gallery);
+        int8 = new QuantizedFaceMatcher(quantized, null);
+        int8Rerank = new QuantizedFaceMatcher(quantized, gallery);
+        System.out.printf("%nGalerie float : %d Mo, galerie int8 : %d Mo%n",
+                          (long) gallerySize * FaceEmbeddings.BYTES >> 20, quantized.vectorBytes() >> 20);
+
+        queries = new float[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = recapture(random, faces[random.nextInt(gallerySize)]);
+        }
+        float[][] recallQueries = new float[RECALL_QUERIES][];
+        for (int i = 0; i < RECALL_QUERIES; i++) {
+            recallQueries[i] = recapture(random, faces[random.nextInt(gallerySize)]);
+        }
+        reportRecall(int8, recallQueries);
+        reportRecall(int8Rerank, recallQueries);
+    }
+
+    @Benchmark
+    public List<FaceMatch> exact() {
+        return exact.search(queries[next++ & (QUERIES - 1)], k);
+    }
+
+    @Benchmark
+    public List<FaceMatch> int8() {
+        return int8.search(queries[next++ & (QUERIES - 1)], k);
+    }
+
+    @Benchmark
+    public List<FaceMatch> int8Rerank() {
+        return int8Rerank.search(queries[next++ & (QUERIES - 1)], k);
+    }
+
+    private void reportRecall(FaceMatcher matcher, float[][] recallQueries) {
+        int top1 = 0;
+        int topK = 0;
+        for (float[] query : recallQueries) {
+            List<FaceMatch> expected = exact.search(query, k);
+            List<FaceMatch> found = matcher.search(query, k);
+            if (found.get(0).getUserId() == expected.get(0).getUserId()) {
+                top1++;
+            }
+            Set<Integer> expectedUsers = new HashSet<>();
+            for (FaceMatch match : expected) {
+                expectedUsers.add(match.getUserId());
+            }
+            for (FaceMatch match : found) {
+                if (expectedUsers.contains(match.getUserId())) {
+                    topK++;
+                }
+            }
+        }
+        System.out.printf("%s : recall@1=%.3f recall@%d=%.3f%n", matcher.getName(),
+                          (double) top1 / recallQueries.length, k, (double) topK / (recallQueries.length * k));
+    }
+
+    private static float[] syntheticFace(Random random, float[][] projection) {
+        float[] latent = new float[LATENT_FACTORS];
+        for (int i = 0; i < LATENT_FACTORS; i++) {
+            latent[i] = (float) random.nextGaussian();
+        }
+        float[] face = new float[FaceEmbeddings.DIMENSIONS];
+        for (int d = 0; d < face.length; d++) {
+            float value = 0;
+            for (int i = 0; i < LATENT_FACTORS; i++) {
+                value += projection[d][i] * latent[i];
+            }
+            face[d] = value + (float) (random.nextGaussian() * 0.1);
+        }
+        return face;
+    }
+
+    private static float[] recapture(Random random, float[] face) {
+        float[] query = face.clone();
+        for (int i = 0; i < query.length; i++) {
+            query[i] += (float) (random.nextGaussian() * 0.3);
+        }
+        return query;
+    }
+}
@@ -0,0 +1,104 @@
+package ma.mondial2030.bench;
+
+import ma.mondial2030.util.QRCodeGenerator;
+import ma.mondial2030.util.QRCodeReader;
+import ma.mondial2030.util.TicketQRParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare l'analyseur à curseur (TicketQRParser) à l'ancienne implémentation
+ * à base de String.split, sur des entrées valides, signées, TKT- et invalides.
+ * Lancer avec : mvn -Pbenchmark verify exec:exec -Djmh.args="TicketQRParserBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TicketQRParserBenchmark {
+
+    @Param({"FULL", "SIGNED", "LEGACY", "GARBAGE"})
+    public String input;
+
+    private String qrData;
+    private final TicketQRParser.Result result = new TicketQRParser.Result();
+
+    @Setup
+    public void setUp() {
+        switch (input) {
+            case "FULL":
+                qrData = QRCodeGenerator.generateTicketQRData("TKT-1A2B3C4D5E6F", 4821, 17);
+                break;
+            case "SIGNED":
+                qrData = QRCodeGenerator.generateSignedTicketQRData("TKT-1A2B3C4D5E6F", 4821, 17,
+                                                                    1_900_000_000L, 1_900_050_000L);
+                break;
+            case "LEGACY":
+                qrData = "  TKT-1A2B3C4D5E6F \n";
+                break;
+            default:
+                qrData = "TICKET:TKT-1A2B3C4D5E6F:USER:48x21:MATCH:17";
+                break;
+        }
+    }
+
+    @Benchmark
+    public boolean cursorParser() {
+        return TicketQRParser.parse(qrData, result) && result.getMatchEventId() > 0;
+    }
+
+    @Benchmark
+    public void cursorParserWithCode(Blackhole bh) {
+        TicketQRParser.parse(qrData, result);
+        bh.consume(result.ticketCode());
+    }
+
+    @Benchmark
+    public QRCodeReader.TicketQRData readerParse() {
+        return QRCodeReader.parseTicketQRData(qrData);
+    }
+
+    @Benchmark
+    public Object splitBaseline() {
+        return splitParse(qrData);
+    }
+
+    /**
+     * Ancienne implémentation (startsWith + split + parseInt), conservée comme référence
+     */
+    private static Object splitParse(String qrData) {
+        if (qrData == null || !qrData.startsWith("TICKET:")) {
+            String trimmed = qrData == null ? null : qrData.trim();
+            return trimmed == null || trimmed.isEmpty() ? null : trimmed;
+        }
+        try {
+            String[] parts = qrData.split(":");
+            if (parts.length >= 12 && "FROM".equals(parts[6]) && "UNTIL".equals(parts[8]) && "SIG".equals(parts[10])) {
+                String signedContent = qrData.substring(0, qrData.lastIndexOf(":SIG:"));
+                return new QRCodeReader.TicketQRData(parts[1], Integer.parseInt(parts[3]), Integer.parseInt(parts[5]),
+                                                     Long.parseLong(parts[7]), Long.parseLong(parts[9]),
+                                                     signedContent, parts[11]);
+            }
+            if (parts.length >= 6) {
+                return new QRCodeReader.TicketQRData(parts[1], Integer.parseInt(parts[3]), Integer.parseInt(parts[5]));
+            }
+        } catch (Exception e) {
+            return qrData.trim();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,126 @@
+package ma.mondial2030.dao;
+
+import ma.mondial2030.model.AccessLogSummary;
+import ma.mondial2030.model.Ticket;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût du mapping ResultSet vers objets, sans base : TicketDAO (graphe
+ * Ticket/User/Role/MatchEvent, utilisateurs et matchs partagés) et les lignes
+ * allégées d'AccessLogDAO. Les lignes proviennent d'un ResultSet en mémoire (H2).
+ * Le mapping complet d'AccessLog n'est pas couvert : il relit l'utilisateur et
+ * le ticket en base pour chaque ligne.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaoMappingBenchmark {
+    private static final int ROWS = 1_000;
+    private static final int TICKETS_PER_USER = 4;
+    private static final int MATCHES = 4;
+
+    private SimpleResultSet ticketRows;
+    private SimpleResultSet summaryRows;
+
+    @Setup
+    public void setUp() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.of(2030, 6, 14, 18, 0));
+
+        ticketRows = new SimpleResultSet();
+        ticketRows.setAutoClose(false);
+        addColumns(ticketRows, Types.INTEGER, "t_id");
+        addColumns(ticketRows, Types.VARCHAR, "t_ticket_code", "t_seat_number", "t_qr_code_data", "t_status");
+        addColumns(ticketRows, Types.TIMESTAMP, "t_purchase_date");
+        addColumns(ticketRows, Types.INTEGER, "u_id");
+        addColumns(ticketRows, Types.VARCHAR, "u_username", "u_email", "u_password_hash",
+                   "u_first_name", "u_last_name", "u_phone");
+        addColumns(ticketRows, Types.BOOLEAN, "u_is_active");
+        addColumns(ticketRows, Types.TIMESTAMP, "u_created_at", "u_updated_at");
+        addColumns(ticketRows, Types.INTEGER, "r_id");
+        addColumns(ticketRows, Types.VARCHAR, "r_name", "r_description");
+        addColumns(ticketRows, Types.TIMESTAMP, "r_created_at");
+        addColumns(ticketRows, Types.INTEGER, "m_id");
+        addColumns(ticketRows, Types.VARCHAR, "m_match_name");
+        addColumns(ticketRows, Types.TIMESTAMP, "m_match_date");
+        addColumns(ticketRows, Types.VARCHAR, "m_venue", "m_team_a", "m_team_b");
+        addColumns(ticketRows, Types.INTEGER, "m_total_capacity", "m_available_tickets");
+        addColumns(ticketRows, Types.DECIMAL, "m_ticket_price");
+        addColumns(ticketRows, Types.VARCHAR, "m_status");
+        addColumns(ticketRows, Types.TIMESTAMP, "m_created_at", "m_updated_at");
+
+        for (int i = 0; i < ROWS; i++) {
+            int userId = 1 + i / TICKETS_PER_USER;
+            int matchId = 1 + i % MATCHES;
+            String code = String.format("TKT-%012X", i);
+            ticketRows.addRow(
+                i + 1, code, "B" + (i % 40) + "-" + i, "TICKET:" + code + ":USER:" + userId + ":MATCH:" + matchId,
+                "VALID", now,
+                userId, "user" + userId, "user" + userId + "@mondial2030.ma",
+                "$2a$10$abcdefghijklmnopqrstuuABCDEFGHIJKLMNOPQRSTUVWXYZ01234", "Prénom", "Nom", "0600000000",
+                true, now, now,
+                2, "SUPPORTER", "Supporteur", now,
+                matchId, "Match " + matchId, now, "Grand Stade", "Maroc", "Espagne",
+                60_000, 12_000, new BigDecimal("450.00"), "UPCOMING", now, now);
+        }
+
+        summaryRows = new SimpleResultSet();
+        summaryRows.setAutoClose(false);
+        addColumns(summaryRows, Types.INTEGER, "id");
+        addColumns(summaryRows, Types.VARCHAR, "access_type", "access_result");
+        addColumns(summaryRows, Types.TIMESTAMP, "access_timestamp");
+        addColumns(summaryRows, Types.VARCHAR, "username", "device_name");
+        for (int i = 0; i < ROWS; i++) {
+            summaryRows.addRow(i + 1, "TICKET", i % 20 == 0 ? "DENIED" : "GRANTED", now,
+                               "user" + (1 + i / TICKETS_PER_USER), "Porte " + (1 + i % 3));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void ticketGraph(Blackhole blackhole) throws SQLException {
+        ticketRows.beforeFirst();
+        TicketDAO.TicketGraphMapper mapper = new TicketDAO.TicketGraphMapper();
+        while (ticketRows.next()) {
+            Ticket ticket = mapper.map(ticketRows);
+            blackhole.consume(ticket);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void accessLogSummary(Blackhole blackhole) throws SQLException {
+        summaryRows.beforeFirst();
+        while (summaryRows.next()) {
+            AccessLogSummary summary = AccessLogDAO.mapResultSetToSummary(summaryRows);
+            blackhole.consume(summary);
+        }
+    }
+
+    private static void addColumns(SimpleResultSet rs, int sqlType, String... names) {
+        for (String name : names) {
+            rs.addColumn(name, sqlType, sqlType == Types.DECIMAL ? 10 : 255, sqlType == Types.DECIMAL ? 2 : 0);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ma.mondial2030.loadtest;
+
+import ma.mondial2030.util.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Base H2 en mémoire (mode MySQL) remplaçant MySQL pour les tests de charge
+ * Le schéma est celui de database/schema.sql, adapté à la volée :
+ * les noms d'index, locaux à une table sous MySQL, sont globaux sous H2.
+ */
+public final class EmbeddedDatabase {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedDatabase.class);
+
+    private static final String URL = "jdbc:h2:mem:mondial2030_loadtest;MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+                                      + "NON_KEYWORDS=VALUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+    private static final Pattern CREATE_TABLE = Pattern.compile("CREATE TABLE IF NOT EXISTS (\\w+)");
+    private static final Pattern INLINE_INDEX = Pattern.compile("INDEX (\\w+) \\(");
+
+    private EmbeddedDatabase() {
+    }
+
+    /**
+     * Oriente DatabaseConnection vers la base embarquée puis crée le schéma
+     * À appeler avant tout accès à DatabaseConnection
+     */
+    public static void start(Path schemaFile, int poolMaxSize) throws IOException, SQLException {
+        System.setProperty("mondial2030.db.url", URL);
+        System.setProperty("mondial2030.db.user", "sa");
+        System.setProperty("mondial2030.db.password", "");
+        System.setProperty("mondial2030.db.pool.max", String.valueOf(poolMaxSize));
+
+        String script = Files.readString(schemaFile, StandardCharsets.UTF_8);
+        int statements = 0;
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             Statement stmt = conn.createStatement()) {
+            for (String sql : splitStatements(script)) {
+                stmt.execute(adapt(sql));
+                statements++;
+            }
+        }
+        logger.info("Base embarquée initialisée ({} instructions depuis {})", statements, schemaFile);
+    }
+
+    private static String[] splitStatements(String script) {
+        StringBuilder cleaned = new StringBuilder();
+        for (String line : script.split("\n")) {
+            if (!line.trim().startsWith("--")) {
+                cleaned.append(line).append('\n');
+            }
+        }
+        return cleaned.toString().split(";\\s*\n");
+    }
+
+    private static String adapt(String sql) {
+        String trimmed = sql.trim();
+        String upper = trimmed.toUpperCase();
+        if (trimmed.isEmpty() || upper.startsWith("CREATE DATABASE") || upper.startsWith("USE ")) {
+            return "SELECT 1";
+        }
+        Matcher table = CREATE_TABLE.matcher(trimmed);
+        if (table.find()) {
+            String prefix = table.group(1) + "_";
+            trimmed = INLINE_INDEX.matcher(trimmed).replaceAll("INDEX " + prefix + "$1 (");
+        }
+        return trimmed;
+    }
+}
@@ -0,0 +1,134 @@
+package ma.mondial2030.loadtest;
+
+import ma.mondial2030.util.DatabaseConnection;
+import ma.mondial2030.util.QRCodeGenerator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Jeu de données du test de charge : N matchs, M tickets répartis entre les matchs,
+ * un utilisateur pour quatre tickets et une petite part de tickets annulés
+ */
+public final class LoadTestData {
+    private static final int BATCH_SIZE = 1_000;
+    private static final int TICKETS_PER_USER = 4;
+    private static final int SUPPORTER_ROLE_ID = 2;
+
+    private final List<SeededTicket> tickets = new ArrayList<>();
+    private final int[] matchEventIds;
+
+    private LoadTestData(int matchCount) {
+        this.matchEventIds = new int[matchCount];
+    }
+
+    /**
+     * Insère les données en base et retourne leur description
+     */
+    public static LoadTestData seed(int matchCount, int ticketCount, double cancelledRatio, long seed)
+            throws SQLException {
+        LoadTestData data = new LoadTestData(matchCount);
+        Random random = new Random(seed);
+        long now = Instant.now().getEpochSecond();
+
+        try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            int ticketsPerMatch = (ticketCount + matchCount - 1) / matchCount;
+
+            String matchSql = "INSERT INTO match_events (id, match_name, match_date, venue, team_a, team_b, "
+                              + "total_capacity, available_tickets, ticket_price, status) "
+                              + "VALUES (?, ?, ?, 'Stade de test', 'Équipe A', 'Équipe B', ?, 0, 100.00, 'ONGOING')";
+            try (PreparedStatement stmt = conn.prepareStatement(matchSql)) {
+                for (int m = 0; m < matchCount; m++) {
+                    int matchEventId = 1_000 + m;
+                    data.matchEventIds[m] = matchEventId;
+                    stmt.setInt(1, matchEventId);
+                    stmt.setString(2, "Match de charge " + (m + 1));
+                    stmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now().plusHours(2)));
+                    stmt.setInt(4, ticketsPerMatch);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+
+            int userCount = (ticketCount + TICKETS_PER_USER - 1) / TICKETS_PER_USER;
+            String userSql = "INSERT INTO users (id, username, email, password_hash, first_name, last_name, role_id) "
+                             + "VALUES (?, ?, ?, 'x', 'Charge', ?, " + SUPPORTER_ROLE_ID + ")";
+            try (PreparedStatement stmt = conn.prepareStatement(userSql)) {
+                for (int u = 1; u <= userCount; u++) {
+                    int userId = 10_000 + u;
+                    stmt.setInt(1, userId);
+                    stmt.setString(2, "charge" + u);
+                    stmt.setString(3, "charge" + u + "@test.local");
+                    stmt.setString(4, "Utilisateur " + u);
+                    stmt.addBatch();
+                    if (u % BATCH_SIZE == 0) {
+                        stmt.executeBatch();
+                    }
+                }
+                stmt.executeBatch();
+            }
+
+            String ticketSql = "INSERT INTO tickets (ticket_code, user_id, match_event_id, seat_number, qr_code_data, status) "
+                               + "VALUES (?, ?, ?, ?, ?, ?)";
+            try (PreparedStatement stmt = conn.prepareStatement(ticketSql)) {
+                for (int t = 0; t < ticketCount; t++) {
+                    int matchEventId = data.matchEventIds[t % matchCount];
+                    int userId = 10_001 + t / TICKETS_PER_USER;
+                    String code = String.format("TKT-LT%08X", t);
+                    boolean cancelled = random.nextDouble() < cancelledRatio;
+                    String signedQr = QRCodeGenerator.generateSignedTicketQRData(code, userId, matchEventId,
+                                                                                 now - 3_600, now + 12 * 3_600);
+                    stmt.setString(1, code);
+                    stmt.setInt(2, userId);
+                    stmt.setInt(3, matchEventId);
+                    stmt.setString(4, "S" + t);
+                    stmt.setString(5, signedQr);
+                    stmt.setString(6, cancelled ? "CANCELLED" : "VALID");
+                    stmt.addBatch();
+                    data.tickets.add(new SeededTicket(code, userId, matchEventId, cancelled, signedQr));
+                    if ((t + 1) % BATCH_SIZE == 0) {
+                        stmt.executeBatch();
+                    }
+                }
+                stmt.executeBatch();
+            }
+            conn.commit();
+        }
+        return data;
+    }
+
+    public List<SeededTicket> getTickets() {
+        return tickets;
+    }
+
+    public int[] getMatchEventIds() {
+        return matchEventIds;
+    }
+
+    /**
+     * Ticket inséré en base
+     */
+    public static final class SeededTicket {
+        final String code;
+        final int userId;
+        final int matchEventId;
+        final boolean cancelled;
+        final String signedQrData;
+
+        SeededTicket(String code, int userId, int matchEventId, boolean cancelled, String signedQrData) {
+            this.code = code;
+            this.userId = userId;
+            this.matchEventId = matchEventId;
+            this.cancelled = cancelled;
+            this.signedQrData = signedQrData;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package ma.mondial2030.loadtest;
+
+import ma.mondial2030.metrics.LatencyHistogram;
+import ma.mondial2030.metrics.MetricsRegistry;
+import ma.mondial2030.service.AccessControlService;
+import ma.mondial2030.service.AccessLogWriter;
+import ma.mondial2030.service.UnknownCodeLog;
+import ma.mondial2030.util.DatabaseConnection;
+
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Test de charge du contrôle d'accès sur une base H2 embarquée (aucun MySQL requis)
+ * Insère N matchs et M tickets puis rejoue une courbe d'arrivée réaliste contre
+ * AccessControlService.processQRCodeAccess, en boucle ouverte : chaque scan part à
+ * son instant planifié, que les précédents soient terminés ou non.
+ *
+ * Usage : mvn -Ploadtest compile exec:exec -Dloadtest.args="--tickets=20000 --duration=30"
+ * Options : --matches=N --tickets=M --duration=S --gates=G --pool=P --concurrency=C
+ *           --schema=chemin/schema.sql --seed=X --no-warm
+ *           --metrics (affiche en fin de test le registre de métriques de l'application)
+ */
+public final class ScanLoadTest {
+    private static final double CANCELLED_RATIO = 0.01;
+
+    private final int matchCount;
+    private final int ticketCount;
+    private final int durationSeconds;
+    private final int gateCount;
+    private final int poolSize;
+    private final int concurrency;
+    private final Path schemaFile;
+    private final long seed;
+    private final boolean warmIndexes;
+    private final boolean dumpMetrics;
+
+    /** Latence depuis l'instant planifié (inclut l'attente) et temps de service seul */
+    private final LatencyHistogram responseTime = new LatencyHistogram();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+    private final Map<ScanScenario.Kind, LongAdder[]> outcomes = new EnumMap<>(ScanScenario.Kind.class);
+    private final LongAdder errors = new LongAdder();
+
+    private ScanLoadTest(String[] args) {
+        this.matchCount = intOption(args, "--matches=", 4);
+        this.ticketCount = intOption(args, "--tickets=", 20_000);
+        this.durationSeconds = intOption(args, "--duration=", 30);
+        this.gateCount = intOption(args, "--gates=", 3);
+        this.poolSize = intOption(args, "--pool=", 10);
+        this.concurrency = intOption(args, "--concurrency=", 512);
+        this.schemaFile = Path.of(stringOption(args, "--schema=", "database/schema.sql"));
+        this.seed = intOption(args, "--seed=", 2030);
+        this.warmIndexes = !hasFlag(args, "--no-warm");
+        this.dumpMetrics = hasFlag(args, "--metrics");
+        for (ScanScenario.Kind kind : ScanScenario.Kind.values()) {
+            // [accordés, refusés]
+            outcomes.put(kind, new LongAdder[] {new LongAdder(), new LongAdder()});
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new ScanLoadTest(args).run();
+    }
+
+    private void run() throws Exception {
+        EmbeddedDatabase.start(schemaFile, poolSize);
+
+        long seedStart = System.nanoTime();
+        LoadTestData data = LoadTestData.seed(matchCount, ticketCount, CANCELLED_RATIO, seed);
+        List<ScanScenario.Event> events = ScanScenario.build(data, gateCount, durationSeconds, seed);
+        System.out.printf("Données : %d matchs, %d tickets, %d scans planifiés sur %d s (%.1f s de préparation)%n",
+                          matchCount, ticketCount, events.size(), durationSeconds,
+                          (System.nanoTime() - seedStart) / 1e9);
+
+        AccessControlService service = new AccessControlService();
+        if (warmIndexes) {
+            for (int matchEventId : data.getMatchEventIds()) {
+                service.openGates(matchEventId);
+            }
+        }
+
+        long statementsBefore = statementCount();
+        long elapsedNanos = replay(service, events);
+        long statementsAfterScans = statementCount();
+
+        // Vide la file des logs d'accès pour compter aussi leurs insertions groupées
+        UnknownCodeLog.shutdown();
+        AccessLogWriter.shutdown();
+        long statementsAfterFlush = statementCount();
+
+        report(events.size(), elapsedNanos, statementsAfterScans - statementsBefore,
+               statementsAfterFlush - statementsBefore);
+        DatabaseConnection.shutdown();
+    }
+
+    private long replay(AccessControlService service, List<ScanScenario.Event> events) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("scan-", 0).factory())) {
+            for (ScanScenario.Event event : events) {
+                long scheduledAt = start + event.offsetNanos;
+                long wait = scheduledAt - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        scan(service, event, scheduledAt);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.MINUTES);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void scan(AccessControlService service, ScanScenario.Event event, long scheduledAt) {
+        long begin = System.nanoTime();
+        try {
+            AccessControlService.AccessResult result = service.processQRCodeAccess(event.qrData, event.gateId);
+            long end = System.nanoTime();
+            serviceTime.recordNanos(end - begin);
+            responseTime.recordNanos(end - scheduledAt);
+            outcomes.get(event.kind)[result.isGranted() ? 0 : 1].increment();
+        } catch (RuntimeException e) {
+            errors.increment();
+        }
+    }
+
+    private void report(int scanCount, long elapsedNanos, long scanStatements, long totalStatements) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%nDébit : %d scans en %.2f s, soit %.0f scans/s%n", scanCount, seconds, scanCount / seconds);
+        printLatency("Latence (depuis l'instant planifié)", responseTime);
+        printLatency("Temps de service", serviceTime);
+
+        System.out.printf("%n%-12s %10s %10s %12s%n", "Type", "Accordés", "Refusés", "Inattendus");
+        for (Map.Entry<ScanScenario.Kind, LongAdder[]> entry : outcomes.entrySet()) {
+            long granted = entry.getValue()[0].sum();
+            long denied = entry.getValue()[1].sum();
+            long unexpected = entry.getKey().isExpectGranted() ? denied : granted;
+            System.out.printf("%-12s %10d %10d %12d%n", entry.getKey(), granted, denied, unexpected);
+        }
+        if (errors.sum() > 0) {
+            System.out.printf("Exceptions : %d%n", errors.sum());
+        }
+
+        System.out.printf("%nRequêtes SQL pendant les scans : %d (%.3f par scan)%n",
+                          scanStatements, scanStatements / (double) scanCount);
+        System.out.printf("Requêtes SQL après vidage des logs : %d (%.3f par scan)%n",
+                          totalStatements, totalStatements / (double) scanCount);
+        System.out.println("Pool : " + DatabaseConnection.getInstance().getPoolStats());
+        if (dumpMetrics) {
+            System.out.printf("%n%s", MetricsRegistry.getInstance().toText());
+        }
+    }
+
+    private static void printLatency(String label, LatencyHistogram histogram) {
+        System.out.printf("%s : p50=%.3f ms, p99=%.3f ms, p99.9=%.3f ms, max=%.3f ms, moy=%.3f ms%n", label,
+                          histogram.percentileMicros(50) / 1e3, histogram.percentileMicros(99) / 1e3,
+                          histogram.percentileMicros(99.9) / 1e3, histogram.getMaxMicros() / 1e3,
+                          histogram.getMeanMicros() / 1e3);
+    }
+
+    private static long statementCount() {
+        return DatabaseConnection.getInstance().getPoolStats().getStatementCount();
+    }
+
+    private static int intOption(String[] args, String prefix, int defaultValue) {
+        String value = stringOption(args, prefix, null);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static String stringOption(String[] args, String prefix, String defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+        return defaultValue;
+    }
+
+    private static boolean hasFlag(String[] args, String flag) {
+        for (String arg : args) {
+            if (arg.equals(flag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,161 @@
+package ma.mondial2030.loadtest;
+
+import ma.mondial2030.util.QRCodeGenerator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Courbe d'arrivée réaliste des scans aux portes
+ * Densité par phase : ouverture des portes (afflux), flux normal, rush avant le
+ * coup d'envoi puis retardataires. S'y ajoutent des doubles scans, des codes
+ * inconnus, des tickets présentés au mauvais match et des tickets annulés.
+ */
+public final class ScanScenario {
+
+    /**
+     * Nature d'un scan et résultat attendu
+     */
+    public enum Kind {
+        VALID(true),
+        DUPLICATE(false),
+        UNKNOWN(false),
+        WRONG_MATCH(false),
+        CANCELLED(false);
+
+        private final boolean expectGranted;
+
+        Kind(boolean expectGranted) {
+            this.expectGranted = expectGranted;
+        }
+
+        public boolean isExpectGranted() {
+            return expectGranted;
+        }
+    }
+
+    /**
+     * Scan planifié : instant (en nanosecondes depuis le début), porte et contenu lu
+     */
+    public static final class Event {
+        final long offsetNanos;
+        final int gateId;
+        final String qrData;
+        final Kind kind;
+
+        Event(long offsetNanos, int gateId, String qrData, Kind kind) {
+            this.offsetNanos = offsetNanos;
+            this.gateId = gateId;
+            this.qrData = qrData;
+            this.kind = kind;
+        }
+    }
+
+    /** Phases : fin de la phase (fraction de la durée) et densité relative */
+    private static final double[] PHASE_END = {0.10, 0.60, 0.85, 1.00};
+    private static final double[] PHASE_WEIGHT = {3.0, 1.0, 2.0, 0.3};
+
+    private static final double DUPLICATE_RATIO = 0.05;
+    private static final double UNKNOWN_RATIO = 0.02;
+    private static final double WRONG_MATCH_RATIO = 0.01;
+    /** Répartition des formats lus sur les tickets valides : signé, complet, code seul */
+    private static final double SIGNED_SHARE = 0.70;
+    private static final double FULL_SHARE = 0.20;
+    /** Délai maximal entre un scan et son double */
+    private static final double DUPLICATE_MAX_DELAY_S = 5.0;
+
+    private ScanScenario() {
+    }
+
+    /**
+     * Construit la liste des scans, triée par instant
+     */
+    public static List<Event> build(LoadTestData data, int gateCount, int durationSeconds, long seed) {
+        Random random = new Random(seed);
+        long durationNanos = durationSeconds * 1_000_000_000L;
+        int[] matchIds = data.getMatchEventIds();
+        List<Event> events = new ArrayList<>();
+
+        for (LoadTestData.SeededTicket ticket : data.getTickets()) {
+            long at = sampleOffset(random, durationNanos);
+            int gateId = 1 + random.nextInt(gateCount);
+            if (ticket.cancelled) {
+                events.add(new Event(at, gateId, payloadFor(ticket, random), Kind.CANCELLED));
+                continue;
+            }
+            if (matchIds.length > 1 && random.nextDouble() < WRONG_MATCH_RATIO) {
+                // Supporteur à la mauvaise porte : le QR Code annonce un autre match
+                int otherMatch = matchIds[(indexOf(matchIds, ticket.matchEventId) + 1) % matchIds.length];
+                String qr = QRCodeGenerator.generateTicketQRData(ticket.code, ticket.userId, otherMatch);
+                events.add(new Event(at, gateId, qr, Kind.WRONG_MATCH));
+                continue;
+            }
+            String qr = payloadFor(ticket, random);
+            events.add(new Event(at, gateId, qr, Kind.VALID));
+            if (random.nextDouble() < DUPLICATE_RATIO) {
+                // Double scan (même porte ou capture d'écran partagée) peu après le premier
+                long delay = (long) (random.nextDouble() * DUPLICATE_MAX_DELAY_S * 1e9);
+                int otherGate = 1 + random.nextInt(gateCount);
+                events.add(new Event(Math.min(durationNanos, at + delay), otherGate, qr, Kind.DUPLICATE));
+            }
+        }
+
+        int unknownCount = (int) (data.getTickets().size() * UNKNOWN_RATIO);
+        for (int i = 0; i < unknownCount; i++) {
+            String qr = (i % 2 == 0)
+                        ? String.format("TKT-XX%08X", random.nextInt())
+                        : "https://exemple.invalide/" + Long.toHexString(random.nextLong());
+            events.add(new Event(sampleOffset(random, durationNanos), 1 + random.nextInt(gateCount), qr, Kind.UNKNOWN));
+        }
+
+        events.sort(Comparator.comparingLong(event -> event.offsetNanos));
+        return Collections.unmodifiableList(events);
+    }
+
+    private static String payloadFor(LoadTestData.SeededTicket ticket, Random random) {
+        double format = random.nextDouble();
+        if (format < SIGNED_SHARE) {
+            return ticket.signedQrData;
+        }
+        if (format < SIGNED_SHARE + FULL_SHARE) {
+            return QRCodeGenerator.generateTicketQRData(ticket.code, ticket.userId, ticket.matchEventId);
+        }
+        return ticket.code;
+    }
+
+    /**
+     * Tire un instant selon la densité par phase (inversion de la fonction de répartition)
+     */
+    private static long sampleOffset(Random random, long durationNanos) {
+        double total = 0;
+        double previousEnd = 0;
+        for (int i = 0; i < PHASE_END.length; i++) {
+            total += (PHASE_END[i] - previousEnd) * PHASE_WEIGHT[i];
+            previousEnd = PHASE_END[i];
+        }
+
+        double target = random.nextDouble() * total;
+        previousEnd = 0;
+        for (int i = 0; i < PHASE_END.length; i++) {
+            double mass = (PHASE_END[i] - previousEnd) * PHASE_WEIGHT[i];
+            if (target <= mass) {
+                return (long) ((previousEnd + target / PHASE_WEIGHT[i]) * durationNanos);
+            }
+            target -= mass;
+            previousEnd = PHASE_END[i];
+        }
+        return durationNanos;
+    }
+
+    private static int indexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
@@ -5,9 +5,24 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import ma.mondial2030.controller.BackgroundTasks;
+import ma.mondial2030.dao.ReferenceData;
+import ma.mondial2030.metrics.FlightRecording;
+import ma.mondial2030.metrics.MetricsRegistry;
+import ma.mondial2030.server.GateServer;
+import ma.mondial2030.service.AccessLogWriter;
+import ma.mondial2030.service.BatchEnrolmentService;
+import ma.mondial2030.service.BiometricService;
+import ma.mondial2030.service.QRCodeImageCache;
+import ma.mondial2030.service.TicketInventory;
+import ma.mondial2030.service.TicketUsageJournal;
+import ma.mondial2030.service.UnknownCodeLog;
+import ma.mondial2030.util.DatabaseConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+
 /**
  * Application principale JavaFX pour le système de billetterie et accréditation
  * du Mondial 2030
@@ -19,6 +34,8 @@ public class MainApp extends Application {
     public void start(Stage primaryStage) {
         try {
             logger.info("Démarrage de l'application Mondial 2030");
+            // Rôles, portes et matchs en cache avant les premières connexions
+            ReferenceData.warmInBackground();
             
             // Charger l'écran de connexion
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/login.fxml"));
@@ -44,11 +61,32 @@ public class MainApp extends Application {
     @Override
     public void stop() {
         logger.info("Arrêt de l'application");
-        // Fermer la connexion à la base de données si nécessaire
-        // DatabaseConnection.getInstance().closeConnection();
+        // Vider les logs d'accès en attente, restituer les réservations de tickets
+        // puis fermer le pool de connexions
+        BackgroundTasks.shutdown();
+        UnknownCodeLog.shutdown();
+        AccessLogWriter.shutdown();
+        TicketUsageJournal.shutdown();
+        BiometricService.shutdown();
+        TicketInventory.shutdown();
+        QRCodeImageCache.shutdown();
+        DatabaseConnection.shutdown();
+        MetricsRegistry.shutdown();
     }
 
     public static void main(String[] args) {
+        // Enregistrement JFR continu (--jfr[=répertoire]), dans les deux modes
+        FlightRecording.startIfRequested(args);
+        // Mode sans interface : serveur HTTP de validation des portes
+        if (Arrays.asList(args).contains(GateServer.FLAG)) {
+            GateServer.runHeadless(args);
+            return;
+        }
+        // Mode sans interface : enrôlement facial en masse d'un répertoire de photos
+        if (Arrays.stream(args).anyMatch(arg -> arg.startsWith(BatchEnrolmentService.FLAG + "="))) {
+            BatchEnrolmentService.runHeadless(args);
+            return;
+        }
         launch(args);
     }
 }
@@ -0,0 +1,21 @@
+package ma.mondial2030.biometric;
+
+/**
+ * Noyau de produit scalaire entre deux vecteurs de DIMENSIONS floats
+ * Une seule implémentation est chargée par JVM : l'appel reste monomorphe et se fait inliner.
+ */
+@FunctionalInterface
+interface DotProduct {
+
+    /** Vector API disponible : module jdk.incubator.vector chargé au démarrage (--add-modules) */
+    boolean VECTOR_API = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    float dot(float[] a, int aBase, float[] b, int bBase);
+
+    /**
+     * Noyau SIMD si la Vector API est disponible, scalaire sinon
+     */
+    static DotProduct best() {
+        return VECTOR_API ? VectorFaceMatcher::dot : ScalarFaceMatcher::dot;
+    }
+}
@@ -0,0 +1,160 @@
+package ma.mondial2030.biometric;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Format et calcul des empreintes faciales : 128 floats (même taille qu'un embedding FaceNet)
+ * Stockées dans face_embeddings.embedding_data en float32 little-endian (512 octets).
+ * Toutes les empreintes comparées sont normalisées (norme 1) : la similarité cosinus
+ * se réduit alors à un produit scalaire.
+ * Format 2 : la même empreinte est aussi quantifiée en int8 dans face_embeddings.quantized_data
+ * (128 composantes signées puis l'échelle du vecteur en float32, 132 octets) ; la valeur
+ * d'une composante est q[i] * échelle.
+ */
+public final class FaceEmbeddings {
+    public static final int DIMENSIONS = 128;
+    public static final int BYTES = DIMENSIONS * Float.BYTES;
+    public static final int QUANTIZED_BYTES = DIMENSIONS + Float.BYTES;
+
+    /** Valeurs de face_embeddings.embedding_format */
+    public static final int FORMAT_FLOAT32 = 1;
+    public static final int FORMAT_FLOAT32_INT8 = 2;
+
+    /** Grille du descripteur d'apparence : 8 colonnes x 16 lignes = DIMENSIONS cellules */
+    private static final int GRID_WIDTH = 8;
+    private static final int GRID_HEIGHT = DIMENSIONS / GRID_WIDTH;
+
+    private FaceEmbeddings() {
+    }
+
+    /**
+     * Sérialise une empreinte pour la colonne embedding_data
+     */
+    public static byte[] encode(float[] embedding) {
+        ByteBuffer buffer = ByteBuffer.allocate(embedding.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(embedding);
+        return buffer.array();
+    }
+
+    /**
+     * Relit une empreinte stockée ; null si la taille ne correspond pas au format
+     */
+    public static float[] decode(byte[] data) {
+        if (data == null || data.length != BYTES) {
+            return null;
+        }
+        float[] embedding = new float[DIMENSIONS];
+        ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(embedding);
+        return embedding;
+    }
+
+    /**
+     * Quantifie une empreinte pour la colonne quantized_data : normalisée, puis chaque composante
+     * arrondie sur [-127, 127] avec une échelle propre au vecteur (la plus grande composante
+     * vaut 127) ; null si l'empreinte est nulle ou mal dimensionnée
+     */
+    public static byte[] quantize(float[] embedding) {
+        if (embedding == null || embedding.length != DIMENSIONS) {
+            return null;
+        }
+        float[] normalized = embedding.clone();
+        if (!normalize(normalized)) {
+            return null;
+        }
+        float max = 0;
+        for (float value : normalized) {
+            max = Math.max(max, Math.abs(value));
+        }
+        float scale = max / 127;
+        ByteBuffer buffer = ByteBuffer.allocate(QUANTIZED_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (float value : normalized) {
+            buffer.put((byte) Math.max(-127, Math.min(127, Math.round(value / scale))));
+        }
+        buffer.putFloat(scale);
+        return buffer.array();
+    }
+
+    /**
+     * Échelle d'une empreinte quantifiée ; NaN si la taille ne correspond pas au format
+     */
+    public static float quantizedScale(byte[] data) {
+        if (data == null || data.length != QUANTIZED_BYTES) {
+            return Float.NaN;
+        }
+        return ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).getFloat(DIMENSIONS);
+    }
+
+    /**
+     * Ramène le vecteur à la norme 1 ; false si le vecteur est nul (empreinte inutilisable)
+     */
+    public static boolean normalize(float[] vector) {
+        double sum = 0;
+        for (float value : vector) {
+            sum += (double) value * value;
+        }
+        if (sum == 0 || Double.isNaN(sum)) {
+            return false;
+        }
+        float inverse = (float) (1 / Math.sqrt(sum));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= inverse;
+        }
+        return true;
+    }
+
+    /**
+     * Descripteur d'apparence d'une image, calculé ligne par ligne à partir de pixels ARGB
+     * (seule une ligne de l'image est en mémoire à la fois) : luminance moyenne par zone sur une
+     * grille 8 x 16, centrée puis normalisée, insensible à la taille de l'image, à la luminosité et
+     * au contraste globaux. À remplacer par la sortie d'un modèle de reconnaissance faciale, au même
+     * format, sans toucher au stockage ni à la recherche.
+     */
+    public static final class Descriptor {
+        private final float[] sums = new float[DIMENSIONS];
+        private final int[] counts = new int[DIMENSIONS];
+        private final int width;
+        private final int height;
+
+        public Descriptor(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * Ajoute la ligne y, lue dans argb à partir de offset (width pixels ARGB)
+         */
+        public void addArgbRow(int y, int[] argb, int offset) {
+            int row = rowCell(y);
+            for (int x = 0; x < width; x++) {
+                int pixel = argb[offset + x];
+                float luminance = (0.299f * ((pixel >> 16) & 0xFF) + 0.587f * ((pixel >> 8) & 0xFF)
+                                   + 0.114f * (pixel & 0xFF)) / 255f;
+                int cell = row + (int) ((long) x * GRID_WIDTH / width);
+                sums[cell] += luminance;
+                counts[cell]++;
+            }
+        }
+
+        private int rowCell(int y) {
+            return (int) ((long) y * GRID_HEIGHT / height) * GRID_WIDTH;
+        }
+
+        /**
+         * Empreinte normalisée, ou null si l'image est uniforme
+         */
+        public float[] build() {
+            float[] cells = new float[DIMENSIONS];
+            float mean = 0;
+            for (int i = 0; i < DIMENSIONS; i++) {
+                cells[i] = counts[i] > 0 ? sums[i] / counts[i] : 0;
+                mean += cells[i];
+            }
+            mean /= DIMENSIONS;
+            for (int i = 0; i < DIMENSIONS; i++) {
+                cells[i] -= mean;
+            }
+            return normalize(cells) ? cells : null;
+        }
+    }
+}
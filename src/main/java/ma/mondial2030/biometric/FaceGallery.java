@@ -0,0 +1,98 @@
+package ma.mondial2030.biometric;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Galerie des empreintes enrôlées d'un match, stockée de façon contiguë
+ * Ligne i : utilisateur userIds[i], vecteur normalisé vectors[i * DIMENSIONS .. (i + 1) * DIMENSIONS[.
+ * Immuable une fois construite : les recherches concurrentes ne prennent aucun verrou.
+ */
+public final class FaceGallery {
+    private final int[] userIds;
+    private final float[] vectors;
+    private final int size;
+
+    private FaceGallery(int[] userIds, float[] vectors, int size) {
+        this.userIds = userIds;
+        this.vectors = vectors;
+        this.size = size;
+    }
+
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getUserId(int row) {
+        return userIds[row];
+    }
+
+    /**
+     * Utilisateur de chaque ligne (partagé, à ne pas modifier)
+     */
+    int[] userIds() {
+        return userIds;
+    }
+
+    /**
+     * Bloc des vecteurs (partagé, à ne pas modifier)
+     */
+    float[] vectors() {
+        return vectors;
+    }
+
+    /**
+     * Construit une galerie ; une seule ligne par utilisateur, la dernière empreinte ajoutée l'emporte
+     */
+    public static final class Builder {
+        private final Map<Integer, Integer> rowByUser = new HashMap<>();
+        private int[] userIds;
+        private float[] vectors;
+        private int size;
+
+        private Builder(int expectedSize) {
+            int capacity = Math.max(16, expectedSize);
+            userIds = new int[capacity];
+            vectors = new float[capacity * FaceEmbeddings.DIMENSIONS];
+        }
+
+        /**
+         * Ajoute (ou remplace) l'empreinte d'un utilisateur ; false si elle est nulle ou mal dimensionnée
+         */
+        public boolean add(int userId, float[] embedding) {
+            if (embedding == null || embedding.length != FaceEmbeddings.DIMENSIONS) {
+                return false;
+            }
+            float[] normalized = embedding.clone();
+            if (!FaceEmbeddings.normalize(normalized)) {
+                return false;
+            }
+            Integer row = rowByUser.get(userId);
+            if (row == null) {
+                if (size == userIds.length) {
+                    userIds = Arrays.copyOf(userIds, size * 2);
+                    vectors = Arrays.copyOf(vectors, size * 2 * FaceEmbeddings.DIMENSIONS);
+                }
+                row = size++;
+                rowByUser.put(userId, row);
+                userIds[row] = userId;
+            }
+            System.arraycopy(normalized, 0, vectors, row * FaceEmbeddings.DIMENSIONS, FaceEmbeddings.DIMENSIONS);
+            return true;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public FaceGallery build() {
+            return new FaceGallery(Arrays.copyOf(userIds, size),
+                                   Arrays.copyOf(vectors, size * FaceEmbeddings.DIMENSIONS), size);
+        }
+    }
+}
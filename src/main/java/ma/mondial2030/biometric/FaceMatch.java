@@ -0,0 +1,27 @@
+package ma.mondial2030.biometric;
+
+/**
+ * Candidat d'une recherche 1:N : utilisateur et similarité cosinus (-1..1)
+ */
+public class FaceMatch {
+    private final int userId;
+    private final float score;
+
+    public FaceMatch(int userId, float score) {
+        this.userId = userId;
+        this.score = score;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FaceMatch{userId=%d, score=%.4f}", userId, score);
+    }
+}
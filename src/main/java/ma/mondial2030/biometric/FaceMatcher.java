@@ -0,0 +1,54 @@
+package ma.mondial2030.biometric;
+
+import java.util.List;
+
+/**
+ * Recherche 1:N dans une galerie : les k utilisateurs les plus proches d'une empreinte
+ */
+public interface FaceMatcher {
+
+    /**
+     * Les k meilleurs candidats, du plus au moins similaire ; liste vide si l'empreinte est nulle
+     */
+    List<FaceMatch> search(float[] query, int k);
+
+    /**
+     * Nombre d'empreintes dans la galerie interrogée
+     */
+    int size();
+
+    /**
+     * Nom de l'implémentation (logs, métriques)
+     */
+    String getName();
+
+    /**
+     * Recherche exacte sur la galerie : instructions SIMD (Vector API) si le module
+     * jdk.incubator.vector est chargé (--add-modules), boucle scalaire sinon
+     */
+    static FaceMatcher exact(FaceGallery gallery) {
+        if (DotProduct.VECTOR_API) {
+            return new VectorFaceMatcher(gallery);
+        }
+        return new ScalarFaceMatcher(gallery);
+    }
+
+    /**
+     * Recherche exacte sur la version int8 de la galerie (quatre fois moins de mémoire parcourue),
+     * puis re-classement des meilleurs candidats sur les vecteurs float de la galerie
+     */
+    static FaceMatcher quantized(FaceGallery gallery) {
+        return new QuantizedFaceMatcher(QuantizedFaceGallery.of(gallery), gallery);
+    }
+
+    /**
+     * Copie normalisée de l'empreinte recherchée, ou null si elle est inutilisable
+     */
+    static float[] normalizedQuery(float[] query) {
+        if (query == null || query.length != FaceEmbeddings.DIMENSIONS) {
+            return null;
+        }
+        float[] normalized = query.clone();
+        return FaceEmbeddings.normalize(normalized) ? normalized : null;
+    }
+}
@@ -0,0 +1,698 @@
+package ma.mondial2030.biometric;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index HNSW (graphe de voisinage hiérarchique) des empreintes d'un match : recherche 1:N approchée
+ * Chaque empreinte est un nœud relié à ses plus proches voisins sur une ou plusieurs couches ;
+ * une recherche descend les couches puis explore efSearch candidats de la couche 0, soit
+ * quelques milliers de produits scalaires quelle que soit la taille de la galerie.
+ * Une nouvelle empreinte d'un utilisateur déjà indexé remplace l'ancienne, et un utilisateur dont
+ * les tickets du match sont tous annulés est retiré : le nœud devient une pierre tombale, gardée
+ * dans le graphe pour la navigation mais jamais retournée par une recherche.
+ * Les recherches sont concurrentes entre elles ; un ajout les bloque le temps de l'insertion.
+ */
+public class HnswIndex implements FaceMatcher {
+    public static final int DEFAULT_M = 16;
+    public static final int DEFAULT_EF_CONSTRUCTION = 100;
+    public static final int DEFAULT_EF_SEARCH = 64;
+
+    /** "MHNS" */
+    private static final int MAGIC = 0x4D484E53;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_INTS = 12;
+    private static final int MAX_LEVEL = 16;
+    private static final int DIMS = FaceEmbeddings.DIMENSIONS;
+
+    private final int m;
+    private final int maxLinks0;
+    private final int efConstruction;
+    private final double levelFactor;
+    private final Random random;
+    private final DotProduct kernel = DotProduct.best();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile int efSearch = DEFAULT_EF_SEARCH;
+
+    private float[] vectors;
+    private int[] userIds;
+    private int[] embeddingIds;
+    /**
+     * Voisins par nœud, toutes couches dans un seul tableau : couche 0 sur 1 + 2M cases, puis
+     * 1 + M cases par couche supérieure ; la première case de chaque couche est le nombre de voisins
+     */
+    private int[][] links;
+    /** Nœuds remplacés ou retirés, ignorés par les recherches */
+    private final BitSet tombstones = new BitSet();
+    private final Map<Integer, Integer> nodeByUser = new HashMap<>();
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int lastEmbeddingId;
+    private int lastTicketId;
+
+    public HnswIndex() {
+        this(DEFAULT_M, DEFAULT_EF_CONSTRUCTION, 16);
+    }
+
+    public HnswIndex(int m, int efConstruction, int expectedSize) {
+        this.m = m;
+        this.maxLinks0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelFactor = 1 / Math.log(m);
+        this.random = new Random(42);
+        int capacity = Math.max(16, expectedSize);
+        vectors = new float[capacity * DIMS];
+        userIds = new int[capacity];
+        embeddingIds = new int[capacity];
+        links = new int[capacity][];
+    }
+
+    /**
+     * Candidats explorés par recherche : plus il est grand, meilleur est le rappel et plus lente la recherche
+     */
+    public void setEfSearch(int efSearch) {
+        this.efSearch = Math.max(1, efSearch);
+    }
+
+    /**
+     * Indexe l'empreinte embeddingId d'un utilisateur ; sans effet si l'index connaît déjà
+     * une empreinte aussi récente pour lui, false si l'empreinte est inutilisable
+     */
+    public boolean add(int embeddingId, int userId, float[] embedding) {
+        float[] normalized = FaceMatcher.normalizedQuery(embedding);
+        if (normalized == null) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            lastEmbeddingId = Math.max(lastEmbeddingId, embeddingId);
+            Integer previous = nodeByUser.get(userId);
+            if (previous != null) {
+                if (embeddingIds[previous] >= embeddingId) {
+                    return true;
+                }
+                tombstones.set(previous);
+            }
+            int node = size;
+            ensureCapacity(node + 1);
+            System.arraycopy(normalized, 0, vectors, node * DIMS, DIMS);
+            userIds[node] = userId;
+            embeddingIds[node] = embeddingId;
+            size++;
+            nodeByUser.put(userId, node);
+            insert(node);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retire un utilisateur de l'index (plus aucun ticket valide pour le match) ; false s'il n'y était pas
+     * Une nouvelle empreinte ajoutée ensuite (nouvel achat) le réintègre.
+     */
+    public boolean remove(int userId) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodeByUser.remove(userId);
+            if (node == null) {
+                return false;
+            }
+            tombstones.set(node);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<FaceMatch> search(float[] query, int k) {
+        float[] q = FaceMatcher.normalizedQuery(query);
+        if (q == null) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return List.of();
+            }
+            int ep = entryPoint;
+            for (int level = maxLevel; level > 0; level--) {
+                ep = greedyClosest(q, 0, ep, level);
+            }
+            LongHeap results = searchLayer(q, 0, ep, Math.max(efSearch, k), 0);
+            TopK top = new TopK(k);
+            while (results.size() > 0) {
+                long key = results.pop();
+                int node = nodeOf(key);
+                if (!tombstones.get(node)) {
+                    top.offer(node, scoreOf(key));
+                }
+            }
+            return top.toMatches(userIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Nombre d'utilisateurs indexés (empreintes remplacées exclues)
+     */
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodeByUser.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Nombre de nœuds du graphe, pierres tombales comprises : augmente à chaque empreinte réellement ajoutée
+     */
+    public int getNodeCount() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "hnsw";
+    }
+
+    /**
+     * Plus grand identifiant de face_embeddings indexé (rattrapage après chargement d'un instantané)
+     */
+    public int getLastEmbeddingId() {
+        lock.readLock().lock();
+        try {
+            return lastEmbeddingId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Plus grand identifiant de ticket du match connu lors du dernier rattrapage
+     */
+    public int getLastTicketId() {
+        lock.readLock().lock();
+        try {
+            return lastTicketId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void setLastTicketId(int lastTicketId) {
+        lock.writeLock().lock();
+        try {
+            this.lastTicketId = Math.max(this.lastTicketId, lastTicketId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(int node) {
+        int level = randomLevel();
+        links[node] = new int[maxLinks0 + 1 + level * (m + 1)];
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+        int base = node * DIMS;
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedyClosest(vectors, base, ep, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            long[] candidates = searchLayer(vectors, base, ep, efConstruction, l).drainDescending();
+            int[] selected = selectNeighbours(candidates, m);
+            int offset = offset(l);
+            links[node][offset] = selected.length;
+            System.arraycopy(selected, 0, links[node], offset + 1, selected.length);
+            int maxLinks = l == 0 ? maxLinks0 : m;
+            for (int neighbour : selected) {
+                connect(neighbour, node, l, maxLinks);
+            }
+            ep = nodeOf(candidates[0]);
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * Ajoute node aux voisins de neighbour ; au-delà de maxLinks, la liste est re-sélectionnée
+     */
+    private void connect(int neighbour, int node, int level, int maxLinks) {
+        int[] neighbourLinks = links[neighbour];
+        int offset = offset(level);
+        int count = neighbourLinks[offset];
+        if (count < maxLinks) {
+            neighbourLinks[offset + 1 + count] = node;
+            neighbourLinks[offset] = count + 1;
+            return;
+        }
+        int base = neighbour * DIMS;
+        long[] candidates = new long[count + 1];
+        for (int i = 0; i < count; i++) {
+            int other = neighbourLinks[offset + 1 + i];
+            candidates[i] = key(kernel.dot(vectors, base, vectors, other * DIMS), other);
+        }
+        candidates[count] = key(kernel.dot(vectors, base, vectors, node * DIMS), node);
+        Arrays.sort(candidates);
+        reverse(candidates);
+        int[] kept = selectNeighbours(candidates, maxLinks);
+        neighbourLinks[offset] = kept.length;
+        System.arraycopy(kept, 0, neighbourLinks, offset + 1, kept.length);
+    }
+
+    /**
+     * Heuristique de sélection : un candidat (du plus proche au plus lointain) n'est gardé que s'il
+     * est plus proche du point que de tous les voisins déjà gardés, pour couvrir plusieurs directions
+     */
+    private int[] selectNeighbours(long[] candidatesDescending, int max) {
+        int[] selected = new int[Math.min(max, candidatesDescending.length)];
+        int count = 0;
+        for (long candidate : candidatesDescending) {
+            if (count == selected.length) {
+                break;
+            }
+            int node = nodeOf(candidate);
+            float toPoint = scoreOf(candidate);
+            boolean diverse = true;
+            for (int i = 0; i < count; i++) {
+                if (kernel.dot(vectors, node * DIMS, vectors, selected[i] * DIMS) > toPoint) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count++] = node;
+            }
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * Descente gloutonne sur une couche supérieure : voisin le plus proche tant qu'il y en a un meilleur
+     */
+    private int greedyClosest(float[] q, int qBase, int ep, int level) {
+        int current = ep;
+        float best = kernel.dot(q, qBase, vectors, current * DIMS);
+        int offset = offset(level);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] currentLinks = links[current];
+            int count = currentLinks[offset];
+            for (int i = 0; i < count; i++) {
+                int neighbour = currentLinks[offset + 1 + i];
+                float score = kernel.dot(q, qBase, vectors, neighbour * DIMS);
+                if (score > best) {
+                    best = score;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Exploration d'une couche : les ef nœuds les plus proches trouvés depuis ep (tas du moins proche)
+     */
+    private LongHeap searchLayer(float[] q, int qBase, int ep, int ef, int level) {
+        VisitedSet visited = new VisitedSet(ef * maxLinks0);
+        LongHeap candidates = new LongHeap(ef * 2);
+        LongHeap results = new LongHeap(ef + 1);
+        long start = key(kernel.dot(q, qBase, vectors, ep * DIMS), ep);
+        visited.add(ep);
+        // Tas min : les clés opposées font des candidats un tas du plus proche
+        candidates.push(-start);
+        results.push(start);
+        int offset = offset(level);
+        while (candidates.size() > 0) {
+            long candidate = -candidates.pop();
+            if (results.size() >= ef && candidate < results.peek()) {
+                break;
+            }
+            int[] candidateLinks = links[nodeOf(candidate)];
+            int count = candidateLinks[offset];
+            for (int i = 0; i < count; i++) {
+                int neighbour = candidateLinks[offset + 1 + i];
+                if (!visited.add(neighbour)) {
+                    continue;
+                }
+                long key = key(kernel.dot(q, qBase, vectors, neighbour * DIMS), neighbour);
+                if (results.size() < ef || key > results.peek()) {
+                    candidates.push(-key);
+                    results.push(key);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private int randomLevel() {
+        return Math.min(MAX_LEVEL, (int) (-Math.log(1 - random.nextDouble()) * levelFactor));
+    }
+
+    private int offset(int level) {
+        return level == 0 ? 0 : maxLinks0 + 1 + (level - 1) * (m + 1);
+    }
+
+    private int levelOf(int node) {
+        return (links[node].length - maxLinks0 - 1) / (m + 1);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= userIds.length) {
+            return;
+        }
+        int capacity = Math.max(required, userIds.length * 2);
+        vectors = Arrays.copyOf(vectors, capacity * DIMS);
+        userIds = Arrays.copyOf(userIds, capacity);
+        embeddingIds = Arrays.copyOf(embeddingIds, capacity);
+        links = Arrays.copyOf(links, capacity);
+    }
+
+    /**
+     * Clé triable (score, nœud) : l'ordre des long suit celui des scores
+     */
+    private static long key(float score, int node) {
+        int bits = Float.floatToRawIntBits(score);
+        return ((long) (bits ^ ((bits >> 31) & 0x7FFFFFFF)) << 32) | node;
+    }
+
+    private static float scoreOf(long key) {
+        int sortable = (int) (key >> 32);
+        return Float.intBitsToFloat(sortable ^ ((sortable >> 31) & 0x7FFFFFFF));
+    }
+
+    private static int nodeOf(long key) {
+        return (int) key;
+    }
+
+    private static void reverse(long[] values) {
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            long tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+
+    /**
+     * Écrit un instantané de l'index (fichier temporaire puis renommage)
+     * Format little-endian : en-tête de HEADER_INTS entiers, utilisateurs, empreintes, niveaux,
+     * pierres tombales, bloc des vecteurs, puis voisins de chaque nœud.
+     */
+    public void save(Path file) throws IOException {
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            long[] tombstoneWords = tombstones.toLongArray();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                SnapshotWriter out = new SnapshotWriter(channel);
+                out.putInt(MAGIC);
+                out.putInt(FORMAT_VERSION);
+                out.putInt(DIMS);
+                out.putInt(m);
+                out.putInt(efConstruction);
+                out.putInt(size);
+                out.putInt(entryPoint);
+                out.putInt(maxLevel);
+                out.putInt(lastEmbeddingId);
+                out.putInt(lastTicketId);
+                out.putInt(tombstoneWords.length);
+                out.putInt(0);
+                for (int node = 0; node < size; node++) {
+                    out.putInt(userIds[node]);
+                }
+                for (int node = 0; node < size; node++) {
+                    out.putInt(embeddingIds[node]);
+                }
+                for (int node = 0; node < size; node++) {
+                    out.putInt(levelOf(node));
+                }
+                for (long word : tombstoneWords) {
+                    out.putLong(word);
+                }
+                for (int i = 0; i < size * DIMS; i++) {
+                    out.putFloat(vectors[i]);
+                }
+                for (int node = 0; node < size; node++) {
+                    for (int value : links[node]) {
+                        out.putInt(value);
+                    }
+                }
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Relit un instantané en le projetant en mémoire (FileChannel.map) : les blocs sont copiés
+     * d'un seul tenant dans les tableaux de l'index, sans analyse ligne à ligne
+     */
+    public static HnswIndex load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer in = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (in.remaining() < HEADER_INTS * Integer.BYTES || in.getInt() != MAGIC) {
+                throw new IOException("Instantané HNSW invalide: " + file);
+            }
+            int version = in.getInt();
+            int dims = in.getInt();
+            if (version != FORMAT_VERSION || dims != DIMS) {
+                throw new IOException("Instantané HNSW incompatible (version " + version + ", " + dims + " dimensions)");
+            }
+            int m = in.getInt();
+            int efConstruction = in.getInt();
+            int size = in.getInt();
+            HnswIndex index = new HnswIndex(m, efConstruction, size);
+            index.size = size;
+            index.entryPoint = in.getInt();
+            index.maxLevel = in.getInt();
+            index.lastEmbeddingId = in.getInt();
+            index.lastTicketId = in.getInt();
+            int tombstoneWords = in.getInt();
+            in.getInt();
+
+            readInts(in, index.userIds, size);
+            readInts(in, index.embeddingIds, size);
+            int[] levels = new int[size];
+            readInts(in, levels, size);
+            long[] words = new long[tombstoneWords];
+            in.asLongBuffer().get(words);
+            in.position(in.position() + tombstoneWords * Long.BYTES);
+            index.tombstones.or(BitSet.valueOf(words));
+            in.asFloatBuffer().get(index.vectors, 0, size * DIMS);
+            in.position(in.position() + size * DIMS * Float.BYTES);
+            for (int node = 0; node < size; node++) {
+                int[] nodeLinks = new int[index.maxLinks0 + 1 + levels[node] * (m + 1)];
+                readInts(in, nodeLinks, nodeLinks.length);
+                index.links[node] = nodeLinks;
+                if (!index.tombstones.get(node)) {
+                    index.nodeByUser.put(index.userIds[node], node);
+                }
+            }
+            return index;
+        } catch (RuntimeException e) {
+            // Fichier tronqué ou incohérent (BufferUnderflowException, index hors bornes)
+            throw new IOException("Instantané HNSW illisible: " + file, e);
+        }
+    }
+
+    private static void readInts(ByteBuffer in, int[] target, int count) {
+        in.asIntBuffer().get(target, 0, count);
+        in.position(in.position() + count * Integer.BYTES);
+    }
+
+    /**
+     * Écriture bufferisée en little-endian vers un FileChannel
+     */
+    private static final class SnapshotWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+        SnapshotWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putFloat(float value) throws IOException {
+            ensure(Float.BYTES);
+            buffer.putFloat(value);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Tas min de long sans boxing
+     */
+    private static final class LongHeap {
+        private long[] heap;
+        private int size;
+
+        LongHeap(int capacity) {
+            heap = new long[Math.max(4, capacity)];
+        }
+
+        int size() {
+            return size;
+        }
+
+        long peek() {
+            return heap[0];
+        }
+
+        void push(long value) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= value) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+
+        long pop() {
+            long top = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (heap[child] >= last) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+
+        /**
+         * Vide le tas, du plus grand au plus petit
+         */
+        long[] drainDescending() {
+            long[] values = new long[size];
+            for (int i = values.length - 1; i >= 0; i--) {
+                values[i] = pop();
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Ensemble d'entiers positifs à adressage ouvert, pour les nœuds déjà visités d'une recherche
+     */
+    private static final class VisitedSet {
+        private int[] slots;
+        private int count;
+
+        VisitedSet(int expected) {
+            slots = new int[Integer.highestOneBit(Math.max(16, expected) * 2 - 1) << 1];
+        }
+
+        /**
+         * true si la valeur n'y était pas
+         */
+        boolean add(int value) {
+            if (2 * (count + 1) > slots.length) {
+                grow();
+            }
+            int stored = value + 1;
+            int mask = slots.length - 1;
+            int i = (value * 0x9E3779B9) >>> 1 & mask;
+            while (slots[i] != 0) {
+                if (slots[i] == stored) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            slots[i] = stored;
+            count++;
+            return true;
+        }
+
+        private void grow() {
+            int[] old = slots;
+            slots = new int[old.length * 2];
+            count = 0;
+            for (int stored : old) {
+                if (stored != 0) {
+                    add(stored - 1);
+                }
+            }
+        }
+    }
+}
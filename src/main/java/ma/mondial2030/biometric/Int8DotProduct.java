@@ -0,0 +1,18 @@
+package ma.mondial2030.biometric;
+
+/**
+ * Noyau de produit scalaire entier entre deux empreintes quantifiées de DIMENSIONS octets signés
+ * Le résultat tient dans un int : au plus 128 * 127 * 127.
+ */
+@FunctionalInterface
+interface Int8DotProduct {
+
+    int dot(byte[] a, int aBase, byte[] b, int bBase);
+
+    /**
+     * Noyau SIMD si la Vector API est disponible, scalaire sinon
+     */
+    static Int8DotProduct best() {
+        return DotProduct.VECTOR_API ? VectorFaceMatcher::dotInt8 : ScalarFaceMatcher::dotInt8;
+    }
+}
@@ -0,0 +1,437 @@
+package ma.mondial2030.biometric;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fichier de galerie d'un match, projeté en mémoire (FileChannel.map) et lu sans copie sur le tas
+ * Format little-endian, sections alignées sur 64 octets (une ligne de cache) :
+ * en-tête de HEADER_BYTES octets, utilisateurs triés (int), échelles int8 (float),
+ * composantes int8 (DIMENSIONS octets par ligne), vecteurs normalisés (DIMENSIONS floats par ligne),
+ * puis utilisateurs retirés triés (int, version 2).
+ * Une galerie se compose d'un fichier de base, match-ID.gallery, et de fichiers delta,
+ * match-ID.delta-N.gallery, pour les enrôlements postérieurs ; un utilisateur présent dans un
+ * fichier plus récent y remplace sa ligne précédente, un utilisateur retiré par un fichier plus
+ * récent (tickets annulés) n'est plus retourné (voir MappedFaceMatcher).
+ * Les pages sont partagées avec le cache du système : le démarrage ne lit que l'en-tête,
+ * et plusieurs processus d'un même poste partagent la même galerie.
+ */
+public final class MappedFaceGallery {
+    /** "MFGL" */
+    private static final int MAGIC = 0x4D46474C;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 64;
+    private static final int ALIGNMENT = 64;
+    private static final int DIMS = FaceEmbeddings.DIMENSIONS;
+    private static final Pattern DELTA_NAME = Pattern.compile("match-(\\d+)\\.delta-(\\d+)\\.gallery");
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int removedCount;
+    private final int matchEventId;
+    private final int lastEmbeddingId;
+    private final int lastTicketId;
+    private final Layout layout;
+
+    private MappedFaceGallery(Path file, ByteBuffer buffer, int size, int removedCount, int matchEventId,
+                              int lastEmbeddingId, int lastTicketId) {
+        this.file = file;
+        this.buffer = buffer;
+        this.size = size;
+        this.removedCount = removedCount;
+        this.matchEventId = matchEventId;
+        this.lastEmbeddingId = lastEmbeddingId;
+        this.lastTicketId = lastTicketId;
+        this.layout = new Layout(size, removedCount);
+    }
+
+    public static Writer writer(int expectedSize) {
+        return new Writer(expectedSize);
+    }
+
+    public static Path basePath(Path directory, int matchEventId) {
+        return directory.resolve("match-" + matchEventId + ".gallery");
+    }
+
+    public static Path deltaPath(Path directory, int matchEventId, int sequence) {
+        return directory.resolve("match-" + matchEventId + ".delta-" + sequence + ".gallery");
+    }
+
+    /**
+     * Fichiers de la galerie d'un match, base puis deltas par numéro croissant ;
+     * liste vide s'il n'y a pas de fichier de base
+     */
+    public static List<Path> files(Path directory, int matchEventId) throws IOException {
+        Path base = basePath(directory, matchEventId);
+        if (!Files.exists(base)) {
+            return List.of();
+        }
+        TreeMap<Integer, Path> deltas = new TreeMap<>();
+        try (var entries = Files.newDirectoryStream(directory, "match-" + matchEventId + ".delta-*.gallery")) {
+            for (Path entry : entries) {
+                Matcher name = DELTA_NAME.matcher(entry.getFileName().toString());
+                if (name.matches() && Integer.parseInt(name.group(1)) == matchEventId) {
+                    deltas.put(Integer.parseInt(name.group(2)), entry);
+                }
+            }
+        }
+        List<Path> files = new ArrayList<>(deltas.size() + 1);
+        files.add(base);
+        files.addAll(deltas.values());
+        return files;
+    }
+
+    /**
+     * Projette un fichier en lecture seule ; seul l'en-tête est lu
+     */
+    public static MappedFaceGallery map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+                throw new IOException("Fichier de galerie invalide: " + file);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Fichier de galerie invalide: " + file);
+            }
+            int version = buffer.getInt(4);
+            int dims = buffer.getInt(8);
+            if ((version != 1 && version != FORMAT_VERSION) || dims != DIMS) {
+                throw new IOException("Fichier de galerie incompatible (version " + version + ", " + dims + " dimensions)");
+            }
+            int size = buffer.getInt(12);
+            // Version 1 : pas de section des retraits, l'octet 28 est du bourrage à zéro
+            int removedCount = version == 1 ? 0 : buffer.getInt(28);
+            if (size < 0 || removedCount < 0 || new Layout(size, removedCount).end != length) {
+                throw new IOException("Fichier de galerie tronqué: " + file);
+            }
+            return new MappedFaceGallery(file, buffer, size, removedCount, buffer.getInt(16), buffer.getInt(20),
+                                         buffer.getInt(24));
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getMatchEventId() {
+        return matchEventId;
+    }
+
+    /** Dernière empreinte en base prise en compte par ce fichier */
+    public int getLastEmbeddingId() {
+        return lastEmbeddingId;
+    }
+
+    /** Dernier ticket du match pris en compte par ce fichier */
+    public int getLastTicketId() {
+        return lastTicketId;
+    }
+
+    public int getUserId(int row) {
+        return buffer.getInt(layout.userIds + row * Integer.BYTES);
+    }
+
+    /** Nombre d'utilisateurs retirés par ce fichier (leurs lignes des fichiers plus anciens sont ignorées) */
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    public int getRemovedUserId(int index) {
+        return buffer.getInt(layout.removed + index * Integer.BYTES);
+    }
+
+    /**
+     * true si ce fichier retire l'utilisateur (recherche dichotomique dans la table triée)
+     */
+    public boolean isRemoved(int userId) {
+        int low = 0;
+        int high = removedCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = getRemovedUserId(mid);
+            if (value < userId) {
+                low = mid + 1;
+            } else if (value > userId) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ligne d'un utilisateur (recherche dichotomique dans la table triée), ou -1
+     */
+    public int rowOf(int userId) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = getUserId(mid);
+            if (value < userId) {
+                low = mid + 1;
+            } else if (value > userId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    float getScale(int row) {
+        return buffer.getFloat(layout.scales + row * Float.BYTES);
+    }
+
+    /**
+     * Copie les composantes int8 des lignes [row, row + rows[ dans target (copie en bloc)
+     */
+    void copyCodes(int row, int rows, byte[] target) {
+        buffer.get(layout.codes + row * DIMS, target, 0, rows * DIMS);
+    }
+
+    /**
+     * Produit scalaire d'un vecteur normalisé avec le vecteur float d'une ligne, lu sur place
+     */
+    float dot(float[] query, int row) {
+        int base = layout.vectors + row * DIMS * Float.BYTES;
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        for (int i = 0; i < DIMS; i += 4) {
+            s0 += query[i] * buffer.getFloat(base + i * Float.BYTES);
+            s1 += query[i + 1] * buffer.getFloat(base + (i + 1) * Float.BYTES);
+            s2 += query[i + 2] * buffer.getFloat(base + (i + 2) * Float.BYTES);
+            s3 += query[i + 3] * buffer.getFloat(base + (i + 3) * Float.BYTES);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Position des sections pour un nombre de lignes et de retraits donné
+     */
+    private static final class Layout {
+        final int userIds;
+        final int scales;
+        final int codes;
+        final int vectors;
+        final int removed;
+        final long end;
+
+        Layout(int size, int removedCount) {
+            userIds = HEADER_BYTES;
+            scales = (int) align(userIds + (long) size * Integer.BYTES);
+            codes = (int) align(scales + (long) size * Float.BYTES);
+            vectors = (int) align(codes + (long) size * DIMS);
+            // Une ligne de vecteurs fait 512 octets : la section suivante est déjà alignée
+            removed = (int) Math.min(Integer.MAX_VALUE, vectors + (long) size * DIMS * Float.BYTES);
+            end = vectors + (long) size * DIMS * Float.BYTES + (long) removedCount * Integer.BYTES;
+        }
+
+        private static long align(long offset) {
+            return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+        }
+    }
+
+    /**
+     * Prépare un fichier de galerie ; une seule ligne par utilisateur, la dernière empreinte ajoutée l'emporte
+     */
+    public static final class Writer {
+        private final Map<Integer, Integer> rowByUser = new HashMap<>();
+        private final Set<Integer> removedUsers = new TreeSet<>();
+        private int[] userIds;
+        private float[] vectors;
+        private byte[] codes;
+        private float[] scales;
+        private int size;
+
+        private Writer(int expectedSize) {
+            int capacity = Math.max(16, expectedSize);
+            userIds = new int[capacity];
+            vectors = new float[capacity * DIMS];
+            codes = new byte[capacity * DIMS];
+            scales = new float[capacity];
+        }
+
+        /**
+         * Ajoute (ou remplace) l'empreinte d'un utilisateur, avec sa version quantifiée stockée
+         * (recalculée si elle est absente ou mal dimensionnée) ; false si l'empreinte est inutilisable
+         */
+        public boolean add(int userId, float[] embedding, byte[] quantized) {
+            if (embedding == null || embedding.length != DIMS) {
+                return false;
+            }
+            float[] normalized = embedding.clone();
+            if (!FaceEmbeddings.normalize(normalized)) {
+                return false;
+            }
+            if (quantized == null || quantized.length != FaceEmbeddings.QUANTIZED_BYTES) {
+                quantized = FaceEmbeddings.quantize(normalized);
+            }
+            Integer row = rowByUser.get(userId);
+            if (row == null) {
+                if (size == userIds.length) {
+                    userIds = Arrays.copyOf(userIds, size * 2);
+                    vectors = Arrays.copyOf(vectors, size * 2 * DIMS);
+                    codes = Arrays.copyOf(codes, size * 2 * DIMS);
+                    scales = Arrays.copyOf(scales, size * 2);
+                }
+                row = size++;
+                rowByUser.put(userId, row);
+                removedUsers.remove(userId);
+                userIds[row] = userId;
+            }
+            System.arraycopy(normalized, 0, vectors, row * DIMS, DIMS);
+            System.arraycopy(quantized, 0, codes, row * DIMS, DIMS);
+            scales[row] = FaceEmbeddings.quantizedScale(quantized);
+            return true;
+        }
+
+        /**
+         * Retire un utilisateur des fichiers plus anciens (delta) ; sans effet s'il a une ligne dans ce fichier
+         */
+        public void remove(int userId) {
+            if (!rowByUser.containsKey(userId)) {
+                removedUsers.add(userId);
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int removedCount() {
+            return removedUsers.size();
+        }
+
+        /**
+         * Écrit le fichier (fichier temporaire puis renommage), lignes triées par utilisateur
+         */
+        public void write(Path file, int matchEventId, int lastEmbeddingId, int lastTicketId) throws IOException {
+            long[] order = new long[size];
+            for (int row = 0; row < size; row++) {
+                order[row] = (long) userIds[row] << 32 | row;
+            }
+            Arrays.sort(order);
+            Layout layout = new Layout(size, removedUsers.size());
+            if (layout.end > Integer.MAX_VALUE) {
+                throw new IOException("Galerie trop grande pour un seul fichier: " + size + " empreintes");
+            }
+
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                SectionWriter out = new SectionWriter(channel);
+                out.putInt(MAGIC);
+                out.putInt(FORMAT_VERSION);
+                out.putInt(DIMS);
+                out.putInt(size);
+                out.putInt(matchEventId);
+                out.putInt(lastEmbeddingId);
+                out.putInt(lastTicketId);
+                out.putInt(removedUsers.size());
+                out.padTo(layout.userIds);
+                for (long entry : order) {
+                    out.putInt(userIds[(int) entry]);
+                }
+                out.padTo(layout.scales);
+                for (long entry : order) {
+                    out.putFloat(scales[(int) entry]);
+                }
+                out.padTo(layout.codes);
+                for (long entry : order) {
+                    out.put(codes, (int) entry * DIMS, DIMS);
+                }
+                out.padTo(layout.vectors);
+                for (long entry : order) {
+                    int base = (int) entry * DIMS;
+                    for (int i = 0; i < DIMS; i++) {
+                        out.putFloat(vectors[base + i]);
+                    }
+                }
+                out.padTo(layout.removed);
+                for (int userId : removedUsers) {
+                    out.putInt(userId);
+                }
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Écriture bufferisée en little-endian vers un FileChannel, avec bourrage jusqu'au début d'une section
+     */
+    private static final class SectionWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        SectionWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+            position += Integer.BYTES;
+        }
+
+        void putFloat(float value) throws IOException {
+            ensure(Float.BYTES);
+            buffer.putFloat(value);
+            position += Float.BYTES;
+        }
+
+        void put(byte[] source, int offset, int length) throws IOException {
+            ensure(length);
+            buffer.put(source, offset, length);
+            position += length;
+        }
+
+        void padTo(long offset) throws IOException {
+            while (position < offset) {
+                ensure(1);
+                buffer.put((byte) 0);
+                position++;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
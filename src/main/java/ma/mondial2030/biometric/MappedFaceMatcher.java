@@ -0,0 +1,168 @@
+package ma.mondial2030.biometric;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Recherche exacte sur les fichiers de galerie projetés d'un match (base puis deltas)
+ * Même calcul que QuantizedFaceMatcher, sans charger la galerie sur le tas : les composantes int8
+ * sont copiées par blocs de BLOCK_ROWS lignes (8 Ko, restent en cache L1) puis comparées avec le
+ * noyau SIMD ; les candidats retenus sont re-classés sur les vecteurs float lus dans le fichier.
+ * Les lignes d'un fichier dont l'utilisateur réapparaît ou est retiré dans un fichier plus récent
+ * sont ignorées.
+ * Immuable : pour prendre en compte un nouveau delta, ouvrir un nouveau matcher.
+ */
+public class MappedFaceMatcher implements FaceMatcher {
+    private static final int BLOCK_ROWS = 64;
+    private static final int MIN_RERANK = 32;
+
+    private static final Int8DotProduct INT8 = Int8DotProduct.best();
+
+    private final MappedFaceGallery[] segments;
+    private final BitSet[] superseded;
+    /** Première ligne globale de chaque fichier : les candidats sont numérotés sur l'ensemble */
+    private final int[] firstRow;
+    private final int size;
+
+    public MappedFaceMatcher(List<MappedFaceGallery> files) {
+        segments = files.toArray(new MappedFaceGallery[0]);
+        superseded = new BitSet[segments.length];
+        firstRow = new int[segments.length];
+        int rows = 0;
+        int live = 0;
+        for (int s = 0; s < segments.length; s++) {
+            firstRow[s] = rows;
+            rows += segments[s].size();
+            superseded[s] = new BitSet();
+        }
+        // Les deltas sont petits : chacune de leurs lignes et chacun de leurs retraits masque
+        // l'éventuelle ligne plus ancienne
+        for (int s = 1; s < segments.length; s++) {
+            for (int row = 0; row < segments[s].size(); row++) {
+                maskOlder(s, segments[s].getUserId(row));
+            }
+            for (int i = 0; i < segments[s].getRemovedCount(); i++) {
+                maskOlder(s, segments[s].getRemovedUserId(i));
+            }
+        }
+        for (int s = 0; s < segments.length; s++) {
+            live += segments[s].size() - superseded[s].cardinality();
+        }
+        size = live;
+    }
+
+    private void maskOlder(int segment, int userId) {
+        for (int older = 0; older < segment; older++) {
+            int previous = segments[older].rowOf(userId);
+            if (previous >= 0) {
+                superseded[older].set(previous);
+            }
+        }
+    }
+
+    /**
+     * Projette la base et les deltas de la galerie d'un match ; null s'il n'y a pas de fichier de base
+     */
+    public static MappedFaceMatcher open(Path directory, int matchEventId) throws IOException {
+        List<Path> files = MappedFaceGallery.files(directory, matchEventId);
+        if (files.isEmpty()) {
+            return null;
+        }
+        List<MappedFaceGallery> segments = new ArrayList<>(files.size());
+        for (Path file : files) {
+            segments.add(MappedFaceGallery.map(file));
+        }
+        return new MappedFaceMatcher(segments);
+    }
+
+    @Override
+    public List<FaceMatch> search(float[] query, int k) {
+        byte[] q = FaceEmbeddings.quantize(query);
+        if (q == null) {
+            return List.of();
+        }
+        float queryScale = FaceEmbeddings.quantizedScale(q);
+        int dims = FaceEmbeddings.DIMENSIONS;
+        byte[] block = new byte[BLOCK_ROWS * dims];
+        TopK top = new TopK(Math.max(k * QuantizedFaceMatcher.RERANK_FACTOR, MIN_RERANK));
+        for (int s = 0; s < segments.length; s++) {
+            MappedFaceGallery segment = segments[s];
+            BitSet masked = superseded[s];
+            for (int start = 0; start < segment.size(); start += BLOCK_ROWS) {
+                int rows = Math.min(BLOCK_ROWS, segment.size() - start);
+                segment.copyCodes(start, rows, block);
+                for (int i = 0; i < rows; i++) {
+                    int row = start + i;
+                    if (!masked.get(row)) {
+                        top.offer(firstRow[s] + row,
+                                  queryScale * segment.getScale(row) * INT8.dot(q, 0, block, i * dims));
+                    }
+                }
+            }
+        }
+
+        float[] exactQuery = FaceMatcher.normalizedQuery(query);
+        TopK reranked = new TopK(k);
+        for (int i = 0; i < top.count(); i++) {
+            int row = top.row(i);
+            int s = segmentOf(row);
+            reranked.offer(row, segments[s].dot(exactQuery, row - firstRow[s]));
+        }
+        return reranked.toMatches(row -> {
+            int s = segmentOf(row);
+            return segments[s].getUserId(row - firstRow[s]);
+        });
+    }
+
+    private int segmentOf(int row) {
+        int s = segments.length - 1;
+        while (firstRow[s] > row) {
+            s--;
+        }
+        return s;
+    }
+
+    /**
+     * true si l'utilisateur a une ligne visible : le fichier le plus récent qui le mentionne
+     * lui donne une ligne plutôt qu'un retrait
+     */
+    public boolean contains(int userId) {
+        for (int s = segments.length - 1; s >= 0; s--) {
+            if (segments[s].rowOf(userId) >= 0) {
+                return true;
+            }
+            if (segments[s].isRemoved(userId)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /** Nombre de fichiers projetés (base et deltas) */
+    public int getFileCount() {
+        return segments.length;
+    }
+
+    /** Dernière empreinte prise en compte par le fichier le plus récent */
+    public int getLastEmbeddingId() {
+        return segments[segments.length - 1].getLastEmbeddingId();
+    }
+
+    /** Dernier ticket pris en compte par le fichier le plus récent */
+    public int getLastTicketId() {
+        return segments[segments.length - 1].getLastTicketId();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getName() {
+        return "mapped-int8";
+    }
+}
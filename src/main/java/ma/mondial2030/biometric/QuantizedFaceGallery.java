@@ -0,0 +1,72 @@
+package ma.mondial2030.biometric;
+
+/**
+ * Galerie quantifiée en int8 : par ligne, DIMENSIONS octets signés et une échelle float
+ * (132 octets au lieu de 512) ; mêmes lignes, dans le même ordre, que la galerie float d'origine.
+ * Immuable une fois construite.
+ */
+public final class QuantizedFaceGallery {
+    private final int[] userIds;
+    private final byte[] codes;
+    private final float[] scales;
+    private final int size;
+
+    private QuantizedFaceGallery(int[] userIds, byte[] codes, float[] scales, int size) {
+        this.userIds = userIds;
+        this.codes = codes;
+        this.scales = scales;
+        this.size = size;
+    }
+
+    /**
+     * Quantifie chaque ligne d'une galerie float
+     */
+    public static QuantizedFaceGallery of(FaceGallery gallery) {
+        int dims = FaceEmbeddings.DIMENSIONS;
+        int size = gallery.size();
+        float[] vectors = gallery.vectors();
+        byte[] codes = new byte[size * dims];
+        float[] scales = new float[size];
+        float[] row = new float[dims];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(vectors, i * dims, row, 0, dims);
+            byte[] quantized = FaceEmbeddings.quantize(row);
+            System.arraycopy(quantized, 0, codes, i * dims, dims);
+            scales[i] = FaceEmbeddings.quantizedScale(quantized);
+        }
+        return new QuantizedFaceGallery(gallery.userIds(), codes, scales, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getUserId(int row) {
+        return userIds[row];
+    }
+
+    /**
+     * Octets occupés par les empreintes quantifiées et leurs échelles
+     */
+    public long vectorBytes() {
+        return (long) codes.length + (long) scales.length * Float.BYTES;
+    }
+
+    int[] userIds() {
+        return userIds;
+    }
+
+    /**
+     * Bloc des composantes int8 (partagé, à ne pas modifier)
+     */
+    byte[] codes() {
+        return codes;
+    }
+
+    /**
+     * Échelle de chaque ligne (partagé, à ne pas modifier)
+     */
+    float[] scales() {
+        return scales;
+    }
+}
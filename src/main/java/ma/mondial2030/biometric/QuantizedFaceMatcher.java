@@ -0,0 +1,70 @@
+package ma.mondial2030.biometric;
+
+import java.util.List;
+
+/**
+ * Recherche exacte sur une galerie int8 : produits scalaires entiers, multipliés par les échelles
+ * de la requête et de la ligne. L'erreur de quantification (de l'ordre de 1e-3 sur le score) peut
+ * inverser deux candidats très proches : les RERANK_FACTOR * k meilleurs sont donc re-classés sur
+ * les vecteurs float, qui ne sont lus que pour ces quelques lignes.
+ * Sans galerie float, les scores int8 sont retournés tels quels.
+ */
+public class QuantizedFaceMatcher implements FaceMatcher {
+    public static final int RERANK_FACTOR = 4;
+    private static final int MIN_RERANK = 32;
+
+    private static final Int8DotProduct INT8 = Int8DotProduct.best();
+    private static final DotProduct DOT = DotProduct.best();
+
+    private final QuantizedFaceGallery codes;
+    private final FaceGallery fullPrecision;
+
+    /**
+     * @param fullPrecision galerie float aux mêmes lignes que codes, ou null pour ne pas re-classer
+     */
+    public QuantizedFaceMatcher(QuantizedFaceGallery codes, FaceGallery fullPrecision) {
+        if (fullPrecision != null && fullPrecision.size() != codes.size()) {
+            throw new IllegalArgumentException("Galeries int8 et float de tailles différentes");
+        }
+        this.codes = codes;
+        this.fullPrecision = fullPrecision;
+    }
+
+    @Override
+    public List<FaceMatch> search(float[] query, int k) {
+        byte[] q = FaceEmbeddings.quantize(query);
+        if (q == null) {
+            return List.of();
+        }
+        float queryScale = FaceEmbeddings.quantizedScale(q);
+        byte[] rows = codes.codes();
+        float[] scales = codes.scales();
+        int dims = FaceEmbeddings.DIMENSIONS;
+        TopK top = new TopK(fullPrecision == null ? k : Math.max(k * RERANK_FACTOR, MIN_RERANK));
+        for (int row = 0, base = 0; row < codes.size(); row++, base += dims) {
+            top.offer(row, queryScale * scales[row] * INT8.dot(q, 0, rows, base));
+        }
+        if (fullPrecision == null) {
+            return top.toMatches(codes.userIds());
+        }
+
+        float[] exactQuery = FaceMatcher.normalizedQuery(query);
+        float[] vectors = fullPrecision.vectors();
+        TopK reranked = new TopK(k);
+        for (int i = 0; i < top.count(); i++) {
+            int row = top.row(i);
+            reranked.offer(row, DOT.dot(exactQuery, 0, vectors, row * dims));
+        }
+        return reranked.toMatches(fullPrecision.userIds());
+    }
+
+    @Override
+    public int size() {
+        return codes.size();
+    }
+
+    @Override
+    public String getName() {
+        return fullPrecision == null ? "int8" : "int8-rerank";
+    }
+}
@@ -0,0 +1,68 @@
+package ma.mondial2030.biometric;
+
+import java.util.List;
+
+/**
+ * Recherche exacte par produits scalaires en boucle simple (JVM sans Vector API)
+ */
+public class ScalarFaceMatcher implements FaceMatcher {
+    private final FaceGallery gallery;
+
+    public ScalarFaceMatcher(FaceGallery gallery) {
+        this.gallery = gallery;
+    }
+
+    @Override
+    public List<FaceMatch> search(float[] query, int k) {
+        float[] q = FaceMatcher.normalizedQuery(query);
+        if (q == null) {
+            return List.of();
+        }
+        float[] vectors = gallery.vectors();
+        int dims = FaceEmbeddings.DIMENSIONS;
+        TopK top = new TopK(k);
+        for (int row = 0, base = 0; row < gallery.size(); row++, base += dims) {
+            top.offer(row, dot(q, 0, vectors, base));
+        }
+        return top.toMatches(gallery.userIds());
+    }
+
+    /**
+     * Produit scalaire des vecteurs de DIMENSIONS floats commençant à a[aBase] et b[bBase]
+     */
+    static float dot(float[] a, int aBase, float[] b, int bBase) {
+        // Quatre sommes partielles : la boucle n'attend pas le résultat de l'addition précédente
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        for (int i = 0; i < FaceEmbeddings.DIMENSIONS; i += 4) {
+            s0 += a[aBase + i] * b[bBase + i];
+            s1 += a[aBase + i + 1] * b[bBase + i + 1];
+            s2 += a[aBase + i + 2] * b[bBase + i + 2];
+            s3 += a[aBase + i + 3] * b[bBase + i + 3];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Produit scalaire entier des empreintes quantifiées commençant à a[aBase] et b[bBase]
+     */
+    static int dotInt8(byte[] a, int aBase, byte[] b, int bBase) {
+        int s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        for (int i = 0; i < FaceEmbeddings.DIMENSIONS; i += 4) {
+            s0 += a[aBase + i] * b[bBase + i];
+            s1 += a[aBase + i + 1] * b[bBase + i + 1];
+            s2 += a[aBase + i + 2] * b[bBase + i + 2];
+            s3 += a[aBase + i + 3] * b[bBase + i + 3];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public int size() {
+        return gallery.size();
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,75 @@
+package ma.mondial2030.biometric;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Sélection des k meilleurs scores sans allocation par candidat
+ * k est petit (quelques candidats) : le remplacement du plus faible est une recherche linéaire.
+ */
+final class TopK {
+    private final int[] rows;
+    private final float[] scores;
+    private int count;
+    private int weakest;
+
+    TopK(int k) {
+        rows = new int[Math.max(1, k)];
+        scores = new float[rows.length];
+    }
+
+    void offer(int row, float score) {
+        if (count < rows.length) {
+            rows[count] = row;
+            scores[count] = score;
+            count++;
+            if (count == rows.length) {
+                findWeakest();
+            }
+        } else if (score > scores[weakest]) {
+            rows[weakest] = row;
+            scores[weakest] = score;
+            findWeakest();
+        }
+    }
+
+    private void findWeakest() {
+        weakest = 0;
+        for (int i = 1; i < count; i++) {
+            if (scores[i] < scores[weakest]) {
+                weakest = i;
+            }
+        }
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * Ligne du i-ème candidat retenu (ordre quelconque)
+     */
+    int row(int i) {
+        return rows[i];
+    }
+
+    /**
+     * Candidats triés par score décroissant ; userIds donne l'utilisateur de chaque ligne
+     */
+    List<FaceMatch> toMatches(int[] userIds) {
+        return toMatches(row -> userIds[row]);
+    }
+
+    /**
+     * Candidats triés par score décroissant ; userOfRow donne l'utilisateur d'une ligne
+     */
+    List<FaceMatch> toMatches(IntUnaryOperator userOfRow) {
+        List<FaceMatch> matches = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            matches.add(new FaceMatch(userOfRow.applyAsInt(rows[i]), scores[i]));
+        }
+        matches.sort((a, b) -> Float.compare(b.getScore(), a.getScore()));
+        return matches;
+    }
+}
@@ -0,0 +1,113 @@
+package ma.mondial2030.biometric;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.List;
+
+/**
+ * Recherche exacte avec la Vector API : produits scalaires par FMA sur la largeur SIMD
+ * de la machine (8 floats en AVX2, 16 en AVX-512)
+ * N'est instanciée que si jdk.incubator.vector est chargé (voir FaceMatcher.exact).
+ */
+public class VectorFaceMatcher implements FaceMatcher {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    /** Empreintes quantifiées : autant d'octets chargés que de lanes int (au moins 8 octets) */
+    private static final VectorSpecies<Integer> INT_SPECIES =
+            IntVector.SPECIES_PREFERRED.length() >= 8 ? IntVector.SPECIES_PREFERRED : IntVector.SPECIES_256;
+    private static final VectorSpecies<Byte> BYTE_SPECIES =
+            VectorSpecies.of(byte.class, VectorShape.forBitSize(INT_SPECIES.length() * Byte.SIZE));
+
+    private final FaceGallery gallery;
+
+    public VectorFaceMatcher(FaceGallery gallery) {
+        this.gallery = gallery;
+    }
+
+    @Override
+    public List<FaceMatch> search(float[] query, int k) {
+        float[] q = FaceMatcher.normalizedQuery(query);
+        if (q == null) {
+            return List.of();
+        }
+        float[] vectors = gallery.vectors();
+        int dims = FaceEmbeddings.DIMENSIONS;
+        TopK top = new TopK(k);
+        for (int row = 0, base = 0; row < gallery.size(); row++, base += dims) {
+            top.offer(row, dot(q, 0, vectors, base));
+        }
+        return top.toMatches(gallery.userIds());
+    }
+
+    /**
+     * Produit scalaire des vecteurs de DIMENSIONS floats commençant à a[aBase] et b[bBase]
+     */
+    static float dot(float[] a, int aBase, float[] b, int bBase) {
+        int dims = FaceEmbeddings.DIMENSIONS;
+        int lanes = SPECIES.length();
+        int upper = SPECIES.loopBound(dims);
+        // Deux accumulateurs pour ne pas enchaîner chaque FMA sur le résultat du précédent
+        FloatVector acc0 = FloatVector.zero(SPECIES);
+        FloatVector acc1 = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i + lanes < upper; i += 2 * lanes) {
+            acc0 = FloatVector.fromArray(SPECIES, a, aBase + i)
+                              .fma(FloatVector.fromArray(SPECIES, b, bBase + i), acc0);
+            acc1 = FloatVector.fromArray(SPECIES, a, aBase + i + lanes)
+                              .fma(FloatVector.fromArray(SPECIES, b, bBase + i + lanes), acc1);
+        }
+        for (; i < upper; i += lanes) {
+            acc0 = FloatVector.fromArray(SPECIES, a, aBase + i)
+                              .fma(FloatVector.fromArray(SPECIES, b, bBase + i), acc0);
+        }
+        float score = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for (; i < dims; i++) {
+            score += a[aBase + i] * b[bBase + i];
+        }
+        return score;
+    }
+
+    /**
+     * Produit scalaire entier des empreintes quantifiées commençant à a[aBase] et b[bBase] :
+     * octets signés étendus en int (B2I) puis multipliés et accumulés sur la largeur SIMD
+     */
+    static int dotInt8(byte[] a, int aBase, byte[] b, int bBase) {
+        int dims = FaceEmbeddings.DIMENSIONS;
+        int lanes = INT_SPECIES.length();
+        int upper = INT_SPECIES.loopBound(dims);
+        IntVector acc0 = IntVector.zero(INT_SPECIES);
+        IntVector acc1 = IntVector.zero(INT_SPECIES);
+        int i = 0;
+        for (; i + lanes < upper; i += 2 * lanes) {
+            acc0 = acc0.add(widen(a, aBase + i).mul(widen(b, bBase + i)));
+            acc1 = acc1.add(widen(a, aBase + i + lanes).mul(widen(b, bBase + i + lanes)));
+        }
+        for (; i < upper; i += lanes) {
+            acc0 = acc0.add(widen(a, aBase + i).mul(widen(b, bBase + i)));
+        }
+        int score = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for (; i < dims; i++) {
+            score += a[aBase + i] * b[bBase + i];
+        }
+        return score;
+    }
+
+    private static IntVector widen(byte[] data, int offset) {
+        return (IntVector) ByteVector.fromArray(BYTE_SPECIES, data, offset)
+                                     .convertShape(VectorOperators.B2I, INT_SPECIES, 0);
+    }
+
+    @Override
+    public int size() {
+        return gallery.size();
+    }
+
+    @Override
+    public String getName() {
+        return "vector-" + SPECIES.vectorBitSize();
+    }
+}
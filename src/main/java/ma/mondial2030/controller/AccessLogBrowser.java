@@ -0,0 +1,155 @@
+package ma.mondial2030.controller;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.TableView;
+import javafx.scene.control.skin.VirtualFlow;
+import ma.mondial2030.model.AccessLogFilter;
+import ma.mondial2030.model.AccessLogSummary;
+import ma.mondial2030.service.AccessControlService;
+
+import java.util.List;
+
+/**
+ * Navigation paginée dans le journal des accès pour une TableView
+ * Les pages sont lues à la demande pendant le défilement (pagination par clé, voir
+ * AccessLogDAO.findSummariesPage) et seule une fenêtre de MAX_ROWS lignes reste en mémoire :
+ * en descendant, les lignes du haut sont libérées puis relues si l'on remonte.
+ * Toutes les méthodes doivent être appelées depuis le thread JavaFX.
+ */
+public class AccessLogBrowser {
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_ROWS = 1000;
+    /** Part de la barre de défilement à partir de laquelle la page suivante est demandée */
+    private static final double EDGE = 0.05;
+
+    private final TableView<AccessLogSummary> table;
+    private final BackgroundTasks tasks;
+    private final AccessControlService accessControlService;
+    private final ObservableList<AccessLogSummary> rows = FXCollections.observableArrayList();
+
+    private AccessLogFilter filter = new AccessLogFilter();
+    /** Lecture en cours ; annulée par un nouveau filtre, dont les lignes remplacent les siennes */
+    private Task<?> pending;
+    private boolean hasOlder;
+    private boolean hasNewer;
+    private ScrollBar scrollBar;
+
+    public AccessLogBrowser(TableView<AccessLogSummary> table, BackgroundTasks tasks,
+                            AccessControlService accessControlService) {
+        this.table = table;
+        this.tasks = tasks;
+        this.accessControlService = accessControlService;
+        table.setItems(rows);
+        // La barre verticale n'existe qu'une fois la table mise en page
+        table.needsLayoutProperty().addListener((observable, wasNeeded, isNeeded) -> {
+            if (!isNeeded && scrollBar == null) {
+                attachScrollBar();
+            }
+        });
+    }
+
+    /**
+     * Recharge la première page (entrées les plus récentes) pour un nouveau filtre
+     */
+    public void load(AccessLogFilter newFilter) {
+        filter = newFilter != null ? newFilter : new AccessLogFilter();
+        if (pending != null) {
+            pending.cancel();
+        }
+        hasOlder = false;
+        hasNewer = false;
+        AccessLogFilter pageFilter = filter;
+        pending = tasks.loadInto(table, rows,
+                                 () -> accessControlService.getAccessLogPage(pageFilter, null, true, PAGE_SIZE),
+                                 () -> {
+                                     pending = null;
+                                     hasOlder = rows.size() == PAGE_SIZE;
+                                     table.scrollTo(0);
+                                 });
+    }
+
+    private void attachScrollBar() {
+        for (Node node : table.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar bar && bar.getOrientation() == Orientation.VERTICAL) {
+                scrollBar = bar;
+                bar.valueProperty().addListener((observable, oldValue, newValue) -> onScroll());
+                return;
+            }
+        }
+    }
+
+    private void onScroll() {
+        if (isLoading() || rows.isEmpty()) {
+            return;
+        }
+        double position = (scrollBar.getValue() - scrollBar.getMin()) / (scrollBar.getMax() - scrollBar.getMin());
+        if (position >= 1 - EDGE && hasOlder) {
+            loadPage(true);
+        } else if (position <= EDGE && hasNewer) {
+            loadPage(false);
+        }
+    }
+
+    /**
+     * Ajoute une page en bas (older) ou en haut de la fenêtre, puis libère l'autre extrémité
+     */
+    private void loadPage(boolean older) {
+        AccessLogSummary cursor = older ? rows.get(rows.size() - 1) : rows.get(0);
+        AccessLogFilter pageFilter = filter;
+        pending = tasks.run(() -> accessControlService.getAccessLogPage(pageFilter, cursor, older, PAGE_SIZE),
+                            page -> {
+                                pending = null;
+                                if (older) {
+                                    appendOlder(page);
+                                } else {
+                                    prependNewer(page);
+                                }
+                            },
+                            error -> pending = null);
+    }
+
+    private boolean isLoading() {
+        return pending != null && !pending.isDone();
+    }
+
+    private void appendOlder(List<AccessLogSummary> page) {
+        hasOlder = page.size() == PAGE_SIZE;
+        int firstVisible = firstVisibleIndex();
+        rows.addAll(page);
+        int excess = rows.size() - MAX_ROWS;
+        if (excess > 0) {
+            rows.remove(0, excess);
+            hasNewer = true;
+            table.scrollTo(Math.max(0, firstVisible - excess));
+        }
+    }
+
+    private void prependNewer(List<AccessLogSummary> page) {
+        hasNewer = page.size() == PAGE_SIZE;
+        int firstVisible = firstVisibleIndex();
+        rows.addAll(0, page);
+        int excess = rows.size() - MAX_ROWS;
+        if (excess > 0) {
+            rows.remove(rows.size() - excess, rows.size());
+            hasOlder = true;
+        }
+        // La ligne qui était en haut de l'écran y reste
+        table.scrollTo(firstVisible + page.size());
+    }
+
+    private int firstVisibleIndex() {
+        if (table.lookup(".virtual-flow") instanceof VirtualFlow<?> flow) {
+            IndexedCell<?> cell = flow.getFirstVisibleCell();
+            if (cell != null) {
+                return cell.getIndex();
+            }
+        }
+        return 0;
+    }
+}
@@ -11,6 +11,9 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
 import ma.mondial2030.MainApp;
 import ma.mondial2030.model.AccessLog;
+import ma.mondial2030.model.AccessLogFilter;
+import ma.mondial2030.model.AccessLogSummary;
+import ma.mondial2030.model.GateDevice;
 import ma.mondial2030.model.MatchEvent;
 import ma.mondial2030.model.User;
 import ma.mondial2030.service.AccessControlService;
@@ -51,19 +54,37 @@ public class AdminController {
     private TableColumn<User, String> roleColumn;
     
     @FXML
-    private TableView<AccessLog> logsTable;
+    private TableView<AccessLogSummary> logsTable;
     
     @FXML
-    private TableColumn<AccessLog, String> logUserColumn;
+    private TableColumn<AccessLogSummary, String> logUserColumn;
     
     @FXML
-    private TableColumn<AccessLog, String> logTypeColumn;
+    private TableColumn<AccessLogSummary, String> logTypeColumn;
     
     @FXML
-    private TableColumn<AccessLog, String> logResultColumn;
+    private TableColumn<AccessLogSummary, String> logResultColumn;
     
     @FXML
-    private TableColumn<AccessLog, String> logTimestampColumn;
+    private TableColumn<AccessLogSummary, String> logTimestampColumn;
+    
+    @FXML
+    private TableColumn<AccessLogSummary, String> logGateColumn;
+    
+    @FXML
+    private ComboBox<GateDevice> logGateFilter;
+    
+    @FXML
+    private ComboBox<AccessLog.AccessResult> logResultFilter;
+    
+    @FXML
+    private ComboBox<AccessLog.AccessType> logTypeFilter;
+    
+    @FXML
+    private DatePicker logFromPicker;
+    
+    @FXML
+    private DatePicker logToPicker;
     
     @FXML
     private TableView<MatchEvent> matchesTable;
@@ -94,8 +115,9 @@ public class AdminController {
     private AccessControlService accessControlService = new AccessControlService();
     private MatchEventService matchEventService = new MatchEventService();
     private ObservableList<User> usersList = FXCollections.observableArrayList();
-    private ObservableList<AccessLog> logsList = FXCollections.observableArrayList();
+    private AccessLogBrowser logsBrowser;
     private ObservableList<MatchEvent> matchesList = FXCollections.observableArrayList();
+    private final BackgroundTasks tasks = new BackgroundTasks();
 
     @FXML
     private void initialize() {
@@ -117,25 +139,25 @@ public class AdminController {
 
         // Configuration des colonnes logs
         logUserColumn.setCellValueFactory(cellData -> {
-            AccessLog log = cellData.getValue();
+            AccessLogSummary log = cellData.getValue();
             return new javafx.beans.property.SimpleStringProperty(
-                log.getUser() != null ? log.getUser().getUsername() : "N/A"
+                log.getUsername() != null ? log.getUsername() : "N/A"
             );
         });
         logTypeColumn.setCellValueFactory(cellData -> {
-            AccessLog log = cellData.getValue();
+            AccessLogSummary log = cellData.getValue();
             return new javafx.beans.property.SimpleStringProperty(
                 log.getAccessType() != null ? log.getAccessType().name() : "N/A"
             );
         });
         logResultColumn.setCellValueFactory(cellData -> {
-            AccessLog log = cellData.getValue();
+            AccessLogSummary log = cellData.getValue();
             return new javafx.beans.property.SimpleStringProperty(
                 log.getAccessResult() != null ? log.getAccessResult().name() : "N/A"
             );
         });
         logTimestampColumn.setCellValueFactory(cellData -> {
-            AccessLog log = cellData.getValue();
+            AccessLogSummary log = cellData.getValue();
             if (log.getAccessTimestamp() != null) {
                 return new javafx.beans.property.SimpleStringProperty(
                     log.getAccessTimestamp().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"))
@@ -143,8 +165,16 @@ public class AdminController {
             }
             return new javafx.beans.property.SimpleStringProperty("N/A");
         });
+        logGateColumn.setCellValueFactory(cellData -> {
+            AccessLogSummary log = cellData.getValue();
+            return new javafx.beans.property.SimpleStringProperty(
+                log.getGateName() != null ? log.getGateName() : "N/A"
+            );
+        });
 
-        logsTable.setItems(logsList);
+        logsBrowser = new AccessLogBrowser(logsTable, tasks, accessControlService);
+        logResultFilter.getItems().setAll(AccessLog.AccessResult.values());
+        logTypeFilter.getItems().setAll(AccessLog.AccessType.values());
 
         // Configuration des colonnes matchs
         matchNameColumn.setCellValueFactory(new PropertyValueFactory<>("matchName"));
@@ -174,24 +204,56 @@ public class AdminController {
 
     public void setUser(User user) {
         this.currentUser = user;
+        // Les trois chargements partent en parallèle, hors du thread JavaFX
         loadUsers();
         loadAccessLogs();
         loadMatches();
     }
 
     private void loadUsers() {
-        usersList.clear();
-        usersList.addAll(userService.getAllUsers());
+        tasks.loadInto(usersTable, usersList, userService::getAllUsers);
     }
 
     private void loadAccessLogs() {
-        logsList.clear();
-        logsList.addAll(accessControlService.getAllAccessLogs());
+        tasks.run(accessControlService::getActiveGates, gates -> logGateFilter.getItems().setAll(gates));
+        logsBrowser.load(buildLogFilter());
+    }
+
+    /**
+     * Critères du journal des accès ; la date de fin est incluse (jusqu'à minuit le lendemain)
+     */
+    private AccessLogFilter buildLogFilter() {
+        AccessLogFilter filter = new AccessLogFilter();
+        GateDevice gate = logGateFilter.getValue();
+        filter.setGateDeviceId(gate != null ? gate.getId() : null);
+        filter.setAccessResult(logResultFilter.getValue());
+        filter.setAccessType(logTypeFilter.getValue());
+        if (logFromPicker.getValue() != null) {
+            filter.setFrom(logFromPicker.getValue().atStartOfDay());
+        }
+        if (logToPicker.getValue() != null) {
+            filter.setTo(logToPicker.getValue().plusDays(1).atStartOfDay());
+        }
+        return filter;
+    }
+
+    @FXML
+    private void handleFilterLogs() {
+        logsBrowser.load(buildLogFilter());
+    }
+
+    @FXML
+    private void handleResetLogFilter() {
+        logGateFilter.setValue(null);
+        logResultFilter.setValue(null);
+        logTypeFilter.setValue(null);
+        logFromPicker.setValue(null);
+        logToPicker.setValue(null);
+        logsBrowser.load(buildLogFilter());
     }
 
     private void loadMatches() {
-        matchesList.clear();
-        matchesList.addAll(matchEventService.getAllMatches());
+        tasks.loadInto(matchesTable, matchesList, matchEventService::getAllMatches);
     }
 
     @FXML
@@ -287,14 +349,23 @@ public class AdminController {
 
         // Afficher le dialogue et traiter le résultat
         dialog.showAndWait().ifPresent(match -> {
-            if (matchEventService.createMatch(match)) {
-                showAlert(Alert.AlertType.INFORMATION, "Succès", 
-                         "Match créé avec succès");
-                loadMatches();
-            } else {
+            addMatchButton.setDisable(true);
+            tasks.run(() -> matchEventService.createMatch(match), created -> {
+                addMatchButton.setDisable(false);
+                if (created) {
+                    showAlert(Alert.AlertType.INFORMATION, "Succès", 
+                             "Match créé avec succès");
+                    loadMatches();
+                } else {
+                    showAlert(Alert.AlertType.ERROR, "Erreur", 
+                             "Impossible de créer le match");
+                }
+            }, error -> {
+                addMatchButton.setDisable(false);
+                logger.error("Erreur lors de la création du match", error);
                 showAlert(Alert.AlertType.ERROR, "Erreur", 
                          "Impossible de créer le match");
-            }
+            });
         });
     }
 
@@ -308,6 +379,7 @@ public class AdminController {
 
     @FXML
     private void handleBack() {
+        tasks.cancelAll();
         try {
             FXMLLoader loader = new FXMLLoader(MainApp.class.getResource("/fxml/dashboard.fxml"));
             Parent root = loader.load();
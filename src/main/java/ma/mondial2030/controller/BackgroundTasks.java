@@ -0,0 +1,146 @@
+package ma.mondial2030.controller;
+
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.scene.Node;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.control.TableView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Exécution des appels aux services (et donc à la base) hors du thread JavaFX
+ * Chaque contrôleur possède sa propre instance : cancelAll() en quittant l'écran
+ * annule les tâches en cours, dont les résultats ne sont alors jamais appliqués.
+ * Les tâches tournent sur des threads virtuels, les appels JDBC étant bloquants.
+ * Toutes les méthodes d'instance doivent être appelées depuis le thread JavaFX.
+ */
+public class BackgroundTasks {
+    private static final Logger logger = LoggerFactory.getLogger(BackgroundTasks.class);
+    private static final ExecutorService executor =
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("fx-task-", 0).factory());
+
+    private final Set<Task<?>> running = new HashSet<>();
+    private final ReadOnlyBooleanWrapper loading = new ReadOnlyBooleanWrapper(false);
+
+    /**
+     * Exécute work en arrière-plan puis onSuccess sur le thread JavaFX ;
+     * en cas d'erreur, l'exception est journalisée
+     */
+    public <T> Task<T> run(Callable<T> work, Consumer<? super T> onSuccess) {
+        return run(work, onSuccess, null);
+    }
+
+    /**
+     * Exécute work en arrière-plan puis onSuccess ou onFailure sur le thread JavaFX
+     */
+    public <T> Task<T> run(Callable<T> work, Consumer<? super T> onSuccess, Consumer<Throwable> onFailure) {
+        Task<T> task = new Task<>() {
+            @Override
+            protected T call() throws Exception {
+                return work.call();
+            }
+        };
+        task.setOnSucceeded(event -> {
+            // Une tâche retirée par cancelAll() a pu se terminer juste avant : son résultat est ignoré
+            if (finish(task)) {
+                onSuccess.accept(task.getValue());
+            }
+        });
+        task.setOnFailed(event -> {
+            if (finish(task)) {
+                Throwable error = task.getException();
+                if (onFailure != null) {
+                    onFailure.accept(error);
+                } else {
+                    logger.error("Erreur lors d'une tâche en arrière-plan", error);
+                }
+            }
+        });
+        task.setOnCancelled(event -> finish(task));
+
+        running.add(task);
+        loading.set(true);
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Charge une liste en arrière-plan et la remplace d'un seul bloc dans items
+     * (un seul événement de modification pour la table), avec un indicateur de chargement
+     */
+    public <T> Task<List<T>> loadInto(TableView<T> table, ObservableList<T> items, Callable<List<T>> query) {
+        return loadInto(table, items, query, null);
+    }
+
+    /**
+     * Variante de loadInto avec une action exécutée après l'affichage des données
+     */
+    public <T> Task<List<T>> loadInto(TableView<T> table, ObservableList<T> items, Callable<List<T>> query,
+                                      Runnable onLoaded) {
+        Node placeholder = table.getPlaceholder();
+        ProgressIndicator indicator = new ProgressIndicator();
+        indicator.setMaxSize(40, 40);
+        items.clear();
+        table.setPlaceholder(indicator);
+
+        Task<List<T>> task = run(query, result -> {
+            items.setAll(result);
+            if (onLoaded != null) {
+                onLoaded.run();
+            }
+        });
+        // Le placeholder d'origine est rétabli quelle que soit l'issue de la tâche
+        task.runningProperty().addListener((observable, wasRunning, isRunning) -> {
+            if (!isRunning && table.getPlaceholder() == indicator) {
+                table.setPlaceholder(placeholder);
+            }
+        });
+        return task;
+    }
+
+    /**
+     * Annule toutes les tâches en cours (à appeler en quittant l'écran)
+     */
+    public void cancelAll() {
+        for (Task<?> task : running) {
+            task.cancel();
+        }
+        running.clear();
+        loading.set(false);
+    }
+
+    /**
+     * true tant qu'au moins une tâche est en cours
+     */
+    public ReadOnlyBooleanProperty loadingProperty() {
+        return loading.getReadOnlyProperty();
+    }
+
+    public boolean isLoading() {
+        return loading.get();
+    }
+
+    /**
+     * Arrête l'exécuteur (fermeture de l'application)
+     */
+    public static void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private boolean finish(Task<?> task) {
+        boolean active = running.remove(task);
+        loading.set(!running.isEmpty());
+        return active;
+    }
+}
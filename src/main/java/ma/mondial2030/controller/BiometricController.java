@@ -22,16 +22,18 @@ import javafx.stage.Stage;
 import javax.imageio.ImageIO;
 import java.io.File;
 import ma.mondial2030.MainApp;
+import ma.mondial2030.biometric.FaceMatch;
 import ma.mondial2030.model.Ticket;
 import ma.mondial2030.model.User;
 import ma.mondial2030.service.BiometricService;
+import ma.mondial2030.service.QRCodeImageCache;
 import ma.mondial2030.service.TicketService;
-import ma.mondial2030.util.QRCodeGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Contrôleur pour la gestion biométrique (SUPPORTER)
@@ -74,6 +76,7 @@ public class BiometricController {
     private TicketService ticketService = new TicketService();
     private Image uploadedFaceImage;
     private String qrCodeData;
+    private final BackgroundTasks tasks = new BackgroundTasks();
 
     @FXML
     private void initialize() {
@@ -88,10 +91,11 @@ public class BiometricController {
 
     private void updateButtons() {
         if (currentUser != null) {
-            // Vérifier si l'utilisateur a déjà une empreinte faciale
-            boolean hasBiometric = biometricService.hasBiometricData(currentUser.getId());
-            assignBiometricButton.setDisable(hasBiometric);
             generateFacePrintButton.setDisable(uploadedFaceImage == null);
+            // Vérifier (hors du thread JavaFX) si l'utilisateur a déjà une empreinte faciale
+            int userId = currentUser.getId();
+            tasks.run(() -> biometricService.hasBiometricData(userId),
+                      hasBiometric -> assignBiometricButton.setDisable(hasBiometric));
         }
     }
 
@@ -128,24 +132,29 @@ public class BiometricController {
             return;
         }
 
-        try {
-            // Simuler la création d'empreinte faciale
-            boolean success = biometricService.createFaceEmbedding(currentUser.getId(), uploadedFaceImage);
-            
+        // Simuler la création d'empreinte faciale
+        int userId = currentUser.getId();
+        Image faceImage = uploadedFaceImage;
+        generateFacePrintButton.setDisable(true);
+        statusLabel.setText("Création de l'empreinte faciale...");
+        tasks.run(() -> biometricService.createFaceEmbedding(userId, faceImage), success -> {
             if (success) {
                 statusLabel.setText("✓ Empreinte faciale créée avec succès");
                 showAlert(Alert.AlertType.INFORMATION, "Succès", 
                          "Empreinte faciale créée et enregistrée");
-                updateButtons();
             } else {
+                statusLabel.setText("Prêt");
                 showAlert(Alert.AlertType.ERROR, "Erreur", 
                          "Impossible de créer l'empreinte faciale");
             }
-        } catch (Exception e) {
-            logger.error("Erreur lors de la création de l'empreinte faciale", e);
+            updateButtons();
+        }, error -> {
+            logger.error("Erreur lors de la création de l'empreinte faciale", error);
+            statusLabel.setText("Prêt");
             showAlert(Alert.AlertType.ERROR, "Erreur", 
                      "Une erreur est survenue lors de la création de l'empreinte");
-        }
+            updateButtons();
+        });
     }
 
     @FXML
@@ -156,22 +165,24 @@ public class BiometricController {
             return;
         }
 
-        try {
-            boolean success = biometricService.assignBiometricToUser(currentUser.getId());
+        int userId = currentUser.getId();
+        assignBiometricButton.setDisable(true);
+        tasks.run(() -> biometricService.assignBiometricToUser(userId), success -> {
             if (success) {
                 statusLabel.setText("✓ Biométrie assignée avec succès");
                 showAlert(Alert.AlertType.INFORMATION, "Succès", 
                          "Biométrie assignée à votre compte");
-                updateButtons();
             } else {
                 showAlert(Alert.AlertType.ERROR, "Erreur", 
                          "Impossible d'assigner la biométrie");
             }
-        } catch (Exception e) {
-            logger.error("Erreur lors de l'assignation de la biométrie", e);
+            updateButtons();
+        }, error -> {
+            logger.error("Erreur lors de l'assignation de la biométrie", error);
             showAlert(Alert.AlertType.ERROR, "Erreur", 
                      "Une erreur est survenue");
-        }
+            updateButtons();
+        });
     }
 
     @FXML
@@ -183,7 +194,7 @@ public class BiometricController {
         try {
             // Générer un QR Code pour l'utilisateur
             qrCodeData = biometricService.generateUserQRCode(currentUser.getId());
-            Image qrImage = QRCodeGenerator.generateQRCode(qrCodeData);
+            Image qrImage = QRCodeImageCache.getInstance().get(qrCodeData);
             qrCodeImageView.setImage(qrImage);
             statusLabel.setText("✓ QR Code généré avec succès");
             showAlert(Alert.AlertType.INFORMATION, "QR Code généré", 
@@ -201,17 +212,56 @@ public class BiometricController {
             return;
         }
 
+        // Les vérifications en base (ticket valide, biométrie) sont faites hors du thread JavaFX
+        int userId = currentUser.getId();
+        Image faceImage = uploadedFaceImage;
+        verifyAccessButton.setDisable(true);
+        statusLabel.setText("Vérification en cours...");
+        tasks.run(() -> {
+                      Ticket validTicket = findValidTicket(userId);
+                      // Reconnaissance 1:N parmi les détenteurs de tickets du même match
+                      List<FaceMatch> faceMatches = faceImage != null && validTicket != null
+                                                    && validTicket.getMatchEvent() != null
+                          ? biometricService.identifyFace(faceImage, validTicket.getMatchEvent().getId(), 3)
+                          : null;
+                      return new AccessCheck(validTicket, biometricService.hasBiometricData(userId), faceMatches);
+                  },
+                  check -> {
+                      verifyAccessButton.setDisable(false);
+                      showAccessCheck(check);
+                  },
+                  error -> {
+                      verifyAccessButton.setDisable(false);
+                      statusLabel.setText("Prêt");
+                      logger.error("Erreur lors de la vérification d'accès", error);
+                      showAlert(Alert.AlertType.ERROR, "Erreur", 
+                               "Une erreur est survenue lors de la vérification");
+                  });
+    }
+
+    /**
+     * Premier ticket valide de l'utilisateur, ou null
+     */
+    private Ticket findValidTicket(int userId) {
+        return ticketService.getUserTickets(userId).stream()
+            .filter(Ticket::isValid)
+            .findFirst()
+            .orElse(null);
+    }
+
+    private void showAccessCheck(AccessCheck check) {
         try {
             // Vérifier l'accès avec ticket + QR Code + biométrie
-            boolean hasTicket = biometricService.hasValidTicket(currentUser.getId());
+            boolean hasTicket = check.validTicket != null;
             boolean hasQRCode = qrCodeData != null;
-            boolean hasBiometric = biometricService.hasBiometricData(currentUser.getId());
+            boolean hasBiometric = check.hasBiometric;
 
             StringBuilder result = new StringBuilder();
             result.append("Vérification d'accès:\n");
             result.append("✓ Ticket: ").append(hasTicket ? "Valide" : "Aucun ticket valide").append("\n");
             result.append("✓ QR Code: ").append(hasQRCode ? "Généré" : "Non généré").append("\n");
             result.append("✓ Biométrie: ").append(hasBiometric ? "Enregistrée" : "Non enregistrée").append("\n");
+            result.append("✓ Reconnaissance faciale: ").append(describeFaceMatch(check.faceMatches)).append("\n");
 
             boolean accessGranted = hasTicket && hasQRCode && hasBiometric;
             result.append("\nRésultat: ").append(accessGranted ? "✓ ACCÈS AUTORISÉ" : "✗ ACCÈS REFUSÉ");
@@ -220,7 +270,7 @@ public class BiometricController {
             
             if (accessGranted) {
                 // Afficher le ticket avec QR code et photo
-                showTicketDialog();
+                showTicketDialog(check.validTicket);
             } else {
                 Alert.AlertType alertType = Alert.AlertType.WARNING;
                 showAlert(alertType, "Contrôle d'accès", result.toString());
@@ -232,15 +282,24 @@ public class BiometricController {
         }
     }
 
-    private void showTicketDialog() {
-        try {
-            // Récupérer le premier ticket valide de l'utilisateur
-            java.util.List<Ticket> tickets = ticketService.getUserTickets(currentUser.getId());
-            Ticket validTicket = tickets.stream()
-                .filter(Ticket::isValid)
-                .findFirst()
-                .orElse(null);
+    /**
+     * Résultat de l'identification : reconnu si le meilleur candidat est l'utilisateur courant
+     */
+    private String describeFaceMatch(List<FaceMatch> faceMatches) {
+        if (faceMatches == null) {
+            return "Non vérifiée";
+        }
+        if (!faceMatches.isEmpty()) {
+            FaceMatch best = faceMatches.get(0);
+            if (best.getUserId() == currentUser.getId() && best.getScore() >= BiometricService.FACE_MATCH_THRESHOLD) {
+                return String.format("Reconnu (score %.2f)", best.getScore());
+            }
+        }
+        return "Non reconnu";
+    }
 
+    private void showTicketDialog(Ticket validTicket) {
+        try {
             if (validTicket == null) {
                 showAlert(Alert.AlertType.WARNING, "Aucun ticket", 
                          "Aucun ticket valide trouvé");
@@ -282,7 +341,7 @@ public class BiometricController {
             // QR Code
             ImageView qrView = new ImageView();
             if (validTicket.getQrCodeData() != null) {
-                javafx.scene.image.Image qrImage = QRCodeGenerator.generateQRCode(validTicket.getQrCodeData());
+                javafx.scene.image.Image qrImage = QRCodeImageCache.getInstance().get(validTicket);
                 qrView.setImage(qrImage);
             }
             qrView.setFitHeight(150);
@@ -334,6 +393,7 @@ public class BiometricController {
 
     @FXML
     private void handleBack() {
+        tasks.cancelAll();
         try {
             FXMLLoader loader = new FXMLLoader(MainApp.class.getResource("/fxml/dashboard.fxml"));
             Parent root = loader.load();
@@ -444,4 +504,20 @@ public class BiometricController {
         alert.setContentText(message);
         alert.showAndWait();
     }
+
+    /**
+     * Résultat des vérifications d'accès faites en arrière-plan
+     */
+    private static final class AccessCheck {
+        final Ticket validTicket;
+        final boolean hasBiometric;
+        /** Candidats de la reconnaissance faciale, null si elle n'a pas été tentée */
+        final List<FaceMatch> faceMatches;
+
+        AccessCheck(Ticket validTicket, boolean hasBiometric, List<FaceMatch> faceMatches) {
+            this.validTicket = validTicket;
+            this.hasBiometric = hasBiometric;
+            this.faceMatches = faceMatches;
+        }
+    }
 }
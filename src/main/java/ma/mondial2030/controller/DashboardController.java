@@ -1,5 +1,9 @@
 package ma.mondial2030.controller;
 
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -7,20 +11,36 @@ import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import ma.mondial2030.MainApp;
+import ma.mondial2030.model.GateDevice;
+import ma.mondial2030.model.MatchEvent;
 import ma.mondial2030.model.User;
+import ma.mondial2030.service.AccessControlService;
 import ma.mondial2030.service.AuthenticationService;
+import ma.mondial2030.service.MatchEventService;
+import ma.mondial2030.service.OccupancyTracker;
+import ma.mondial2030.service.OccupancyTracker.GateActivity;
+import ma.mondial2030.service.OccupancyTracker.MatchOccupancy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Contrôleur pour le tableau de bord principal
  */
 public class DashboardController {
     private static final Logger logger = LoggerFactory.getLogger(DashboardController.class);
+    /** Cadence de rafraîchissement du suivi en direct */
+    private static final Duration LIVE_REFRESH = Duration.seconds(2);
     
     @FXML
     private Label welcomeLabel;
@@ -42,12 +62,91 @@ public class DashboardController {
     
     @FXML
     private Button logoutButton;
+    
+    @FXML
+    private VBox livePane;
+    
+    @FXML
+    private TableView<MatchOccupancy> matchOccupancyTable;
+    
+    @FXML
+    private TableColumn<MatchOccupancy, String> occupancyMatchColumn;
+    
+    @FXML
+    private TableColumn<MatchOccupancy, String> occupancyColumn;
+    
+    @FXML
+    private TableColumn<MatchOccupancy, String> occupancyGrantedColumn;
+    
+    @FXML
+    private TableColumn<MatchOccupancy, String> occupancyDeniedColumn;
+    
+    @FXML
+    private TableColumn<MatchOccupancy, String> occupancyRateColumn;
+    
+    @FXML
+    private TableView<GateActivity> gateActivityTable;
+    
+    @FXML
+    private TableColumn<GateActivity, String> gateMatchColumn;
+    
+    @FXML
+    private TableColumn<GateActivity, String> gateNameColumn;
+    
+    @FXML
+    private TableColumn<GateActivity, String> gateGrantedColumn;
+    
+    @FXML
+    private TableColumn<GateActivity, String> gateDeniedColumn;
+    
+    @FXML
+    private TableColumn<GateActivity, String> gateRateColumn;
 
     private User currentUser;
+    private final BackgroundTasks tasks = new BackgroundTasks();
+    private final MatchEventService matchEventService = new MatchEventService();
+    private final AccessControlService accessControlService = new AccessControlService();
+    private final Timeline liveTimeline = new Timeline(new KeyFrame(LIVE_REFRESH, event -> refreshLiveView()));
+    /** Rafraîchissement en cours : une échéance qui tombe pendant celui-ci est sautée */
+    private Task<LiveSnapshot> liveRefresh;
+    private Map<Integer, MatchEvent> liveMatches = new HashMap<>();
+    private Map<Integer, String> liveGateNames = new HashMap<>();
 
     @FXML
     private void initialize() {
         // Les boutons seront configurés selon le rôle dans setUser
+        occupancyMatchColumn.setCellValueFactory(cellData ->
+            new SimpleStringProperty(matchLabel(cellData.getValue().getMatchEventId())));
+        occupancyColumn.setCellValueFactory(cellData -> {
+            MatchOccupancy occupancy = cellData.getValue();
+            MatchEvent match = liveMatches.get(occupancy.getMatchEventId());
+            if (match == null || match.getTotalCapacity() <= 0) {
+                return new SimpleStringProperty(String.valueOf(occupancy.getOccupancy()));
+            }
+            return new SimpleStringProperty(String.format("%d / %d (%.1f %%)", occupancy.getOccupancy(),
+                match.getTotalCapacity(), occupancy.getOccupancy() * 100.0 / match.getTotalCapacity()));
+        });
+        occupancyGrantedColumn.setCellValueFactory(cellData ->
+            new SimpleStringProperty(String.valueOf(cellData.getValue().getGrantedCount())));
+        occupancyDeniedColumn.setCellValueFactory(cellData ->
+            new SimpleStringProperty(String.valueOf(cellData.getValue().getDeniedCount())));
+        occupancyRateColumn.setCellValueFactory(cellData ->
+            new SimpleStringProperty(String.valueOf(cellData.getValue().getEntriesLastMinute())));
+
+        gateMatchColumn.setCellValueFactory(cellData ->
+            new SimpleStringProperty(matchLabel(cellData.getValue().getMatchEventId())));
+        gateNameColumn.setCellValueFactory(cellData -> {
+            int gateId = cellData.getValue().getGateDeviceId();
+            return new SimpleStringProperty(liveGateNames.getOrDefault(gateId, gateId > 0 ? "Porte " + gateId : "N/A"));
+        });
+        gateGrantedColumn.setCellValueFactory(cellData ->
+            new SimpleStringProperty(String.valueOf(cellData.getValue().getGrantedCount())));
+        gateDeniedColumn.setCellValueFactory(cellData ->
+            new SimpleStringProperty(String.valueOf(cellData.getValue().getDeniedCount())));
+        gateRateColumn.setCellValueFactory(cellData ->
+            new SimpleStringProperty(String.valueOf(cellData.getValue().getEntriesLastMinute())));
+
+        liveTimeline.setCycleCount(Timeline.INDEFINITE);
     }
 
     public void setUser(User user) {
@@ -69,11 +168,85 @@ public class DashboardController {
                 scanButton.setVisible(true);
             }
             biometricButton.setVisible(isSupporter);
+
+            // STAFF : suivi des entrées en direct
+            livePane.setVisible(isStaff);
+            livePane.setManaged(isStaff);
+            if (isStaff) {
+                refreshLiveView();
+                liveTimeline.play();
+            }
+        }
+    }
+
+    /**
+     * Rafraîchit le suivi en direct : les agrégats sont lus en mémoire (OccupancyTracker),
+     * seuls les noms de match et de porte passent par les caches des DAO, hors du thread JavaFX.
+     * Chaque table est remplacée d'un bloc, une fois par échéance.
+     */
+    private void refreshLiveView() {
+        if (liveRefresh != null && !liveRefresh.isDone()) {
+            return;
+        }
+        liveRefresh = tasks.run(this::takeLiveSnapshot, snapshot -> {
+            liveMatches = snapshot.matches;
+            liveGateNames = snapshot.gateNames;
+            matchOccupancyTable.getItems().setAll(snapshot.occupancy);
+            gateActivityTable.getItems().setAll(snapshot.gates);
+        });
+    }
+
+    private LiveSnapshot takeLiveSnapshot() {
+        OccupancyTracker tracker = OccupancyTracker.getInstance();
+        LiveSnapshot snapshot = new LiveSnapshot(tracker.snapshotMatches(), tracker.snapshotGates());
+        for (MatchOccupancy occupancy : snapshot.occupancy) {
+            snapshot.matches.computeIfAbsent(occupancy.getMatchEventId(), matchEventService::findById);
+        }
+        for (GateActivity activity : snapshot.gates) {
+            if (activity.getGateDeviceId() > 0) {
+                snapshot.gateNames.computeIfAbsent(activity.getGateDeviceId(), gateId -> {
+                    GateDevice gate = accessControlService.getGate(gateId);
+                    return gate != null ? gate.getDeviceName() : null;
+                });
+            }
+        }
+        return snapshot;
+    }
+
+    private String matchLabel(int matchEventId) {
+        if (matchEventId <= 0) {
+            return "Match inconnu";
+        }
+        MatchEvent match = liveMatches.get(matchEventId);
+        return match != null ? match.getMatchName() : "Match " + matchEventId;
+    }
+
+    /**
+     * Arrête le suivi en direct en quittant le tableau de bord
+     */
+    private void stopLiveView() {
+        liveTimeline.stop();
+        tasks.cancelAll();
+    }
+
+    /**
+     * Agrégats et noms lus lors d'un rafraîchissement
+     */
+    private static final class LiveSnapshot {
+        final List<MatchOccupancy> occupancy;
+        final List<GateActivity> gates;
+        final Map<Integer, MatchEvent> matches = new HashMap<>();
+        final Map<Integer, String> gateNames = new HashMap<>();
+
+        LiveSnapshot(List<MatchOccupancy> occupancy, List<GateActivity> gates) {
+            this.occupancy = occupancy;
+            this.gates = gates;
         }
     }
 
     @FXML
     private void handleTickets() {
+        stopLiveView();
         try {
             FXMLLoader loader = new FXMLLoader(MainApp.class.getResource("/fxml/tickets.fxml"));
             Parent root = loader.load();
@@ -94,6 +267,7 @@ public class DashboardController {
 
     @FXML
     private void handleScan() {
+        stopLiveView();
         try {
             FXMLLoader loader = new FXMLLoader(MainApp.class.getResource("/fxml/scan.fxml"));
             Parent root = loader.load();
@@ -114,6 +288,7 @@ public class DashboardController {
 
     @FXML
     private void handleAdmin() {
+        stopLiveView();
         try {
             FXMLLoader loader = new FXMLLoader(MainApp.class.getResource("/fxml/admin.fxml"));
             Parent root = loader.load();
@@ -134,6 +309,7 @@ public class DashboardController {
 
     @FXML
     private void handleBiometric() {
+        stopLiveView();
         try {
             FXMLLoader loader = new FXMLLoader(MainApp.class.getResource("/fxml/biometric.fxml"));
             Parent root = loader.load();
@@ -154,6 +330,7 @@ public class DashboardController {
 
     @FXML
     private void handleLogout() {
+        stopLiveView();
         AuthenticationService authService = new AuthenticationService();
         authService.logout();
         
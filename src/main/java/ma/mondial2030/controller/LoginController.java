@@ -37,9 +37,11 @@ public class LoginController {
     private Button registerButton;
 
     private AuthenticationService authService = new AuthenticationService();
+    private final BackgroundTasks tasks = new BackgroundTasks();
 
     @FXML
     private void initialize() {
+        loginButton.disableProperty().bind(tasks.loadingProperty());
         // Focus sur le champ username au démarrage
         usernameField.requestFocus();
     }
@@ -55,23 +57,30 @@ public class LoginController {
             return;
         }
 
-        try {
-            User user = authService.login(username, password);
+        if (tasks.isLoading()) {
+            return;
+        }
+
+        // Vérification du mot de passe (BCrypt) et requête en base hors du thread JavaFX
+        tasks.run(() -> authService.login(username, password), user -> {
             if (user != null) {
                 navigateToDashboard(user);
             }
-        } catch (AuthenticationException e) {
-            showAlert(Alert.AlertType.ERROR, "Erreur d'authentification", e.getMessage());
-            passwordField.clear();
-        } catch (Exception e) {
-            logger.error("Erreur lors de la connexion", e);
-            showAlert(Alert.AlertType.ERROR, "Erreur", 
-                     "Une erreur est survenue lors de la connexion");
-        }
+        }, error -> {
+            if (error instanceof AuthenticationException) {
+                showAlert(Alert.AlertType.ERROR, "Erreur d'authentification", error.getMessage());
+                passwordField.clear();
+            } else {
+                logger.error("Erreur lors de la connexion", error);
+                showAlert(Alert.AlertType.ERROR, "Erreur", 
+                         "Une erreur est survenue lors de la connexion");
+            }
+        });
     }
 
     @FXML
     private void handleRegister() {
+        tasks.cancelAll();
         try {
             FXMLLoader loader = new FXMLLoader(MainApp.class.getResource("/fxml/register.fxml"));
             Parent root = loader.load();
@@ -50,9 +50,11 @@ public class RegisterController {
     private Button backButton;
 
     private UserService userService = new UserService();
+    private final BackgroundTasks tasks = new BackgroundTasks();
 
     @FXML
     private void initialize() {
+        registerButton.disableProperty().bind(tasks.loadingProperty());
         roleComboBox.getItems().addAll("STAFF", "SUPPORTER");
         roleComboBox.getSelectionModel().selectFirst();
         // Les utilisateurs peuvent s'inscrire avec le rôle STAFF ou SUPPORTER
@@ -82,20 +84,26 @@ public class RegisterController {
             return;
         }
 
-        boolean success = userService.registerUser(username, email, password, 
-                                                   firstName, lastName, phone, role);
-        if (success) {
-            showAlert(Alert.AlertType.INFORMATION, "Inscription réussie", 
-                     "Votre compte a été créé avec succès. Vous pouvez maintenant vous connecter.");
-            handleBack();
-        } else {
+        tasks.run(() -> userService.registerUser(username, email, password, 
+                                                 firstName, lastName, phone, role), success -> {
+            if (success) {
+                showAlert(Alert.AlertType.INFORMATION, "Inscription réussie", 
+                         "Votre compte a été créé avec succès. Vous pouvez maintenant vous connecter.");
+                handleBack();
+            } else {
+                showAlert(Alert.AlertType.ERROR, "Erreur d'inscription", 
+                         "L'inscription a échoué. Le nom d'utilisateur ou l'email existe peut-être déjà.");
+            }
+        }, error -> {
+            logger.error("Erreur lors de l'inscription", error);
             showAlert(Alert.AlertType.ERROR, "Erreur d'inscription", 
-                     "L'inscription a échoué. Le nom d'utilisateur ou l'email existe peut-être déjà.");
-        }
+                     "Une erreur est survenue lors de l'inscription");
+        });
     }
 
     @FXML
     private void handleBack() {
+        tasks.cancelAll();
         try {
             FXMLLoader loader = new FXMLLoader(MainApp.class.getResource("/fxml/login.fxml"));
             Parent root = loader.load();
@@ -39,10 +39,13 @@ public class ScanController {
     private User currentUser;
     private AccessControlService accessControlService = new AccessControlService();
     private static final int DEFAULT_GATE_DEVICE_ID = 1; // À configurer selon le dispositif
+    private final BackgroundTasks tasks = new BackgroundTasks();
 
     @FXML
     private void initialize() {
         resultLabel.setText("");
+        // Un seul scan à la fois : le bouton reste désactivé pendant la vérification
+        scanButton.disableProperty().bind(tasks.loadingProperty());
         qrCodeField.requestFocus();
     }
 
@@ -60,10 +63,28 @@ public class ScanController {
             return;
         }
 
-        // Traiter l'accès
-        AccessControlService.AccessResult result = 
-            accessControlService.processQRCodeAccess(qrCodeData, DEFAULT_GATE_DEVICE_ID);
+        if (tasks.isLoading()) {
+            return;
+        }
+
+        // Traiter l'accès en arrière-plan
+        resultLabel.setText("Vérification...");
+        resultLabel.setTextFill(Color.GRAY);
+        tasks.run(() -> accessControlService.processQRCodeAccess(qrCodeData, DEFAULT_GATE_DEVICE_ID),
+                  this::showResult,
+                  error -> {
+                      logger.error("Erreur lors du traitement du scan", error);
+                      resultLabel.setText("");
+                      showAlert(Alert.AlertType.ERROR, "Erreur", 
+                               "Une erreur est survenue lors de la vérification");
+                  });
 
+        // Effacer le champ pour le prochain scan
+        qrCodeField.clear();
+        qrCodeField.requestFocus();
+    }
+
+    private void showResult(AccessControlService.AccessResult result) {
         if (result.isGranted()) {
             resultLabel.setText("✓ ACCÈS AUTORISÉ");
             resultLabel.setTextFill(Color.GREEN);
@@ -73,14 +94,12 @@ public class ScanController {
             resultLabel.setTextFill(Color.RED);
             showAlert(Alert.AlertType.ERROR, "Accès refusé", result.getMessage());
         }
-
-        // Effacer le champ pour le prochain scan
-        qrCodeField.clear();
         qrCodeField.requestFocus();
     }
 
     @FXML
     private void handleBack() {
+        tasks.cancelAll();
         try {
             FXMLLoader loader = new FXMLLoader(MainApp.class.getResource("/fxml/dashboard.fxml"));
             Parent root = loader.load();
@@ -15,8 +15,8 @@ import ma.mondial2030.model.MatchEvent;
 import ma.mondial2030.model.Ticket;
 import ma.mondial2030.model.User;
 import ma.mondial2030.service.MatchEventService;
+import ma.mondial2030.service.QRCodeImageCache;
 import ma.mondial2030.service.TicketService;
-import ma.mondial2030.util.QRCodeGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,7 +65,9 @@ public class TicketsController {
     private User currentUser;
     private TicketService ticketService = new TicketService();
     private MatchEventService matchEventService = new MatchEventService();
+    private QRCodeImageCache qrCodeImageCache = QRCodeImageCache.getInstance();
     private ObservableList<Ticket> ticketsList = FXCollections.observableArrayList();
+    private final BackgroundTasks tasks = new BackgroundTasks();
 
     @FXML
     private void initialize() {
@@ -85,6 +87,17 @@ public class TicketsController {
         });
 
         ticketsTable.setItems(ticketsList);
+
+        // Seules les lignes visibles sont créées : leur QR Code est rendu en arrière-plan
+        ticketsTable.setRowFactory(table -> new TableRow<Ticket>() {
+            @Override
+            protected void updateItem(Ticket ticket, boolean empty) {
+                super.updateItem(ticket, empty);
+                if (!empty && ticket != null) {
+                    qrCodeImageCache.prefetch(ticket);
+                }
+            }
+        });
         
         // Sélection d'un ticket
         ticketsTable.getSelectionModel().selectedItemProperty().addListener(
@@ -99,22 +112,35 @@ public class TicketsController {
     }
 
     private void loadUserTickets() {
+        loadUserTickets(null);
+    }
+
+    /**
+     * Recharge les tickets de l'utilisateur puis sélectionne le ticket selectTicketId (s'il est non nul)
+     */
+    private void loadUserTickets(Integer selectTicketId) {
         if (currentUser != null) {
-            ticketsList.clear();
-            ticketsList.addAll(ticketService.getUserTickets(currentUser.getId()));
+            int userId = currentUser.getId();
+            tasks.loadInto(ticketsTable, ticketsList, () -> ticketService.getUserTickets(userId), () -> {
+                if (selectTicketId != null) {
+                    ticketsList.stream()
+                        .filter(ticket -> ticket.getId() == selectTicketId)
+                        .findFirst()
+                        .ifPresent(ticket -> ticketsTable.getSelectionModel().select(ticket));
+                }
+            });
         }
     }
 
     private void loadAvailableMatches() {
         matchComboBox.getItems().clear();
-        // Charger tous les matchs ajoutés par l'admin (sauf ceux annulés)
-        java.util.List<MatchEvent> allMatches = matchEventService.getAllMatches();
-        // Filtrer pour ne garder que les matchs non annulés et avec des tickets disponibles
-        java.util.List<MatchEvent> availableMatches = allMatches.stream()
-            .filter(match -> match.getStatus() != MatchEvent.Status.CANCELLED)
-            .filter(match -> match.getAvailableTickets() > 0)
-            .collect(java.util.stream.Collectors.toList());
-        matchComboBox.getItems().addAll(availableMatches);
+        // Charger tous les matchs ajoutés par l'admin (sauf ceux annulés), hors du thread JavaFX
+        tasks.run(() -> matchEventService.getAllMatches().stream()
+                // Filtrer pour ne garder que les matchs non annulés et avec des tickets disponibles
+                .filter(match -> match.getStatus() != MatchEvent.Status.CANCELLED)
+                .filter(match -> match.getAvailableTickets() > 0)
+                .collect(java.util.stream.Collectors.toList()),
+            availableMatches -> matchComboBox.getItems().setAll(availableMatches));
         
         // Configurer l'affichage dans le ComboBox
         matchComboBox.setCellFactory(param -> new ListCell<MatchEvent>() {
@@ -169,17 +195,24 @@ public class TicketsController {
             return;
         }
 
-        Ticket newTicket = ticketService.purchaseTicket(currentUser, selectedMatch.getId(), seatNumber);
-        if (newTicket != null) {
-            showAlert(Alert.AlertType.INFORMATION, "Succès", 
-                     "Ticket acheté avec succès !");
-            loadUserTickets();
-            seatNumberField.clear();
-            ticketsTable.getSelectionModel().select(newTicket);
-        } else {
+        purchaseButton.setDisable(true);
+        tasks.run(() -> ticketService.purchaseTicket(currentUser, selectedMatch.getId(), seatNumber), newTicket -> {
+            purchaseButton.setDisable(false);
+            if (newTicket != null) {
+                showAlert(Alert.AlertType.INFORMATION, "Succès", 
+                         "Ticket acheté avec succès !");
+                loadUserTickets(newTicket.getId());
+                seatNumberField.clear();
+            } else {
+                showAlert(Alert.AlertType.ERROR, "Erreur", 
+                         "Impossible d'acheter le ticket");
+            }
+        }, error -> {
+            purchaseButton.setDisable(false);
+            logger.error("Erreur lors de l'achat du ticket", error);
             showAlert(Alert.AlertType.ERROR, "Erreur", 
                      "Impossible d'acheter le ticket");
-        }
+        });
     }
 
     private void showTicketDetails(Ticket ticket) {
@@ -198,17 +231,13 @@ public class TicketsController {
                 ticket.getPurchaseDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) : "N/A")
         );
 
-        // Générer le QR Code
-        if (ticket.getQrCodeData() != null) {
-            javafx.scene.image.Image qrImage = QRCodeGenerator.generateQRCode(ticket.getQrCodeData());
-            qrCodeImageView.setImage(qrImage);
-        } else {
-            qrCodeImageView.setImage(null);
-        }
+        // QR Code (depuis le cache, rendu si nécessaire)
+        qrCodeImageView.setImage(qrCodeImageCache.get(ticket));
     }
 
     @FXML
     private void handleBack() {
+        tasks.cancelAll();
         try {
             FXMLLoader loader = new FXMLLoader(MainApp.class.getResource("/fxml/dashboard.fxml"));
             Parent root = loader.load();
@@ -1,6 +1,8 @@
 package ma.mondial2030.dao;
 
 import ma.mondial2030.model.AccessLog;
+import ma.mondial2030.model.AccessLogFilter;
+import ma.mondial2030.model.AccessLogSummary;
 import ma.mondial2030.model.GateDevice;
 import ma.mondial2030.model.Ticket;
 import ma.mondial2030.model.User;
@@ -11,6 +13,7 @@ import org.slf4j.LoggerFactory;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -67,6 +70,113 @@ public class AccessLogDAO {
         return false;
     }
 
+    /**
+     * Insère un lot de logs d'accès en une seule transaction (batch JDBC)
+     * Les identifiants générés ne sont pas relus. Si une ligne viole une contrainte (porte,
+     * utilisateur ou ticket supprimé entre-temps), le lot est repris ligne par ligne dans la même
+     * transaction : les lignes refusées sont ajoutées à rejected et les autres sont insérées.
+     * Retourne le nombre de lignes insérées, ou -1 si la base est indisponible (rien n'est inséré).
+     */
+    public int createBatch(List<AccessLog> accessLogs, List<AccessLog> rejected) {
+        if (accessLogs.isEmpty()) {
+            return 0;
+        }
+        String sql = "INSERT INTO access_logs (user_id, ticket_id, gate_device_id, access_type, access_result, denial_reason, ip_address, access_timestamp) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (AccessLog accessLog : accessLogs) {
+                    bindBatchRow(stmt, accessLog);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                conn.commit();
+                return accessLogs.size();
+            } catch (SQLException e) {
+                conn.rollback();
+                if (!isConstraintViolation(e)) {
+                    throw e;
+                }
+                logger.warn("Lot de {} logs d'accès refusé ({}), reprise ligne par ligne",
+                            accessLogs.size(), e.getMessage());
+            }
+            int inserted = 0;
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (AccessLog accessLog : accessLogs) {
+                    Savepoint savepoint = conn.setSavepoint();
+                    try {
+                        bindBatchRow(stmt, accessLog);
+                        stmt.executeUpdate();
+                        inserted++;
+                    } catch (SQLException e) {
+                        conn.rollback(savepoint);
+                        if (!isConstraintViolation(e)) {
+                            throw e;
+                        }
+                        rejected.add(accessLog);
+                    }
+                }
+                conn.commit();
+                return inserted;
+            } catch (SQLException e) {
+                conn.rollback();
+                rejected.clear();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Erreur lors de l'insertion d'un lot de {} logs d'accès", accessLogs.size(), e);
+        }
+        return -1;
+    }
+
+    private static void bindBatchRow(PreparedStatement stmt, AccessLog accessLog) throws SQLException {
+        if (accessLog.getUser() != null) {
+            stmt.setInt(1, accessLog.getUser().getId());
+        } else {
+            stmt.setNull(1, Types.INTEGER);
+        }
+
+        if (accessLog.getTicket() != null) {
+            stmt.setInt(2, accessLog.getTicket().getId());
+        } else {
+            stmt.setNull(2, Types.INTEGER);
+        }
+
+        if (accessLog.getGateDevice() != null) {
+            stmt.setInt(3, accessLog.getGateDevice().getId());
+        } else {
+            stmt.setNull(3, Types.INTEGER);
+        }
+
+        stmt.setString(4, accessLog.getAccessType().name());
+        stmt.setString(5, accessLog.getAccessResult().name());
+        stmt.setString(6, accessLog.getDenialReason());
+        stmt.setString(7, accessLog.getIpAddress());
+        stmt.setTimestamp(8, Timestamp.valueOf(accessLog.getAccessTimestamp() != null
+                                               ? accessLog.getAccessTimestamp()
+                                               : LocalDateTime.now()));
+    }
+
+    /**
+     * true si l'erreur vient des données (classes SQLSTATE 22 et 23 : valeur invalide, clé
+     * étrangère, unicité) et non de la connexion : réessayer la même ligne échouerait toujours
+     */
+    private static boolean isConstraintViolation(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                for (SQLException next = sql; next != null; next = next.getNextException()) {
+                    String state = next.getSQLState();
+                    if (next instanceof SQLIntegrityConstraintViolationException || next instanceof SQLDataException
+                            || (state != null && (state.startsWith("22") || state.startsWith("23")))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Récupère tous les logs d'accès
      */
@@ -87,6 +197,92 @@ public class AccessLogDAO {
         return logs;
     }
 
+    /**
+     * Récupère les derniers logs d'accès sous forme de lignes allégées
+     */
+    public List<AccessLogSummary> findRecentSummaries(int limit) {
+        return findSummariesPage(null, null, true, limit);
+    }
+
+    /**
+     * Page du journal des accès, paginée par clé sur (access_timestamp, id) plutôt que par OFFSET :
+     * le coût d'une page ne dépend pas de sa profondeur, et l'index idx_access_timestamp
+     * (qui contient aussi la clé primaire) sert au tri comme à la borne de la page.
+     * Sans curseur : les entrées les plus récentes. Avec un curseur (dernière ligne affichée) :
+     * les entrées strictement plus anciennes si older, strictement plus récentes sinon.
+     * Les lignes sont toujours retournées de la plus récente à la plus ancienne.
+     */
+    public List<AccessLogSummary> findSummariesPage(AccessLogFilter filter, AccessLogSummary cursor,
+                                                    boolean older, int limit) {
+        List<AccessLogSummary> logs = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(
+            "SELECT l.id, l.access_type, l.access_result, l.access_timestamp, " +
+            "u.username, g.device_name " +
+            "FROM access_logs l " +
+            "LEFT JOIN users u ON u.id = l.user_id " +
+            "LEFT JOIN gate_devices g ON g.id = l.gate_device_id " +
+            "WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+
+        if (filter != null) {
+            if (filter.getGateDeviceId() != null) {
+                sql.append(" AND l.gate_device_id = ?");
+                params.add(filter.getGateDeviceId());
+            }
+            if (filter.getAccessResult() != null) {
+                sql.append(" AND l.access_result = ?");
+                params.add(filter.getAccessResult().name());
+            }
+            if (filter.getAccessType() != null) {
+                sql.append(" AND l.access_type = ?");
+                params.add(filter.getAccessType().name());
+            }
+            if (filter.getFrom() != null) {
+                sql.append(" AND l.access_timestamp >= ?");
+                params.add(Timestamp.valueOf(filter.getFrom()));
+            }
+            if (filter.getTo() != null) {
+                sql.append(" AND l.access_timestamp < ?");
+                params.add(Timestamp.valueOf(filter.getTo()));
+            }
+        }
+
+        if (cursor != null && cursor.getAccessTimestamp() != null) {
+            // Forme développée plutôt que (a, b) < (?, ?), que MySQL n'utilise pas toujours en plage d'index
+            String comparison = older ? "<" : ">";
+            sql.append(" AND (l.access_timestamp ").append(comparison).append(" ?")
+               .append(" OR (l.access_timestamp = ? AND l.id ").append(comparison).append(" ?))");
+            Timestamp cursorTimestamp = Timestamp.valueOf(cursor.getAccessTimestamp());
+            params.add(cursorTimestamp);
+            params.add(cursorTimestamp);
+            params.add(cursor.getId());
+        }
+
+        String direction = older ? "DESC" : "ASC";
+        sql.append(" ORDER BY l.access_timestamp ").append(direction)
+           .append(", l.id ").append(direction).append(" LIMIT ?");
+        params.add(limit);
+
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    logs.add(mapResultSetToSummary(rs));
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Erreur lors de la récupération du journal des accès", e);
+        }
+        if (!older) {
+            Collections.reverse(logs);
+        }
+        return logs;
+    }
+
     /**
      * Récupère les logs d'accès d'un utilisateur
      */
@@ -109,6 +305,25 @@ public class AccessLogDAO {
         return logs;
     }
 
+    /**
+     * Mappe un ResultSet vers une ligne allégée AccessLogSummary
+     * (visible dans le paquet pour les benchmarks de mapping)
+     */
+    static AccessLogSummary mapResultSetToSummary(ResultSet rs) throws SQLException {
+        String accessTypeStr = rs.getString("access_type");
+        String accessResultStr = rs.getString("access_result");
+        Timestamp accessTimestamp = rs.getTimestamp("access_timestamp");
+        
+        return new AccessLogSummary(
+            rs.getInt("id"),
+            rs.getString("username"),
+            accessTypeStr != null ? AccessLog.AccessType.valueOf(accessTypeStr) : null,
+            accessResultStr != null ? AccessLog.AccessResult.valueOf(accessResultStr) : null,
+            accessTimestamp != null ? accessTimestamp.toLocalDateTime() : null,
+            rs.getString("device_name")
+        );
+    }
+
     /**
      * Mappe un ResultSet vers un objet AccessLog
      */
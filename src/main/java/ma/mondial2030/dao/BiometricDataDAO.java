@@ -5,6 +5,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * DAO pour la gestion des données biométriques
@@ -12,6 +18,10 @@ import java.sql.*;
 public class BiometricDataDAO {
     private static final Logger logger = LoggerFactory.getLogger(BiometricDataDAO.class);
 
+    /** Valeurs de face_embeddings.embedding_format (voir FaceEmbeddings) */
+    private static final int FORMAT_FLOAT32 = 1;
+    private static final int FORMAT_FLOAT32_INT8 = 2;
+
     /**
      * Vérifie si l'utilisateur a des données biométriques
      */
@@ -36,29 +46,194 @@ public class BiometricDataDAO {
      * Sauvegarde une empreinte faciale
      */
     public boolean saveFaceEmbedding(int userId, byte[] embedding, String imagePath) {
-        String sql = "INSERT INTO face_embeddings (biometric_data_id, embedding_data, image_path) " +
-                     "VALUES (?, ?, ?)";
+        return insertFaceEmbedding(userId, embedding, imagePath) > 0;
+    }
+
+    /**
+     * Sauvegarde une empreinte faciale et retourne son identifiant, ou -1 en cas d'erreur
+     */
+    public int insertFaceEmbedding(int userId, byte[] embedding, String imagePath) {
+        return insertFaceEmbedding(userId, embedding, null, imagePath);
+    }
+
+    /**
+     * Sauvegarde une empreinte faciale avec sa version quantifiée int8 (format 2 si quantized
+     * n'est pas null, format 1 sinon) et retourne son identifiant, ou -1 en cas d'erreur
+     */
+    public int insertFaceEmbedding(int userId, byte[] embedding, byte[] quantized, String imagePath) {
+        String sql = "INSERT INTO face_embeddings (biometric_data_id, embedding_data, embedding_format, " +
+                     "quantized_data, image_path) VALUES (?, ?, ?, ?, ?)";
         
         try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
             // Vérifier si biometric_data existe, sinon le créer
             int biometricDataId = getOrCreateBiometricData(userId, conn);
             
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                 stmt.setInt(1, biometricDataId);
                 stmt.setBytes(2, embedding);
-                stmt.setString(3, imagePath);
+                setQuantized(stmt, 3, quantized);
+                stmt.setString(5, imagePath);
                 
                 int affectedRows = stmt.executeUpdate();
                 if (affectedRows > 0) {
-                    // Mettre à jour le flag has_face_data
-                    updateBiometricDataFlag(userId, true, false, conn);
-                    return true;
+                    // Mettre à jour le flag has_face_data (l'entrée vient d'être lue ou créée)
+                    updateBiometricDataFlagById(biometricDataId, true, false, conn);
+                    try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                        return generatedKeys.next() ? generatedKeys.getInt(1) : 0;
+                    }
                 }
             }
         } catch (SQLException e) {
             logger.error("Erreur lors de la sauvegarde de l'empreinte faciale", e);
         }
-        return false;
+        return -1;
+    }
+
+    /**
+     * Insère un lot d'empreintes faciales en une seule transaction (batch JDBC) : une requête pour
+     * les entrées biometric_data du lot, un batch pour créer celles qui manquent, un batch pour
+     * les empreintes et une mise à jour des indicateurs. Retourne le nombre d'empreintes insérées,
+     * ou -1 en cas d'erreur (rien n'est alors inséré)
+     */
+    public int insertFaceEmbeddings(List<FaceEmbeddingRow> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        String sql = "INSERT INTO face_embeddings (biometric_data_id, embedding_data, embedding_format, " +
+                     "quantized_data, image_path) VALUES (?, ?, ?, ?, ?)";
+        try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Set<Integer> userIds = new LinkedHashSet<>();
+                for (FaceEmbeddingRow row : rows) {
+                    userIds.add(row.getUserId());
+                }
+                Map<Integer, Integer> biometricDataIds = findBiometricDataIds(userIds, conn);
+                if (biometricDataIds.size() < userIds.size()) {
+                    createBiometricData(userIds, biometricDataIds, conn);
+                    biometricDataIds = findBiometricDataIds(userIds, conn);
+                }
+
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    for (FaceEmbeddingRow row : rows) {
+                        stmt.setInt(1, biometricDataIds.get(row.getUserId()));
+                        stmt.setBytes(2, row.getEmbedding());
+                        setQuantized(stmt, 3, row.getQuantized());
+                        stmt.setString(5, row.getImagePath());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+                String flagSql = "UPDATE biometric_data SET has_face_data = TRUE, has_fingerprint_data = FALSE " +
+                                 "WHERE id IN (" + placeholders(biometricDataIds.size()) + ")";
+                try (PreparedStatement stmt = conn.prepareStatement(flagSql)) {
+                    int index = 1;
+                    for (int biometricDataId : biometricDataIds.values()) {
+                        stmt.setInt(index++, biometricDataId);
+                    }
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+                return rows.size();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Erreur lors de l'insertion d'un lot de {} empreintes faciales", rows.size(), e);
+        }
+        return -1;
+    }
+
+    /**
+     * Empreinte à insérer par lot (voir insertFaceEmbeddings)
+     */
+    public static final class FaceEmbeddingRow {
+        private final int userId;
+        private final byte[] embedding;
+        private final byte[] quantized;
+        private final String imagePath;
+
+        /**
+         * @param quantized version int8 (format 2), ou null pour une ligne au format 1
+         */
+        public FaceEmbeddingRow(int userId, byte[] embedding, byte[] quantized, String imagePath) {
+            this.userId = userId;
+            this.embedding = embedding;
+            this.quantized = quantized;
+            this.imagePath = imagePath;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public byte[] getEmbedding() {
+            return embedding;
+        }
+
+        public byte[] getQuantized() {
+            return quantized;
+        }
+
+        public String getImagePath() {
+            return imagePath;
+        }
+    }
+
+    /**
+     * Parcourt les empreintes faciales des détenteurs d'un ticket non annulé pour un match,
+     * par ordre d'insertion (la dernière empreinte d'un utilisateur arrive en dernier)
+     * Retourne le nombre de lignes lues, ou -1 en cas d'erreur
+     */
+    public int forEachFaceEmbeddingByMatch(int matchEventId, FaceEmbeddingHandler handler) {
+        return forEachFaceEmbeddingByMatch(matchEventId, 0, 0, handler);
+    }
+
+    /**
+     * Variante de rattrapage : empreintes d'identifiant supérieur à afterEmbeddingId, plus toutes
+     * celles des utilisateurs ayant acheté un ticket du match après afterTicketId
+     */
+    public int forEachFaceEmbeddingByMatch(int matchEventId, int afterEmbeddingId, int afterTicketId,
+                                           FaceEmbeddingHandler handler) {
+        String sql = "SELECT fe.id, bd.user_id, fe.embedding_data, fe.embedding_format, fe.quantized_data " +
+                     "FROM face_embeddings fe " +
+                     "JOIN biometric_data bd ON bd.id = fe.biometric_data_id " +
+                     "WHERE bd.has_face_data = TRUE AND bd.user_id IN " +
+                     "(SELECT user_id FROM tickets WHERE match_event_id = ? AND status <> 'CANCELLED') " +
+                     "AND (fe.id > ? OR bd.user_id IN " +
+                     "(SELECT user_id FROM tickets WHERE match_event_id = ? AND id > ?)) " +
+                     "ORDER BY fe.id";
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, matchEventId);
+            stmt.setInt(2, afterEmbeddingId);
+            stmt.setInt(3, matchEventId);
+            stmt.setInt(4, afterTicketId);
+            stmt.setFetchSize(1000);
+            int count = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    byte[] quantized = rs.getInt("embedding_format") == FORMAT_FLOAT32_INT8
+                            ? rs.getBytes("quantized_data") : null;
+                    handler.accept(rs.getInt("id"), rs.getInt("user_id"), rs.getBytes("embedding_data"), quantized);
+                    count++;
+                }
+            }
+            return count;
+        } catch (SQLException e) {
+            logger.error("Erreur lors du chargement des empreintes faciales du match", e);
+        }
+        return -1;
+    }
+
+    /**
+     * Reçoit une ligne de face_embeddings ; quantizedData est null pour les lignes au format 1
+     */
+    @FunctionalInterface
+    public interface FaceEmbeddingHandler {
+        void accept(int embeddingId, int userId, byte[] embeddingData, byte[] quantizedData);
     }
 
     /**
@@ -104,6 +279,61 @@ public class BiometricDataDAO {
         throw new SQLException("Impossible de créer l'entrée biometric_data");
     }
 
+    /**
+     * Renseigne le format de l'empreinte (colonne index) et sa version quantifiée (colonne index + 1)
+     */
+    private static void setQuantized(PreparedStatement stmt, int index, byte[] quantized) throws SQLException {
+        if (quantized != null) {
+            stmt.setInt(index, FORMAT_FLOAT32_INT8);
+            stmt.setBytes(index + 1, quantized);
+        } else {
+            stmt.setInt(index, FORMAT_FLOAT32);
+            stmt.setNull(index + 1, Types.VARBINARY);
+        }
+    }
+
+    /**
+     * Entrées biometric_data existantes des utilisateurs, par utilisateur
+     */
+    private Map<Integer, Integer> findBiometricDataIds(Set<Integer> userIds, Connection conn) throws SQLException {
+        String sql = "SELECT id, user_id FROM biometric_data WHERE user_id IN (" + placeholders(userIds.size()) + ")";
+        Map<Integer, Integer> ids = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (int userId : userIds) {
+                stmt.setInt(index++, userId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.put(rs.getInt("user_id"), rs.getInt("id"));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Crée en un batch les entrées biometric_data absentes de existing
+     */
+    private void createBiometricData(Set<Integer> userIds, Map<Integer, Integer> existing, Connection conn)
+            throws SQLException {
+        String sql = "INSERT INTO biometric_data (user_id, has_face_data, has_fingerprint_data) " +
+                     "VALUES (?, FALSE, FALSE)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int userId : userIds) {
+                if (!existing.containsKey(userId)) {
+                    stmt.setInt(1, userId);
+                    stmt.addBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
     /**
      * Met à jour les flags de données biométriques
      */
@@ -119,4 +349,18 @@ public class BiometricDataDAO {
             return stmt.executeUpdate() > 0;
         }
     }
+
+    /**
+     * Met à jour les flags d'une entrée biometric_data connue
+     */
+    private boolean updateBiometricDataFlagById(int biometricDataId, boolean hasFace, boolean hasFingerprint,
+                                                Connection conn) throws SQLException {
+        String sql = "UPDATE biometric_data SET has_face_data = ?, has_fingerprint_data = ? WHERE id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setBoolean(1, hasFace);
+            stmt.setBoolean(2, hasFingerprint);
+            stmt.setInt(3, biometricDataId);
+            return stmt.executeUpdate() > 0;
+        }
+    }
 }
@@ -6,6 +6,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -15,11 +16,40 @@ import java.util.List;
  */
 public class GateDeviceDAO {
     private static final Logger logger = LoggerFactory.getLogger(GateDeviceDAO.class);
+    /** Une porte désactivée en base est prise en compte au plus tard après ce délai */
+    private static final Duration CACHE_TTL = Duration.ofMinutes(5);
+    private static final ReferenceCache<Integer, GateDevice> cache = ReferenceCache.create("gate_devices", CACHE_TTL);
 
     /**
-     * Trouve un dispositif par son ID
+     * Trouve un dispositif par son ID (via le cache des données de référence)
      */
     public GateDevice findById(int id) {
+        return cache.get(id, this::queryById);
+    }
+
+    /**
+     * Précharge le cache avec les dispositifs actifs et retourne leur nombre
+     */
+    public int warmCache() {
+        List<GateDevice> devices = findAllActive();
+        for (GateDevice device : devices) {
+            cache.put(device.getId(), device);
+        }
+        return devices.size();
+    }
+
+    /**
+     * Vide le cache des dispositifs
+     */
+    public static void invalidateCache() {
+        cache.invalidateAll();
+    }
+
+    public static ReferenceCache.CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+
+    private GateDevice queryById(int id) {
         String sql = "SELECT * FROM gate_devices WHERE id = ?";
         try (Connection conn = DatabaseConnection.getInstance().getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -7,6 +7,7 @@ import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.sql.*;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -16,11 +17,44 @@ import java.util.List;
  */
 public class MatchEventDAO {
     private static final Logger logger = LoggerFactory.getLogger(MatchEventDAO.class);
+    /**
+     * Un match en cache peut afficher un nombre de tickets disponibles en retard d'au plus ce délai :
+     * une vente ne l'invalide pas (le stock fait foi en base, voir TicketInventory),
+     * les autres écritures sur un match (création, mise à jour, réservations) l'invalident
+     */
+    private static final Duration CACHE_TTL = Duration.ofSeconds(30);
+    private static final ReferenceCache<Integer, MatchEvent> cache = ReferenceCache.create("match_events", CACHE_TTL);
 
     /**
-     * Trouve un match par son ID
+     * Trouve un match par son ID (via le cache des données de référence)
      */
     public MatchEvent findById(int id) {
+        return cache.get(id, this::queryById);
+    }
+
+    /**
+     * Précharge le cache avec tous les matchs et retourne leur nombre
+     */
+    public int warmCache() {
+        List<MatchEvent> matchEvents = findAll();
+        for (MatchEvent matchEvent : matchEvents) {
+            cache.put(matchEvent.getId(), matchEvent);
+        }
+        return matchEvents.size();
+    }
+
+    /**
+     * Vide le cache des matchs
+     */
+    public static void invalidateCache() {
+        cache.invalidateAll();
+    }
+
+    public static ReferenceCache.CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+
+    private MatchEvent queryById(int id) {
         String sql = "SELECT * FROM match_events WHERE id = ?";
         try (Connection conn = DatabaseConnection.getInstance().getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -101,6 +135,7 @@ public class MatchEventDAO {
                 ResultSet generatedKeys = stmt.getGeneratedKeys();
                 if (generatedKeys.next()) {
                     matchEvent.setId(generatedKeys.getInt(1));
+                    cache.invalidate(matchEvent.getId());
                     return true;
                 }
             }
@@ -121,13 +156,128 @@ public class MatchEventDAO {
             stmt.setInt(1, newAvailableTickets);
             stmt.setInt(2, matchEventId);
             
-            return stmt.executeUpdate() > 0;
+            boolean updated = stmt.executeUpdate() > 0;
+            cache.invalidate(matchEventId);
+            return updated;
         } catch (SQLException e) {
             logger.error("Erreur lors de la mise à jour des tickets disponibles", e);
         }
         return false;
     }
 
+    /**
+     * Décrémente atomiquement les tickets disponibles, uniquement s'il en reste au moins quantity
+     * Retourne false si le stock est insuffisant (aucune ligne modifiée)
+     */
+    public boolean decrementAvailableTickets(int matchEventId, int quantity, Connection conn) throws SQLException {
+        String sql = "UPDATE match_events SET available_tickets = available_tickets - ? " +
+                     "WHERE id = ? AND available_tickets >= ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, quantity);
+            stmt.setInt(2, matchEventId);
+            stmt.setInt(3, quantity);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Réserve jusqu'à maxQuantity tickets en une transaction et retourne le nombre obtenu
+     * (0 si le match est complet ou introuvable)
+     */
+    public int reserveAvailableTickets(int matchEventId, int maxQuantity) {
+        String selectSql = "SELECT available_tickets FROM match_events WHERE id = ? FOR UPDATE";
+        try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int available = 0;
+                try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+                    stmt.setInt(1, matchEventId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            available = rs.getInt("available_tickets");
+                        }
+                    }
+                }
+                int granted = Math.min(available, maxQuantity);
+                if (granted > 0 && !decrementAvailableTickets(matchEventId, granted, conn)) {
+                    granted = 0;
+                }
+                conn.commit();
+                if (granted > 0) {
+                    cache.invalidate(matchEventId);
+                }
+                return granted;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Erreur lors de la réservation de tickets", e);
+        }
+        return 0;
+    }
+
+    /**
+     * Restitue des tickets réservés mais non vendus
+     */
+    public boolean releaseAvailableTickets(int matchEventId, int quantity) {
+        String sql = "UPDATE match_events SET available_tickets = available_tickets + ? WHERE id = ?";
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setInt(1, quantity);
+            stmt.setInt(2, matchEventId);
+            
+            boolean released = stmt.executeUpdate() > 0;
+            cache.invalidate(matchEventId);
+            return released;
+        } catch (SQLException e) {
+            logger.error("Erreur lors de la restitution des tickets réservés", e);
+        }
+        return false;
+    }
+
+    /**
+     * Recalcule les tickets disponibles d'un match : capacité moins tickets vendus (tous statuts)
+     * Retourne le nouveau stock, ou -1 en cas d'erreur ou si le match est introuvable
+     */
+    public int reconcileAvailableTickets(int matchEventId) {
+        String updateSql = "UPDATE match_events SET available_tickets = GREATEST(0, total_capacity - " +
+                           "(SELECT COUNT(*) FROM tickets WHERE match_event_id = ?)) WHERE id = ?";
+        String selectSql = "SELECT available_tickets FROM match_events WHERE id = ?";
+        try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int available = -1;
+                try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
+                    stmt.setInt(1, matchEventId);
+                    stmt.setInt(2, matchEventId);
+                    if (stmt.executeUpdate() == 0) {
+                        conn.rollback();
+                        return -1;
+                    }
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+                    stmt.setInt(1, matchEventId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            available = rs.getInt("available_tickets");
+                        }
+                    }
+                }
+                conn.commit();
+                cache.invalidate(matchEventId);
+                return available;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Erreur lors du recalcul des tickets disponibles", e);
+        }
+        return -1;
+    }
+
     /**
      * Mappe un ResultSet vers un objet MatchEvent
      */
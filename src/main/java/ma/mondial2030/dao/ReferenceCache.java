@@ -0,0 +1,162 @@
+package ma.mondial2030.dao;
+
+import ma.mondial2030.metrics.MetricsRegistry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache en lecture seule des données de référence (rôles, portes, matchs)
+ * Une entrée est rechargée depuis la base après expiration de son TTL, ou dès qu'un chemin
+ * d'écriture l'invalide. Les absences (null) ne sont pas mises en cache : null signale aussi
+ * une erreur SQL, qui ne doit pas masquer la ligne jusqu'à l'expiration.
+ * Les objets mis en cache sont partagés entre appelants et ne doivent pas être modifiés.
+ */
+public class ReferenceCache<K, V> {
+    private final String name;
+    private final long ttlNanos;
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    // Statistiques
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder invalidations = new LongAdder();
+
+    private ReferenceCache(String name, Duration ttl) {
+        this.name = name;
+        this.ttlNanos = ttl.toNanos();
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        this.hits = metrics.counter("reference_cache.requests", "cache", name, "result", "hit");
+        this.misses = metrics.counter("reference_cache.requests", "cache", name, "result", "miss");
+    }
+
+    /**
+     * Crée un cache et publie ses jauges ; celles-ci lisent le cache, elles ne sont donc
+     * enregistrées qu'une fois l'objet entièrement construit
+     */
+    public static <K, V> ReferenceCache<K, V> create(String name, Duration ttl) {
+        ReferenceCache<K, V> cache = new ReferenceCache<>(name, ttl);
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("reference_cache.entries", cache.entries::size, "cache", name);
+        metrics.gauge("reference_cache.hit_ratio", () -> cache.getStats().getHitRate(), "cache", name);
+        return cache;
+    }
+
+    /**
+     * Valeur en cache si elle n'a pas expiré, sinon chargée par loader (puis mise en cache si non nulle)
+     * Deux appels concurrents sur une même clé absente peuvent charger tous deux : c'est sans
+     * conséquence pour des données de référence, et aucun verrou n'est tenu pendant la requête.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && System.nanoTime() - entry.loadedAt < ttlNanos) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        V value = loader.apply(key);
+        if (value != null) {
+            entries.put(key, new Entry<>(value, System.nanoTime()));
+        } else if (entry != null) {
+            entries.remove(key, entry);
+        }
+        return value;
+    }
+
+    /**
+     * Insère ou remplace une valeur (préchargement, lecture groupée)
+     */
+    public void put(K key, V value) {
+        if (value != null) {
+            entries.put(key, new Entry<>(value, System.nanoTime()));
+        }
+    }
+
+    /**
+     * Invalide une entrée après une écriture en base
+     */
+    public void invalidate(K key) {
+        if (entries.remove(key) != null) {
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * Vide le cache
+     */
+    public void invalidateAll() {
+        invalidations.add(entries.size());
+        entries.clear();
+    }
+
+    /**
+     * Obtient les statistiques du cache
+     */
+    public CacheStats getStats() {
+        return new CacheStats(name, entries.size(), hits.sum(), misses.sum(), invalidations.sum());
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long loadedAt;
+
+        Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Instantané des statistiques d'un cache
+     */
+    public static class CacheStats {
+        private final String name;
+        private final int entryCount;
+        private final long hitCount;
+        private final long missCount;
+        private final long invalidationCount;
+
+        public CacheStats(String name, int entryCount, long hitCount, long missCount, long invalidationCount) {
+            this.name = name;
+            this.entryCount = entryCount;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.invalidationCount = invalidationCount;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getEntryCount() {
+            return entryCount;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public long getInvalidationCount() {
+            return invalidationCount;
+        }
+
+        public double getHitRate() {
+            long total = hitCount + missCount;
+            return total == 0 ? 0.0 : (double) hitCount / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: entrées=%d, succès=%d, échecs=%d, invalidations=%d, taux de succès=%.1f%%",
+                                 name, entryCount, hitCount, missCount, invalidationCount, getHitRate() * 100);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ma.mondial2030.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Préchargement des caches de données de référence (rôles, portes, matchs) au démarrage
+ * Les premières connexions et les premiers scans évitent ainsi une requête par rôle, porte ou match.
+ */
+public final class ReferenceData {
+    private static final Logger logger = LoggerFactory.getLogger(ReferenceData.class);
+
+    private ReferenceData() {
+    }
+
+    /**
+     * Charge les trois caches ; une base indisponible laisse les caches vides (chargement à la demande)
+     */
+    public static void warm() {
+        long start = System.nanoTime();
+        try {
+            int roles = new RoleDAO().warmCache();
+            int gates = new GateDeviceDAO().warmCache();
+            int matches = new MatchEventDAO().warmCache();
+            logger.info("Données de référence préchargées: {} rôles, {} portes, {} matchs en {} ms",
+                        roles, gates, matches, (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            logger.warn("Préchargement des données de référence impossible: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Charge les caches en arrière-plan (démarrage de l'interface)
+     */
+    public static void warmInBackground() {
+        Thread.ofVirtual().name("reference-data-warm").start(ReferenceData::warm);
+    }
+
+    /**
+     * Vide les trois caches
+     */
+    public static void invalidateAll() {
+        RoleDAO.invalidateCache();
+        GateDeviceDAO.invalidateCache();
+        MatchEventDAO.invalidateCache();
+    }
+}
@@ -6,6 +6,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -15,11 +16,50 @@ import java.util.List;
  */
 public class RoleDAO {
     private static final Logger logger = LoggerFactory.getLogger(RoleDAO.class);
+    /** Les rôles ne changent qu'au déploiement : chaque utilisateur chargé en aurait relu un */
+    private static final Duration CACHE_TTL = Duration.ofHours(1);
+    private static final ReferenceCache<Integer, Role> cacheById = ReferenceCache.create("roles", CACHE_TTL);
+    private static final ReferenceCache<String, Role> cacheByName = ReferenceCache.create("roles_by_name", CACHE_TTL);
 
     /**
-     * Trouve un rôle par son ID
+     * Trouve un rôle par son ID (via le cache des données de référence)
      */
     public Role findById(int id) {
+        return cacheById.get(id, this::queryById);
+    }
+
+    /**
+     * Trouve un rôle par son nom (via le cache des données de référence)
+     */
+    public Role findByName(String name) {
+        return cacheByName.get(name, this::queryByName);
+    }
+
+    /**
+     * Précharge le cache avec tous les rôles et retourne leur nombre
+     */
+    public int warmCache() {
+        List<Role> roles = findAll();
+        for (Role role : roles) {
+            cacheById.put(role.getId(), role);
+            cacheByName.put(role.getName(), role);
+        }
+        return roles.size();
+    }
+
+    /**
+     * Vide le cache des rôles
+     */
+    public static void invalidateCache() {
+        cacheById.invalidateAll();
+        cacheByName.invalidateAll();
+    }
+
+    public static ReferenceCache.CacheStats getCacheStats() {
+        return cacheById.getStats();
+    }
+
+    private Role queryById(int id) {
         String sql = "SELECT * FROM roles WHERE id = ?";
         try (Connection conn = DatabaseConnection.getInstance().getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -36,10 +76,7 @@ public class RoleDAO {
         return null;
     }
 
-    /**
-     * Trouve un rôle par son nom
-     */
-    public Role findByName(String name) {
+    private Role queryByName(String name) {
         String sql = "SELECT * FROM roles WHERE name = ?";
         try (Connection conn = DatabaseConnection.getInstance().getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -1,6 +1,7 @@
 package ma.mondial2030.dao;
 
 import ma.mondial2030.model.MatchEvent;
+import ma.mondial2030.model.Role;
 import ma.mondial2030.model.Ticket;
 import ma.mondial2030.model.User;
 import ma.mondial2030.util.DatabaseConnection;
@@ -10,28 +11,49 @@ import org.slf4j.LoggerFactory;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
 
 /**
  * DAO pour la gestion des tickets
  */
 public class TicketDAO {
     private static final Logger logger = LoggerFactory.getLogger(TicketDAO.class);
-    private final UserDAO userDAO = new UserDAO();
-    private final MatchEventDAO matchEventDAO = new MatchEventDAO();
+
+    /**
+     * Sélection du ticket avec son utilisateur, son rôle et son match en une seule requête
+     * Les colonnes sont préfixées (t_, u_, r_, m_) pour lever les ambiguïtés entre tables
+     */
+    private static final String TICKET_GRAPH_SELECT =
+        "SELECT t.id AS t_id, t.ticket_code AS t_ticket_code, t.seat_number AS t_seat_number, " +
+        "t.qr_code_data AS t_qr_code_data, t.status AS t_status, t.purchase_date AS t_purchase_date, " +
+        "u.id AS u_id, u.username AS u_username, u.email AS u_email, u.password_hash AS u_password_hash, " +
+        "u.first_name AS u_first_name, u.last_name AS u_last_name, u.phone AS u_phone, " +
+        "u.is_active AS u_is_active, u.created_at AS u_created_at, u.updated_at AS u_updated_at, " +
+        "r.id AS r_id, r.name AS r_name, r.description AS r_description, r.created_at AS r_created_at, " +
+        "m.id AS m_id, m.match_name AS m_match_name, m.match_date AS m_match_date, m.venue AS m_venue, " +
+        "m.team_a AS m_team_a, m.team_b AS m_team_b, m.total_capacity AS m_total_capacity, " +
+        "m.available_tickets AS m_available_tickets, m.ticket_price AS m_ticket_price, m.status AS m_status, " +
+        "m.created_at AS m_created_at, m.updated_at AS m_updated_at " +
+        "FROM tickets t " +
+        "LEFT JOIN users u ON u.id = t.user_id " +
+        "LEFT JOIN roles r ON r.id = u.role_id " +
+        "LEFT JOIN match_events m ON m.id = t.match_event_id ";
 
     /**
      * Trouve un ticket par son ID
      */
     public Ticket findById(int id) {
-        String sql = "SELECT * FROM tickets WHERE id = ?";
+        String sql = TICKET_GRAPH_SELECT + "WHERE t.id = ?";
         try (Connection conn = DatabaseConnection.getInstance().getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, id);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return mapResultSetToTicket(rs);
+                    return new TicketGraphMapper().map(rs);
                 }
             }
         } catch (SQLException e) {
@@ -44,14 +66,14 @@ public class TicketDAO {
      * Trouve un ticket par son code
      */
     public Ticket findByCode(String ticketCode) {
-        String sql = "SELECT * FROM tickets WHERE ticket_code = ?";
+        String sql = TICKET_GRAPH_SELECT + "WHERE t.ticket_code = ?";
         try (Connection conn = DatabaseConnection.getInstance().getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, ticketCode);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return mapResultSetToTicket(rs);
+                    return new TicketGraphMapper().map(rs);
                 }
             }
         } catch (SQLException e) {
@@ -62,55 +84,20 @@ public class TicketDAO {
 
     /**
      * Récupère tous les tickets d'un utilisateur
+     * Une seule requête : tickets, utilisateur, rôle et match sont lus par jointure
      */
     public List<Ticket> findByUserId(int userId) {
         List<Ticket> tickets = new ArrayList<>();
-        String sql = "SELECT * FROM tickets WHERE user_id = ? ORDER BY purchase_date DESC";
+        String sql = TICKET_GRAPH_SELECT + "WHERE t.user_id = ? ORDER BY t.purchase_date DESC";
         
         try (Connection conn = DatabaseConnection.getInstance().getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, userId);
             try (ResultSet rs = stmt.executeQuery()) {
-                // Lire toutes les données primitives d'abord
-                List<TicketData> ticketDataList = new ArrayList<>();
+                TicketGraphMapper mapper = new TicketGraphMapper();
                 while (rs.next()) {
-                    int id = rs.getInt("id");
-                    String ticketCode = rs.getString("ticket_code");
-                    String seatNumber = rs.getString("seat_number");
-                    String qrCodeData = rs.getString("qr_code_data");
-                    String statusStr = rs.getString("status");
-                    int ticketUserId = rs.getInt("user_id");
-                    int matchEventId = rs.getInt("match_event_id");
-                    Timestamp purchaseDate = rs.getTimestamp("purchase_date");
-                    
-                    ticketDataList.add(new TicketData(id, ticketCode, seatNumber, qrCodeData, 
-                                                      statusStr, ticketUserId, matchEventId, purchaseDate));
-                }
-                
-                // Maintenant construire les objets Ticket avec les données lues
-                for (TicketData data : ticketDataList) {
-                    User user = userDAO.findById(data.userId);
-                    MatchEvent matchEvent = matchEventDAO.findById(data.matchEventId);
-                    
-                    Ticket ticket = new Ticket();
-                    ticket.setId(data.id);
-                    ticket.setTicketCode(data.ticketCode);
-                    ticket.setSeatNumber(data.seatNumber);
-                    ticket.setQrCodeData(data.qrCodeData);
-                    
-                    if (data.statusStr != null) {
-                        ticket.setStatus(Ticket.Status.valueOf(data.statusStr));
-                    }
-                    
-                    ticket.setUser(user);
-                    ticket.setMatchEvent(matchEvent);
-                    
-                    if (data.purchaseDate != null) {
-                        ticket.setPurchaseDate(data.purchaseDate.toLocalDateTime());
-                    }
-                    
-                    tickets.add(ticket);
+                    tickets.add(mapper.map(rs));
                 }
             }
         } catch (SQLException e) {
@@ -118,41 +105,114 @@ public class TicketDAO {
         }
         return tickets;
     }
-    
-    /**
-     * Classe interne pour stocker temporairement les données du ticket
-     */
-    private static class TicketData {
-        final int id;
-        final String ticketCode;
-        final String seatNumber;
-        final String qrCodeData;
-        final String statusStr;
-        final int userId;
-        final int matchEventId;
-        final Timestamp purchaseDate;
-        
-        TicketData(int id, String ticketCode, String seatNumber, String qrCodeData,
-                   String statusStr, int userId, int matchEventId, Timestamp purchaseDate) {
-            this.id = id;
-            this.ticketCode = ticketCode;
-            this.seatNumber = seatNumber;
-            this.qrCodeData = qrCodeData;
-            this.statusStr = statusStr;
-            this.userId = userId;
-            this.matchEventId = matchEventId;
-            this.purchaseDate = purchaseDate;
+
+    /**
+     * Parcourt les tickets d'un match sous forme compacte (sans hydrater utilisateur ni match)
+     * Retourne le nombre de lignes lues, ou -1 en cas d'erreur
+     */
+    public int forEachCompactByMatch(int matchEventId, CompactTicketHandler handler) {
+        return forEachCompactByMatch(matchEventId, 0, handler);
+    }
+
+    /**
+     * Variante limitée aux tickets d'identifiant supérieur à afterTicketId (rattrapage des ventes récentes)
+     */
+    public int forEachCompactByMatch(int matchEventId, int afterTicketId, CompactTicketHandler handler) {
+        String sql = "SELECT id, ticket_code, user_id, status FROM tickets WHERE match_event_id = ? AND id > ?";
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setInt(1, matchEventId);
+            stmt.setInt(2, afterTicketId);
+            stmt.setFetchSize(1000);
+            int count = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String statusStr = rs.getString("status");
+                    handler.accept(rs.getInt("id"), rs.getString("ticket_code"), rs.getInt("user_id"),
+                                   statusStr != null ? Ticket.Status.valueOf(statusStr) : Ticket.Status.VALID);
+                    count++;
+                }
+            }
+            return count;
+        } catch (SQLException e) {
+            logger.error("Erreur lors du chargement des tickets du match", e);
+        }
+        return -1;
+    }
+
+    /**
+     * Parcourt les utilisateurs dont tous les tickets du match sont annulés (à retirer des galeries)
+     * La table ne date pas les annulations : l'état courant est relu à chaque rattrapage.
+     * Retourne le nombre d'utilisateurs lus, ou -1 en cas d'erreur
+     */
+    public int forEachCancelledHolder(int matchEventId, IntConsumer handler) {
+        String sql = "SELECT DISTINCT user_id FROM tickets WHERE match_event_id = ? AND status = 'CANCELLED' " +
+                     "AND user_id NOT IN (SELECT user_id FROM tickets WHERE match_event_id = ? AND status <> 'CANCELLED')";
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, matchEventId);
+            stmt.setInt(2, matchEventId);
+            int count = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(rs.getInt(1));
+                    count++;
+                }
+            }
+            return count;
+        } catch (SQLException e) {
+            logger.error("Erreur lors de la lecture des tickets annulés du match", e);
         }
+        return -1;
+    }
+
+    /**
+     * Plus grand identifiant de ticket d'un match (0 si aucun), ou -1 en cas d'erreur
+     */
+    public int findMaxIdByMatch(int matchEventId) {
+        String sql = "SELECT MAX(id) FROM tickets WHERE match_event_id = ?";
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, matchEventId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            logger.error("Erreur lors de la lecture du dernier ticket du match", e);
+        }
+        return -1;
+    }
+
+    /**
+     * Reçoit une ligne compacte de ticket
+     */
+    @FunctionalInterface
+    public interface CompactTicketHandler {
+        void accept(int ticketId, String ticketCode, int userId, Ticket.Status status);
     }
 
     /**
      * Crée un nouveau ticket
      */
     public boolean create(Ticket ticket) {
+        try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+            return create(ticket, conn);
+        } catch (SQLException e) {
+            logger.error("Erreur lors de la création du ticket", e);
+        }
+        return false;
+    }
+
+    /**
+     * Crée un nouveau ticket sur une connexion fournie (participe à la transaction de l'appelant)
+     */
+    public boolean create(Ticket ticket, Connection conn) throws SQLException {
         String sql = "INSERT INTO tickets (ticket_code, user_id, match_event_id, seat_number, qr_code_data, status) " +
                      "VALUES (?, ?, ?, ?, ?, ?)";
-        try (Connection conn = DatabaseConnection.getInstance().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             
             stmt.setString(1, ticket.getTicketCode());
             stmt.setInt(2, ticket.getUser().getId());
@@ -163,18 +223,71 @@ public class TicketDAO {
             
             int affectedRows = stmt.executeUpdate();
             if (affectedRows > 0) {
-                ResultSet generatedKeys = stmt.getGeneratedKeys();
-                if (generatedKeys.next()) {
-                    ticket.setId(generatedKeys.getInt(1));
-                    return true;
+                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        ticket.setId(generatedKeys.getInt(1));
+                        return true;
+                    }
                 }
             }
-        } catch (SQLException e) {
-            logger.error("Erreur lors de la création du ticket", e);
         }
         return false;
     }
 
+    /**
+     * Marque un ticket comme utilisé, uniquement s'il est encore valide
+     * Retourne false si le ticket a déjà été utilisé, annulé, ou en cas d'erreur
+     */
+    public boolean markUsedIfValid(int ticketId) {
+        String sql = "UPDATE tickets SET status = 'USED' WHERE id = ? AND status = 'VALID'";
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setInt(1, ticketId);
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException | RuntimeException e) {
+            // Pool épuisé ou base injoignable : DatabaseConnection lève une RuntimeException
+            logger.error("Erreur lors du marquage du ticket comme utilisé", e);
+        }
+        return false;
+    }
+
+    /**
+     * Marque un ticket comme utilisé par son code, uniquement s'il est encore valide
+     * Retourne 1 si le ticket a été marqué, 0 s'il n'était plus valide, -1 en cas d'erreur
+     */
+    public int markUsedIfValidByCode(String ticketCode) {
+        String sql = "UPDATE tickets SET status = 'USED' WHERE ticket_code = ? AND status = 'VALID'";
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, ticketCode);
+            return stmt.executeUpdate() > 0 ? 1 : 0;
+        } catch (SQLException | RuntimeException e) {
+            logger.error("Erreur lors du marquage du ticket comme utilisé", e);
+        }
+        return -1;
+    }
+
+    /**
+     * Même mise à jour conditionnelle, bornée dans le temps : attente d'une connexion d'au plus
+     * timeoutMillis, requête interrompue par le pilote au-delà de timeoutMillis arrondi à la seconde
+     * Retourne 1 si le ticket a été marqué, 0 s'il n'était plus valide, -1 en cas d'erreur ou de délai dépassé
+     */
+    public int markUsedIfValidByCode(String ticketCode, long timeoutMillis) {
+        String sql = "UPDATE tickets SET status = 'USED' WHERE ticket_code = ? AND status = 'VALID'";
+        try (Connection conn = DatabaseConnection.getInstance().getConnection(timeoutMillis);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setQueryTimeout((int) Math.max(1, (timeoutMillis + 999) / 1000));
+            stmt.setString(1, ticketCode);
+            return stmt.executeUpdate() > 0 ? 1 : 0;
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("Base indisponible pour marquer le ticket {} comme utilisé: {}", ticketCode, e.getMessage());
+        }
+        return -1;
+    }
+
     /**
      * Met à jour le statut d'un ticket
      */
@@ -194,41 +307,139 @@ public class TicketDAO {
     }
 
     /**
-     * Mappe un ResultSet vers un objet Ticket
+     * Construit le graphe Ticket/User/Role/MatchEvent à partir d'une ligne de TICKET_GRAPH_SELECT
+     * Les utilisateurs, rôles et matchs identiques sont partagés au sein d'un même résultat
+     * (visible dans le paquet pour les benchmarks de mapping)
      */
-    private Ticket mapResultSetToTicket(ResultSet rs) throws SQLException {
-        // Lire toutes les données du ResultSet AVANT d'appeler les autres DAO
-        int id = rs.getInt("id");
-        String ticketCode = rs.getString("ticket_code");
-        String seatNumber = rs.getString("seat_number");
-        String qrCodeData = rs.getString("qr_code_data");
-        String statusStr = rs.getString("status");
-        int userId = rs.getInt("user_id");
-        int matchEventId = rs.getInt("match_event_id");
-        Timestamp purchaseDate = rs.getTimestamp("purchase_date");
-        
-        // Maintenant on peut appeler les autres DAO
-        User user = userDAO.findById(userId);
-        MatchEvent matchEvent = matchEventDAO.findById(matchEventId);
-        
-        // Construire l'objet Ticket
-        Ticket ticket = new Ticket();
-        ticket.setId(id);
-        ticket.setTicketCode(ticketCode);
-        ticket.setSeatNumber(seatNumber);
-        ticket.setQrCodeData(qrCodeData);
-        
-        if (statusStr != null) {
-            ticket.setStatus(Ticket.Status.valueOf(statusStr));
+    static class TicketGraphMapper {
+        private final Map<Integer, User> users = new HashMap<>();
+        private final Map<Integer, Role> roles = new HashMap<>();
+        private final Map<Integer, MatchEvent> matchEvents = new HashMap<>();
+
+        Ticket map(ResultSet rs) throws SQLException {
+            Ticket ticket = new Ticket();
+            ticket.setId(rs.getInt("t_id"));
+            ticket.setTicketCode(rs.getString("t_ticket_code"));
+            ticket.setSeatNumber(rs.getString("t_seat_number"));
+            ticket.setQrCodeData(rs.getString("t_qr_code_data"));
+            
+            String statusStr = rs.getString("t_status");
+            if (statusStr != null) {
+                ticket.setStatus(Ticket.Status.valueOf(statusStr));
+            }
+            
+            Timestamp purchaseDate = rs.getTimestamp("t_purchase_date");
+            if (purchaseDate != null) {
+                ticket.setPurchaseDate(purchaseDate.toLocalDateTime());
+            }
+            
+            ticket.setUser(mapUser(rs));
+            ticket.setMatchEvent(mapMatchEvent(rs));
+            return ticket;
         }
-        
-        ticket.setUser(user);
-        ticket.setMatchEvent(matchEvent);
-        
-        if (purchaseDate != null) {
-            ticket.setPurchaseDate(purchaseDate.toLocalDateTime());
+
+        private User mapUser(ResultSet rs) throws SQLException {
+            int userId = rs.getInt("u_id");
+            if (rs.wasNull()) {
+                return null;
+            }
+            User user = users.get(userId);
+            if (user != null) {
+                return user;
+            }
+            
+            user = new User();
+            user.setId(userId);
+            user.setUsername(rs.getString("u_username"));
+            user.setEmail(rs.getString("u_email"));
+            user.setPasswordHash(rs.getString("u_password_hash"));
+            user.setFirstName(rs.getString("u_first_name"));
+            user.setLastName(rs.getString("u_last_name"));
+            user.setPhone(rs.getString("u_phone"));
+            user.setActive(rs.getBoolean("u_is_active"));
+            user.setRole(mapRole(rs));
+            
+            Timestamp createdAt = rs.getTimestamp("u_created_at");
+            if (createdAt != null) {
+                user.setCreatedAt(createdAt.toLocalDateTime());
+            }
+            
+            Timestamp updatedAt = rs.getTimestamp("u_updated_at");
+            if (updatedAt != null) {
+                user.setUpdatedAt(updatedAt.toLocalDateTime());
+            }
+            
+            users.put(userId, user);
+            return user;
+        }
+
+        private Role mapRole(ResultSet rs) throws SQLException {
+            int roleId = rs.getInt("r_id");
+            if (rs.wasNull()) {
+                return null;
+            }
+            Role role = roles.get(roleId);
+            if (role != null) {
+                return role;
+            }
+            
+            role = new Role();
+            role.setId(roleId);
+            role.setName(rs.getString("r_name"));
+            role.setDescription(rs.getString("r_description"));
+            
+            Timestamp createdAt = rs.getTimestamp("r_created_at");
+            if (createdAt != null) {
+                role.setCreatedAt(createdAt.toLocalDateTime());
+            }
+            
+            roles.put(roleId, role);
+            return role;
+        }
+
+        private MatchEvent mapMatchEvent(ResultSet rs) throws SQLException {
+            int matchEventId = rs.getInt("m_id");
+            if (rs.wasNull()) {
+                return null;
+            }
+            MatchEvent matchEvent = matchEvents.get(matchEventId);
+            if (matchEvent != null) {
+                return matchEvent;
+            }
+            
+            matchEvent = new MatchEvent();
+            matchEvent.setId(matchEventId);
+            matchEvent.setMatchName(rs.getString("m_match_name"));
+            
+            Timestamp matchDate = rs.getTimestamp("m_match_date");
+            if (matchDate != null) {
+                matchEvent.setMatchDate(matchDate.toLocalDateTime());
+            }
+            
+            matchEvent.setVenue(rs.getString("m_venue"));
+            matchEvent.setTeamA(rs.getString("m_team_a"));
+            matchEvent.setTeamB(rs.getString("m_team_b"));
+            matchEvent.setTotalCapacity(rs.getInt("m_total_capacity"));
+            matchEvent.setAvailableTickets(rs.getInt("m_available_tickets"));
+            matchEvent.setTicketPrice(rs.getBigDecimal("m_ticket_price"));
+            
+            String statusStr = rs.getString("m_status");
+            if (statusStr != null) {
+                matchEvent.setStatus(MatchEvent.Status.valueOf(statusStr));
+            }
+            
+            Timestamp createdAt = rs.getTimestamp("m_created_at");
+            if (createdAt != null) {
+                matchEvent.setCreatedAt(createdAt.toLocalDateTime());
+            }
+            
+            Timestamp updatedAt = rs.getTimestamp("m_updated_at");
+            if (updatedAt != null) {
+                matchEvent.setUpdatedAt(updatedAt.toLocalDateTime());
+            }
+            
+            matchEvents.put(matchEventId, matchEvent);
+            return matchEvent;
         }
-        
-        return ticket;
     }
 }
@@ -0,0 +1,32 @@
+package ma.mondial2030.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Événement JFR : emprunt d'une connexion au pool, de la demande à la restitution
+ */
+@Name("ma.mondial2030.ConnectionCheckout")
+@Label("Emprunt de connexion")
+@Category({"Mondial 2030", "Base de données"})
+@Description("Durée d'emprunt d'une connexion JDBC, attente d'une connexion libre comprise")
+@StackTrace(false)
+@Threshold("1 ms")
+public class ConnectionCheckoutEvent extends Event {
+    @Label("Appelant")
+    @Description("Méthode ayant emprunté la connexion (DAO.méthode)")
+    public String caller;
+
+    @Label("Attente")
+    @Timespan(Timespan.MICROSECONDS)
+    public long waitMicros;
+
+    @Label("Délai dépassé")
+    public boolean timedOut;
+}
@@ -0,0 +1,94 @@
+package ma.mondial2030.metrics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Enregistrement JFR continu de l'application, activé par l'option --jfr[=répertoire]
+ * Réglages "default" du JDK complétés par /jfr/mondial2030.jfc ; les 30 dernières minutes
+ * (250 Mo au plus) sont conservées et écrites dans le répertoire à l'arrêt de la JVM.
+ * Un instantané peut aussi être pris à chaud : jcmd <pid> JFR.dump name=mondial2030
+ */
+public final class FlightRecording {
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecording.class);
+
+    public static final String FLAG = "--jfr";
+    private static final String SETTINGS_RESOURCE = "/jfr/mondial2030.jfc";
+    private static final String DEFAULT_DIRECTORY = "recordings";
+    private static final Duration MAX_AGE = Duration.ofMinutes(30);
+    private static final long MAX_SIZE_BYTES = 250L * 1024 * 1024;
+
+    private static Recording recording;
+
+    private FlightRecording() {
+    }
+
+    /**
+     * Démarre l'enregistrement si --jfr figure dans les arguments
+     */
+    public static void startIfRequested(String[] args) {
+        for (String arg : args) {
+            if (arg.equals(FLAG)) {
+                start(Path.of(DEFAULT_DIRECTORY));
+                return;
+            }
+            if (arg.startsWith(FLAG + "=")) {
+                start(Path.of(arg.substring(FLAG.length() + 1)));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Démarre l'enregistrement continu ; le fichier est écrit dans directory à l'arrêt
+     */
+    public static synchronized void start(Path directory) {
+        if (recording != null) {
+            return;
+        }
+        try {
+            Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+            settings.putAll(loadApplicationSettings());
+
+            Files.createDirectories(directory);
+            String fileName = "mondial2030-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".jfr";
+
+            Recording started = new Recording(settings);
+            started.setName("mondial2030");
+            started.setToDisk(true);
+            started.setMaxAge(MAX_AGE);
+            started.setMaxSize(MAX_SIZE_BYTES);
+            started.setDumpOnExit(true);
+            started.setDestination(directory.resolve(fileName));
+            started.start();
+            recording = started;
+            logger.info("Enregistrement JFR continu démarré ({})", directory.resolve(fileName).toAbsolutePath());
+        } catch (IOException | ParseException | RuntimeException e) {
+            logger.warn("Impossible de démarrer l'enregistrement JFR: {}", e.getMessage());
+        }
+    }
+
+    private static Map<String, String> loadApplicationSettings() throws IOException, ParseException {
+        try (InputStream in = FlightRecording.class.getResourceAsStream(SETTINGS_RESOURCE)) {
+            if (in == null) {
+                throw new IOException("Réglages JFR introuvables: " + SETTINGS_RESOURCE);
+            }
+            return Configuration.create(new InputStreamReader(in, StandardCharsets.UTF_8)).getSettings();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ma.mondial2030.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Événement JFR : connexion d'un utilisateur (AuthenticationService.login)
+ */
+@Name("ma.mondial2030.Login")
+@Label("Connexion")
+@Category({"Mondial 2030", "Authentification"})
+@Description("Connexion d'un utilisateur ; la durée est dominée par la vérification BCrypt")
+@StackTrace(false)
+@Threshold("0 ms")
+public class LoginEvent extends Event {
+    @Label("Nom d'utilisateur")
+    public String username;
+
+    @Label("Résultat")
+    public String outcome;
+
+    @Label("Motif de l'échec")
+    public String reason;
+}
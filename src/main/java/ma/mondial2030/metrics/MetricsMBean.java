@@ -0,0 +1,135 @@
+package ma.mondial2030.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Vue JMX du registre de métriques
+ * Un attribut par compteur et par jauge ; pour un histogramme, un attribut par statistique
+ * (nom.count, nom.p50Micros, nom.p99Micros, nom.p999Micros, nom.maxMicros, nom.meanMicros).
+ * La liste des attributs suit les métriques enregistrées depuis le démarrage.
+ */
+class MetricsMBean implements DynamicMBean {
+    private static final String[] HISTOGRAM_STATS = {"count", "p50Micros", "p99Micros", "p999Micros",
+                                                     "maxMicros", "meanMicros"};
+
+    private final MetricsRegistry registry;
+
+    MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        if ("Text".equals(attribute)) {
+            return registry.toText();
+        }
+        for (MetricsRegistry.Metric metric : registry.getMetrics()) {
+            String key = metric.key();
+            switch (metric.getKind()) {
+                case COUNTER:
+                    if (key.equals(attribute)) {
+                        return metric.getCounter().sum();
+                    }
+                    break;
+                case GAUGE:
+                    if (key.equals(attribute)) {
+                        return metric.readGauge();
+                    }
+                    break;
+                default:
+                    if (attribute.startsWith(key)) {
+                        for (String stat : HISTOGRAM_STATS) {
+                            if (attribute.length() == key.length() + 1 + stat.length()
+                                && attribute.endsWith(stat) && attribute.charAt(key.length()) == '.') {
+                                return histogramStat(metric.getHistogram(), stat);
+                            }
+                        }
+                    }
+                    break;
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // Métrique inconnue : ignorée, comme le prévoit l'API JMX
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Les métriques sont en lecture seule: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        attributes.add(new MBeanAttributeInfo("Text", String.class.getName(),
+                                              "Instantané au format texte Prometheus", true, false, false));
+        for (MetricsRegistry.Metric metric : registry.getMetrics()) {
+            String key = metric.key();
+            switch (metric.getKind()) {
+                case COUNTER:
+                    attributes.add(new MBeanAttributeInfo(key, "long", "Compteur", true, false, false));
+                    break;
+                case GAUGE:
+                    attributes.add(new MBeanAttributeInfo(key, "double", "Jauge", true, false, false));
+                    break;
+                default:
+                    for (String stat : HISTOGRAM_STATS) {
+                        String type = "meanMicros".equals(stat) ? "double" : "long";
+                        attributes.add(new MBeanAttributeInfo(key + "." + stat, type, "Histogramme de latence",
+                                                              true, false, false));
+                    }
+                    break;
+            }
+        }
+        return new MBeanInfo(MetricsRegistry.class.getName(), "Métriques Mondial 2030",
+                             attributes.toArray(new MBeanAttributeInfo[0]), null,
+                             new MBeanOperationInfo[0], null);
+    }
+
+    private static Object histogramStat(LatencyHistogram histogram, String stat) {
+        switch (stat) {
+            case "count":
+                return histogram.getCount();
+            case "p50Micros":
+                return histogram.percentileMicros(50);
+            case "p99Micros":
+                return histogram.percentileMicros(99);
+            case "p999Micros":
+                return histogram.percentileMicros(99.9);
+            case "maxMicros":
+                return histogram.getMaxMicros();
+            default:
+                return histogram.getMeanMicros();
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package ma.mondial2030.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registre des métriques de l'application : compteurs, jauges et histogrammes de latence
+ * Une métrique est identifiée par son nom et ses étiquettes (paires clé/valeur), par exemple
+ * histogram("access.qr", "result", "denied"). Les instantanés sont exposés en JMX
+ * (ma.mondial2030:type=Metrics) et au format texte Prometheus (toText(), route /metrics
+ * du serveur des portes).
+ * Les instruments sont créés une fois puis réutilisés : les appelants fréquents les gardent
+ * dans un champ plutôt que de les rechercher à chaque mesure.
+ */
+public class MetricsRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    private static final String JMX_NAME = "ma.mondial2030:type=Metrics";
+    private static final String TEXT_PREFIX = "mondial2030_";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static MetricsRegistry instance;
+
+    private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+    private ObjectName registeredName;
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * Obtient l'instance singleton du registre, enregistrée en JMX au premier appel
+     */
+    public static synchronized MetricsRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricsRegistry();
+            instance.registerMBean();
+        }
+        return instance;
+    }
+
+    /**
+     * Retire le registre de JMX (fermeture de l'application)
+     */
+    public static synchronized void shutdown() {
+        if (instance != null && instance.registeredName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(instance.registeredName);
+            } catch (JMException e) {
+                logger.debug("Impossible de retirer le registre de métriques de JMX", e);
+            }
+            instance.registeredName = null;
+        }
+    }
+
+    /**
+     * Compteur monotone
+     */
+    public LongAdder counter(String name, String... labels) {
+        return register(name, labels, Kind.COUNTER, null).counter;
+    }
+
+    /**
+     * Histogramme de latences (le nombre de mesures sert aussi de compteur)
+     */
+    public LatencyHistogram histogram(String name, String... labels) {
+        return register(name, labels, Kind.HISTOGRAM, null).histogram;
+    }
+
+    /**
+     * Jauge lue à chaque instantané ; un second enregistrement sous le même nom remplace le premier
+     */
+    public void gauge(String name, DoubleSupplier supplier, String... labels) {
+        String formatted = formatLabels(labels);
+        metrics.put(mapKey(name, formatted), new Metric(name, formatted, Kind.GAUGE, supplier));
+    }
+
+    /**
+     * Métriques enregistrées, triées par nom puis étiquettes
+     */
+    public List<Metric> getMetrics() {
+        return new ArrayList<>(metrics.values());
+    }
+
+    /**
+     * Instantané au format texte Prometheus (0.0.4) ; latences en secondes
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder(4096);
+        String lastType = null;
+        for (Metric metric : metrics.values()) {
+            String name = TEXT_PREFIX + metric.name.replace('.', '_');
+            switch (metric.kind) {
+                case COUNTER:
+                    name += "_total";
+                    if (!name.equals(lastType)) {
+                        text.append("# TYPE ").append(name).append(" counter\n");
+                    }
+                    appendSample(text, name, metric.labels, null, metric.counter.sum());
+                    break;
+                case GAUGE:
+                    if (!name.equals(lastType)) {
+                        text.append("# TYPE ").append(name).append(" gauge\n");
+                    }
+                    appendSample(text, name, metric.labels, null, metric.readGauge());
+                    break;
+                default:
+                    name += "_seconds";
+                    if (!name.equals(lastType)) {
+                        text.append("# TYPE ").append(name).append(" summary\n");
+                    }
+                    LatencyHistogram histogram = metric.histogram;
+                    for (double quantile : QUANTILES) {
+                        appendSample(text, name, metric.labels, "quantile=\"" + quantile + "\"",
+                                     histogram.percentileMicros(quantile * 100) / 1e6);
+                    }
+                    long count = histogram.getCount();
+                    appendSample(text, name + "_sum", metric.labels, null, histogram.getMeanMicros() * count / 1e6);
+                    appendSample(text, name + "_count", metric.labels, null, count);
+                    appendSample(text, name + "_max", metric.labels, null, histogram.getMaxMicros() / 1e6);
+                    break;
+            }
+            lastType = name;
+        }
+        return text.toString();
+    }
+
+    private Metric register(String name, String[] labels, Kind kind, DoubleSupplier gauge) {
+        String formatted = formatLabels(labels);
+        Metric metric = metrics.computeIfAbsent(mapKey(name, formatted),
+                                                key -> new Metric(name, formatted, kind, gauge));
+        if (metric.kind != kind) {
+            throw new IllegalArgumentException("Métrique " + metric.key() + " déjà enregistrée comme " + metric.kind);
+        }
+        return metric;
+    }
+
+    /**
+     * Clé de tri : toutes les variantes d'un même nom restent contiguës (une seule ligne TYPE)
+     */
+    private static String mapKey(String name, String formattedLabels) {
+        return name + '\u0000' + formattedLabels;
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(JMX_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsMBean(this), name);
+                registeredName = name;
+            }
+        } catch (JMException | RuntimeException e) {
+            logger.warn("Registre de métriques non exposé en JMX: {}", e.getMessage());
+        }
+    }
+
+    private static void appendSample(StringBuilder text, String name, String labels, String extraLabel, double value) {
+        text.append(name);
+        if (!labels.isEmpty() || extraLabel != null) {
+            text.append('{');
+            if (!labels.isEmpty()) {
+                text.append(labels, 1, labels.length() - 1);
+                if (extraLabel != null) {
+                    text.append(',');
+                }
+            }
+            if (extraLabel != null) {
+                text.append(extraLabel);
+            }
+            text.append('}');
+        }
+        text.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            text.append((long) value);
+        } else {
+            text.append(value);
+        }
+        text.append('\n');
+    }
+
+    /**
+     * Étiquettes au format {cle="valeur",...}, ou chaîne vide
+     */
+    private static String formatLabels(String[] labels) {
+        if (labels.length == 0) {
+            return "";
+        }
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Les étiquettes vont par paires clé/valeur");
+        }
+        StringBuilder formatted = new StringBuilder().append('{');
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                formatted.append(',');
+            }
+            formatted.append(labels[i]).append("=\"");
+            String value = labels[i + 1] == null ? "" : labels[i + 1];
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+                if (ch == '"' || ch == '\\') {
+                    formatted.append('\\').append(ch);
+                } else if (ch == '\n') {
+                    formatted.append("\\n");
+                } else {
+                    formatted.append(ch);
+                }
+            }
+            formatted.append('"');
+        }
+        return formatted.append('}').toString();
+    }
+
+    /**
+     * Type d'une métrique
+     */
+    public enum Kind {
+        COUNTER, GAUGE, HISTOGRAM
+    }
+
+    /**
+     * Métrique enregistrée : un seul des instruments est renseigné selon le type
+     */
+    public static class Metric {
+        private final String name;
+        private final String labels;
+        private final Kind kind;
+        private final LongAdder counter;
+        private final LatencyHistogram histogram;
+        private final DoubleSupplier gauge;
+
+        Metric(String name, String labels, Kind kind, DoubleSupplier gauge) {
+            this.name = name;
+            this.labels = labels;
+            this.kind = kind;
+            this.counter = kind == Kind.COUNTER ? new LongAdder() : null;
+            this.histogram = kind == Kind.HISTOGRAM ? new LatencyHistogram() : null;
+            this.gauge = gauge;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getLabels() {
+            return labels;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String key() {
+            return name + labels;
+        }
+
+        public LongAdder getCounter() {
+            return counter;
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        /**
+         * Valeur courante d'une jauge ; NaN si elle ne peut pas être lue
+         */
+        public double readGauge() {
+            try {
+                return gauge.getAsDouble();
+            } catch (RuntimeException e) {
+                return Double.NaN;
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ma.mondial2030.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Événement JFR : achat d'un ticket (TicketService.purchaseTicket)
+ */
+@Name("ma.mondial2030.Purchase")
+@Label("Achat de ticket")
+@Category({"Mondial 2030", "Billetterie"})
+@StackTrace(false)
+@Threshold("0 ms")
+public class PurchaseEvent extends Event {
+    @Label("Utilisateur")
+    public int userId;
+
+    @Label("Match")
+    public int matchEventId;
+
+    @Label("Code du ticket")
+    public String ticketCode;
+
+    @Label("Résultat")
+    public String outcome;
+}
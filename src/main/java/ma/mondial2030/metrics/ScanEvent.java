@@ -0,0 +1,39 @@
+package ma.mondial2030.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Événement JFR : traitement complet d'un scan de QR Code (AccessControlService.processQRCodeAccess)
+ */
+@Name("ma.mondial2030.Scan")
+@Label("Scan de QR Code")
+@Category({"Mondial 2030", "Contrôle d'accès"})
+@Description("Traitement complet d'un scan à une porte, avec sa décision")
+@StackTrace(false)
+@Threshold("0 ms")
+public class ScanEvent extends Event {
+    @Label("Porte")
+    public int gateId;
+
+    @Label("Match")
+    @Description("Match annoncé par le QR Code, 0 s'il est inconnu (code seul)")
+    public int matchEventId;
+
+    @Label("Format")
+    public String format;
+
+    @Label("Code du ticket")
+    public String ticketCode;
+
+    @Label("Accordé")
+    public boolean granted;
+
+    @Label("Motif du refus")
+    public String reason;
+}
@@ -0,0 +1,62 @@
+package ma.mondial2030.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Événement JFR : étape d'un scan (lecture de l'image, analyse, recherche, validation, journalisation)
+ * Usage : ScanStepEvent step = ScanStepEvent.start(ScanStepEvent.LOOKUP, gateId); ... step.finish();
+ */
+@Name("ma.mondial2030.ScanStep")
+@Label("Étape de scan")
+@Category({"Mondial 2030", "Contrôle d'accès"})
+@Description("Sous-étape du traitement d'un scan ; la source précise index, base ou signature")
+@StackTrace(false)
+@Threshold("1 ms")
+public class ScanStepEvent extends Event {
+    public static final String DECODE = "decode";
+    public static final String PARSE = "parse";
+    public static final String LOOKUP = "lookup";
+    public static final String VALIDATE = "validate";
+    public static final String LOG = "log";
+
+    @Label("Étape")
+    public String step;
+
+    @Label("Source")
+    public String source;
+
+    @Label("Porte")
+    public int gateId;
+
+    /**
+     * Démarre la mesure d'une étape
+     */
+    public static ScanStepEvent start(String step, int gateId) {
+        return start(step, null, gateId);
+    }
+
+    public static ScanStepEvent start(String step, String source, int gateId) {
+        ScanStepEvent event = new ScanStepEvent();
+        event.step = step;
+        event.source = source;
+        event.gateId = gateId;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Termine la mesure et enregistre l'événement s'il dépasse le seuil configuré
+     */
+    public void finish() {
+        end();
+        if (shouldCommit()) {
+            commit();
+        }
+    }
+}
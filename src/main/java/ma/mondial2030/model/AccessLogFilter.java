@@ -0,0 +1,56 @@
+package ma.mondial2030.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Critères de recherche dans le journal des accès ; un critère null n'est pas appliqué
+ * La période est demi-ouverte : from inclus, to exclu.
+ */
+public class AccessLogFilter {
+    private Integer gateDeviceId;
+    private AccessLog.AccessResult accessResult;
+    private AccessLog.AccessType accessType;
+    private LocalDateTime from;
+    private LocalDateTime to;
+
+    // Getters et Setters
+    public Integer getGateDeviceId() {
+        return gateDeviceId;
+    }
+
+    public void setGateDeviceId(Integer gateDeviceId) {
+        this.gateDeviceId = gateDeviceId;
+    }
+
+    public AccessLog.AccessResult getAccessResult() {
+        return accessResult;
+    }
+
+    public void setAccessResult(AccessLog.AccessResult accessResult) {
+        this.accessResult = accessResult;
+    }
+
+    public AccessLog.AccessType getAccessType() {
+        return accessType;
+    }
+
+    public void setAccessType(AccessLog.AccessType accessType) {
+        this.accessType = accessType;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+}
@@ -0,0 +1,52 @@
+package ma.mondial2030.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ligne allégée du journal des accès, telle qu'affichée dans l'administration
+ * (pas de graphe User/Ticket hydraté)
+ */
+public class AccessLogSummary {
+    private final int id;
+    private final String username;
+    private final AccessLog.AccessType accessType;
+    private final AccessLog.AccessResult accessResult;
+    private final LocalDateTime accessTimestamp;
+    private final String gateName;
+
+    public AccessLogSummary(int id, String username, AccessLog.AccessType accessType,
+                            AccessLog.AccessResult accessResult, LocalDateTime accessTimestamp,
+                            String gateName) {
+        this.id = id;
+        this.username = username;
+        this.accessType = accessType;
+        this.accessResult = accessResult;
+        this.accessTimestamp = accessTimestamp;
+        this.gateName = gateName;
+    }
+
+    // Getters
+    public int getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public AccessLog.AccessType getAccessType() {
+        return accessType;
+    }
+
+    public AccessLog.AccessResult getAccessResult() {
+        return accessResult;
+    }
+
+    public LocalDateTime getAccessTimestamp() {
+        return accessTimestamp;
+    }
+
+    public String getGateName() {
+        return gateName;
+    }
+}
@@ -0,0 +1,77 @@
+package ma.mondial2030.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Signature HMAC-SHA256 des données QR Code des tickets
+ * Une porte peut ainsi vérifier un ticket sans interroger la base.
+ * La clé est lue dans la propriété système mondial2030.qr.secret
+ * ou la variable d'environnement MONDIAL2030_QR_SECRET.
+ */
+public class TicketSigner {
+    private static final Logger logger = LoggerFactory.getLogger(TicketSigner.class);
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_BYTES = 16;
+    private static final String DEV_SECRET = "mondial2030-dev-secret-a-changer";
+
+    private static final byte[] SECRET = loadSecret();
+    private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(TicketSigner::newMac);
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * Calcule la signature (Base64 URL, 16 octets tronqués) d'un contenu
+     */
+    public static String sign(String content) {
+        byte[] mac = MAC.get().doFinal(content.getBytes(StandardCharsets.UTF_8));
+        return ENCODER.encodeToString(Arrays.copyOf(mac, SIGNATURE_BYTES));
+    }
+
+    /**
+     * Vérifie une signature en temps constant
+     */
+    public static boolean verify(String content, String signature) {
+        if (content == null || signature == null) {
+            return false;
+        }
+        byte[] provided;
+        try {
+            provided = DECODER.decode(signature);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        byte[] mac = MAC.get().doFinal(content.getBytes(StandardCharsets.UTF_8));
+        return MessageDigest.isEqual(Arrays.copyOf(mac, SIGNATURE_BYTES), provided);
+    }
+
+    private static Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(SECRET, ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 indisponible", e);
+        }
+    }
+
+    private static byte[] loadSecret() {
+        String secret = System.getProperty("mondial2030.qr.secret");
+        if (secret == null || secret.isEmpty()) {
+            secret = System.getenv("MONDIAL2030_QR_SECRET");
+        }
+        if (secret == null || secret.isEmpty()) {
+            logger.warn("Aucune clé de signature QR configurée, utilisation de la clé de développement");
+            secret = DEV_SECRET;
+        }
+        return secret.getBytes(StandardCharsets.UTF_8);
+    }
+}
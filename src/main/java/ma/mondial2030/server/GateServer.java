@@ -0,0 +1,557 @@
+package ma.mondial2030.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ma.mondial2030.dao.GateDeviceDAO;
+import ma.mondial2030.dao.ReferenceData;
+import ma.mondial2030.metrics.LatencyHistogram;
+import ma.mondial2030.metrics.MetricsRegistry;
+import ma.mondial2030.model.GateDevice;
+import ma.mondial2030.service.AccessControlService;
+import ma.mondial2030.service.AccessLogWriter;
+import ma.mondial2030.service.BiometricService;
+import ma.mondial2030.service.TicketInventory;
+import ma.mondial2030.service.TicketUsageJournal;
+import ma.mondial2030.service.UnknownCodeLog;
+import ma.mondial2030.util.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serveur de validation des portes, sans interface graphique
+ * Expose AccessControlService en HTTP/JSON (HttpServer du JDK, un thread virtuel par requête),
+ * pour les tourniquets physiques et les générateurs de charge.
+ *
+ * POST /gates/{id}/scan       corps : données du QR Code (texte brut, ou JSON {"qr": "..."})
+ * GET  /gates                 latences et compteurs de toutes les portes
+ * GET  /gates/{id}            latences et compteurs d'une porte
+ * POST /matches/{id}/open     ouverture des portes d'un match (chargement de l'index des tickets)
+ * POST /matches/{id}/close    fermeture des portes d'un match
+ * GET  /health                état du serveur
+ * GET  /metrics               registre de métriques au format texte Prometheus
+ */
+public class GateServer {
+    private static final Logger logger = LoggerFactory.getLogger(GateServer.class);
+
+    public static final String FLAG = "--gate-server";
+    private static final int DEFAULT_PORT = 8090;
+    private static final String DEFAULT_BIND = "127.0.0.1";
+    private static final int MAX_BODY_BYTES = 8 * 1024;
+    /** Intervalle de prise en compte des enrôlements tardifs (deltas de la galerie projetée) */
+    private static final long FACE_GALLERY_REFRESH_SECONDS = 60;
+    /** Durée pendant laquelle une porte inconnue ou inactive n'est pas recherchée à nouveau en base */
+    private static final long UNKNOWN_GATE_TTL_MS = 30_000;
+    /** Durée pendant laquelle une porte acceptée sans vérification (base indisponible) n'est pas revérifiée */
+    private static final long UNVERIFIED_GATE_TTL_MS = 5_000;
+    private static final int MAX_UNVERIFIED_GATES = 1024;
+
+    private final AccessControlService accessControlService = new AccessControlService();
+    private final GateDeviceDAO gateDeviceDAO = new GateDeviceDAO();
+    private final Map<Integer, GateRoute> routes = new ConcurrentSkipListMap<>();
+    /** Portes inconnues ou inactives : id -> instant d'expiration (ms) de l'entrée */
+    private final Map<Integer, Long> unknownGates = new ConcurrentHashMap<>();
+    /**
+     * Portes acceptées pendant une indisponibilité de la base : ni métriques par porte, ni identifiant
+     * de porte dans les logs d'accès tant qu'elles ne sont pas vérifiées (voir resolveGate)
+     */
+    private final Map<Integer, GateRoute> unverifiedGates = new ConcurrentHashMap<>();
+    private final GateRoute allGates = new GateRoute(0, "*", false);
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public GateServer(String bindAddress, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/gates", this::handleGates);
+        server.createContext("/matches", this::handleMatches);
+        server.createContext("/health", exchange -> {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Méthode non autorisée");
+                return;
+            }
+            sendJson(exchange, 200, "{\"status\":\"UP\",\"gates\":" + routes.size() + "}");
+        });
+        server.createContext("/metrics", exchange -> {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Méthode non autorisée");
+                return;
+            }
+            send(exchange, 200, "text/plain; version=0.0.4; charset=utf-8",
+                 MetricsRegistry.getInstance().toText());
+        });
+    }
+
+    /**
+     * Démarre le serveur et charge la liste des portes actives
+     */
+    public void start() {
+        try {
+            for (GateDevice gate : gateDeviceDAO.findAllActive()) {
+                routes.put(gate.getId(), new GateRoute(gate.getId(), gate.getDeviceName(), true));
+            }
+        } catch (RuntimeException e) {
+            // Les QR Codes signés restent validables hors ligne : le serveur démarre quand même
+            logger.warn("Base indisponible, les portes seront chargées à la demande: {}", e.getMessage());
+        }
+        server.start();
+        logger.info("Serveur des portes démarré sur {} ({} portes actives)", server.getAddress(), routes.size());
+    }
+
+    /**
+     * Arrête le serveur en laissant une seconde aux requêtes en cours
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        logger.info("Serveur des portes arrêté ({} scans traités)", allGates.histogram.getCount());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Point d'entrée du mode sans interface : --gate-server [--port=8090] [--bind=127.0.0.1] [--open-match=ID,...]
+     * [--face-index] (charge aussi la galerie faciale des matchs ouverts, depuis l'instantané local)
+     * [--face-gallery=DIR] (projette la galerie faciale des matchs ouverts depuis ses fichiers, complétés
+     * par un delta toutes les FACE_GALLERY_REFRESH_SECONDS secondes)
+     */
+    public static void runHeadless(String[] args) {
+        int port = DEFAULT_PORT;
+        String bind = DEFAULT_BIND;
+        List<Integer> openMatches = new ArrayList<>();
+        boolean faceIndex = false;
+        Path faceGallery = null;
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--bind=")) {
+                bind = arg.substring("--bind=".length());
+            } else if (arg.startsWith("--open-match=")) {
+                for (String id : arg.substring("--open-match=".length()).split(",")) {
+                    openMatches.add(Integer.parseInt(id.trim()));
+                }
+            } else if (arg.equals("--face-index")) {
+                faceIndex = true;
+            } else if (arg.startsWith("--face-gallery=")) {
+                faceGallery = Path.of(arg.substring("--face-gallery=".length()));
+            }
+        }
+
+        GateServer gateServer;
+        try {
+            gateServer = new GateServer(bind, port);
+        } catch (IOException e) {
+            logger.error("Impossible de démarrer le serveur des portes sur {}:{}", bind, port, e);
+            return;
+        }
+        ReferenceData.warm();
+        AccessControlService accessControlService = new AccessControlService();
+        BiometricService biometricService = new BiometricService();
+        for (int matchEventId : openMatches) {
+            accessControlService.openGates(matchEventId);
+            if (faceGallery != null) {
+                biometricService.mapFaceGallery(matchEventId, faceGallery);
+            } else if (faceIndex) {
+                biometricService.loadFaceGallery(matchEventId);
+            }
+        }
+        gateServer.start();
+
+        ScheduledExecutorService galleryRefresher = null;
+        if (faceGallery != null && !openMatches.isEmpty()) {
+            Path directory = faceGallery;
+            galleryRefresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "face-gallery-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            galleryRefresher.scheduleWithFixedDelay(() -> {
+                for (int matchEventId : openMatches) {
+                    biometricService.mapFaceGallery(matchEventId, directory);
+                }
+            }, FACE_GALLERY_REFRESH_SECONDS, FACE_GALLERY_REFRESH_SECONDS, TimeUnit.SECONDS);
+        }
+        ScheduledExecutorService refresher = galleryRefresher;
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            gateServer.stop();
+            if (refresher != null) {
+                refresher.shutdownNow();
+            }
+            UnknownCodeLog.shutdown();
+            AccessLogWriter.shutdown();
+            TicketUsageJournal.shutdown();
+            BiometricService.shutdown();
+            TicketInventory.shutdown();
+            DatabaseConnection.shutdown();
+            MetricsRegistry.shutdown();
+        }, "gate-server-shutdown"));
+    }
+
+    private void handleGates(HttpExchange exchange) throws IOException {
+        try {
+            String[] path = pathSegments(exchange, "/gates");
+            String method = exchange.getRequestMethod();
+            if (path.length == 0 && "GET".equals(method)) {
+                StringBuilder json = new StringBuilder("{\"all\":");
+                allGates.appendJson(json);
+                json.append(",\"gates\":[");
+                boolean first = true;
+                for (GateRoute route : routes.values()) {
+                    if (!first) {
+                        json.append(',');
+                    }
+                    route.appendJson(json);
+                    first = false;
+                }
+                sendJson(exchange, 200, json.append("]}").toString());
+                return;
+            }
+
+            Integer gateId = path.length > 0 ? parseId(path[0]) : null;
+            if (gateId == null) {
+                sendError(exchange, 404, "Ressource inconnue");
+                return;
+            }
+            GateRoute route = resolveGate(gateId);
+            if (route == null) {
+                sendError(exchange, 404, "Porte inconnue ou inactive: " + gateId);
+                return;
+            }
+
+            if (path.length == 1 && "GET".equals(method)) {
+                StringBuilder json = new StringBuilder();
+                route.appendJson(json);
+                sendJson(exchange, 200, json.toString());
+            } else if (path.length == 2 && "scan".equals(path[1]) && "POST".equals(method)) {
+                handleScan(exchange, route);
+            } else {
+                sendError(exchange, path.length == 2 && "scan".equals(path[1]) ? 405 : 404, "Requête non prise en charge");
+            }
+        } catch (RuntimeException e) {
+            logger.error("Erreur lors du traitement d'une requête de porte", e);
+            sendError(exchange, 500, "Erreur interne");
+        }
+    }
+
+    private void handleScan(HttpExchange exchange, GateRoute route) throws IOException {
+        String body = readBody(exchange);
+        if (body == null) {
+            sendError(exchange, 413, "Corps de requête trop volumineux");
+            return;
+        }
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        String qrCodeData;
+        try {
+            qrCodeData = contentType != null && contentType.contains("json") ? readStringField(body, "qr") : body;
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, "Corps JSON invalide: " + e.getMessage());
+            return;
+        }
+
+        long start = System.nanoTime();
+        // Porte non vérifiée : le log d'accès ne référence aucune porte (clé étrangère possiblement invalide)
+        AccessControlService.AccessResult result =
+            accessControlService.processQRCodeAccess(qrCodeData, route.verified ? route.gateId : 0);
+        long elapsed = System.nanoTime() - start;
+        route.record(result.isGranted(), elapsed);
+        allGates.record(result.isGranted(), elapsed);
+
+        sendJson(exchange, 200, "{\"gateId\":" + route.gateId
+                 + ",\"granted\":" + result.isGranted()
+                 + ",\"message\":" + quote(result.getMessage())
+                 + ",\"latencyMicros\":" + elapsed / 1_000 + "}");
+    }
+
+    private void handleMatches(HttpExchange exchange) throws IOException {
+        try {
+            String[] path = pathSegments(exchange, "/matches");
+            Integer matchEventId = path.length == 2 ? parseId(path[0]) : null;
+            if (matchEventId == null || !"POST".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 404, "Requête non prise en charge");
+                return;
+            }
+            if ("open".equals(path[1])) {
+                boolean opened = accessControlService.openGates(matchEventId);
+                sendJson(exchange, opened ? 200 : 503, "{\"matchEventId\":" + matchEventId + ",\"open\":" + opened + "}");
+            } else if ("close".equals(path[1])) {
+                accessControlService.closeGates(matchEventId);
+                sendJson(exchange, 200, "{\"matchEventId\":" + matchEventId + ",\"open\":false}");
+            } else {
+                sendError(exchange, 404, "Requête non prise en charge");
+            }
+        } catch (RuntimeException e) {
+            logger.error("Erreur lors du traitement d'une requête de match", e);
+            sendError(exchange, 500, "Erreur interne");
+        }
+    }
+
+    /**
+     * Porte connue et active ; une porte ajoutée après le démarrage est chargée à la demande
+     * Une porte inconnue n'est recherchée à nouveau qu'après UNKNOWN_GATE_TTL_MS (activation ultérieure)
+     * Base indisponible : la porte est acceptée sans vérification pour ne pas bloquer les entrées,
+     * puis revérifiée toutes les UNVERIFIED_GATE_TTL_MS ; au plus MAX_UNVERIFIED_GATES à la fois.
+     */
+    private GateRoute resolveGate(int gateId) {
+        GateRoute route = routes.get(gateId);
+        if (route != null) {
+            return route;
+        }
+        long now = System.currentTimeMillis();
+        Long unknownUntil = unknownGates.get(gateId);
+        if (unknownUntil != null) {
+            if (now < unknownUntil) {
+                return null;
+            }
+            unknownGates.remove(gateId, unknownUntil);
+        }
+        GateRoute unverified = unverifiedGates.get(gateId);
+        if (unverified != null && now < unverified.recheckAt) {
+            return unverified;
+        }
+        GateDevice gate;
+        try {
+            gate = gateDeviceDAO.findById(gateId);
+        } catch (RuntimeException e) {
+            return acceptUnverified(gateId, unverified, now);
+        }
+        unverifiedGates.remove(gateId);
+        if (gate == null || !gate.isActive()) {
+            unknownGates.put(gateId, now + UNKNOWN_GATE_TTL_MS);
+            return null;
+        }
+        return routes.computeIfAbsent(gateId, id -> new GateRoute(id, gate.getDeviceName(), true));
+    }
+
+    private GateRoute acceptUnverified(int gateId, GateRoute unverified, long now) {
+        if (unverified == null) {
+            if (unverifiedGates.size() >= MAX_UNVERIFIED_GATES) {
+                unverifiedGates.values().removeIf(candidate -> now >= candidate.recheckAt);
+                if (unverifiedGates.size() >= MAX_UNVERIFIED_GATES) {
+                    logger.warn("Porte {} refusée: trop de portes non vérifiées (base indisponible)", gateId);
+                    return null;
+                }
+            }
+            unverified = unverifiedGates.computeIfAbsent(gateId, id -> new GateRoute(id, null, false));
+            logger.warn("Porte {} acceptée sans vérification (base indisponible)", gateId);
+        }
+        unverified.recheckAt = now + UNVERIFIED_GATE_TTL_MS;
+        return unverified;
+    }
+
+    private static String[] pathSegments(HttpExchange exchange, String context) {
+        String path = exchange.getRequestURI().getPath().substring(context.length());
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    private static Integer parseId(String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lit le corps de la requête ; null s'il dépasse la taille maximale
+     */
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (out.size() + read > MAX_BODY_BYTES) {
+                    return null;
+                }
+                out.write(buffer, 0, read);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Extrait la valeur d'un champ chaîne d'un objet JSON simple ; null s'il est absent
+     * Lève IllegalArgumentException sur un échappement \\u mal formé
+     */
+    static String readStringField(String json, String field) {
+        String key = "\"" + field + "\"";
+        int pos = json.indexOf(key);
+        if (pos < 0) {
+            return null;
+        }
+        pos = json.indexOf(':', pos + key.length());
+        if (pos < 0) {
+            return null;
+        }
+        pos++;
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+            pos++;
+        }
+        if (pos >= json.length() || json.charAt(pos) != '"') {
+            return null;
+        }
+        StringBuilder value = new StringBuilder();
+        for (int i = pos + 1; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c == '\\' && i + 1 < json.length()) {
+                char escaped = json.charAt(++i);
+                switch (escaped) {
+                    case 'n': value.append('\n'); break;
+                    case 't': value.append('\t'); break;
+                    case 'r': value.append('\r'); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'u':
+                        value.append(readUnicodeEscape(json, i + 1));
+                        i += 4;
+                        break;
+                    default: value.append(escaped);
+                }
+            } else {
+                value.append(c);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Les 4 chiffres hexadécimaux d'un échappement \\u (Integer.parseInt accepterait un signe)
+     */
+    private static char readUnicodeEscape(String json, int start) {
+        if (start + 4 > json.length()) {
+            throw new IllegalArgumentException("échappement \\u incomplet");
+        }
+        int code = 0;
+        for (int i = start; i < start + 4; i++) {
+            int digit = Character.digit(json.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("échappement \\u invalide");
+            }
+            code = (code << 4) | digit;
+        }
+        return (char) code;
+    }
+
+    static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, "{\"error\":" + quote(message) + "}");
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, "application/json; charset=utf-8", json);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Compteurs et latences d'une porte, publiés dans le registre de métriques (gate.scan, gate.access)
+     * Le cumul de toutes les portes (identifiant 0) n'y figure pas : access.qr le couvre déjà ;
+     * une porte non vérifiée non plus (identifiant arbitraire envoyé pendant une panne).
+     */
+    private static final class GateRoute {
+        final int gateId;
+        final String name;
+        final boolean verified;
+        final LatencyHistogram histogram;
+        final LongAdder granted;
+        final LongAdder denied;
+        /** Porte non vérifiée : instant (ms) de la prochaine vérification en base */
+        volatile long recheckAt;
+
+        GateRoute(int gateId, String name, boolean verified) {
+            this.gateId = gateId;
+            this.name = name;
+            this.verified = verified;
+            if (verified && gateId > 0) {
+                MetricsRegistry metrics = MetricsRegistry.getInstance();
+                String gate = String.valueOf(gateId);
+                histogram = metrics.histogram("gate.scan", "gate", gate);
+                granted = metrics.counter("gate.access", "gate", gate, "result", "granted");
+                denied = metrics.counter("gate.access", "gate", gate, "result", "denied");
+            } else {
+                histogram = new LatencyHistogram();
+                granted = new LongAdder();
+                denied = new LongAdder();
+            }
+        }
+
+        void record(boolean accessGranted, long elapsedNanos) {
+            (accessGranted ? granted : denied).increment();
+            histogram.recordNanos(elapsedNanos);
+        }
+
+        void appendJson(StringBuilder json) {
+            json.append("{\"gateId\":").append(gateId)
+                .append(",\"name\":").append(quote(name))
+                .append(",\"scans\":").append(histogram.getCount())
+                .append(",\"granted\":").append(granted.sum())
+                .append(",\"denied\":").append(denied.sum())
+                .append(",\"latencyMicros\":{\"mean\":").append(Math.round(histogram.getMeanMicros()))
+                .append(",\"p50\":").append(histogram.percentileMicros(50))
+                .append(",\"p95\":").append(histogram.percentileMicros(95))
+                .append(",\"p99\":").append(histogram.percentileMicros(99))
+                .append(",\"max\":").append(histogram.getMaxMicros())
+                .append("}}");
+        }
+    }
+}
@@ -3,14 +3,26 @@ package ma.mondial2030.service;
 import ma.mondial2030.dao.AccessLogDAO;
 import ma.mondial2030.dao.GateDeviceDAO;
 import ma.mondial2030.dao.TicketDAO;
+import ma.mondial2030.metrics.LatencyHistogram;
+import ma.mondial2030.metrics.MetricsRegistry;
+import ma.mondial2030.metrics.ScanEvent;
+import ma.mondial2030.metrics.ScanStepEvent;
 import ma.mondial2030.model.AccessLog;
+import ma.mondial2030.model.AccessLogFilter;
+import ma.mondial2030.model.AccessLogSummary;
 import ma.mondial2030.model.GateDevice;
 import ma.mondial2030.model.Ticket;
+import ma.mondial2030.model.User;
 import ma.mondial2030.util.QRCodeReader;
+import ma.mondial2030.util.TicketQRParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service pour le contrôle d'accès
@@ -20,52 +32,103 @@ public class AccessControlService {
     private final TicketDAO ticketDAO = new TicketDAO();
     private final AccessLogDAO accessLogDAO = new AccessLogDAO();
     private final GateDeviceDAO gateDeviceDAO = new GateDeviceDAO();
+    private final AccessLogWriter accessLogWriter = AccessLogWriter.getInstance();
     private final TicketService ticketService = new TicketService();
+    private final OccupancyTracker occupancyTracker = OccupancyTracker.getInstance();
+    private final IssuedCodeFilter issuedCodeFilter = IssuedCodeFilter.getInstance();
+    private final UnknownCodeLog unknownCodeLog = UnknownCodeLog.getInstance();
+    private final TicketUsageJournal ticketUsageJournal = TicketUsageJournal.getInstance();
+    private static final ThreadLocal<TicketQRParser.Result> PARSE_RESULT =
+            ThreadLocal.withInitial(TicketQRParser.Result::new);
+    private static final LatencyHistogram SCAN_GRANTED =
+            MetricsRegistry.getInstance().histogram("access.qr", "result", "granted");
+    /** Refus par motif : les messages d'AccessResult sont des constantes, en nombre borné */
+    private static final Map<String, LatencyHistogram> SCAN_DENIED = new ConcurrentHashMap<>();
 
     /**
      * Traite une tentative d'accès via QR Code
-     * Accepte soit le format complet du QR Code (TICKET:CODE:USER:ID:MATCH:ID)
+     * Accepte le format signé (vérifié localement), le format complet du QR Code
+     * (TICKET:CODE:USER:ID:MATCH:ID)
      * soit simplement le code du ticket
      */
     public AccessResult processQRCodeAccess(String qrCodeData, int gateDeviceId) {
-        if (qrCodeData == null || qrCodeData.trim().isEmpty()) {
-            logAccess(null, null, gateDeviceId, AccessLog.AccessType.TICKET, 
-                     AccessLog.AccessResult.DENIED, "QR Code vide", null);
-            return new AccessResult(false, "QR Code vide");
+        long start = System.nanoTime();
+        ScanEvent event = new ScanEvent();
+        event.begin();
+        AccessResult result = processQRCode(qrCodeData, gateDeviceId);
+        event.end();
+        if (event.shouldCommit()) {
+            // Le résultat de l'analyse est encore celui du scan courant (même thread)
+            TicketQRParser.Result parsed = PARSE_RESULT.get();
+            event.gateId = gateDeviceId;
+            event.format = parsed.getKind().name();
+            event.matchEventId = parsed.hasTicketFields() ? parsed.getMatchEventId() : 0;
+            event.ticketCode = parsed.ticketCode();
+            event.granted = result.isGranted();
+            event.reason = result.isGranted() ? null : result.getMessage();
+            event.commit();
         }
+        LatencyHistogram latency = result.isGranted() ? SCAN_GRANTED
+            : SCAN_DENIED.computeIfAbsent(result.getMessage(), reason -> MetricsRegistry.getInstance()
+                .histogram("access.qr", "result", "denied", "reason", reason));
+        latency.recordNanos(System.nanoTime() - start);
+        return result;
+    }
 
-        String ticketCode = null;
-        Integer expectedMatchEventId = null;
-        
-        // Essayer de parser les données QR Code au format complet
-        QRCodeReader.TicketQRData qrData = QRCodeReader.parseTicketQRData(qrCodeData);
-        if (qrData != null) {
-            // Format complet détecté
-            ticketCode = qrData.getTicketCode();
-            expectedMatchEventId = qrData.getMatchEventId();
-        } else {
-            // Si le parsing échoue, supposer que c'est juste le code du ticket
-            // Vérifier si ça commence par "TKT-" (format de code de ticket)
-            String trimmed = qrCodeData.trim();
-            if (trimmed.startsWith("TKT-")) {
-                ticketCode = trimmed;
-            } else {
-                // Essayer quand même de trouver un ticket avec ce code
-                ticketCode = trimmed;
-            }
+    private AccessResult processQRCode(String qrCodeData, int gateDeviceId) {
+        TicketQRParser.Result parsed = PARSE_RESULT.get();
+        ScanStepEvent step = ScanStepEvent.start(ScanStepEvent.PARSE, gateDeviceId);
+        TicketQRParser.parse(qrCodeData, parsed);
+        step.finish();
+
+        switch (parsed.getKind()) {
+            case EMPTY:
+                logAccess(null, null, gateDeviceId, 0, AccessLog.AccessType.TICKET, 
+                         AccessLog.AccessResult.DENIED, "QR Code vide", null);
+                return new AccessResult(false, "QR Code vide");
+            case SIGNED:
+                // Format signé : vérifié localement, admis hors ligne si la base ne répond pas
+                return processSignedQRCode(parsed, gateDeviceId);
+            default:
+                break;
+        }
+
+        // Format complet : code et match attendu ; sinon l'entrée nettoyée est prise comme code du ticket
+        String ticketCode = parsed.ticketCode();
+        Integer expectedMatchEventId = parsed.hasTicketFields() ? parsed.getMatchEventId() : null;
+
+        // Code jamais émis pour les matchs aux portes ouvertes : refus sans index ni base, log agrégé
+        ScanStepEvent filter = ScanStepEvent.start(ScanStepEvent.LOOKUP, "filter", gateDeviceId);
+        boolean unknown = issuedCodeFilter.isDefinitelyUnknown(ticketCode);
+        filter.finish();
+        // Le match annoncé par un QR Code non signé n'est confirmé que par un ticket réel : 0 sinon
+        if (unknown) {
+            unknownCodeLog.record(gateDeviceId, ticketCode);
+            occupancyTracker.record(0, gateDeviceId, false);
+            return new AccessResult(false, "Ticket non trouvé");
+        }
+
+        // Chemin rapide : index en mémoire du match, sans lecture en base
+        AccessResult indexed = processFromIndex(ticketCode, expectedMatchEventId, gateDeviceId);
+        if (indexed != null) {
+            return indexed;
         }
 
         // Trouver le ticket
+        ScanStepEvent lookup = ScanStepEvent.start(ScanStepEvent.LOOKUP, "base", gateDeviceId);
         Ticket ticket = ticketDAO.findByCode(ticketCode);
+        lookup.finish();
         if (ticket == null) {
-            logAccess(null, null, gateDeviceId, AccessLog.AccessType.TICKET, 
-                     AccessLog.AccessResult.DENIED, "Ticket non trouvé: " + ticketCode, null);
+            logAccess(null, null, gateDeviceId, 0,
+                     AccessLog.AccessType.TICKET, AccessLog.AccessResult.DENIED, "Ticket non trouvé: " + ticketCode, null);
             return new AccessResult(false, "Ticket non trouvé");
         }
 
+        int matchEventId = ticket.getMatchEvent() != null ? ticket.getMatchEvent().getId() : 0;
+
         // Vérifier si le ticket est valide
         if (!ticket.isValid()) {
-            logAccess(ticket.getUser(), ticket, gateDeviceId, AccessLog.AccessType.TICKET, 
+            logAccess(ticket.getUser(), ticket, gateDeviceId, matchEventId, AccessLog.AccessType.TICKET, 
                      AccessLog.AccessResult.DENIED, "Ticket invalide ou déjà utilisé", null);
             return new AccessResult(false, "Ticket invalide ou déjà utilisé");
         }
@@ -73,32 +136,202 @@ public class AccessControlService {
         // Si on a un matchEventId attendu (format complet), vérifier la correspondance
         if (expectedMatchEventId != null && ticket.getMatchEvent() != null) {
             if (ticket.getMatchEvent().getId() != expectedMatchEventId) {
-                logAccess(ticket.getUser(), ticket, gateDeviceId, AccessLog.AccessType.TICKET, 
+                logAccess(ticket.getUser(), ticket, gateDeviceId, matchEventId, AccessLog.AccessType.TICKET, 
                          AccessLog.AccessResult.DENIED, "Ticket ne correspond pas au match", null);
                 return new AccessResult(false, "Ticket ne correspond pas au match");
             }
         }
 
+        // Marquer le ticket comme utilisé (mise à jour conditionnelle : un double scan est refusé)
+        ScanStepEvent validate = ScanStepEvent.start(ScanStepEvent.VALIDATE, "base", gateDeviceId);
+        boolean marked = ticketService.markTicketUsed(ticket.getId(), ticket.getTicketCode(), matchEventId);
+        validate.finish();
+        if (!marked) {
+            logAccess(ticket.getUser(), ticket, gateDeviceId, matchEventId, AccessLog.AccessType.TICKET, 
+                     AccessLog.AccessResult.DENIED, "Ticket invalide ou déjà utilisé", null);
+            return new AccessResult(false, "Ticket invalide ou déjà utilisé");
+        }
+
         // Autoriser l'accès
-        ticketService.validateTicket(ticket.getTicketCode());
-        logAccess(ticket.getUser(), ticket, gateDeviceId, AccessLog.AccessType.TICKET, 
+        logAccess(ticket.getUser(), ticket, gateDeviceId, matchEventId, AccessLog.AccessType.TICKET, 
+                 AccessLog.AccessResult.GRANTED, null, null);
+        
+        return new AccessResult(true, "Accès autorisé");
+    }
+
+    /**
+     * Traite un QR Code signé : signature, fenêtre de validité et anti-rejeu sont vérifiés localement,
+     * puis le passage à USED est tenté en base (mise à jour conditionnelle à délai court, qui refuse un
+     * ticket déjà admis par un autre poste ou annulé). Si la base ne répond pas, le ticket est admis
+     * hors ligne et le passage est journalisé (voir TicketUsageJournal) ; les annulations ne sont alors
+     * connues que si l'index du match est chargé.
+     */
+    private AccessResult processSignedQRCode(TicketQRParser.Result qrData, int gateDeviceId) {
+        long now = Instant.now().getEpochSecond();
+        String ticketCode = qrData.ticketCode();
+        ScanStepEvent step = ScanStepEvent.start(ScanStepEvent.VALIDATE, "signature", gateDeviceId);
+        QRCodeReader.Verification verification = QRCodeReader.verifyTicketQRData(qrData, now);
+        step.finish();
+        if (verification == QRCodeReader.Verification.BAD_SIGNATURE) {
+            // Le match annoncé par un QR Code falsifié n'est pas fiable
+            logAccess(null, null, gateDeviceId, 0, AccessLog.AccessType.TICKET, 
+                     AccessLog.AccessResult.DENIED, "Signature QR Code invalide: " + ticketCode, null);
+            return new AccessResult(false, "QR Code falsifié ou corrompu");
+        }
+
+        User user = new User();
+        user.setId(qrData.getUserId());
+        int matchEventId = qrData.getMatchEventId();
+
+        // L'index (s'il est chargé) fournit l'id du ticket et détecte les annulations
+        Ticket ticket = null;
+        ScanStepEvent lookup = ScanStepEvent.start(ScanStepEvent.LOOKUP, "index", gateDeviceId);
+        TicketValidationIndex index = TicketValidationIndex.forMatch(matchEventId);
+        TicketValidationIndex.Entry entry = index != null ? index.lookup(ticketCode) : null;
+        lookup.finish();
+        if (entry != null) {
+            ticket = new Ticket();
+            ticket.setId(entry.getTicketId());
+            ticket.setTicketCode(ticketCode);
+        }
+
+        if (verification != QRCodeReader.Verification.VALID) {
+            logAccess(user, ticket, gateDeviceId, matchEventId, AccessLog.AccessType.TICKET, 
+                     AccessLog.AccessResult.DENIED, "Ticket hors de sa période de validité", null);
+            return new AccessResult(false, "Ticket hors de sa période de validité");
+        }
+
+        if ((entry != null && entry.getStatus() != Ticket.Status.VALID)
+                || !ticketUsageJournal.claim(ticketCode, qrData.getValidUntil())) {
+            logAccess(user, ticket, gateDeviceId, matchEventId, AccessLog.AccessType.TICKET, 
+                     AccessLog.AccessResult.DENIED, "Ticket invalide ou déjà utilisé", null);
+            return new AccessResult(false, "Ticket invalide ou déjà utilisé");
+        }
+
+        ScanStepEvent validate = ScanStepEvent.start(ScanStepEvent.VALIDATE, "base", gateDeviceId);
+        int marked = ticketUsageJournal.markUsed(ticketCode, matchEventId, qrData.getValidUntil());
+        validate.finish();
+        if (marked == 0) {
+            logAccess(user, ticket, gateDeviceId, matchEventId, AccessLog.AccessType.TICKET, 
+                     AccessLog.AccessResult.DENIED, "Ticket invalide ou déjà utilisé", null);
+            return new AccessResult(false, "Ticket invalide ou déjà utilisé");
+        }
+        if (marked < 0 && index != null) {
+            // Admis hors ligne : l'index suit localement le passage en attente de la base
+            index.tryMarkUsed(ticketCode);
+        }
+
+        logAccess(user, ticket, gateDeviceId, matchEventId, AccessLog.AccessType.TICKET, 
                  AccessLog.AccessResult.GRANTED, null, null);
+        return new AccessResult(true, "Accès autorisé");
+    }
+
+    /**
+     * Valide un scan à partir de l'index en mémoire du match
+     * Retourne null si l'index ne connaît pas le ticket : la base doit alors trancher
+     * Les index ne sont chargés qu'à l'ouverture des portes : un match annoncé par le QR Code
+     * n'en déclenche jamais le chargement (il peut être falsifié). L'index du match annoncé est
+     * consulté en premier, puis les autres : un ticket d'un autre match ouvert est refusé sans base.
+     */
+    private AccessResult processFromIndex(String ticketCode, Integer expectedMatchEventId, int gateDeviceId) {
+        TicketValidationIndex index = null;
+        TicketValidationIndex.Entry entry = null;
+        
+        ScanStepEvent lookup = ScanStepEvent.start(ScanStepEvent.LOOKUP, "index", gateDeviceId);
+        if (expectedMatchEventId != null) {
+            index = TicketValidationIndex.forMatch(expectedMatchEventId);
+            entry = index != null ? index.lookup(ticketCode) : null;
+        }
+        if (entry == null) {
+            for (TicketValidationIndex candidate : TicketValidationIndex.loaded()) {
+                entry = candidate.lookup(ticketCode);
+                if (entry != null) {
+                    index = candidate;
+                    break;
+                }
+            }
+        }
+        lookup.finish();
         
+        if (entry == null) {
+            return null;
+        }
+
+        // Références légères : seuls les identifiants sont utilisés par le log
+        User user = new User();
+        user.setId(entry.getUserId());
+        Ticket ticket = new Ticket();
+        ticket.setId(entry.getTicketId());
+        ticket.setTicketCode(ticketCode);
+
+        // Même ordre que le chemin en base : validité, puis correspondance avec le match annoncé
+        if (entry.getStatus() == Ticket.Status.VALID && expectedMatchEventId != null
+                && index.getMatchEventId() != expectedMatchEventId) {
+            logAccess(user, ticket, gateDeviceId, index.getMatchEventId(), AccessLog.AccessType.TICKET,
+                     AccessLog.AccessResult.DENIED, "Ticket ne correspond pas au match", null);
+            return new AccessResult(false, "Ticket ne correspond pas au match");
+        }
+
+        ScanStepEvent validate = ScanStepEvent.start(ScanStepEvent.VALIDATE, "index", gateDeviceId);
+        boolean admitted = entry.getStatus() == Ticket.Status.VALID && index.tryMarkUsed(ticketCode);
+        if (admitted && !ticketService.markTicketUsed(entry.getTicketId(), ticketCode, index.getMatchEventId())) {
+            // La base n'a pas confirmé : l'index ne doit pas garder un USED qui n'existe qu'en mémoire
+            index.undoMarkUsed(ticketCode);
+            admitted = false;
+        }
+        validate.finish();
+        if (!admitted) {
+            logAccess(user, ticket, gateDeviceId, index.getMatchEventId(), AccessLog.AccessType.TICKET, 
+                     AccessLog.AccessResult.DENIED, "Ticket invalide ou déjà utilisé", null);
+            return new AccessResult(false, "Ticket invalide ou déjà utilisé");
+        }
+
+        logAccess(user, ticket, gateDeviceId, index.getMatchEventId(), AccessLog.AccessType.TICKET, 
+                 AccessLog.AccessResult.GRANTED, null, null);
         return new AccessResult(true, "Accès autorisé");
     }
 
     /**
-     * Enregistre un log d'accès
+     * Ouverture des portes d'un match : recalcule son stock (voir TicketInventory.reconcile), puis
+     * charge l'index des tickets et le filtre des codes émis
+     * Une fois des portes ouvertes, un code seul absent de tous les filtres est refusé
+     * sans lecture en base, y compris s'il appartient à un match dont les portes sont fermées.
+     */
+    public boolean openGates(int matchEventId) {
+        // Match introuvable : rien n'est chargé ni recalculé
+        if (TicketValidationIndex.warm(matchEventId) == null) {
+            return false;
+        }
+        TicketInventory.getInstance().reconcile(matchEventId);
+        return issuedCodeFilter.build(matchEventId);
+    }
+
+    /**
+     * Fermeture des portes d'un match : libère l'index des tickets et le filtre des codes émis
+     */
+    public void closeGates(int matchEventId) {
+        issuedCodeFilter.evict(matchEventId);
+        TicketValidationIndex.evict(matchEventId);
+    }
+
+    /**
+     * Enregistre un log d'accès et met à jour les agrégats d'occupation
+     * (matchEventId vaut 0 si le match n'est pas connu de façon fiable)
+     * L'écriture est asynchrone et groupée par lots (voir AccessLogWriter)
      */
-    private void logAccess(ma.mondial2030.model.User user, Ticket ticket, int gateDeviceId, 
+    private void logAccess(User user, Ticket ticket, int gateDeviceId, int matchEventId,
                           AccessLog.AccessType accessType, AccessLog.AccessResult result, 
                           String denialReason, String ipAddress) {
+        occupancyTracker.record(matchEventId, gateDeviceId, result == AccessLog.AccessResult.GRANTED);
+
         AccessLog log = new AccessLog();
         log.setUser(user);
         log.setTicket(ticket);
         
         if (gateDeviceId > 0) {
-            GateDevice device = gateDeviceDAO.findById(gateDeviceId);
+            // Seul l'identifiant est inséré : inutile de charger le dispositif
+            GateDevice device = new GateDevice();
+            device.setId(gateDeviceId);
             log.setGateDevice(device);
         }
         
@@ -106,8 +339,11 @@ public class AccessControlService {
         log.setAccessResult(result);
         log.setDenialReason(denialReason);
         log.setIpAddress(ipAddress);
+        log.setAccessTimestamp(LocalDateTime.now());
         
-        accessLogDAO.create(log);
+        ScanStepEvent step = ScanStepEvent.start(ScanStepEvent.LOG, gateDeviceId);
+        accessLogWriter.submit(log);
+        step.finish();
     }
 
     /**
@@ -117,6 +353,28 @@ public class AccessControlService {
         return accessLogDAO.findAll();
     }
 
+    /**
+     * Page du journal des accès (voir AccessLogDAO.findSummariesPage)
+     */
+    public List<AccessLogSummary> getAccessLogPage(AccessLogFilter filter, AccessLogSummary cursor,
+                                                   boolean older, int limit) {
+        return accessLogDAO.findSummariesPage(filter, cursor, older, limit);
+    }
+
+    /**
+     * Porte par son identifiant (cache des données de référence)
+     */
+    public GateDevice getGate(int gateDeviceId) {
+        return gateDeviceDAO.findById(gateDeviceId);
+    }
+
+    /**
+     * Portes actives, pour le filtre du journal des accès
+     */
+    public List<GateDevice> getActiveGates() {
+        return gateDeviceDAO.findAllActive();
+    }
+
     /**
      * Classe pour représenter le résultat d'une tentative d'accès
      */
@@ -0,0 +1,497 @@
+package ma.mondial2030.service;
+
+import ma.mondial2030.dao.AccessLogDAO;
+import ma.mondial2030.metrics.MetricsRegistry;
+import ma.mondial2030.model.AccessLog;
+import ma.mondial2030.model.GateDevice;
+import ma.mondial2030.model.Ticket;
+import ma.mondial2030.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Écriture asynchrone des logs d'accès
+ * Les logs sont placés dans une file bornée puis insérés par lots (taille ou délai).
+ * Si la file est pleine ou si MySQL ne répond pas, les logs sont écrits dans un
+ * fichier local de débordement, rejoué dès que la base est de nouveau disponible.
+ * Les logs refusés par la base (contrainte violée) sont mis à l'écart dans un fichier de rejets,
+ * au même format, pour ne pas bloquer le rejeu.
+ */
+public class AccessLogWriter {
+    private static final Logger logger = LoggerFactory.getLogger(AccessLogWriter.class);
+
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int BATCH_SIZE = 200;
+    private static final long FLUSH_INTERVAL_MS = 250;
+    private static final long OFFER_TIMEOUT_MS = 20;
+    private static final long RETRY_DELAY_MS = 5_000;
+    private static final Path SPILL_FILE =
+        Paths.get(System.getProperty("user.home"), ".mondial2030", "access-log-spill.log");
+    private static final Path REJECTED_FILE =
+        Paths.get(System.getProperty("user.home"), ".mondial2030", "access-log-rejected.log");
+    private static final String NULL_FIELD = "~";
+
+    private static AccessLogWriter instance;
+
+    private final AccessLogDAO accessLogDAO = new AccessLogDAO();
+    private final BlockingQueue<AccessLog> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Object spillLock = new Object();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long nextSpillReplay;
+
+    // Métriques
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong spilledCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong backpressureCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+
+    private AccessLogWriter() {
+        worker = new Thread(this::runLoop, "access-log-writer");
+        worker.setDaemon(true);
+        worker.start();
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("access_log.queue_depth", queue::size);
+        metrics.gauge("access_log.written", writtenCount::get);
+        metrics.gauge("access_log.spilled", spilledCount::get);
+        metrics.gauge("access_log.rejected", rejectedCount::get);
+        metrics.gauge("access_log.backpressure", backpressureCount::get);
+    }
+
+    /**
+     * Obtient l'instance singleton de l'écrivain de logs
+     */
+    public static synchronized AccessLogWriter getInstance() {
+        if (instance == null) {
+            instance = new AccessLogWriter();
+        }
+        return instance;
+    }
+
+    /**
+     * Arrête l'écrivain s'il a été démarré, en vidant la file
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.stop();
+            instance = null;
+        }
+    }
+
+    /**
+     * Soumet un log d'accès. Ne bloque jamais plus de OFFER_TIMEOUT_MS :
+     * au-delà, le log est écrit dans le fichier de débordement.
+     */
+    public void submit(AccessLog accessLog) {
+        if (accessLog.getAccessTimestamp() == null) {
+            accessLog.setAccessTimestamp(LocalDateTime.now());
+        }
+
+        boolean queued = queue.offer(accessLog);
+        if (!queued) {
+            backpressureCount.incrementAndGet();
+            try {
+                queued = queue.offer(accessLog, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (queued) {
+            enqueuedCount.incrementAndGet();
+            maxQueueDepth.accumulateAndGet(queue.size(), Math::max);
+        } else {
+            spill(List.of(accessLog));
+        }
+    }
+
+    /**
+     * Retourne un instantané des métriques de l'écrivain
+     */
+    public WriterStats getStats() {
+        return new WriterStats(queue.size(), maxQueueDepth.get(), enqueuedCount.get(), writtenCount.get(),
+                               spilledCount.get(), backpressureCount.get(), batchCount.get(),
+                               totalFlushNanos.get(), maxFlushNanos.get());
+    }
+
+    private void stop() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Ce qui reste n'a pas pu être écrit à temps : on le conserve sur disque
+        List<AccessLog> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            spill(remaining);
+        }
+        logger.info("Écrivain de logs d'accès arrêté ({})", getStats());
+    }
+
+    private void runLoop() {
+        List<AccessLog> batch = new ArrayList<>(BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                AccessLog first = queue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS);
+                    while (batch.size() < BATCH_SIZE) {
+                        long remaining = deadline - System.nanoTime();
+                        AccessLog next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                        queue.drainTo(batch, BATCH_SIZE - batch.size());
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Arrêt demandé : on vide ce qui est déjà dans la file
+                queue.drainTo(batch, BATCH_SIZE - batch.size());
+            }
+
+            boolean pending = !batch.isEmpty();
+            try {
+                if (pending) {
+                    boolean written = flush(batch);
+                    if (!written) {
+                        spill(batch);
+                    }
+                    pending = false;
+                    if (written) {
+                        replaySpillIfDue();
+                    }
+                } else {
+                    replaySpillIfDue();
+                }
+            } catch (RuntimeException e) {
+                // Le thread d'écriture ne doit jamais mourir : sans lui, la file n'est plus consommée
+                logger.error("Erreur inattendue de l'écrivain de logs d'accès", e);
+                if (pending) {
+                    spill(batch);
+                }
+                nextSpillReplay = System.currentTimeMillis() + RETRY_DELAY_MS;
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Écrit un lot ; false si la base est indisponible (le lot est alors à conserver).
+     * Les lignes refusées par la base vont dans le fichier de rejets.
+     */
+    private boolean flush(List<AccessLog> batch) {
+        long start = System.nanoTime();
+        List<AccessLog> rejected = new ArrayList<>();
+        int inserted;
+        try {
+            inserted = accessLogDAO.createBatch(batch, rejected);
+        } catch (RuntimeException e) {
+            // Pool épuisé ou base injoignable : DatabaseConnection lève une RuntimeException
+            logger.error("Base indisponible pour un lot de {} logs d'accès", batch.size(), e);
+            inserted = -1;
+        }
+        long elapsed = System.nanoTime() - start;
+        totalFlushNanos.addAndGet(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        batchCount.incrementAndGet();
+        if (inserted < 0) {
+            nextSpillReplay = System.currentTimeMillis() + RETRY_DELAY_MS;
+            return false;
+        }
+        writtenCount.addAndGet(inserted);
+        if (!rejected.isEmpty()) {
+            reject(rejected);
+        }
+        return true;
+    }
+
+    /**
+     * Met à l'écart des logs refusés par la base : ils ne seront pas rejoués
+     */
+    private void reject(List<AccessLog> logs) {
+        synchronized (spillLock) {
+            try {
+                Files.createDirectories(REJECTED_FILE.getParent());
+                try (BufferedWriter writer = Files.newBufferedWriter(REJECTED_FILE, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (AccessLog log : logs) {
+                        writer.write(encode(log));
+                        writer.newLine();
+                    }
+                }
+                rejectedCount.addAndGet(logs.size());
+                logger.warn("{} log(s) d'accès refusé(s) par la base, écrit(s) dans {}", logs.size(), REJECTED_FILE);
+            } catch (IOException e) {
+                logger.error("Impossible d'écrire dans le fichier de rejets, {} log(s) perdu(s)", logs.size(), e);
+            }
+        }
+    }
+
+    /**
+     * Ajoute des logs au fichier de débordement local
+     */
+    private void spill(List<AccessLog> logs) {
+        synchronized (spillLock) {
+            try {
+                Files.createDirectories(SPILL_FILE.getParent());
+                try (BufferedWriter writer = Files.newBufferedWriter(SPILL_FILE, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (AccessLog log : logs) {
+                        writer.write(encode(log));
+                        writer.newLine();
+                    }
+                }
+                spilledCount.addAndGet(logs.size());
+                logger.warn("{} log(s) d'accès écrit(s) dans le fichier de débordement {}", logs.size(), SPILL_FILE);
+            } catch (IOException e) {
+                logger.error("Impossible d'écrire dans le fichier de débordement, {} log(s) perdu(s)", logs.size(), e);
+            }
+        }
+    }
+
+    /**
+     * Rejoue le fichier de débordement vers la base, par lots
+     */
+    private void replaySpillIfDue() {
+        Path replaying = SPILL_FILE.resolveSibling(SPILL_FILE.getFileName() + ".replay");
+        // Un .replay orphelin (arrêt pendant un rejeu) est repris même sans nouveau débordement
+        if (System.currentTimeMillis() < nextSpillReplay || (!Files.exists(SPILL_FILE) && !Files.exists(replaying))) {
+            return;
+        }
+        synchronized (spillLock) {
+            try {
+                if (!Files.exists(replaying)) {
+                    Files.move(SPILL_FILE, replaying, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                logger.error("Impossible de préparer le rejeu du fichier de débordement", e);
+                return;
+            }
+        }
+
+        int replayed = 0;
+        List<AccessLog> batch = new ArrayList<>(BATCH_SIZE);
+        try (BufferedReader reader = Files.newBufferedReader(replaying, StandardCharsets.UTF_8)) {
+            String line;
+            List<String> pending = new ArrayList<>();
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                AccessLog log = decode(line);
+                if (log == null) {
+                    logger.warn("Ligne illisible ignorée dans le fichier de débordement: {}", line);
+                    continue;
+                }
+                batch.add(log);
+                pending.add(line);
+                if (batch.size() == BATCH_SIZE) {
+                    if (!flush(batch)) {
+                        keepUnreplayed(pending, reader);
+                        return;
+                    }
+                    replayed += batch.size();
+                    batch.clear();
+                    pending.clear();
+                }
+            }
+            if (!batch.isEmpty() && !flush(batch)) {
+                keepUnreplayed(pending, reader);
+                return;
+            }
+            replayed += batch.size();
+        } catch (IOException e) {
+            logger.error("Erreur lors du rejeu du fichier de débordement", e);
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(replaying);
+        } catch (IOException e) {
+            logger.error("Impossible de supprimer le fichier de rejeu", e);
+        }
+        logger.info("{} log(s) d'accès rejoué(s) depuis le fichier de débordement", replayed);
+    }
+
+    /**
+     * Réécrit dans le fichier de débordement les lignes non encore rejouées
+     */
+    private void keepUnreplayed(List<String> pending, BufferedReader reader) throws IOException {
+        List<String> rest = new ArrayList<>(pending);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            rest.add(line);
+        }
+        Path replaying = SPILL_FILE.resolveSibling(SPILL_FILE.getFileName() + ".replay");
+        synchronized (spillLock) {
+            Files.write(SPILL_FILE, rest, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            Files.deleteIfExists(replaying);
+        }
+        logger.warn("Base indisponible, {} log(s) conservé(s) dans le fichier de débordement", rest.size());
+    }
+
+    /**
+     * Format d'une ligne : userId|ticketId|gateId|type|résultat|horodatage(ms)|motif|ip
+     */
+    private static String encode(AccessLog log) {
+        long timestamp = log.getAccessTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return String.join("|",
+            log.getUser() != null ? String.valueOf(log.getUser().getId()) : NULL_FIELD,
+            log.getTicket() != null ? String.valueOf(log.getTicket().getId()) : NULL_FIELD,
+            log.getGateDevice() != null ? String.valueOf(log.getGateDevice().getId()) : NULL_FIELD,
+            log.getAccessType().name(),
+            log.getAccessResult().name(),
+            String.valueOf(timestamp),
+            encodeText(log.getDenialReason()),
+            encodeText(log.getIpAddress()));
+    }
+
+    private static AccessLog decode(String line) {
+        String[] parts = line.split("\\|", -1);
+        if (parts.length != 8) {
+            return null;
+        }
+        try {
+            AccessLog log = new AccessLog();
+            if (!NULL_FIELD.equals(parts[0])) {
+                User user = new User();
+                user.setId(Integer.parseInt(parts[0]));
+                log.setUser(user);
+            }
+            if (!NULL_FIELD.equals(parts[1])) {
+                Ticket ticket = new Ticket();
+                ticket.setId(Integer.parseInt(parts[1]));
+                log.setTicket(ticket);
+            }
+            if (!NULL_FIELD.equals(parts[2])) {
+                GateDevice device = new GateDevice();
+                device.setId(Integer.parseInt(parts[2]));
+                log.setGateDevice(device);
+            }
+            log.setAccessType(AccessLog.AccessType.valueOf(parts[3]));
+            log.setAccessResult(AccessLog.AccessResult.valueOf(parts[4]));
+            log.setAccessTimestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(parts[5])),
+                                                           ZoneId.systemDefault()));
+            log.setDenialReason(decodeText(parts[6]));
+            log.setIpAddress(decodeText(parts[7]));
+            return log;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String encodeText(String value) {
+        // URLEncoder encode '~' et '|', ce qui évite toute collision avec le séparateur
+        return value == null ? NULL_FIELD : URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String decodeText(String value) {
+        return NULL_FIELD.equals(value) ? null : URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Instantané des métriques de l'écrivain de logs
+     */
+    public static class WriterStats {
+        private final int queueDepth;
+        private final long maxQueueDepth;
+        private final long enqueuedCount;
+        private final long writtenCount;
+        private final long spilledCount;
+        private final long backpressureCount;
+        private final long batchCount;
+        private final long totalFlushNanos;
+        private final long maxFlushNanos;
+
+        public WriterStats(int queueDepth, long maxQueueDepth, long enqueuedCount, long writtenCount,
+                           long spilledCount, long backpressureCount, long batchCount,
+                           long totalFlushNanos, long maxFlushNanos) {
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.enqueuedCount = enqueuedCount;
+            this.writtenCount = writtenCount;
+            this.spilledCount = spilledCount;
+            this.backpressureCount = backpressureCount;
+            this.batchCount = batchCount;
+            this.totalFlushNanos = totalFlushNanos;
+            this.maxFlushNanos = maxFlushNanos;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public long getMaxQueueDepth() {
+            return maxQueueDepth;
+        }
+
+        public long getEnqueuedCount() {
+            return enqueuedCount;
+        }
+
+        public long getWrittenCount() {
+            return writtenCount;
+        }
+
+        public long getSpilledCount() {
+            return spilledCount;
+        }
+
+        public long getBackpressureCount() {
+            return backpressureCount;
+        }
+
+        public long getBatchCount() {
+            return batchCount;
+        }
+
+        public double getAverageFlushMillis() {
+            return batchCount == 0 ? 0.0 : totalFlushNanos / (double) batchCount / 1_000_000.0;
+        }
+
+        public double getMaxFlushMillis() {
+            return maxFlushNanos / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("file=%d (max %d), reçus=%d, écrits=%d, débordés=%d, contre-pression=%d, "
+                                 + "lots=%d, flush moy=%.3f ms, flush max=%.3f ms",
+                                 queueDepth, maxQueueDepth, enqueuedCount, writtenCount, spilledCount,
+                                 backpressureCount, batchCount, getAverageFlushMillis(), getMaxFlushMillis());
+        }
+    }
+}
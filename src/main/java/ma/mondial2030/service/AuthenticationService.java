@@ -2,6 +2,9 @@ package ma.mondial2030.service;
 
 import ma.mondial2030.dao.UserDAO;
 import ma.mondial2030.exception.AuthenticationException;
+import ma.mondial2030.metrics.LatencyHistogram;
+import ma.mondial2030.metrics.LoginEvent;
+import ma.mondial2030.metrics.MetricsRegistry;
 import ma.mondial2030.model.User;
 import ma.mondial2030.security.PasswordHasher;
 import org.slf4j.Logger;
@@ -14,11 +17,41 @@ public class AuthenticationService {
     private static final Logger logger = LoggerFactory.getLogger(AuthenticationService.class);
     private final UserDAO userDAO = new UserDAO();
     private static User currentUser;
+    private static final LatencyHistogram LOGIN_SUCCESS =
+        MetricsRegistry.getInstance().histogram("auth.login", "result", "success");
+    private static final LatencyHistogram LOGIN_FAILURE =
+        MetricsRegistry.getInstance().histogram("auth.login", "result", "failure");
 
     /**
      * Authentifie un utilisateur
      */
     public User login(String username, String password) throws AuthenticationException {
+        long start = System.nanoTime();
+        LoginEvent event = new LoginEvent();
+        event.begin();
+        try {
+            User user = authenticate(username, password);
+            LOGIN_SUCCESS.recordNanos(System.nanoTime() - start);
+            commitLoginEvent(event, username, "success", null);
+            return user;
+        } catch (AuthenticationException | RuntimeException e) {
+            LOGIN_FAILURE.recordNanos(System.nanoTime() - start);
+            commitLoginEvent(event, username, "failure", e.getMessage());
+            throw e;
+        }
+    }
+
+    private static void commitLoginEvent(LoginEvent event, String username, String outcome, String reason) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.username = username;
+            event.outcome = outcome;
+            event.reason = reason;
+            event.commit();
+        }
+    }
+
+    private User authenticate(String username, String password) throws AuthenticationException {
         if (username == null || username.trim().isEmpty()) {
             throw new AuthenticationException("Le nom d'utilisateur est requis");
         }
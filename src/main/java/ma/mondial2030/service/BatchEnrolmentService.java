@@ -0,0 +1,358 @@
+package ma.mondial2030.service;
+
+import ma.mondial2030.biometric.FaceEmbeddings;
+import ma.mondial2030.dao.BiometricDataDAO;
+import ma.mondial2030.dao.BiometricDataDAO.FaceEmbeddingRow;
+import ma.mondial2030.dao.UserDAO;
+import ma.mondial2030.metrics.MetricsRegistry;
+import ma.mondial2030.model.User;
+import ma.mondial2030.util.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Enrôlement facial en masse à partir d'un répertoire de photos (personnel accrédité)
+ * Chaque photo est nommée d'après son titulaire : identifiant (1234.jpg) ou nom d'utilisateur
+ * (jdupont.png). Les photos sont décodées (ImageIO) et réduites à leur empreinte en parallèle
+ * sur un pool borné ; un seul thread écrit les empreintes par lots de CHUNK_SIZE, une transaction
+ * par lot. Les files entre les étapes sont bornées : la mémoire ne dépend pas du nombre de photos.
+ * Les galeries déjà chargées prennent les nouvelles empreintes au prochain rattrapage
+ * (BiometricService.loadFaceGallery, mapFaceGallery).
+ */
+public class BatchEnrolmentService {
+    private static final Logger logger = LoggerFactory.getLogger(BatchEnrolmentService.class);
+
+    public static final String FLAG = "--enrol-faces";
+    private static final int CHUNK_SIZE = 200;
+    private static final Set<String> EXTENSIONS = Set.of("png", "jpg", "jpeg", "gif", "bmp");
+    /** Fin des résultats pour le thread d'écriture */
+    private static final FaceEmbeddingRow END = new FaceEmbeddingRow(0, null, null, null);
+
+    private final BiometricDataDAO biometricDataDAO = new BiometricDataDAO();
+    private final UserDAO userDAO = new UserDAO();
+
+    /**
+     * Enrôle toutes les photos du répertoire (sans sous-répertoires) avec workers threads de calcul
+     */
+    public EnrolmentReport enrolDirectory(Path directory, int workers) throws IOException {
+        List<Path> photos;
+        try (Stream<Path> files = Files.list(directory)) {
+            photos = files.filter(BatchEnrolmentService::isPhoto).sorted().toList();
+        }
+        logger.info("Enrôlement de {} photos depuis {} ({} threads)", photos.size(), directory, workers);
+        ImageIO.setUseCache(false);
+
+        Progress progress = new Progress(photos.size());
+        BlockingQueue<FaceEmbeddingRow> results = new ArrayBlockingQueue<>(CHUNK_SIZE * 2);
+        Thread writer = new Thread(() -> writeLoop(results, progress), "enrolment-writer");
+        writer.start();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        // File bornée et CallerRunsPolicy : la soumission ralentit au rythme des calculs
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+            workers, workers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(workers * 4), task -> {
+                Thread thread = new Thread(task, "enrolment-worker-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            for (Path photo : photos) {
+                pool.execute(() -> prepare(photo, results, progress));
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Sans effet si tout est terminé ; sinon les calculs en cours sont abandonnés
+            pool.shutdownNow();
+            stopWriter(writer, results);
+        }
+
+        EnrolmentReport report = progress.report();
+        MetricsRegistry.getInstance().counter("biometric.batch_enrolled").add(report.getEnrolledCount());
+        logger.info("Enrôlement terminé: {}", report);
+        return report;
+    }
+
+    /**
+     * Termine le thread d'écriture (dernier lot écrit) ; interrompu, il écrit son lot en cours et s'arrête
+     */
+    private static void stopWriter(Thread writer, BlockingQueue<FaceEmbeddingRow> results) {
+        try {
+            if (!Thread.currentThread().isInterrupted()) {
+                while (writer.isAlive() && !results.offer(END, 1, TimeUnit.SECONDS)) {
+                    logger.debug("Enrôlement: file d'écriture pleine, fin différée");
+                }
+                writer.join();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.interrupt();
+    }
+
+    private static boolean isPhoto(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && Files.isRegularFile(file)
+               && EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Titulaire, décodage et empreinte d'une photo (thread de calcul)
+     */
+    private void prepare(Path photo, BlockingQueue<FaceEmbeddingRow> results, Progress progress) {
+        long start = System.nanoTime();
+        try {
+            User user = findOwner(photo);
+            if (user == null) {
+                progress.unknownUsers.incrementAndGet();
+                logger.warn("Aucun utilisateur pour la photo {}", photo.getFileName());
+                return;
+            }
+            float[] embedding = computeFaceEmbedding(photo);
+            if (embedding == null) {
+                progress.unreadable.incrementAndGet();
+                logger.warn("Photo inexploitable pour l'empreinte faciale: {}", photo.getFileName());
+                return;
+            }
+            results.put(new FaceEmbeddingRow(user.getId(), FaceEmbeddings.encode(embedding),
+                                             FaceEmbeddings.quantize(embedding), photo.toAbsolutePath().toString()));
+        } catch (IOException | RuntimeException e) {
+            // Les décodeurs ImageIO lèvent aussi des exceptions non vérifiées sur les fichiers corrompus
+            progress.unreadable.incrementAndGet();
+            logger.warn("Photo illisible: {}", photo.getFileName(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            progress.prepareNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private User findOwner(Path photo) {
+        String name = photo.getFileName().toString();
+        String stem = name.substring(0, name.lastIndexOf('.'));
+        if (!stem.isEmpty() && stem.chars().allMatch(Character::isDigit) && stem.length() < 10) {
+            return userDAO.findById(Integer.parseInt(stem));
+        }
+        return userDAO.findByUsername(stem);
+    }
+
+    /**
+     * Empreinte d'une photo, lue ligne par ligne : même descripteur que BiometricService ; null si inexploitable
+     */
+    private static float[] computeFaceEmbedding(Path photo) throws IOException {
+        BufferedImage image = ImageIO.read(photo.toFile());
+        if (image == null || image.getWidth() == 0 || image.getHeight() == 0) {
+            return null;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] argb = new int[width];
+        FaceEmbeddings.Descriptor descriptor = new FaceEmbeddings.Descriptor(width, height);
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, argb, 0, width);
+            descriptor.addArgbRow(y, argb, 0);
+        }
+        return descriptor.build();
+    }
+
+    /**
+     * Boucle du thread d'écriture : un lot de CHUNK_SIZE empreintes par transaction
+     */
+    private void writeLoop(BlockingQueue<FaceEmbeddingRow> results, Progress progress) {
+        List<FaceEmbeddingRow> chunk = new ArrayList<>(CHUNK_SIZE);
+        try {
+            while (true) {
+                FaceEmbeddingRow row = results.take();
+                if (row == END) {
+                    break;
+                }
+                chunk.add(row);
+                if (chunk.size() == CHUNK_SIZE) {
+                    flush(chunk, progress);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush(chunk, progress);
+    }
+
+    private void flush(List<FaceEmbeddingRow> chunk, Progress progress) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        int inserted;
+        try {
+            inserted = biometricDataDAO.insertFaceEmbeddings(chunk);
+        } catch (RuntimeException e) {
+            // Le thread d'écriture doit survivre : sinon les threads de calcul restent bloqués sur la file
+            logger.error("Échec de l'écriture d'un lot de {} empreintes", chunk.size(), e);
+            inserted = -1;
+        }
+        progress.writeNanos.addAndGet(System.nanoTime() - start);
+        progress.chunks.incrementAndGet();
+        if (inserted < 0) {
+            progress.failed.addAndGet(chunk.size());
+        } else {
+            progress.enrolled.addAndGet(inserted);
+        }
+        chunk.clear();
+        logger.info("Enrôlement: {}", progress.report());
+    }
+
+    /**
+     * Point d'entrée du mode sans interface : --enrol-faces=DIR [--enrol-workers=N]
+     * (par défaut, un thread de calcul par cœur)
+     */
+    public static void runHeadless(String[] args) {
+        Path directory = null;
+        int workers = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            if (arg.startsWith(FLAG + "=")) {
+                directory = Path.of(arg.substring(FLAG.length() + 1));
+            } else if (arg.startsWith("--enrol-workers=")) {
+                workers = Math.max(1, Integer.parseInt(arg.substring("--enrol-workers=".length())));
+            }
+        }
+        if (directory == null || !Files.isDirectory(directory)) {
+            logger.error("Répertoire de photos introuvable: {}", directory);
+            return;
+        }
+        try {
+            new BatchEnrolmentService().enrolDirectory(directory, workers);
+        } catch (IOException e) {
+            logger.error("Impossible de lire le répertoire de photos {}", directory, e);
+        } finally {
+            DatabaseConnection.shutdown();
+            MetricsRegistry.shutdown();
+        }
+    }
+
+    /**
+     * Compteurs partagés par les threads de calcul et d'écriture
+     */
+    private static final class Progress {
+        private final long start = System.nanoTime();
+        private final int photoCount;
+        private final AtomicInteger enrolled = new AtomicInteger();
+        private final AtomicInteger unreadable = new AtomicInteger();
+        private final AtomicInteger unknownUsers = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger chunks = new AtomicInteger();
+        private final AtomicLong prepareNanos = new AtomicLong();
+        private final AtomicLong writeNanos = new AtomicLong();
+
+        Progress(int photoCount) {
+            this.photoCount = photoCount;
+        }
+
+        EnrolmentReport report() {
+            return new EnrolmentReport(photoCount, enrolled.get(), unreadable.get(), unknownUsers.get(), failed.get(),
+                                       chunks.get(), System.nanoTime() - start, prepareNanos.get(), writeNanos.get());
+        }
+    }
+
+    /**
+     * Bilan d'un enrôlement en masse
+     */
+    public static class EnrolmentReport {
+        private final int photoCount;
+        private final int enrolledCount;
+        private final int unreadableCount;
+        private final int unknownUserCount;
+        private final int failedCount;
+        private final int chunkCount;
+        private final long elapsedNanos;
+        private final long prepareNanos;
+        private final long writeNanos;
+
+        public EnrolmentReport(int photoCount, int enrolledCount, int unreadableCount, int unknownUserCount,
+                               int failedCount, int chunkCount, long elapsedNanos, long prepareNanos,
+                               long writeNanos) {
+            this.photoCount = photoCount;
+            this.enrolledCount = enrolledCount;
+            this.unreadableCount = unreadableCount;
+            this.unknownUserCount = unknownUserCount;
+            this.failedCount = failedCount;
+            this.chunkCount = chunkCount;
+            this.elapsedNanos = elapsedNanos;
+            this.prepareNanos = prepareNanos;
+            this.writeNanos = writeNanos;
+        }
+
+        public int getPhotoCount() {
+            return photoCount;
+        }
+
+        public int getEnrolledCount() {
+            return enrolledCount;
+        }
+
+        public int getUnreadableCount() {
+            return unreadableCount;
+        }
+
+        public int getUnknownUserCount() {
+            return unknownUserCount;
+        }
+
+        public int getFailedCount() {
+            return failedCount;
+        }
+
+        public int getChunkCount() {
+            return chunkCount;
+        }
+
+        public double getElapsedSeconds() {
+            return elapsedNanos / 1_000_000_000.0;
+        }
+
+        /** Photos enrôlées par seconde, sur la durée totale */
+        public double getPhotosPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : enrolledCount / getElapsedSeconds();
+        }
+
+        /** Temps moyen de décodage et de calcul d'une photo, par thread */
+        public double getAveragePrepareMillis() {
+            int processed = enrolledCount + unreadableCount + unknownUserCount + failedCount;
+            return processed == 0 ? 0.0 : prepareNanos / (double) processed / 1_000_000.0;
+        }
+
+        /** Temps moyen d'écriture d'un lot */
+        public double getAverageChunkMillis() {
+            return chunkCount == 0 ? 0.0 : writeNanos / (double) chunkCount / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d photos enrôlées (illisibles=%d, sans utilisateur=%d, échecs=%d) en %.1f s, "
+                                 + "%.1f photos/s, calcul moy=%.1f ms, lots=%d, lot moy=%.1f ms",
+                                 enrolledCount, photoCount, unreadableCount, unknownUserCount, failedCount,
+                                 getElapsedSeconds(), getPhotosPerSecond(), getAveragePrepareMillis(),
+                                 chunkCount, getAverageChunkMillis());
+        }
+    }
+}
@@ -1,17 +1,69 @@
 package ma.mondial2030.service;
 
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritablePixelFormat;
+import ma.mondial2030.biometric.FaceEmbeddings;
+import ma.mondial2030.biometric.FaceMatch;
+import ma.mondial2030.biometric.FaceMatcher;
+import ma.mondial2030.biometric.HnswIndex;
+import ma.mondial2030.biometric.MappedFaceGallery;
+import ma.mondial2030.biometric.MappedFaceMatcher;
 import ma.mondial2030.dao.BiometricDataDAO;
 import ma.mondial2030.dao.TicketDAO;
+import ma.mondial2030.metrics.LatencyHistogram;
+import ma.mondial2030.metrics.MetricsRegistry;
+import ma.mondial2030.model.Ticket;
 import ma.mondial2030.util.QRCodeGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Service pour la gestion biométrique
  */
 public class BiometricService {
     private static final Logger logger = LoggerFactory.getLogger(BiometricService.class);
+
+    /** Similarité cosinus minimale pour considérer deux empreintes comme le même visage */
+    public static final float FACE_MATCH_THRESHOLD = 0.9f;
+
+    /**
+     * Index HNSW des empreintes par match, chargés à la demande ou à l'ouverture des portes biométriques
+     * Chaque index est sauvegardé en instantané local ; au chargement suivant, seules les empreintes
+     * et les ventes postérieures à l'instantané sont relues en base.
+     */
+    private static final Map<Integer, HnswIndex> faceIndexes = new ConcurrentHashMap<>();
+    /** Index modifiés depuis leur dernier instantané */
+    private static final Set<Integer> unsavedIndexes = ConcurrentHashMap.newKeySet();
+    private static final Object loadLock = new Object();
+    private static final Path INDEX_DIRECTORY = Paths.get(
+        System.getProperty("mondial2030.biometric.dir",
+                           Paths.get(System.getProperty("user.home"), ".mondial2030", "face-index").toString()));
+    /**
+     * Galeries projetées depuis des fichiers (poste des portes) : prioritaires sur les index HNSW
+     * Base et deltas sont lus sur place, sans copie sur le tas (voir MappedFaceGallery).
+     */
+    private static final Map<Integer, MappedFaceMatcher> mappedGalleries = new ConcurrentHashMap<>();
+    private static final Object galleryFileLock = new Object();
+    /** Au-delà, l'export réécrit un fichier de base au lieu d'ajouter un delta */
+    private static final int MAX_GALLERY_DELTAS = 16;
+    /**
+     * Le rattrapage relit les empreintes jusqu'à CATCH_UP_ID_WINDOW identifiants sous le dernier lu :
+     * un id AUTO_INCREMENT attribué avant un id plus grand peut n'être validé qu'après la lecture de ce dernier
+     */
+    private static final int CATCH_UP_ID_WINDOW = 5_000;
+    private static final LatencyHistogram searchLatency =
+        MetricsRegistry.getInstance().histogram("biometric.search");
+
     private final BiometricDataDAO biometricDataDAO = new BiometricDataDAO();
     private final TicketDAO ticketDAO = new TicketDAO();
 
@@ -20,24 +72,286 @@ public class BiometricService {
      */
     public boolean createFaceEmbedding(int userId, Image faceImage) {
         try {
-            // Simuler la création d'empreinte faciale
-            // Dans une vraie application, on utiliserait une bibliothèque comme OpenCV ou Face Recognition
-            // Pour l'instant, on simule en convertissant l'image en base64
-            
-            // Convertir l'image en bytes (simulation)
-            byte[] imageBytes = simulateImageToBytes(faceImage);
-            
-            // Créer l'empreinte faciale (simulation d'un embedding)
-            byte[] embedding = simulateFaceEmbedding(imageBytes);
-            
-            // Sauvegarder dans la base de données
-            return biometricDataDAO.saveFaceEmbedding(userId, embedding, null);
+            float[] embedding = computeFaceEmbedding(faceImage);
+            if (embedding == null) {
+                logger.warn("Image inexploitable pour l'empreinte faciale de l'utilisateur {}", userId);
+                return false;
+            }
+            int embeddingId = biometricDataDAO.insertFaceEmbedding(userId, FaceEmbeddings.encode(embedding),
+                                                                   FaceEmbeddings.quantize(embedding), null);
+            if (embeddingId < 0) {
+                return false;
+            }
+            indexNewEmbedding(embeddingId, userId, embedding);
+            return true;
         } catch (Exception e) {
             logger.error("Erreur lors de la création de l'empreinte faciale", e);
             return false;
         }
     }
 
+    /**
+     * Ajoute une nouvelle empreinte aux index chargés des matchs pour lesquels l'utilisateur a un ticket
+     */
+    private void indexNewEmbedding(int embeddingId, int userId, float[] embedding) {
+        if (faceIndexes.isEmpty()) {
+            return;
+        }
+        for (Ticket ticket : ticketDAO.findByUserId(userId)) {
+            if (ticket.getStatus() == Ticket.Status.CANCELLED || ticket.getMatchEvent() == null) {
+                continue;
+            }
+            int matchEventId = ticket.getMatchEvent().getId();
+            HnswIndex index = faceIndexes.get(matchEventId);
+            if (index != null && index.add(embeddingId, userId, embedding)) {
+                unsavedIndexes.add(matchEventId);
+            }
+        }
+    }
+
+    /**
+     * Charge la galerie faciale d'un match : instantané local s'il existe, puis rattrapage en base
+     * (nouvelles empreintes, nouveaux détenteurs de tickets, détenteurs dont les tickets ont été
+     * annulés) ; sans instantané, l'index est construit à partir de toutes les empreintes du match.
+     * Rappelée sur un index chargé, elle le met à jour.
+     */
+    public boolean loadFaceGallery(int matchEventId) {
+        synchronized (loadLock) {
+            long start = System.nanoTime();
+            HnswIndex index = faceIndexes.get(matchEventId);
+            String source = "mémoire";
+            if (index == null) {
+                index = readSnapshot(matchEventId);
+                source = index != null ? "instantané" : "base";
+                if (index == null) {
+                    index = new HnswIndex();
+                }
+            }
+            // Lu avant les empreintes : une vente concurrente sera revue au prochain rattrapage
+            int lastTicketId = ticketDAO.findMaxIdByMatch(matchEventId);
+            HnswIndex target = index;
+            int nodesBefore = index.getNodeCount();
+            int[] rejected = new int[1];
+            int afterEmbeddingId = Math.max(0, index.getLastEmbeddingId() - CATCH_UP_ID_WINDOW);
+            int loaded = lastTicketId < 0 ? -1 : biometricDataDAO.forEachFaceEmbeddingByMatch(
+                matchEventId, afterEmbeddingId, index.getLastTicketId(), (embeddingId, userId, data, quantized) -> {
+                    if (!target.add(embeddingId, userId, FaceEmbeddings.decode(data))) {
+                        rejected[0]++;
+                    }
+                });
+            // Lu après les empreintes : un détenteur annulé entre les deux lectures est bien retiré
+            int[] removed = new int[1];
+            int cancelled = loaded < 0 ? -1 : ticketDAO.forEachCancelledHolder(matchEventId, userId -> {
+                if (target.remove(userId)) {
+                    removed[0]++;
+                }
+            });
+            if (loaded < 0 || cancelled < 0) {
+                logger.error("Impossible de charger la galerie faciale du match {}", matchEventId);
+                return false;
+            }
+            index.setLastTicketId(lastTicketId);
+            faceIndexes.put(matchEventId, index);
+            // Les empreintes relues dans la fenêtre sous le dernier id sont déjà indexées : sans effet
+            boolean changed = index.getNodeCount() > nodesBefore || removed[0] > 0;
+            if (changed || "base".equals(source)) {
+                unsavedIndexes.add(matchEventId);
+                saveSnapshot(matchEventId);
+            }
+            logger.info("Galerie faciale du match {} chargée depuis {}: {} empreintes, {} relues en base "
+                        + "({} illisibles ignorées), {} retirées (tickets annulés) en {} ms", matchEventId, source,
+                        index.size(), loaded, rejected[0], removed[0], (System.nanoTime() - start) / 1_000_000);
+            return true;
+        }
+    }
+
+    /**
+     * Libère la galerie d'un match, après en avoir sauvegardé l'instantané si nécessaire
+     */
+    public void evictFaceGallery(int matchEventId) {
+        saveSnapshot(matchEventId);
+        faceIndexes.remove(matchEventId);
+        mappedGalleries.remove(matchEventId);
+    }
+
+    /**
+     * Exporte la galerie d'un match dans directory : fichier de base s'il n'existe pas (ou si
+     * compact est vrai, les deltas étant alors supprimés), sinon delta des empreintes et des
+     * ventes postérieures au fichier le plus récent, avec les détenteurs encore présents dont les
+     * tickets ont été annulés (retirés des fichiers plus anciens). Retourne le nombre d'empreintes
+     * et de retraits écrits (0 si rien de nouveau), ou -1 en cas d'erreur.
+     */
+    public int exportFaceGallery(int matchEventId, Path directory, boolean compact) {
+        synchronized (galleryFileLock) {
+            long start = System.nanoTime();
+            try {
+                List<Path> files = MappedFaceGallery.files(directory, matchEventId);
+                boolean delta = !compact && !files.isEmpty();
+                MappedFaceMatcher current = delta ? MappedFaceMatcher.open(directory, matchEventId) : null;
+                int afterEmbeddingId = delta ? current.getLastEmbeddingId() : 0;
+                int afterTicketId = delta ? current.getLastTicketId() : 0;
+                // Lu avant les empreintes : une vente concurrente sera reprise au prochain delta
+                int lastTicketId = ticketDAO.findMaxIdByMatch(matchEventId);
+                if (lastTicketId < 0) {
+                    return -1;
+                }
+                MappedFaceGallery.Writer writer = MappedFaceGallery.writer(delta ? 16 : 1024);
+                int[] lastEmbeddingId = {afterEmbeddingId};
+                int[] rejected = new int[1];
+                // Fenêtre sous le dernier id lu (validations tardives) ; une empreinte relue n'est
+                // réécrite que si son utilisateur n'a pas de ligne visible
+                int read = biometricDataDAO.forEachFaceEmbeddingByMatch(
+                    matchEventId, Math.max(0, afterEmbeddingId - CATCH_UP_ID_WINDOW), afterTicketId,
+                    (embeddingId, userId, data, quantized) -> {
+                        if (embeddingId <= afterEmbeddingId && current.contains(userId)) {
+                            return;
+                        }
+                        if (!writer.add(userId, FaceEmbeddings.decode(data), quantized)) {
+                            rejected[0]++;
+                        }
+                        lastEmbeddingId[0] = Math.max(lastEmbeddingId[0], embeddingId);
+                    });
+                // Lu après les empreintes : un détenteur annulé entre les deux lectures est bien retiré
+                int cancelled = read < 0 || !delta ? 0 : ticketDAO.forEachCancelledHolder(matchEventId, userId -> {
+                    if (current.contains(userId)) {
+                        writer.remove(userId);
+                    }
+                });
+                if (read < 0 || cancelled < 0) {
+                    return -1;
+                }
+                if (delta && writer.size() == 0 && writer.removedCount() == 0) {
+                    return 0;
+                }
+                Path target = MappedFaceGallery.basePath(directory, matchEventId);
+                if (delta) {
+                    int sequence = files.size();
+                    while (Files.exists(MappedFaceGallery.deltaPath(directory, matchEventId, sequence))) {
+                        sequence++;
+                    }
+                    target = MappedFaceGallery.deltaPath(directory, matchEventId, sequence);
+                }
+                writer.write(target, matchEventId, lastEmbeddingId[0], lastTicketId);
+                if (!delta) {
+                    for (Path old : files.subList(Math.min(1, files.size()), files.size())) {
+                        Files.deleteIfExists(old);
+                    }
+                }
+                logger.info("Galerie faciale du match {} exportée dans {}: {} empreintes ({} illisibles ignorées), "
+                            + "{} retirées (tickets annulés) en {} ms", matchEventId, target, writer.size(),
+                            rejected[0], writer.removedCount(), (System.nanoTime() - start) / 1_000_000);
+                return writer.size() + writer.removedCount();
+            } catch (IOException e) {
+                logger.error("Impossible d'exporter la galerie faciale du match {}", matchEventId, e);
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Projette la galerie d'un match depuis ses fichiers (poste des portes), après y avoir ajouté
+     * le delta des enrôlements récents si la base est joignable ; réappelée, elle prend en compte
+     * les nouveaux deltas. Au-delà de MAX_GALLERY_DELTAS deltas, la base est réécrite.
+     */
+    public boolean mapFaceGallery(int matchEventId, Path directory) {
+        synchronized (galleryFileLock) {
+            long start = System.nanoTime();
+            MappedFaceMatcher current = mappedGalleries.get(matchEventId);
+            boolean compact = current != null && current.getFileCount() > MAX_GALLERY_DELTAS;
+            int exported = exportFaceGallery(matchEventId, directory, compact);
+            if (exported < 0) {
+                logger.warn("Galerie faciale du match {} non mise à jour depuis la base, fichiers existants utilisés",
+                            matchEventId);
+            }
+            try {
+                if (exported <= 0 && current != null
+                        && MappedFaceGallery.files(directory, matchEventId).size() == current.getFileCount()) {
+                    return true;
+                }
+                MappedFaceMatcher matcher = MappedFaceMatcher.open(directory, matchEventId);
+                if (matcher == null) {
+                    logger.error("Aucun fichier de galerie faciale pour le match {} dans {}", matchEventId, directory);
+                    return false;
+                }
+                mappedGalleries.put(matchEventId, matcher);
+                logger.info("Galerie faciale du match {} projetée: {} empreintes, {} fichiers en {} ms",
+                            matchEventId, matcher.size(), matcher.getFileCount(),
+                            (System.nanoTime() - start) / 1_000_000);
+                return true;
+            } catch (IOException e) {
+                logger.error("Impossible de projeter la galerie faciale du match {}", matchEventId, e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Sauvegarde les index modifiés ; à appeler à l'arrêt de l'application
+     */
+    public static void shutdown() {
+        for (Integer matchEventId : unsavedIndexes) {
+            saveSnapshot(matchEventId);
+        }
+        faceIndexes.clear();
+        mappedGalleries.clear();
+    }
+
+    private static Path snapshotPath(int matchEventId) {
+        return INDEX_DIRECTORY.resolve("match-" + matchEventId + ".hnsw");
+    }
+
+    private static HnswIndex readSnapshot(int matchEventId) {
+        Path file = snapshotPath(matchEventId);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return HnswIndex.load(file);
+        } catch (IOException e) {
+            logger.warn("Instantané de la galerie faciale du match {} ignoré, reconstruction depuis la base",
+                        matchEventId, e);
+            return null;
+        }
+    }
+
+    private static void saveSnapshot(int matchEventId) {
+        HnswIndex index = faceIndexes.get(matchEventId);
+        if (index == null || !unsavedIndexes.remove(matchEventId)) {
+            return;
+        }
+        try {
+            index.save(snapshotPath(matchEventId));
+        } catch (IOException e) {
+            unsavedIndexes.add(matchEventId);
+            logger.error("Impossible de sauvegarder l'instantané de la galerie faciale du match {}", matchEventId, e);
+        }
+    }
+
+    /**
+     * Identifie un visage parmi les détenteurs de tickets d'un match : les k candidats les plus proches
+     * Galerie projetée si mapFaceGallery a été appelée pour ce match, sinon index HNSW chargé au premier appel.
+     */
+    public List<FaceMatch> identifyFace(Image faceImage, int matchEventId, int k) {
+        FaceMatcher matcher = mappedGalleries.get(matchEventId);
+        if (matcher == null) {
+            matcher = faceIndexes.get(matchEventId);
+        }
+        if (matcher == null) {
+            if (!loadFaceGallery(matchEventId)) {
+                return List.of();
+            }
+            matcher = faceIndexes.get(matchEventId);
+        }
+        float[] embedding = computeFaceEmbedding(faceImage);
+        if (embedding == null) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        List<FaceMatch> matches = matcher.search(embedding, k);
+        searchLatency.recordNanos(System.nanoTime() - start);
+        return matches;
+    }
+
     /**
      * Vérifie si l'utilisateur a des données biométriques
      */
@@ -71,20 +385,24 @@ public class BiometricService {
     }
 
     /**
-     * Simule la conversion d'une image en bytes
-     */
-    private byte[] simulateImageToBytes(Image image) {
-        // Dans une vraie application, on utiliserait ImageIO ou une autre bibliothèque
-        // Pour l'instant, on simule
-        return new byte[1024]; // Simulation
-    }
-
-    /**
-     * Simule la création d'un embedding facial
+     * Empreinte d'une image : luminance des pixels puis descripteur FaceEmbeddings ; null si inexploitable
      */
-    private byte[] simulateFaceEmbedding(byte[] imageBytes) {
-        // Dans une vraie application, on utiliserait une bibliothèque de reconnaissance faciale
-        // Pour l'instant, on simule un embedding de 128 dimensions (comme FaceNet)
-        return new byte[128 * 4]; // 128 floats = 512 bytes
+    private float[] computeFaceEmbedding(Image image) {
+        if (image == null || image.isError() || image.getPixelReader() == null) {
+            return null;
+        }
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        if (width == 0 || height == 0) {
+            return null;
+        }
+        PixelReader reader = image.getPixelReader();
+        int[] argb = new int[width];
+        FaceEmbeddings.Descriptor descriptor = new FaceEmbeddings.Descriptor(width, height);
+        for (int y = 0; y < height; y++) {
+            reader.getPixels(0, y, width, 1, WritablePixelFormat.getIntArgbInstance(), argb, 0, width);
+            descriptor.addArgbRow(y, argb, 0);
+        }
+        return descriptor.build();
     }
 }
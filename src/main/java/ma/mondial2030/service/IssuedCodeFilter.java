@@ -0,0 +1,189 @@
+package ma.mondial2030.service;
+
+import ma.mondial2030.dao.MatchEventDAO;
+import ma.mondial2030.dao.TicketDAO;
+import ma.mondial2030.metrics.MetricsRegistry;
+import ma.mondial2030.model.MatchEvent;
+import ma.mondial2030.model.Ticket;
+import ma.mondial2030.util.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Filtres de Bloom des codes de tickets émis, un par match dont les portes sont ouvertes
+ * Construit à l'ouverture des portes, complété à chaque vente (TicketEvents) ; un code absent
+ * du filtre est refusé sans requête en base. Les ventes faites par un autre processus sont
+ * rattrapées avant de refuser : un code absent déclenche une lecture incrémentale synchrone,
+ * limitée à une par match toutes les CATCH_UP_INTERVAL_MS (sous un balayage de codes forgés, la
+ * base ne reçoit donc qu'une requête par intervalle et par match), puis le filtre est relu.
+ * La lecture reprend CATCH_UP_ID_WINDOW identifiants sous le dernier id lu : un id AUTO_INCREMENT
+ * attribué avant un id plus grand peut n'être validé (commit) qu'après la lecture de ce dernier.
+ */
+public class IssuedCodeFilter {
+    private static final Logger logger = LoggerFactory.getLogger(IssuedCodeFilter.class);
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    /** Marge sur la capacité du match : le taux de faux positifs reste proche de la cible */
+    private static final double HEADROOM = 1.25;
+    private static final int MIN_EXPECTED = 1024;
+    private static final long CATCH_UP_INTERVAL_MS = 2_000;
+    private static final int CATCH_UP_ID_WINDOW = 5_000;
+
+    private static IssuedCodeFilter instance;
+
+    private final TicketDAO ticketDAO = new TicketDAO();
+    private final MatchEventDAO matchEventDAO = new MatchEventDAO();
+    private final Map<Integer, MatchFilter> filters = new ConcurrentHashMap<>();
+
+    private final TicketEventListener ticketListener = new TicketEventListener() {
+        @Override
+        public void onTicketIssued(Ticket ticket) {
+            MatchFilter filter = filters.get(ticket.getMatchEvent().getId());
+            if (filter != null) {
+                filter.add(ticket.getId(), ticket.getTicketCode());
+            }
+        }
+    };
+
+    private IssuedCodeFilter() {
+        TicketEvents.addListener(ticketListener);
+        MetricsRegistry.getInstance().gauge("issued_filter.matches", filters::size);
+    }
+
+    /**
+     * Obtient l'instance singleton
+     */
+    public static synchronized IssuedCodeFilter getInstance() {
+        if (instance == null) {
+            instance = new IssuedCodeFilter();
+        }
+        return instance;
+    }
+
+    /**
+     * Construit (ou reconstruit) le filtre d'un match à partir de tous ses tickets, quel que soit
+     * leur statut : un ticket annulé ou utilisé reste connu et reçoit son motif de refus habituel
+     */
+    public boolean build(int matchEventId) {
+        long start = System.nanoTime();
+        MatchEvent matchEvent = matchEventDAO.findById(matchEventId);
+        int capacity = matchEvent != null ? matchEvent.getTotalCapacity() : 0;
+        MatchFilter filter = new MatchFilter(matchEventId,
+                                             BloomFilter.create((int) (Math.max(capacity, MIN_EXPECTED) * HEADROOM),
+                                                                FALSE_POSITIVE_RATE));
+        int loaded = ticketDAO.forEachCompactByMatch(matchEventId,
+            (ticketId, ticketCode, userId, status) -> filter.add(ticketId, ticketCode));
+        if (loaded < 0) {
+            logger.error("Impossible de construire le filtre des codes du match {}", matchEventId);
+            return false;
+        }
+        filters.put(matchEventId, filter);
+        logger.info("Filtre des codes du match {} construit: {} codes, {} Ko, {} hachages en {} ms",
+                    matchEventId, loaded, filter.bloom.getBitCount() / 8 / 1024, filter.bloom.getHashCount(),
+                    (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
+    /**
+     * Retire le filtre d'un match (fermeture des portes)
+     */
+    public void evict(int matchEventId) {
+        filters.remove(matchEventId);
+    }
+
+    /**
+     * true si le code n'a été émis pour aucun des matchs aux portes ouvertes.
+     * false si un filtre peut contenir le code : la décision revient alors au chemin habituel
+     * (index, puis base). Un code d'un autre match ouvert passe donc au chemin habituel et garde
+     * son motif « mauvais match ». Le match annoncé par un QR Code non signé n'est pas pris en
+     * compte : il peut être forgé, et un match sans filtre ne doit pas ouvrir l'accès à la base.
+     */
+    public boolean isDefinitelyUnknown(String ticketCode) {
+        if (filters.isEmpty()) {
+            return false;
+        }
+        long hash = BloomFilter.hash(ticketCode);
+        if (mightContain(hash)) {
+            return false;
+        }
+        // Absent : le code a peut-être été vendu par un autre processus depuis la dernière lecture
+        for (MatchFilter filter : filters.values()) {
+            if (!catchUp(filter)) {
+                // Base injoignable : le chemin habituel décide
+                return false;
+            }
+        }
+        // Relu même sans rattrapage ici : un autre scan a pu compléter le filtre entre-temps
+        return !mightContain(hash);
+    }
+
+    private boolean mightContain(long hash) {
+        for (MatchFilter filter : filters.values()) {
+            if (filter.bloom.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lit les tickets vendus depuis le dernier id connu (moins la fenêtre), au plus une fois par intervalle
+     * Les scans arrivés pendant la lecture l'attendent, puis relisent le filtre complété
+     * Retourne false si la lecture a échoué ; la suivante n'est tentée qu'après l'intervalle
+     */
+    private boolean catchUp(MatchFilter filter) {
+        if (System.currentTimeMillis() < filter.nextCatchUp) {
+            return true;
+        }
+        synchronized (filter) {
+            if (System.currentTimeMillis() < filter.nextCatchUp) {
+                return true;
+            }
+            int lastTicketId = filter.lastTicketId.get();
+            int loaded;
+            try {
+                loaded = ticketDAO.forEachCompactByMatch(filter.matchEventId,
+                    Math.max(0, lastTicketId - CATCH_UP_ID_WINDOW),
+                    (ticketId, ticketCode, userId, status) -> filter.add(ticketId, ticketCode));
+            } catch (RuntimeException e) {
+                // Pool épuisé ou base injoignable : DatabaseConnection lève une RuntimeException
+                logger.warn("Rattrapage du filtre des codes du match {} impossible: {}",
+                            filter.matchEventId, e.getMessage());
+                loaded = -1;
+            } finally {
+                // Fixé après la lecture, même en échec : un scan arrivé pendant celle-ci attend le
+                // verrou au lieu de passer, et une panne ne coûte qu'une attente par intervalle
+                filter.nextCatchUp = System.currentTimeMillis() + CATCH_UP_INTERVAL_MS;
+            }
+            if (loaded < 0) {
+                return false;
+            }
+            if (filter.lastTicketId.get() > lastTicketId) {
+                logger.info("Filtre des codes du match {}: tickets vendus ailleurs rattrapés jusqu'à l'id {}",
+                            filter.matchEventId, filter.lastTicketId.get());
+            }
+            return true;
+        }
+    }
+
+    private static final class MatchFilter {
+        final int matchEventId;
+        final BloomFilter bloom;
+        final AtomicInteger lastTicketId = new AtomicInteger();
+        volatile long nextCatchUp;
+
+        MatchFilter(int matchEventId, BloomFilter bloom) {
+            this.matchEventId = matchEventId;
+            this.bloom = bloom;
+        }
+
+        void add(int ticketId, String ticketCode) {
+            bloom.add(ticketCode);
+            lastTicketId.accumulateAndGet(ticketId, Math::max);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package ma.mondial2030.service;
+
+import ma.mondial2030.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Agrégats en mémoire des entrées, mis à jour à chaque décision du contrôle d'accès
+ * Par match et par porte : entrées accordées et refusées, et entrées de la dernière minute
+ * (fenêtre glissante de seaux de 5 s). L'occupation d'un match part du nombre de tickets déjà
+ * utilisés lu au chargement de son index (TicketValidationIndex), sans requête COUNT(*).
+ * Les compteurs sont ceux de ce processus : un serveur des portes séparé a les siens,
+ * exposés par sa route /metrics.
+ */
+public class OccupancyTracker {
+    private static final long BUCKET_MILLIS = 5_000;
+    private static final int BUCKETS = 12;
+
+    private static OccupancyTracker instance;
+
+    private final Map<Integer, MatchCounters> matches = new ConcurrentHashMap<>();
+    private final Map<Long, GateCounters> gates = new ConcurrentHashMap<>();
+
+    private OccupancyTracker() {
+    }
+
+    /**
+     * Obtient l'instance singleton
+     */
+    public static synchronized OccupancyTracker getInstance() {
+        if (instance == null) {
+            instance = new OccupancyTracker();
+        }
+        return instance;
+    }
+
+    /**
+     * Enregistre une décision ; matchEventId vaut 0 si le match est inconnu (ticket introuvable)
+     */
+    public void record(int matchEventId, int gateDeviceId, boolean granted) {
+        long now = System.nanoTime() / 1_000_000;
+        MatchCounters match = matches.computeIfAbsent(matchEventId, MatchCounters::new);
+        GateCounters gate = gates.computeIfAbsent(gateKey(matchEventId, gateDeviceId),
+                                                  key -> new GateCounters(matchEventId, gateDeviceId));
+        if (granted) {
+            match.granted.increment();
+            match.recentEntries.increment(now);
+            gate.granted.increment();
+            gate.recentEntries.increment(now);
+        } else {
+            match.denied.increment();
+            gate.denied.increment();
+        }
+    }
+
+    /**
+     * Point de départ de l'occupation d'un match : tickets déjà utilisés en base au chargement
+     * de son index. Les entrées accordées ensuite s'y ajoutent.
+     */
+    public void seedOccupancy(int matchEventId, long alreadyEntered) {
+        MatchCounters match = matches.computeIfAbsent(matchEventId, MatchCounters::new);
+        match.seed = new Seed(alreadyEntered, match.granted.sum());
+    }
+
+    /**
+     * Instantané par match (hors match inconnu), trié par identifiant
+     */
+    public List<MatchOccupancy> snapshotMatches() {
+        long now = System.nanoTime() / 1_000_000;
+        List<MatchOccupancy> snapshot = new ArrayList<>();
+        for (MatchCounters match : matches.values()) {
+            if (match.matchEventId > 0) {
+                snapshot.add(new MatchOccupancy(match.matchEventId, match.occupancy(), match.granted.sum(),
+                                                match.denied.sum(), match.recentEntries.sum(now)));
+            }
+        }
+        snapshot.sort(Comparator.comparingInt(MatchOccupancy::getMatchEventId));
+        return snapshot;
+    }
+
+    /**
+     * Instantané par match et par porte, trié par match puis porte
+     */
+    public List<GateActivity> snapshotGates() {
+        long now = System.nanoTime() / 1_000_000;
+        List<GateActivity> snapshot = new ArrayList<>();
+        for (GateCounters gate : gates.values()) {
+            snapshot.add(new GateActivity(gate.matchEventId, gate.gateDeviceId, gate.granted.sum(),
+                                          gate.denied.sum(), gate.recentEntries.sum(now)));
+        }
+        snapshot.sort(Comparator.comparingInt(GateActivity::getMatchEventId)
+                                .thenComparingInt(GateActivity::getGateDeviceId));
+        return snapshot;
+    }
+
+    private static long gateKey(int matchEventId, int gateDeviceId) {
+        return ((long) matchEventId << 32) | (gateDeviceId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Occupation de référence : tickets utilisés au chargement et entrées déjà comptées à cet instant
+     */
+    private static final class Seed {
+        final long alreadyEntered;
+        final long grantedAtSeed;
+
+        Seed(long alreadyEntered, long grantedAtSeed) {
+            this.alreadyEntered = alreadyEntered;
+            this.grantedAtSeed = grantedAtSeed;
+        }
+    }
+
+    private static final class MatchCounters {
+        final int matchEventId;
+        final LongAdder granted = new LongAdder();
+        final LongAdder denied = new LongAdder();
+        final RollingCounter recentEntries = new RollingCounter();
+        volatile Seed seed = new Seed(0, 0);
+
+        MatchCounters(int matchEventId) {
+            this.matchEventId = matchEventId;
+            if (matchEventId > 0) {
+                String match = String.valueOf(matchEventId);
+                MetricsRegistry metrics = MetricsRegistry.getInstance();
+                metrics.gauge("occupancy.entered", this::occupancy, "match", match);
+                metrics.gauge("occupancy.entries_last_minute", () -> recentEntries.sum(System.nanoTime() / 1_000_000),
+                              "match", match);
+            }
+        }
+
+        long occupancy() {
+            Seed current = seed;
+            return current.alreadyEntered + granted.sum() - current.grantedAtSeed;
+        }
+    }
+
+    private static final class GateCounters {
+        final int matchEventId;
+        final int gateDeviceId;
+        final LongAdder granted = new LongAdder();
+        final LongAdder denied = new LongAdder();
+        final RollingCounter recentEntries = new RollingCounter();
+
+        GateCounters(int matchEventId, int gateDeviceId) {
+            this.matchEventId = matchEventId;
+            this.gateDeviceId = gateDeviceId;
+        }
+    }
+
+    /**
+     * Compteur sur fenêtre glissante d'une minute, en BUCKETS seaux de BUCKET_MILLIS
+     * Un seau est remis à zéro par le premier incrément qui le réutilise ; un incrément
+     * concurrent à cette remise à zéro peut être perdu, ce qui reste négligeable pour un affichage.
+     */
+    private static final class RollingCounter {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLongArray epochs = new AtomicLongArray(BUCKETS);
+
+        void increment(long nowMillis) {
+            long epoch = nowMillis / BUCKET_MILLIS;
+            int slot = (int) (epoch % BUCKETS);
+            long seen = epochs.get(slot);
+            if (seen != epoch && epochs.compareAndSet(slot, seen, epoch)) {
+                counts.set(slot, 0);
+            }
+            counts.incrementAndGet(slot);
+        }
+
+        long sum(long nowMillis) {
+            long epoch = nowMillis / BUCKET_MILLIS;
+            long total = 0;
+            for (int slot = 0; slot < BUCKETS; slot++) {
+                if (epoch - epochs.get(slot) < BUCKETS) {
+                    total += counts.get(slot);
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Occupation d'un match
+     */
+    public static class MatchOccupancy {
+        private final int matchEventId;
+        private final long occupancy;
+        private final long grantedCount;
+        private final long deniedCount;
+        private final long entriesLastMinute;
+
+        public MatchOccupancy(int matchEventId, long occupancy, long grantedCount, long deniedCount,
+                              long entriesLastMinute) {
+            this.matchEventId = matchEventId;
+            this.occupancy = occupancy;
+            this.grantedCount = grantedCount;
+            this.deniedCount = deniedCount;
+            this.entriesLastMinute = entriesLastMinute;
+        }
+
+        public int getMatchEventId() {
+            return matchEventId;
+        }
+
+        public long getOccupancy() {
+            return occupancy;
+        }
+
+        public long getGrantedCount() {
+            return grantedCount;
+        }
+
+        public long getDeniedCount() {
+            return deniedCount;
+        }
+
+        public long getEntriesLastMinute() {
+            return entriesLastMinute;
+        }
+    }
+
+    /**
+     * Activité d'une porte pour un match
+     */
+    public static class GateActivity {
+        private final int matchEventId;
+        private final int gateDeviceId;
+        private final long grantedCount;
+        private final long deniedCount;
+        private final long entriesLastMinute;
+
+        public GateActivity(int matchEventId, int gateDeviceId, long grantedCount, long deniedCount,
+                            long entriesLastMinute) {
+            this.matchEventId = matchEventId;
+            this.gateDeviceId = gateDeviceId;
+            this.grantedCount = grantedCount;
+            this.deniedCount = deniedCount;
+            this.entriesLastMinute = entriesLastMinute;
+        }
+
+        public int getMatchEventId() {
+            return matchEventId;
+        }
+
+        public int getGateDeviceId() {
+            return gateDeviceId;
+        }
+
+        public long getGrantedCount() {
+            return grantedCount;
+        }
+
+        public long getDeniedCount() {
+            return deniedCount;
+        }
+
+        public long getEntriesLastMinute() {
+            return entriesLastMinute;
+        }
+    }
+}
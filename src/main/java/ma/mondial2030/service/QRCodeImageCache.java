@@ -0,0 +1,330 @@
+package ma.mondial2030.service;
+
+import javafx.scene.image.Image;
+import ma.mondial2030.metrics.MetricsRegistry;
+import ma.mondial2030.model.Ticket;
+import ma.mondial2030.util.QRCodeGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache LRU des images QR Code, indexé par les données du QR Code
+ * Borné en nombre d'entrées et en octets de pixels estimés (largeur x hauteur x 4).
+ * Les rendus anticipés (lignes visibles d'une table) sont faits en arrière-plan.
+ */
+public class QRCodeImageCache {
+    private static final Logger logger = LoggerFactory.getLogger(QRCodeImageCache.class);
+
+    private static final int MAX_ENTRIES = 256;
+    private static final long MAX_BYTES = 64L * 1024 * 1024;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private static QRCodeImageCache instance;
+
+    private final LinkedHashMap<String, CachedImage> images = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<Integer, String> payloadByTicket = new HashMap<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ExecutorService renderer;
+    private long totalBytes;
+
+    // Statistiques
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private final AtomicLong prefetchCount = new AtomicLong();
+    private final AtomicLong totalRenderNanos = new AtomicLong();
+
+    private QRCodeImageCache() {
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+        renderer = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "qr-prerender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("qr_cache.entries", () -> getStats().getEntryCount());
+        metrics.gauge("qr_cache.bytes", () -> getStats().getEstimatedBytes());
+        metrics.gauge("qr_cache.hits", hitCount::get);
+        metrics.gauge("qr_cache.misses", missCount::get);
+    }
+
+    /**
+     * Obtient l'instance singleton du cache
+     */
+    public static synchronized QRCodeImageCache getInstance() {
+        if (instance == null) {
+            instance = new QRCodeImageCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Arrête les rendus en arrière-plan, si le cache a été initialisé
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            logger.info("Arrêt du cache d'images QR Code: {}", instance.getStats());
+            instance.renderer.shutdownNow();
+            try {
+                instance.renderer.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            instance = null;
+        }
+    }
+
+    /**
+     * Retourne l'image du QR Code d'un ticket ; si les données QR du ticket ont changé
+     * depuis le dernier rendu, l'ancienne image est invalidée
+     */
+    public Image get(Ticket ticket) {
+        String payload = ticket.getQrCodeData();
+        if (payload == null) {
+            return null;
+        }
+        track(ticket.getId(), payload);
+        return get(payload);
+    }
+
+    /**
+     * Retourne l'image d'un QR Code, rendue et mise en cache si nécessaire
+     */
+    public Image get(String payload) {
+        Image cached = lookup(payload);
+        if (cached != null) {
+            hitCount.incrementAndGet();
+            return cached;
+        }
+        missCount.incrementAndGet();
+        return render(payload);
+    }
+
+    /**
+     * Demande le rendu anticipé du QR Code de tickets (par exemple les lignes visibles d'une table)
+     */
+    public void prefetch(Collection<Ticket> tickets) {
+        for (Ticket ticket : tickets) {
+            prefetch(ticket);
+        }
+    }
+
+    /**
+     * Demande le rendu anticipé du QR Code d'un ticket
+     */
+    public void prefetch(Ticket ticket) {
+        String payload = ticket != null ? ticket.getQrCodeData() : null;
+        if (payload == null) {
+            return;
+        }
+        track(ticket.getId(), payload);
+        if (contains(payload) || !pending.add(payload)) {
+            return;
+        }
+        try {
+            renderer.execute(() -> {
+                try {
+                    if (!contains(payload)) {
+                        prefetchCount.incrementAndGet();
+                        render(payload);
+                    }
+                } finally {
+                    pending.remove(payload);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(payload);
+        }
+    }
+
+    /**
+     * Retire l'image associée à des données QR Code
+     */
+    public synchronized void invalidate(String payload) {
+        CachedImage removed = images.remove(payload);
+        if (removed != null) {
+            totalBytes -= removed.bytes;
+            invalidationCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Retire l'image du QR Code d'un ticket (données QR modifiées)
+     */
+    public synchronized void invalidateTicket(int ticketId) {
+        String payload = payloadByTicket.remove(ticketId);
+        if (payload != null) {
+            invalidate(payload);
+        }
+    }
+
+    /**
+     * Vide le cache
+     */
+    public synchronized void clear() {
+        images.clear();
+        payloadByTicket.clear();
+        totalBytes = 0;
+    }
+
+    private Image render(String payload) {
+        long start = System.nanoTime();
+        Image image = QRCodeGenerator.generateQRCode(payload);
+        totalRenderNanos.addAndGet(System.nanoTime() - start);
+        if (image != null) {
+            store(payload, image);
+        }
+        return image;
+    }
+
+    private synchronized Image lookup(String payload) {
+        CachedImage entry = images.get(payload);
+        return entry != null ? entry.image : null;
+    }
+
+    private synchronized boolean contains(String payload) {
+        return images.containsKey(payload);
+    }
+
+    private synchronized void track(int ticketId, String payload) {
+        String previous = payloadByTicket.put(ticketId, payload);
+        if (previous != null && !previous.equals(payload)) {
+            invalidate(previous);
+        }
+    }
+
+    private synchronized void store(String payload, Image image) {
+        long bytes = (long) image.getWidth() * (long) image.getHeight() * BYTES_PER_PIXEL;
+        CachedImage previous = images.put(payload, new CachedImage(image, bytes));
+        if (previous != null) {
+            totalBytes -= previous.bytes;
+        }
+        totalBytes += bytes;
+        evictIfNeeded();
+    }
+
+    private void evictIfNeeded() {
+        Iterator<CachedImage> eldest = images.values().iterator();
+        while ((images.size() > MAX_ENTRIES || totalBytes > MAX_BYTES) && eldest.hasNext()) {
+            CachedImage entry = eldest.next();
+            eldest.remove();
+            totalBytes -= entry.bytes;
+            evictionCount.incrementAndGet();
+        }
+        if (payloadByTicket.size() > MAX_ENTRIES * 4) {
+            // Les associations ticket -> données ne servent qu'à l'invalidation des images présentes
+            payloadByTicket.values().removeIf(payload -> !images.containsKey(payload));
+        }
+    }
+
+    /**
+     * Obtient les statistiques du cache
+     */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(images.size(), totalBytes, hitCount.get(), missCount.get(),
+                              evictionCount.get(), invalidationCount.get(), prefetchCount.get(),
+                              totalRenderNanos.get());
+    }
+
+    /**
+     * Image en cache et sa taille estimée
+     */
+    private static final class CachedImage {
+        final Image image;
+        final long bytes;
+
+        CachedImage(Image image, long bytes) {
+            this.image = image;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Statistiques du cache d'images QR Code
+     */
+    public static class CacheStats {
+        private final int entryCount;
+        private final long estimatedBytes;
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+        private final long invalidationCount;
+        private final long prefetchCount;
+        private final long totalRenderNanos;
+
+        public CacheStats(int entryCount, long estimatedBytes, long hitCount, long missCount,
+                          long evictionCount, long invalidationCount, long prefetchCount,
+                          long totalRenderNanos) {
+            this.entryCount = entryCount;
+            this.estimatedBytes = estimatedBytes;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.invalidationCount = invalidationCount;
+            this.prefetchCount = prefetchCount;
+            this.totalRenderNanos = totalRenderNanos;
+        }
+
+        public int getEntryCount() {
+            return entryCount;
+        }
+
+        public long getEstimatedBytes() {
+            return estimatedBytes;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        public long getInvalidationCount() {
+            return invalidationCount;
+        }
+
+        public long getPrefetchCount() {
+            return prefetchCount;
+        }
+
+        public double getHitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 0.0 : hitCount / (double) requests;
+        }
+
+        public double getAverageRenderMillis() {
+            long renders = missCount + prefetchCount;
+            return renders == 0 ? 0.0 : totalRenderNanos / (double) renders / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("QRCodeImageCache[entrées=%d, octets=%d, hits=%d, misses=%d, évictions=%d, invalidations=%d]",
+                                 entryCount, estimatedBytes, hitCount, missCount, evictionCount, invalidationCount);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ma.mondial2030.service;
+
+import ma.mondial2030.model.Ticket;
+
+/**
+ * Écouteur des événements du cycle de vie des tickets (émission, changement de statut)
+ * Permet aux caches et index en mémoire de rester cohérents avec la base
+ */
+public interface TicketEventListener {
+
+    /**
+     * Un ticket vient d'être vendu et enregistré
+     */
+    default void onTicketIssued(Ticket ticket) {
+    }
+
+    /**
+     * Le statut d'un ticket a changé en base
+     */
+    default void onTicketStatusChanged(int ticketId, String ticketCode, int matchEventId, Ticket.Status status) {
+    }
+}
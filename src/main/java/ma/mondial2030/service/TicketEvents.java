@@ -0,0 +1,52 @@
+package ma.mondial2030.service;
+
+import ma.mondial2030.model.Ticket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Diffusion des événements tickets aux écouteurs enregistrés
+ */
+public final class TicketEvents {
+    private static final Logger logger = LoggerFactory.getLogger(TicketEvents.class);
+    private static final CopyOnWriteArrayList<TicketEventListener> listeners = new CopyOnWriteArrayList<>();
+
+    private TicketEvents() {
+    }
+
+    public static void addListener(TicketEventListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public static void removeListener(TicketEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Signale la vente d'un ticket
+     */
+    public static void ticketIssued(Ticket ticket) {
+        for (TicketEventListener listener : listeners) {
+            try {
+                listener.onTicketIssued(ticket);
+            } catch (RuntimeException e) {
+                logger.error("Erreur dans un écouteur d'émission de ticket", e);
+            }
+        }
+    }
+
+    /**
+     * Signale un changement de statut d'un ticket
+     */
+    public static void ticketStatusChanged(int ticketId, String ticketCode, int matchEventId, Ticket.Status status) {
+        for (TicketEventListener listener : listeners) {
+            try {
+                listener.onTicketStatusChanged(ticketId, ticketCode, matchEventId, status);
+            } catch (RuntimeException e) {
+                logger.error("Erreur dans un écouteur de changement de statut", e);
+            }
+        }
+    }
+}
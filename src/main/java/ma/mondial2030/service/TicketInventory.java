@@ -0,0 +1,361 @@
+package ma.mondial2030.service;
+
+import ma.mondial2030.dao.MatchEventDAO;
+import ma.mondial2030.dao.TicketDAO;
+import ma.mondial2030.model.Ticket;
+import ma.mondial2030.util.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Gestion du stock de tickets
+ * - Mode par défaut : décrément conditionnel et insertion du ticket dans une même transaction
+ * - Mode réservation (matchs à forte demande) : des lots de tickets sont réservés en base,
+ *   puis distribués localement via un compteur réparti en plusieurs segments
+ * Le mode réservation s'active de lui-même quand un match dépasse HOT_SALES_PER_SECOND ventes
+ * dans la même seconde (réglable par -Dmondial2030.inventory.hotSalesPerSecond) et se désactive,
+ * stock non vendu restitué, après QUIET_PERIOD_MS sans vente (-Dmondial2030.inventory.quietPeriodMs)
+ */
+public class TicketInventory {
+    private static final Logger logger = LoggerFactory.getLogger(TicketInventory.class);
+
+    private static final int LEASE_SIZE = 500;
+    private static final int STRIPES = 16;
+    private static final int HOT_SALES_PER_SECOND =
+        Integer.getInteger("mondial2030.inventory.hotSalesPerSecond", 200);
+    /** Délai avant de redemander un lot en base après un match déclaré complet */
+    private static final long SOLD_OUT_RECHECK_MS = 1000;
+    private static final long QUIET_PERIOD_MS = Long.getLong("mondial2030.inventory.quietPeriodMs", 30_000L);
+
+    private static TicketInventory instance;
+
+    private final TicketDAO ticketDAO = new TicketDAO();
+    private final MatchEventDAO matchEventDAO = new MatchEventDAO();
+    private final Map<Integer, StripedReservation> reservations = new ConcurrentHashMap<>();
+    private final Map<Integer, DemandWindow> demand = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reaper;
+
+    private TicketInventory() {
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ticket-inventory-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleWithFixedDelay(this::releaseQuietReservations, QUIET_PERIOD_MS, QUIET_PERIOD_MS,
+                                      TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Obtient l'instance singleton du stock
+     */
+    public static synchronized TicketInventory getInstance() {
+        if (instance == null) {
+            instance = new TicketInventory();
+        }
+        return instance;
+    }
+
+    /**
+     * Restitue les réservations non consommées, si le stock a été initialisé
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.reaper.shutdownNow();
+            instance.releaseAllReservations();
+            instance = null;
+        }
+    }
+
+    /**
+     * Active le mode réservation pour un match à forte demande
+     */
+    public void enableReservations(int matchEventId) {
+        reservations.computeIfAbsent(matchEventId, StripedReservation::new);
+        logger.info("Mode réservation activé pour le match {}", matchEventId);
+    }
+
+    /**
+     * Désactive le mode réservation et restitue les tickets non vendus
+     */
+    public void disableReservations(int matchEventId) {
+        StripedReservation reservation = reservations.remove(matchEventId);
+        if (reservation != null) {
+            reservation.releaseUnused();
+        }
+    }
+
+    /**
+     * Recalcule le stock d'un match à partir des tickets vendus (tous statuts : une annulation ne
+     * remet pas le ticket en vente), après avoir restitué la réservation locale. Rattrape le stock
+     * perdu avec la réservation d'un processus arrêté sans la restituer (plantage) ; à n'appeler
+     * que lorsqu'aucun autre processus ne vend pour ce match, comme à l'ouverture des portes.
+     * Retourne le nouveau stock, ou -1 en cas d'erreur.
+     */
+    public int reconcile(int matchEventId) {
+        disableReservations(matchEventId);
+        int available = matchEventDAO.reconcileAvailableTickets(matchEventId);
+        if (available >= 0) {
+            logger.info("Stock du match {} recalculé à partir des tickets vendus: {} disponibles",
+                        matchEventId, available);
+        }
+        return available;
+    }
+
+    /**
+     * Vend un ticket : retourne false si le match est complet ou en cas d'erreur
+     */
+    public boolean sell(Ticket ticket) {
+        int matchEventId = ticket.getMatchEvent().getId();
+        StripedReservation reservation = reservations.get(matchEventId);
+        if (reservation != null && !reservation.isClosed()) {
+            return sellFromReservation(ticket, reservation);
+        }
+        boolean sold = sellTransactional(ticket, matchEventId);
+        if (sold && demand.computeIfAbsent(matchEventId, id -> new DemandWindow()).recordSale()) {
+            enableReservations(matchEventId);
+        }
+        return sold;
+    }
+
+    /**
+     * Décrément conditionnel et insertion dans une seule transaction
+     */
+    private boolean sellTransactional(Ticket ticket, int matchEventId) {
+        try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (!matchEventDAO.decrementAvailableTickets(matchEventId, 1, conn)) {
+                    conn.rollback();
+                    logger.warn("Plus de tickets disponibles pour le match: {}", matchEventId);
+                    return false;
+                }
+                if (!ticketDAO.create(ticket, conn)) {
+                    conn.rollback();
+                    return false;
+                }
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Erreur lors de la vente du ticket", e);
+        }
+        return false;
+    }
+
+    /**
+     * Prend un ticket dans la réservation locale (déjà décomptée en base) puis insère le ticket
+     */
+    private boolean sellFromReservation(Ticket ticket, StripedReservation reservation) {
+        if (!reservation.tryAcquire()) {
+            if (reservation.isClosed()) {
+                // Réservation restituée entre-temps : retour au décrément transactionnel
+                return sellTransactional(ticket, reservation.matchEventId);
+            }
+            logger.warn("Plus de tickets disponibles pour le match: {}", reservation.matchEventId);
+            return false;
+        }
+        if (ticketDAO.create(ticket)) {
+            return true;
+        }
+        // L'insertion a échoué : le ticket retourne dans la réservation
+        reservation.giveBack();
+        return false;
+    }
+
+    /**
+     * Désactive le mode réservation des matchs sans vente depuis QUIET_PERIOD_MS : le stock réservé
+     * ne reste pas immobilisé (ni invisible pour les autres postes) une fois la demande retombée
+     */
+    private void releaseQuietReservations() {
+        try {
+            for (Map.Entry<Integer, StripedReservation> entry : reservations.entrySet()) {
+                StripedReservation reservation = entry.getValue();
+                if (reservation.isQuiet() && reservations.remove(entry.getKey(), reservation)) {
+                    reservation.releaseUnused();
+                    logger.info("Mode réservation désactivé pour le match {} (aucune vente depuis {} ms)",
+                                entry.getKey(), QUIET_PERIOD_MS);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Erreur lors de la restitution des réservations inactives", e);
+        }
+    }
+
+    private void releaseAllReservations() {
+        for (Integer matchEventId : reservations.keySet()) {
+            disableReservations(matchEventId);
+        }
+    }
+
+    /**
+     * Nombre de ventes d'un match dans la seconde courante
+     */
+    private static final class DemandWindow {
+        private final AtomicInteger sales = new AtomicInteger();
+        private volatile long second;
+
+        /**
+         * Compte une vente ; true si le match vient de passer le seuil de forte demande
+         */
+        boolean recordSale() {
+            long now = System.currentTimeMillis() / 1000;
+            if (second != now) {
+                synchronized (this) {
+                    if (second != now) {
+                        second = now;
+                        sales.set(0);
+                    }
+                }
+            }
+            return sales.incrementAndGet() == HOT_SALES_PER_SECOND;
+        }
+    }
+
+    /**
+     * Compteur local de tickets réservés, réparti en segments pour limiter la contention.
+     * Chaque segment occupe sa propre ligne de cache (pas de 16 entiers).
+     * Les restitutions, les nouveaux lots et la fermeture passent par refillLock : une fois la
+     * réservation fermée, plus aucun ticket ne peut y entrer ni en sortir par un nouveau lot.
+     */
+    private final class StripedReservation {
+        private static final int PADDING = 16;
+
+        final int matchEventId;
+        private final AtomicIntegerArray counts = new AtomicIntegerArray(STRIPES * PADDING);
+        private final Object refillLock = new Object();
+        /** Instant avant lequel le match est considéré complet (0 : pas complet) */
+        private volatile long soldOutUntil;
+        private volatile boolean closed;
+        /** Nombre de lots obtenus (modifié sous refillLock) */
+        private volatile int refills;
+        /** Dernier relevé de isQuiet (thread de restitution uniquement) */
+        private int sampledRemaining = -1;
+        private int sampledRefills = -1;
+
+        StripedReservation(int matchEventId) {
+            this.matchEventId = matchEventId;
+        }
+
+        boolean tryAcquire() {
+            int home = (int) (Thread.currentThread().threadId() & (STRIPES - 1));
+            while (true) {
+                for (int i = 0; i < STRIPES; i++) {
+                    if (tryDecrement(((home + i) & (STRIPES - 1)) * PADDING)) {
+                        return true;
+                    }
+                }
+                if (System.currentTimeMillis() < soldOutUntil || !refill()) {
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * Rend un ticket non vendu ; restitué directement en base si la réservation est fermée
+         */
+        void giveBack() {
+            synchronized (refillLock) {
+                if (!closed) {
+                    int home = (int) (Thread.currentThread().threadId() & (STRIPES - 1));
+                    counts.incrementAndGet(home * PADDING);
+                    soldOutUntil = 0;
+                    return;
+                }
+            }
+            if (!matchEventDAO.releaseAvailableTickets(matchEventId, 1)) {
+                logger.error("Ticket réservé non restitué pour le match {}", matchEventId);
+            }
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        private boolean tryDecrement(int index) {
+            int current;
+            while ((current = counts.get(index)) > 0) {
+                if (counts.compareAndSet(index, current, current - 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Réserve un nouveau lot en base ; un seul thread à la fois
+         */
+        private boolean refill() {
+            synchronized (refillLock) {
+                if (closed) {
+                    return false;
+                }
+                if (remaining() > 0) {
+                    return true;
+                }
+                int granted = matchEventDAO.reserveAvailableTickets(matchEventId, LEASE_SIZE);
+                if (granted == 0) {
+                    soldOutUntil = System.currentTimeMillis() + SOLD_OUT_RECHECK_MS;
+                    return false;
+                }
+                soldOutUntil = 0;
+                refills++;
+                int share = granted / STRIPES;
+                for (int i = 0; i < STRIPES; i++) {
+                    int amount = share + (i == 0 ? granted % STRIPES : 0);
+                    if (amount > 0) {
+                        counts.addAndGet(i * PADDING, amount);
+                    }
+                }
+                logger.debug("{} tickets réservés pour le match {}", granted, matchEventId);
+                return true;
+            }
+        }
+
+        private int remaining() {
+            int total = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                total += counts.get(i * PADDING);
+            }
+            return total;
+        }
+
+        /**
+         * true si rien n'a bougé depuis le relevé précédent (ni vente ni nouveau lot) ; sans
+         * compteur de ventes partagé, qui ramènerait la contention que les segments évitent
+         */
+        boolean isQuiet() {
+            int remaining = remaining();
+            int refillCount = refills;
+            boolean quiet = remaining == sampledRemaining && refillCount == sampledRefills;
+            sampledRemaining = remaining;
+            sampledRefills = refillCount;
+            return quiet;
+        }
+
+        void releaseUnused() {
+            synchronized (refillLock) {
+                closed = true;
+                int unused = 0;
+                for (int i = 0; i < STRIPES; i++) {
+                    unused += counts.getAndSet(i * PADDING, 0);
+                }
+                if (unused > 0 && matchEventDAO.releaseAvailableTickets(matchEventId, unused)) {
+                    logger.info("{} tickets réservés non vendus restitués pour le match {}", unused, matchEventId);
+                }
+            }
+        }
+    }
+}
@@ -2,6 +2,9 @@ package ma.mondial2030.service;
 
 import ma.mondial2030.dao.MatchEventDAO;
 import ma.mondial2030.dao.TicketDAO;
+import ma.mondial2030.metrics.LatencyHistogram;
+import ma.mondial2030.metrics.MetricsRegistry;
+import ma.mondial2030.metrics.PurchaseEvent;
 import ma.mondial2030.model.MatchEvent;
 import ma.mondial2030.model.Ticket;
 import ma.mondial2030.model.User;
@@ -9,7 +12,10 @@ import ma.mondial2030.util.QRCodeGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.UUID;
@@ -21,22 +27,45 @@ public class TicketService {
     private static final Logger logger = LoggerFactory.getLogger(TicketService.class);
     private final TicketDAO ticketDAO = new TicketDAO();
     private final MatchEventDAO matchEventDAO = new MatchEventDAO();
+    private final TicketInventory ticketInventory = TicketInventory.getInstance();
+    private static final Duration VALIDITY_AFTER_MATCH = Duration.ofHours(12);
+    private static final LatencyHistogram PURCHASE_SOLD =
+        MetricsRegistry.getInstance().histogram("ticket.purchase", "result", "sold");
+    private static final LatencyHistogram PURCHASE_REJECTED =
+        MetricsRegistry.getInstance().histogram("ticket.purchase", "result", "rejected");
 
     /**
      * Achète un ticket pour un utilisateur
      */
     public Ticket purchaseTicket(User user, int matchEventId, String seatNumber) {
+        long start = System.nanoTime();
+        PurchaseEvent event = new PurchaseEvent();
+        event.begin();
+        Ticket ticket = null;
+        try {
+            ticket = sellTicket(user, matchEventId, seatNumber);
+            return ticket;
+        } finally {
+            (ticket != null ? PURCHASE_SOLD : PURCHASE_REJECTED).recordNanos(System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.userId = user != null ? user.getId() : 0;
+                event.matchEventId = matchEventId;
+                event.ticketCode = ticket != null ? ticket.getTicketCode() : null;
+                event.outcome = ticket != null ? "sold" : "rejected";
+                event.commit();
+            }
+        }
+    }
+
+    private Ticket sellTicket(User user, int matchEventId, String seatNumber) {
         MatchEvent matchEvent = matchEventDAO.findById(matchEventId);
         if (matchEvent == null) {
             logger.error("Match non trouvé: {}", matchEventId);
             return null;
         }
 
-        if (matchEvent.getAvailableTickets() <= 0) {
-            logger.warn("Plus de tickets disponibles pour le match: {}", matchEventId);
-            return null;
-        }
-
+        // Le stock est vérifié par TicketInventory : la valeur lue ici peut déjà être périmée
         // Générer un code de ticket unique
         String ticketCode = generateTicketCode();
         
@@ -49,14 +78,19 @@ public class TicketService {
         ticket.setStatus(Ticket.Status.VALID);
         ticket.setPurchaseDate(LocalDateTime.now());
         
-        // Générer les données QR Code
-        String qrData = QRCodeGenerator.generateTicketQRData(ticketCode, user.getId(), matchEventId);
+        // Générer les données QR Code signées, vérifiables hors ligne jusqu'après le match
+        long validFrom = Instant.now().getEpochSecond();
+        LocalDateTime validUntilDate = matchEvent.getMatchDate() != null
+            ? matchEvent.getMatchDate().plus(VALIDITY_AFTER_MATCH)
+            : LocalDateTime.now().plus(VALIDITY_AFTER_MATCH);
+        long validUntil = validUntilDate.atZone(ZoneId.systemDefault()).toEpochSecond();
+        String qrData = QRCodeGenerator.generateSignedTicketQRData(ticketCode, user.getId(), matchEventId,
+                                                                   validFrom, validUntil);
         ticket.setQrCodeData(qrData);
 
-        // Sauvegarder le ticket
-        if (ticketDAO.create(ticket)) {
-            // Mettre à jour les tickets disponibles
-            matchEventDAO.updateAvailableTickets(matchEventId, matchEvent.getAvailableTickets() - 1);
+        // Sauvegarder le ticket et décrémenter le stock de façon atomique
+        if (ticketInventory.sell(ticket)) {
+            TicketEvents.ticketIssued(ticket);
             logger.info("Ticket créé avec succès: {} pour l'utilisateur {}", ticketCode, user.getUsername());
             return ticket;
         }
@@ -80,14 +114,20 @@ public class TicketService {
             logger.warn("Ticket non trouvé: {}", ticketCode);
             return false;
         }
+        return markTicketUsed(ticket.getId(), ticket.getTicketCode(),
+                              ticket.getMatchEvent() != null ? ticket.getMatchEvent().getId() : 0);
+    }
 
-        if (ticket.getStatus() != Ticket.Status.VALID) {
+    /**
+     * Marque comme utilisé un ticket déjà chargé, sans le relire en base
+     * La mise à jour est conditionnelle : un ticket déjà utilisé est refusé
+     */
+    public boolean markTicketUsed(int ticketId, String ticketCode, int matchEventId) {
+        if (!ticketDAO.markUsedIfValid(ticketId)) {
             logger.warn("Ticket invalide ou déjà utilisé: {}", ticketCode);
             return false;
         }
-
-        // Marquer le ticket comme utilisé
-        ticketDAO.updateStatus(ticket.getId(), Ticket.Status.USED);
+        TicketEvents.ticketStatusChanged(ticketId, ticketCode, matchEventId, Ticket.Status.USED);
         logger.info("Ticket validé et marqué comme utilisé: {}", ticketCode);
         return true;
     }
@@ -0,0 +1,417 @@
+package ma.mondial2030.service;
+
+import ma.mondial2030.dao.TicketDAO;
+import ma.mondial2030.metrics.MetricsRegistry;
+import ma.mondial2030.model.Ticket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Passages des tickets signés admis par ce poste
+ * - Anti-rejeu local : un code admis une fois est refusé ensuite, y compris après un redémarrage
+ * - Passage à USED en base : mise à jour conditionnelle synchrone à délai court, qui fait foi entre
+ *   les postes ; si la base ne répond pas, le ticket est admis hors ligne et son passage à USED est
+ *   journalisé puis rejoué en arrière-plan jusqu'à ce que la base réponde, sans limite de tentatives
+ * Le délai ne dépend pas du pilote (un verrou ou une panne réseau peuvent ignorer le timeout JDBC) :
+ * la mise à jour s'exécute sur un petit pool borné et le scan cesse de l'attendre au bout du délai.
+ * Journal local en ajout seul, compacté périodiquement, une ligne par événement :
+ *   U|code|validUntil                : code admis par ce poste
+ *   P|code|matchEventId|validUntil   : code admis hors ligne, passage à USED en attente
+ *   D|code                           : passage à USED répercuté (ou refusé) par la base
+ */
+public class TicketUsageJournal {
+    private static final Logger logger = LoggerFactory.getLogger(TicketUsageJournal.class);
+
+    private static final long MARK_USED_TIMEOUT_MS = 300;
+    private static final int MARK_USED_THREADS = 8;
+    private static final int MARK_USED_QUEUE = 256;
+    /** Après un échec, les scans passent directement hors ligne pendant ce délai */
+    private static final long OFFLINE_GRACE_MS = 2_000;
+    private static final long RETRY_DELAY_MS = 5_000;
+    private static final int COMPACT_INTERVAL = 4096;
+    private static final Path JOURNAL_FILE =
+        Paths.get(System.getProperty("user.home"), ".mondial2030", "ticket-usage.log");
+
+    private static TicketUsageJournal instance;
+
+    private final TicketDAO ticketDAO = new TicketDAO();
+    private final Map<String, Long> usedCodes = new ConcurrentHashMap<>();
+    private final Map<String, PendingMark> pendingMarks = new ConcurrentHashMap<>();
+    /** Codes marqués en base après que le scan a cessé d'attendre : leur rejeu ne doit pas alerter */
+    private final Set<String> lateMarks = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor markExecutor;
+    private final Object fileLock = new Object();
+    private final Thread worker;
+    private BufferedWriter journal;
+    private int appendedSinceCompaction;
+    private volatile boolean running = true;
+    private volatile long offlineUntil;
+
+    private final AtomicLong offlineAdmissions = new AtomicLong();
+    private final AtomicLong replayedMarks = new AtomicLong();
+
+    private TicketUsageJournal() {
+        load();
+        compact();
+        AtomicInteger threadCount = new AtomicInteger();
+        markExecutor = new ThreadPoolExecutor(
+            MARK_USED_THREADS, MARK_USED_THREADS, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MARK_USED_QUEUE), task -> {
+                Thread thread = new Thread(task, "ticket-usage-mark-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        worker = new Thread(this::runLoop, "ticket-usage-sync");
+        worker.setDaemon(true);
+        worker.start();
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("ticket_usage.pending", pendingMarks::size);
+        metrics.gauge("ticket_usage.offline_admissions", offlineAdmissions::get);
+        metrics.gauge("ticket_usage.replayed", replayedMarks::get);
+    }
+
+    /**
+     * Obtient l'instance singleton du journal (relu depuis le disque au premier appel)
+     */
+    public static synchronized TicketUsageJournal getInstance() {
+        if (instance == null) {
+            instance = new TicketUsageJournal();
+        }
+        return instance;
+    }
+
+    /**
+     * Arrête la synchronisation en arrière-plan ; les passages en attente restent dans le journal
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.stop();
+            instance = null;
+        }
+    }
+
+    /**
+     * Anti-rejeu local : true si le code n'avait encore jamais été admis sur ce poste
+     */
+    public boolean claim(String ticketCode, long validUntil) {
+        if (usedCodes.putIfAbsent(ticketCode, validUntil) != null) {
+            return false;
+        }
+        append("U|" + encode(ticketCode) + "|" + validUntil);
+        return true;
+    }
+
+    /**
+     * Passe un ticket à USED en base, sans attendre plus de MARK_USED_TIMEOUT_MS
+     * Retourne 1 si la base l'a marqué, 0 si elle le refuse (déjà utilisé ou annulé),
+     * -1 si la base ne répond pas : le passage est alors journalisé et rejoué plus tard
+     */
+    public int markUsed(String ticketCode, int matchEventId, long validUntil) {
+        if (System.currentTimeMillis() >= offlineUntil) {
+            int result = markUsedWithin(ticketCode, matchEventId);
+            if (result >= 0) {
+                return result;
+            }
+            offlineUntil = System.currentTimeMillis() + OFFLINE_GRACE_MS;
+        }
+        pendingMarks.put(ticketCode, new PendingMark(ticketCode, matchEventId, validUntil));
+        append("P|" + encode(ticketCode) + "|" + matchEventId + "|" + validUntil);
+        offlineAdmissions.incrementAndGet();
+        return -1;
+    }
+
+    /**
+     * Mise à jour conditionnelle attendue au plus MARK_USED_TIMEOUT_MS ; -1 si la base n'a pas répondu
+     * Si la base répond après l'abandon, le résultat est traité par la tâche elle-même.
+     */
+    private int markUsedWithin(String ticketCode, int matchEventId) {
+        MarkAttempt attempt = new MarkAttempt();
+        try {
+            markExecutor.execute(() -> {
+                int result = ticketDAO.markUsedIfValidByCode(ticketCode, MARK_USED_TIMEOUT_MS);
+                if (result == 1) {
+                    TicketEvents.ticketStatusChanged(0, ticketCode, matchEventId, Ticket.Status.USED);
+                }
+                if (!attempt.complete(result) && result == 1) {
+                    lateMarks.add(ticketCode);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Toutes les tentatives en cours attendent déjà la base
+            return -1;
+        }
+        return attempt.await(MARK_USED_TIMEOUT_MS);
+    }
+
+    /**
+     * Nombre de passages à USED en attente de la base
+     */
+    public int getPendingCount() {
+        return pendingMarks.size();
+    }
+
+    private void stop() {
+        running = false;
+        markExecutor.shutdownNow();
+        worker.interrupt();
+        try {
+            worker.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (fileLock) {
+            closeJournal();
+        }
+        logger.info("Journal des passages arrêté ({} passage(s) en attente de la base)", pendingMarks.size());
+    }
+
+    private void runLoop() {
+        while (running) {
+            try {
+                Thread.sleep(RETRY_DELAY_MS);
+            } catch (InterruptedException e) {
+                // Arrêt demandé : les passages en attente sont conservés dans le journal
+                return;
+            }
+            try {
+                replayPending();
+                if (appendedSinceCompaction() >= COMPACT_INTERVAL) {
+                    compact();
+                }
+            } catch (RuntimeException e) {
+                // Le thread ne doit jamais mourir : sans lui, les passages hors ligne ne sont plus rejoués
+                logger.error("Erreur inattendue du journal des passages", e);
+            }
+        }
+    }
+
+    /**
+     * Rejoue les passages à USED en attente ; s'arrête au premier échec (base toujours indisponible)
+     */
+    private void replayPending() {
+        for (PendingMark mark : pendingMarks.values()) {
+            int result = ticketDAO.markUsedIfValidByCode(mark.ticketCode);
+            if (result < 0) {
+                return;
+            }
+            offlineUntil = 0;
+            if (result == 1) {
+                TicketEvents.ticketStatusChanged(0, mark.ticketCode, mark.matchEventId, Ticket.Status.USED);
+            } else if (!lateMarks.remove(mark.ticketCode)) {
+                logger.warn("Ticket {} admis hors ligne mais déjà utilisé ou annulé en base", mark.ticketCode);
+            }
+            pendingMarks.remove(mark.ticketCode);
+            append("D|" + encode(mark.ticketCode));
+            replayedMarks.incrementAndGet();
+        }
+    }
+
+    /**
+     * Relit le journal : codes admis encore dans leur période de validité et passages en attente
+     */
+    private void load() {
+        if (!Files.exists(JOURNAL_FILE)) {
+            return;
+        }
+        long now = Instant.now().getEpochSecond();
+        try (BufferedReader reader = Files.newBufferedReader(JOURNAL_FILE, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank() && !apply(line.split("\\|", -1), now)) {
+                    logger.warn("Ligne illisible ignorée dans le journal des passages: {}", line);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Impossible de relire le journal des passages {}", JOURNAL_FILE, e);
+        }
+        if (!pendingMarks.isEmpty()) {
+            logger.warn("{} passage(s) admis hors ligne à répercuter en base", pendingMarks.size());
+        }
+    }
+
+    private boolean apply(String[] parts, long now) {
+        try {
+            switch (parts[0]) {
+                case "U":
+                    if (parts.length != 3) {
+                        return false;
+                    }
+                    long until = Long.parseLong(parts[2]);
+                    if (until >= now) {
+                        usedCodes.put(decode(parts[1]), until);
+                    }
+                    return true;
+                case "P":
+                    if (parts.length != 4) {
+                        return false;
+                    }
+                    String code = decode(parts[1]);
+                    PendingMark mark = new PendingMark(code, Integer.parseInt(parts[2]), Long.parseLong(parts[3]));
+                    usedCodes.put(code, mark.validUntil);
+                    pendingMarks.put(code, mark);
+                    return true;
+                case "D":
+                    if (parts.length != 2) {
+                        return false;
+                    }
+                    pendingMarks.remove(decode(parts[1]));
+                    return true;
+                default:
+                    return false;
+            }
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Ajoute une ligne au journal ; écrite immédiatement pour survivre à un arrêt brutal du processus
+     */
+    private void append(String line) {
+        synchronized (fileLock) {
+            try {
+                if (journal == null) {
+                    Files.createDirectories(JOURNAL_FILE.getParent());
+                    journal = Files.newBufferedWriter(JOURNAL_FILE, StandardCharsets.UTF_8,
+                                                      StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+                journal.write(line);
+                journal.newLine();
+                journal.flush();
+                appendedSinceCompaction++;
+            } catch (IOException e) {
+                logger.error("Impossible d'écrire dans le journal des passages {}", JOURNAL_FILE, e);
+                closeJournal();
+            }
+        }
+    }
+
+    private int appendedSinceCompaction() {
+        synchronized (fileLock) {
+            return appendedSinceCompaction;
+        }
+    }
+
+    /**
+     * Réécrit le journal avec l'état courant : les codes expirés et les passages répercutés disparaissent
+     */
+    private void compact() {
+        long now = Instant.now().getEpochSecond();
+        usedCodes.entrySet().removeIf(e -> e.getValue() < now && !pendingMarks.containsKey(e.getKey()));
+        Path compacted = JOURNAL_FILE.resolveSibling(JOURNAL_FILE.getFileName() + ".tmp");
+        synchronized (fileLock) {
+            try {
+                Files.createDirectories(JOURNAL_FILE.getParent());
+                try (BufferedWriter writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+                    for (Map.Entry<String, Long> used : usedCodes.entrySet()) {
+                        if (!pendingMarks.containsKey(used.getKey())) {
+                            writer.write("U|" + encode(used.getKey()) + "|" + used.getValue());
+                            writer.newLine();
+                        }
+                    }
+                    for (PendingMark mark : pendingMarks.values()) {
+                        writer.write("P|" + encode(mark.ticketCode) + "|" + mark.matchEventId + "|" + mark.validUntil);
+                        writer.newLine();
+                    }
+                }
+                closeJournal();
+                Files.move(compacted, JOURNAL_FILE, StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+                appendedSinceCompaction = 0;
+            } catch (IOException e) {
+                logger.error("Impossible de compacter le journal des passages {}", JOURNAL_FILE, e);
+            }
+        }
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.warn("Erreur à la fermeture du journal des passages", e);
+            }
+            journal = null;
+        }
+    }
+
+    private static String encode(String ticketCode) {
+        // URLEncoder encode '|', ce qui évite toute collision avec le séparateur
+        return URLEncoder.encode(ticketCode, StandardCharsets.UTF_8);
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rendez-vous entre un scan et sa mise à jour en base : le premier arrivé (résultat ou abandon) l'emporte
+     */
+    private static final class MarkAttempt {
+        private static final int WAITING = Integer.MIN_VALUE;
+        private static final int ABANDONED = Integer.MIN_VALUE + 1;
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        /**
+         * Publie le résultat ; false si le scan a déjà cessé d'attendre
+         */
+        boolean complete(int result) {
+            boolean delivered = state.compareAndSet(WAITING, result);
+            done.countDown();
+            return delivered;
+        }
+
+        int await(long timeoutMillis) {
+            try {
+                done.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (state.compareAndSet(WAITING, ABANDONED)) {
+                return -1;
+            }
+            return state.get();
+        }
+    }
+
+    /**
+     * Passage à USED admis hors ligne, en attente de la base
+     */
+    private static final class PendingMark {
+        final String ticketCode;
+        final int matchEventId;
+        final long validUntil;
+
+        PendingMark(String ticketCode, int matchEventId, long validUntil) {
+            this.ticketCode = ticketCode;
+            this.matchEventId = matchEventId;
+            this.validUntil = validUntil;
+        }
+    }
+}
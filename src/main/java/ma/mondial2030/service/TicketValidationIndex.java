@@ -0,0 +1,273 @@
+package ma.mondial2030.service;
+
+import ma.mondial2030.dao.MatchEventDAO;
+import ma.mondial2030.dao.TicketDAO;
+import ma.mondial2030.model.MatchEvent;
+import ma.mondial2030.model.Ticket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index en mémoire des tickets d'un match, pour valider un scan sans aller en base
+ * Table à adressage ouvert (sondage linéaire) : code -> (id ticket, id utilisateur, statut)
+ * Les lectures sont sans verrou ; les écritures sont synchronisées sur l'index.
+ */
+public class TicketValidationIndex {
+    private static final Logger logger = LoggerFactory.getLogger(TicketValidationIndex.class);
+
+    private static final Map<Integer, TicketValidationIndex> indexes = new ConcurrentHashMap<>();
+    private static final TicketDAO ticketDAO = new TicketDAO();
+    private static final MatchEventDAO matchEventDAO = new MatchEventDAO();
+    private static final Ticket.Status[] STATUSES = Ticket.Status.values();
+    private static final VarHandle CODES = MethodHandles.arrayElementVarHandle(String[].class);
+
+    static {
+        TicketEvents.addListener(new TicketEventListener() {
+            @Override
+            public void onTicketIssued(Ticket ticket) {
+                TicketValidationIndex index = indexes.get(ticket.getMatchEvent().getId());
+                if (index != null) {
+                    index.put(ticket.getId(), ticket.getTicketCode(), ticket.getUser().getId(), ticket.getStatus());
+                }
+            }
+
+            @Override
+            public void onTicketStatusChanged(int ticketId, String ticketCode, int matchEventId, Ticket.Status status) {
+                TicketValidationIndex index = indexes.get(matchEventId);
+                if (index != null) {
+                    index.setStatus(ticketCode, status);
+                }
+            }
+        });
+    }
+
+    private final int matchEventId;
+    private volatile Table table;
+    private int size;
+
+    private TicketValidationIndex(int matchEventId, int expectedSize) {
+        this.matchEventId = matchEventId;
+        this.table = new Table(capacityFor(expectedSize));
+    }
+
+    /**
+     * Charge (ou recharge) l'index d'un match, typiquement à l'ouverture des portes
+     * Retourne null si le match est introuvable (aucun index n'est alors conservé) ou en cas d'erreur
+     */
+    public static TicketValidationIndex warm(int matchEventId) {
+        long start = System.nanoTime();
+        MatchEvent matchEvent = matchEventDAO.findById(matchEventId);
+        if (matchEvent == null) {
+            logger.warn("Match {} introuvable, index des tickets non chargé", matchEventId);
+            return null;
+        }
+
+        TicketValidationIndex index = new TicketValidationIndex(matchEventId, matchEvent.getTotalCapacity());
+        int[] used = new int[1];
+        int loaded = ticketDAO.forEachCompactByMatch(matchEventId, (ticketId, ticketCode, userId, status) -> {
+            index.put(ticketId, ticketCode, userId, status);
+            if (status == Ticket.Status.USED) {
+                used[0]++;
+            }
+        });
+        if (loaded < 0) {
+            logger.error("Impossible de charger l'index des tickets du match {}", matchEventId);
+            return null;
+        }
+        indexes.put(matchEventId, index);
+        // Les tickets déjà utilisés donnent l'occupation de départ du match
+        OccupancyTracker.getInstance().seedOccupancy(matchEventId, used[0]);
+        logger.info("Index des tickets du match {} chargé: {} tickets en {} ms",
+                    matchEventId, loaded, (System.nanoTime() - start) / 1_000_000);
+        return index;
+    }
+
+    /**
+     * Retourne l'index d'un match s'il est chargé
+     */
+    public static TicketValidationIndex forMatch(int matchEventId) {
+        return indexes.get(matchEventId);
+    }
+
+    /**
+     * Retourne tous les index chargés
+     */
+    public static Collection<TicketValidationIndex> loaded() {
+        return indexes.values();
+    }
+
+    /**
+     * Décharge l'index d'un match (fermeture des portes)
+     */
+    public static void evict(int matchEventId) {
+        indexes.remove(matchEventId);
+    }
+
+    public int getMatchEventId() {
+        return matchEventId;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Cherche un code de ticket ; retourne un instantané de l'entrée ou null si le code est inconnu
+     */
+    public Entry lookup(String ticketCode) {
+        Table t = table;
+        int slot = find(t, ticketCode);
+        if (slot < 0) {
+            return null;
+        }
+        return new Entry(t.ticketIds[slot], t.userIds[slot], STATUSES[t.statuses[slot]]);
+    }
+
+    /**
+     * Passe atomiquement un ticket de VALID à USED ; false s'il n'était plus valide
+     */
+    public synchronized boolean tryMarkUsed(String ticketCode) {
+        Table t = table;
+        int slot = find(t, ticketCode);
+        if (slot < 0 || t.statuses[slot] != Ticket.Status.VALID.ordinal()) {
+            return false;
+        }
+        t.statuses[slot] = (byte) Ticket.Status.USED.ordinal();
+        return true;
+    }
+
+    /**
+     * Annule un tryMarkUsed dont l'écriture en base a échoué : USED redevient VALID
+     * Sans effet si le statut a changé entre-temps (annulation reçue, par exemple)
+     */
+    public synchronized void undoMarkUsed(String ticketCode) {
+        Table t = table;
+        int slot = find(t, ticketCode);
+        if (slot >= 0 && t.statuses[slot] == Ticket.Status.USED.ordinal()) {
+            t.statuses[slot] = (byte) Ticket.Status.VALID.ordinal();
+        }
+    }
+
+    /**
+     * Ajoute ou met à jour un ticket
+     */
+    public synchronized void put(int ticketId, String ticketCode, int userId, Ticket.Status status) {
+        if ((size + 1) * 2 > table.codes.length) {
+            resize();
+        }
+        Table t = table;
+        int mask = t.codes.length - 1;
+        int slot = spread(ticketCode.hashCode()) & mask;
+        while (t.codes[slot] != null && !t.codes[slot].equals(ticketCode)) {
+            slot = (slot + 1) & mask;
+        }
+        t.ticketIds[slot] = ticketId;
+        t.userIds[slot] = userId;
+        t.statuses[slot] = (byte) status.ordinal();
+        if (t.codes[slot] == null) {
+            // Le code est publié en dernier (release) : un lecteur qui le voit voit aussi les autres champs
+            CODES.setRelease(t.codes, slot, ticketCode);
+            size++;
+        }
+    }
+
+    private synchronized void setStatus(String ticketCode, Ticket.Status status) {
+        Table t = table;
+        int slot = find(t, ticketCode);
+        if (slot >= 0) {
+            t.statuses[slot] = (byte) status.ordinal();
+        }
+    }
+
+    private static int find(Table t, String ticketCode) {
+        int mask = t.codes.length - 1;
+        int slot = spread(ticketCode.hashCode()) & mask;
+        String code;
+        while ((code = (String) CODES.getAcquire(t.codes, slot)) != null) {
+            if (code.equals(ticketCode)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void resize() {
+        Table old = table;
+        Table grown = new Table(old.codes.length * 2);
+        int mask = grown.codes.length - 1;
+        for (int i = 0; i < old.codes.length; i++) {
+            String code = old.codes[i];
+            if (code != null) {
+                int slot = spread(code.hashCode()) & mask;
+                while (grown.codes[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                grown.codes[slot] = code;
+                grown.ticketIds[slot] = old.ticketIds[i];
+                grown.userIds[slot] = old.userIds[i];
+                grown.statuses[slot] = old.statuses[i];
+            }
+        }
+        table = grown;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        // Facteur de charge maximal de 0,5
+        return Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Tableaux parallèles de la table de hachage
+     */
+    private static final class Table {
+        final String[] codes;
+        final int[] ticketIds;
+        final int[] userIds;
+        final byte[] statuses;
+
+        Table(int capacity) {
+            codes = new String[capacity];
+            ticketIds = new int[capacity];
+            userIds = new int[capacity];
+            statuses = new byte[capacity];
+        }
+    }
+
+    /**
+     * Instantané compact d'un ticket de l'index
+     */
+    public static final class Entry {
+        private final int ticketId;
+        private final int userId;
+        private final Ticket.Status status;
+
+        Entry(int ticketId, int userId, Ticket.Status status) {
+            this.ticketId = ticketId;
+            this.userId = userId;
+            this.status = status;
+        }
+
+        public int getTicketId() {
+            return ticketId;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public Ticket.Status getStatus() {
+            return status;
+        }
+    }
+}
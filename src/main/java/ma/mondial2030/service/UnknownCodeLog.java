@@ -0,0 +1,135 @@
+package ma.mondial2030.service;
+
+import ma.mondial2030.metrics.MetricsRegistry;
+import ma.mondial2030.model.AccessLog;
+import ma.mondial2030.model.GateDevice;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Journal agrégé des codes inconnus refusés par IssuedCodeFilter
+ * Au lieu d'un log d'accès par code, une ligne par porte et par intervalle résume le nombre
+ * de refus avec quelques codes en exemple : un balayage de codes forgés ne sature ni la file
+ * d'AccessLogWriter ni la table access_logs.
+ */
+public class UnknownCodeLog {
+    private static final Logger logger = LoggerFactory.getLogger(UnknownCodeLog.class);
+
+    private static final long FLUSH_INTERVAL_MS = 10_000;
+    private static final int SAMPLE_CODES = 5;
+    private static final int MAX_SAMPLE_LENGTH = 40;
+
+    private static UnknownCodeLog instance;
+
+    private final Map<Integer, GateWindow> windows = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final LongAdder rejected =
+        MetricsRegistry.getInstance().counter("access.unknown_code_rejects");
+
+    private UnknownCodeLog() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "unknown-code-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Obtient l'instance singleton
+     */
+    public static synchronized UnknownCodeLog getInstance() {
+        if (instance == null) {
+            instance = new UnknownCodeLog();
+        }
+        return instance;
+    }
+
+    /**
+     * Écrit les refus en attente puis arrête l'agrégation ; à appeler avant AccessLogWriter.shutdown()
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.flusher.shutdownNow();
+            instance.flush();
+            instance = null;
+        }
+    }
+
+    /**
+     * Compte un code inconnu refusé à une porte
+     */
+    public void record(int gateDeviceId, String ticketCode) {
+        rejected.increment();
+        while (true) {
+            GateWindow window = windows.computeIfAbsent(gateDeviceId, id -> new GateWindow());
+            synchronized (window) {
+                // Fenêtre déjà écrite par flush() : la suivante est créée au prochain tour
+                if (!window.closed) {
+                    window.count++;
+                    if (window.samples.size() < SAMPLE_CODES) {
+                        window.samples.add(ticketCode.length() > MAX_SAMPLE_LENGTH
+                                           ? ticketCode.substring(0, MAX_SAMPLE_LENGTH) : ticketCode);
+                    }
+                    return;
+                }
+            }
+            windows.remove(gateDeviceId, window);
+        }
+    }
+
+    private void flush() {
+        for (Map.Entry<Integer, GateWindow> entry : windows.entrySet()) {
+            GateWindow window = entry.getValue();
+            windows.remove(entry.getKey(), window);
+            long count;
+            List<String> samples;
+            synchronized (window) {
+                window.closed = true;
+                count = window.count;
+                samples = window.samples;
+            }
+            if (count > 0) {
+                write(entry.getKey(), window.firstSeen, count, samples);
+            }
+        }
+    }
+
+    private void write(int gateDeviceId, LocalDateTime firstSeen, long count, List<String> samples) {
+        AccessLog log = new AccessLog();
+        if (gateDeviceId > 0) {
+            GateDevice device = new GateDevice();
+            device.setId(gateDeviceId);
+            log.setGateDevice(device);
+        }
+        log.setAccessType(AccessLog.AccessType.TICKET);
+        log.setAccessResult(AccessLog.AccessResult.DENIED);
+        log.setDenialReason(count + " code(s) inconnu(s) refusé(s) depuis " + firstSeen.toLocalTime().withNano(0)
+                            + " (ex. " + String.join(", ", samples) + ")");
+        log.setAccessTimestamp(firstSeen);
+        AccessLogWriter.getInstance().submit(log);
+        if (count >= 100) {
+            logger.warn("Porte {}: {} codes inconnus refusés en {} s", gateDeviceId, count, FLUSH_INTERVAL_MS / 1000);
+        }
+    }
+
+    /**
+     * Refus d'une porte depuis la dernière écriture
+     */
+    private static final class GateWindow {
+        final LocalDateTime firstSeen = LocalDateTime.now();
+        final List<String> samples = new ArrayList<>(SAMPLE_CODES);
+        long count;
+        boolean closed;
+    }
+}
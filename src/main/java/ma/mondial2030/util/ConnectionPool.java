@@ -0,0 +1,525 @@
+package ma.mondial2030.util;
+
+import ma.mondial2030.metrics.ConnectionCheckoutEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Pool de connexions JDBC borné.
+ * Les connexions remises aux DAO sont des proxys : close() rend la connexion
+ * physique au pool au lieu de la fermer.
+ */
+public class ConnectionPool {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    /** Capture de la pile d'appel à chaque emprunt, pour situer les fuites (coûteux, désactivé par défaut) */
+    private final boolean leakTracing;
+    private final int validationTimeoutSeconds;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Map<PooledConnection, Borrow> active = new ConcurrentHashMap<>();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+    private volatile ObjLongConsumer<String> releaseListener;
+
+    // Métriques
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong statementCount = new AtomicLong();
+
+    public ConnectionPool(String url, String user, String password,
+                          int minSize, int maxSize, long maxWaitMillis,
+                          long idleTimeoutMillis, long leakThresholdMillis, boolean leakTracing,
+                          int validationTimeoutSeconds) {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Taille de pool invalide: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.leakTracing = leakThresholdMillis > 0 && leakTracing;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000L, Math.min(idleTimeoutMillis, leakThresholdMillis) / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+
+        fillToMinimum();
+        logger.info("Pool de connexions initialisé (min={}, max={})", minSize, maxSize);
+    }
+
+    /**
+     * Emprunte une connexion au pool, en attendant au plus maxWaitMillis
+     */
+    public Connection borrow() throws SQLException {
+        return borrow(null);
+    }
+
+    /**
+     * Emprunte une connexion pour le compte de label (méthode appelante, par exemple) :
+     * à sa restitution, le listener de restitution reçoit ce label et la durée d'emprunt,
+     * attente d'une connexion libre comprise
+     */
+    public Connection borrow(String label) throws SQLException {
+        return borrow(label, maxWaitMillis);
+    }
+
+    /**
+     * Emprunte une connexion en attendant au plus waitMillis (appels à délai court, comme un scan)
+     */
+    public Connection borrow(String label, long waitMillis) throws SQLException {
+        if (closed) {
+            throw new SQLException("Le pool de connexions est fermé");
+        }
+
+        long start = System.nanoTime();
+        ConnectionCheckoutEvent event = new ConnectionCheckoutEvent();
+        event.begin();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Attente d'une connexion interrompue", e);
+        }
+        long waited = System.nanoTime() - start;
+        recordWait(waited);
+        event.caller = label;
+        event.waitMicros = waited / 1_000;
+
+        if (!acquired) {
+            timeoutCount.incrementAndGet();
+            event.timedOut = true;
+            event.commit();
+            throw new SQLException("Aucune connexion disponible après " + waitMillis + " ms (actives="
+                                   + active.size() + ", max=" + maxSize + ")");
+        }
+
+        try {
+            PooledConnection pooled = takeValidIdle();
+            if (pooled == null) {
+                pooled = createPhysical();
+            }
+            active.put(pooled, new Borrow(System.currentTimeMillis(), start, label,
+                                          Thread.currentThread().getName(),
+                                          leakTracing ? new Throwable("Connexion empruntée ici") : null,
+                                          event.isEnabled() ? event : null));
+            borrowCount.incrementAndGet();
+            return pooled.newProxy();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Listener appelé à chaque restitution d'une connexion empruntée avec un label,
+     * avec ce label et la durée d'emprunt en nanosecondes (null pour le retirer)
+     */
+    public void setReleaseListener(ObjLongConsumer<String> listener) {
+        this.releaseListener = listener;
+    }
+
+    /**
+     * Ferme les connexions libres et arrête le pool ; les connexions empruntées, peut-être en
+     * pleine requête, sont fermées à leur restitution
+     */
+    public void shutdown() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+        if (!active.isEmpty()) {
+            logger.info("{} connexion(s) empruntée(s) seront fermées à leur restitution", active.size());
+        }
+        logger.info("Pool de connexions fermé");
+    }
+
+    /**
+     * Retourne un instantané des métriques du pool
+     */
+    public PoolStats getStats() {
+        return new PoolStats(totalConnections.get(), active.size(), idle.size(),
+                             permits.getQueueLength(), borrowCount.get(), timeoutCount.get(),
+                             totalWaitNanos.get(), maxWaitNanos.get(), createdCount.get(),
+                             evictedCount.get(), leakCount.get(), statementCount.get());
+    }
+
+    private PooledConnection takeValidIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            logger.warn("Connexion invalide retirée du pool");
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            return pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection createPhysical() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        totalConnections.incrementAndGet();
+        createdCount.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private void destroy(PooledConnection pooled) {
+        if (!pooled.destroyed.compareAndSet(false, true)) {
+            return;
+        }
+        totalConnections.decrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            logger.debug("Erreur lors de la fermeture d'une connexion physique", e);
+        }
+    }
+
+    /**
+     * Appelé par le proxy lors de close() : remet la connexion dans le pool
+     */
+    private void release(PooledConnection pooled) {
+        Borrow borrow = active.remove(pooled);
+        ObjLongConsumer<String> listener = releaseListener;
+        if (borrow != null && borrow.label != null && listener != null) {
+            listener.accept(borrow.label, System.nanoTime() - borrow.borrowedNanos);
+        }
+        if (borrow != null && borrow.event != null) {
+            borrow.event.end();
+            if (borrow.event.shouldCommit()) {
+                borrow.event.commit();
+            }
+        }
+        try {
+            if (closed || pooled.physical.isClosed()) {
+                destroy(pooled);
+                return;
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                // Une transaction laissée ouverte ne doit pas fuir vers l'emprunteur suivant
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            logger.warn("Connexion en erreur lors du retour au pool, elle est détruite", e);
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private void housekeep() {
+        try {
+            evictIdle();
+            detectLeaks();
+            fillToMinimum();
+        } catch (RuntimeException e) {
+            logger.error("Erreur lors de la maintenance du pool", e);
+        }
+    }
+
+    private void evictIdle() {
+        if (idleTimeoutMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // Les connexions les plus anciennes sont en queue de deque
+        PooledConnection oldest;
+        while (totalConnections.get() > minSize && (oldest = idle.peekLast()) != null
+               && now - oldest.lastUsed > idleTimeoutMillis) {
+            if (idle.removeLastOccurrence(oldest)) {
+                destroy(oldest);
+                evictedCount.incrementAndGet();
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        if (leakThresholdMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Borrow borrow : active.values()) {
+            if (!borrow.reported && now - borrow.borrowedAt > leakThresholdMillis) {
+                borrow.reported = true;
+                leakCount.incrementAndGet();
+                if (borrow.origin != null) {
+                    logger.warn("Fuite de connexion probable: empruntée depuis {} ms par le thread {}",
+                                now - borrow.borrowedAt, borrow.threadName, borrow.origin);
+                } else {
+                    logger.warn("Fuite de connexion probable: empruntée depuis {} ms par le thread {} ({}) ; "
+                                + "-Dmondial2030.db.pool.leakTrace=true pour la pile d'appel",
+                                now - borrow.borrowedAt, borrow.threadName, borrow.label);
+                }
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!closed && totalConnections.get() < minSize) {
+            try {
+                PooledConnection pooled = createPhysical();
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerLast(pooled);
+            } catch (SQLException e) {
+                logger.warn("Impossible de pré-ouvrir une connexion: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Connexion physique gérée par le pool
+     */
+    private final class PooledConnection {
+        final Connection physical;
+        /** Une connexion n'est détruite (et décomptée) qu'une fois */
+        final AtomicBoolean destroyed = new AtomicBoolean();
+        volatile long lastUsed;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+        Connection newProxy() {
+            return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Handler(this));
+        }
+    }
+
+    /**
+     * Intercepte close()/isClosed() et délègue le reste à la connexion physique
+     */
+    private final class Handler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean logicallyClosed;
+
+        Handler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!logicallyClosed) {
+                        logicallyClosed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return logicallyClosed || pooled.physical.isClosed();
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(pooled.physical)) {
+                        return pooled.physical;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                case "prepareStatement":
+                case "prepareCall":
+                case "createStatement":
+                    // Une instruction préparée par requête (ou par lot) : compteur de requêtes SQL
+                    statementCount.incrementAndGet();
+                    break;
+                default:
+                    break;
+            }
+            if (logicallyClosed) {
+                throw new SQLException("Connexion déjà rendue au pool");
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Informations sur un emprunt en cours, pour la détection de fuites
+     */
+    private static final class Borrow {
+        final long borrowedAt;
+        final long borrowedNanos;
+        final String label;
+        final String threadName;
+        final Throwable origin;
+        /** Événement JFR de l'emprunt, clos à la restitution ; null si JFR ne l'enregistre pas */
+        final ConnectionCheckoutEvent event;
+        volatile boolean reported;
+
+        Borrow(long borrowedAt, long borrowedNanos, String label, String threadName, Throwable origin,
+               ConnectionCheckoutEvent event) {
+            this.borrowedAt = borrowedAt;
+            this.borrowedNanos = borrowedNanos;
+            this.label = label;
+            this.threadName = threadName;
+            this.origin = origin;
+            this.event = event;
+        }
+    }
+
+    /**
+     * Instantané des métriques du pool
+     */
+    public static class PoolStats {
+        private final int total;
+        private final int active;
+        private final int idle;
+        private final int waitingThreads;
+        private final long borrowCount;
+        private final long timeoutCount;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+        private final long createdCount;
+        private final long evictedCount;
+        private final long leakCount;
+        private final long statementCount;
+
+        public PoolStats(int total, int active, int idle, int waitingThreads, long borrowCount,
+                         long timeoutCount, long totalWaitNanos, long maxWaitNanos,
+                         long createdCount, long evictedCount, long leakCount, long statementCount) {
+            this.total = total;
+            this.active = active;
+            this.idle = idle;
+            this.waitingThreads = waitingThreads;
+            this.borrowCount = borrowCount;
+            this.timeoutCount = timeoutCount;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.createdCount = createdCount;
+            this.evictedCount = evictedCount;
+            this.leakCount = leakCount;
+            this.statementCount = statementCount;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getWaitingThreads() {
+            return waitingThreads;
+        }
+
+        public long getBorrowCount() {
+            return borrowCount;
+        }
+
+        public long getTimeoutCount() {
+            return timeoutCount;
+        }
+
+        public double getAverageWaitMillis() {
+            return borrowCount == 0 ? 0.0 : totalWaitNanos / (double) borrowCount / 1_000_000.0;
+        }
+
+        public double getMaxWaitMillis() {
+            return maxWaitNanos / 1_000_000.0;
+        }
+
+        public long getCreatedCount() {
+            return createdCount;
+        }
+
+        public long getEvictedCount() {
+            return evictedCount;
+        }
+
+        public long getLeakCount() {
+            return leakCount;
+        }
+
+        /**
+         * Nombre d'instructions SQL préparées depuis le démarrage du pool
+         */
+        public long getStatementCount() {
+            return statementCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("total=%d, actives=%d, libres=%d, en attente=%d, emprunts=%d, "
+                                 + "timeouts=%d, attente moy=%.3f ms, attente max=%.3f ms, fuites=%d, requêtes=%d",
+                                 total, active, idle, waitingThreads, borrowCount, timeoutCount,
+                                 getAverageWaitMillis(), getMaxWaitMillis(), leakCount, statementCount);
+        }
+    }
+}
@@ -1,38 +1,67 @@
 package ma.mondial2030.util;
 
+import ma.mondial2030.metrics.LatencyHistogram;
+import ma.mondial2030.metrics.MetricsRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Gestionnaire de connexion à la base de données MySQL
+ * Les connexions proviennent d'un pool : fermer une connexion la rend au pool.
+ * L'URL, l'utilisateur, le mot de passe et la taille maximale du pool peuvent être
+ * remplacés par les propriétés système mondial2030.db.url, .user, .password et .pool.max
+ * (tests de charge sur une base embarquée, par exemple).
+ * Chaque emprunt est attribué à la méthode appelante : sa latence est publiée dans le
+ * registre de métriques (db.call), avec les jauges du pool.
  */
 public class DatabaseConnection {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseConnection.class);
     
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/mondial2030_db";
+    // rewriteBatchedStatements : les batchs JDBC sont envoyés en un seul INSERT multi-lignes
+    private static final String DB_URL = "jdbc:mysql://localhost:3306/mondial2030_db?rewriteBatchedStatements=true";
     private static final String DB_USER = "root";
     private static final String DB_PASSWORD = "";
     private static final String DB_DRIVER = "com.mysql.cj.jdbc.Driver";
 
+    // Configuration du pool
+    private static final int POOL_MIN_SIZE = 2;
+    private static final int POOL_MAX_SIZE = 10;
+    private static final long POOL_MAX_WAIT_MS = 5_000;
+    private static final long POOL_IDLE_TIMEOUT_MS = 5 * 60_000;
+    private static final long POOL_LEAK_THRESHOLD_MS = 30_000;
+    private static final int POOL_VALIDATION_TIMEOUT_S = 2;
+
+    private static final StackWalker STACK_WALKER =
+        StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
     private static DatabaseConnection instance;
-    private Connection connection;
+    private final ConnectionPool pool;
 
     private DatabaseConnection() {
-        try {
-            Class.forName(DB_DRIVER);
-            connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-            logger.info("Connexion à la base de données établie avec succès");
-        } catch (ClassNotFoundException e) {
-            logger.error("Driver MySQL non trouvé", e);
-            throw new RuntimeException("Driver MySQL non trouvé", e);
-        } catch (SQLException e) {
-            logger.error("Erreur de connexion à la base de données", e);
-            throw new RuntimeException("Erreur de connexion à la base de données", e);
+        String url = System.getProperty("mondial2030.db.url", DB_URL);
+        if (url.startsWith("jdbc:mysql:")) {
+            try {
+                Class.forName(DB_DRIVER);
+            } catch (ClassNotFoundException e) {
+                logger.error("Driver MySQL non trouvé", e);
+                throw new RuntimeException("Driver MySQL non trouvé", e);
+            }
         }
+        int maxSize = Integer.getInteger("mondial2030.db.pool.max", POOL_MAX_SIZE);
+        pool = new ConnectionPool(url,
+                                  System.getProperty("mondial2030.db.user", DB_USER),
+                                  System.getProperty("mondial2030.db.password", DB_PASSWORD),
+                                  Math.min(POOL_MIN_SIZE, maxSize), maxSize, POOL_MAX_WAIT_MS,
+                                  POOL_IDLE_TIMEOUT_MS, POOL_LEAK_THRESHOLD_MS,
+                                  Boolean.getBoolean("mondial2030.db.pool.leakTrace"),
+                                  POOL_VALIDATION_TIMEOUT_S);
+        registerMetrics();
+        logger.info("Connexion à la base de données établie avec succès");
     }
 
     /**
@@ -46,31 +75,82 @@ public class DatabaseConnection {
     }
 
     /**
-     * Obtient la connexion à la base de données
+     * Obtient une connexion du pool
+     * À utiliser dans un try-with-resources : close() rend la connexion au pool
      */
     public Connection getConnection() {
         try {
-            if (connection == null || connection.isClosed()) {
-                connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-            }
+            return pool.borrow(callerLabel());
         } catch (SQLException e) {
             logger.error("Erreur lors de la récupération de la connexion", e);
             throw new RuntimeException("Erreur lors de la récupération de la connexion", e);
         }
-        return connection;
     }
 
     /**
-     * Ferme la connexion à la base de données
+     * Obtient une connexion du pool en attendant au plus maxWaitMillis
      */
-    public void closeConnection() {
+    public Connection getConnection(long maxWaitMillis) {
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                logger.info("Connexion à la base de données fermée");
-            }
+            return pool.borrow(callerLabel(), maxWaitMillis);
         } catch (SQLException e) {
-            logger.error("Erreur lors de la fermeture de la connexion", e);
+            logger.error("Erreur lors de la récupération de la connexion", e);
+            throw new RuntimeException("Erreur lors de la récupération de la connexion", e);
+        }
+    }
+
+    /**
+     * Méthode appelante (DAO.méthode), pour mesurer la latence de chaque méthode d'accès aux données
+     */
+    private static String callerLabel() {
+        return STACK_WALKER.walk(frames -> frames
+            .filter(frame -> frame.getDeclaringClass() != DatabaseConnection.class)
+            .findFirst()
+            .map(frame -> frame.getDeclaringClass().getSimpleName() + "." + frame.getMethodName())
+            .orElse(null));
+    }
+
+    /**
+     * Latence par méthode appelante (emprunt à restitution de la connexion) et jauges du pool
+     */
+    private void registerMetrics() {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        Map<String, LatencyHistogram> latencyByCaller = new ConcurrentHashMap<>();
+        pool.setReleaseListener((caller, nanos) -> latencyByCaller
+            .computeIfAbsent(caller, name -> metrics.histogram("db.call", "caller", name))
+            .recordNanos(nanos));
+
+        metrics.gauge("db.pool.active", () -> pool.getStats().getActive());
+        metrics.gauge("db.pool.idle", () -> pool.getStats().getIdle());
+        metrics.gauge("db.pool.waiting", () -> pool.getStats().getWaitingThreads());
+        metrics.gauge("db.pool.borrows", () -> pool.getStats().getBorrowCount());
+        metrics.gauge("db.pool.timeouts", () -> pool.getStats().getTimeoutCount());
+        metrics.gauge("db.pool.leaks", () -> pool.getStats().getLeakCount());
+        metrics.gauge("db.statements", () -> pool.getStats().getStatementCount());
+    }
+
+    /**
+     * Retourne les métriques du pool de connexions
+     */
+    public ConnectionPool.PoolStats getPoolStats() {
+        return pool.getStats();
+    }
+
+    /**
+     * Ferme toutes les connexions du pool
+     */
+    public void closeConnection() {
+        pool.shutdown();
+        logger.info("Connexion à la base de données fermée");
+    }
+
+    /**
+     * Ferme le pool s'il a été initialisé
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.closeConnection();
+            instance = null;
         }
     }
 }
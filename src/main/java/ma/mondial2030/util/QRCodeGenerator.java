@@ -3,59 +3,116 @@ package ma.mondial2030.util;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.EncodeHintType;
 import com.google.zxing.WriterException;
+import com.google.zxing.common.BitArray;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import ma.mondial2030.metrics.LatencyHistogram;
+import ma.mondial2030.metrics.MetricsRegistry;
+import ma.mondial2030.security.TicketSigner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Map;
 
 /**
  * Générateur de QR Code pour les tickets
+ * Le QR Code est encodé à la taille native des modules, puis rastérisé directement
+ * dans un tampon ARGB (par plages de modules) transmis à un PixelWriter JavaFX.
  */
 public class QRCodeGenerator {
     private static final Logger logger = LoggerFactory.getLogger(QRCodeGenerator.class);
     private static final int QR_CODE_SIZE = 300;
+    private static final int DARK = 0xFF000000;
+    private static final int LIGHT = 0xFFFFFFFF;
+    private static final Map<EncodeHintType, Object> HINTS = createHints();
+    private static final LatencyHistogram ENCODE_LATENCY = MetricsRegistry.getInstance().histogram("qr.encode");
 
     /**
      * Génère un QR Code à partir d'une chaîne de données
      */
     public static Image generateQRCode(String data) {
+        return generateQRCode(data, QR_CODE_SIZE);
+    }
+
+    /**
+     * Génère un QR Code carré d'environ size pixels de côté, centré avec une marge blanche
+     * (facteur d'échelle entier : chaque module reste net)
+     */
+    public static Image generateQRCode(String data, int size) {
+        long start = System.nanoTime();
+        BitMatrix modules = encodeModules(data);
+        if (modules == null) {
+            return null;
+        }
+        int moduleScale = Math.max(1, size / modules.getWidth());
+        int outputSize = Math.max(size, modules.getWidth() * moduleScale);
+        Image image = toImage(renderArgb(modules, moduleScale, outputSize, null), outputSize);
+        ENCODE_LATENCY.recordNanos(System.nanoTime() - start);
+        return image;
+    }
+
+    /**
+     * Encode les données à la taille native : un bit par module, zone de silence comprise
+     */
+    public static BitMatrix encodeModules(String data) {
         try {
-            Map<EncodeHintType, Object> hints = new HashMap<>();
-            hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
-            hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
-            hints.put(EncodeHintType.MARGIN, 1);
+            return new QRCodeWriter().encode(data, BarcodeFormat.QR_CODE, 0, 0, HINTS);
+        } catch (WriterException | IllegalArgumentException e) {
+            logger.error("Erreur lors de la génération du QR Code", e);
+            return null;
+        }
+    }
 
-            QRCodeWriter qrCodeWriter = new QRCodeWriter();
-            BitMatrix bitMatrix = qrCodeWriter.encode(data, BarcodeFormat.QR_CODE, QR_CODE_SIZE, QR_CODE_SIZE, hints);
+    /**
+     * Rastérise une matrice de modules dans un tampon ARGB de outputSize x outputSize pixels.
+     * Chaque module fait moduleScale pixels ; le code est centré. Le tampon buffer est réutilisé
+     * s'il est assez grand (impression en masse), sinon un nouveau tampon est alloué.
+     */
+    public static int[] renderArgb(BitMatrix modules, int moduleScale, int outputSize, int[] buffer) {
+        int width = modules.getWidth();
+        int scaled = width * moduleScale;
+        if (scaled > outputSize) {
+            throw new IllegalArgumentException("Taille de sortie trop petite: " + outputSize + " < " + scaled);
+        }
+        int pixels = outputSize * outputSize;
+        int[] argb = buffer != null && buffer.length >= pixels ? buffer : new int[pixels];
+        Arrays.fill(argb, 0, pixels, LIGHT);
 
-            BufferedImage image = new BufferedImage(QR_CODE_SIZE, QR_CODE_SIZE, BufferedImage.TYPE_INT_RGB);
-            Graphics2D graphics = image.createGraphics();
-            graphics.setColor(Color.WHITE);
-            graphics.fillRect(0, 0, QR_CODE_SIZE, QR_CODE_SIZE);
-            graphics.setColor(Color.BLACK);
+        int offset = (outputSize - scaled) / 2;
+        BitArray row = new BitArray(width);
+        for (int y = 0; y < modules.getHeight(); y++) {
+            row = modules.getRow(y, row);
+            int firstLine = (offset + y * moduleScale) * outputSize + offset;
 
-            for (int x = 0; x < QR_CODE_SIZE; x++) {
-                for (int y = 0; y < QR_CODE_SIZE; y++) {
-                    if (bitMatrix.get(x, y)) {
-                        graphics.fillRect(x, y, 1, 1);
-                    }
-                }
+            // Une ligne de pixels par rangée de modules, remplie par plages de modules sombres
+            int x = row.getNextSet(0);
+            while (x < width) {
+                int runEnd = row.getNextUnset(x);
+                Arrays.fill(argb, firstLine + x * moduleScale, firstLine + runEnd * moduleScale, DARK);
+                x = row.getNextSet(runEnd);
+            }
+            // Les lignes suivantes de la rangée sont des copies de la première
+            for (int line = 1; line < moduleScale; line++) {
+                System.arraycopy(argb, firstLine, argb, firstLine + line * outputSize, scaled);
             }
-
-            graphics.dispose();
-            return SwingFXUtils.toFXImage(image, null);
-        } catch (WriterException e) {
-            logger.error("Erreur lors de la génération du QR Code", e);
-            return null;
         }
+        return argb;
+    }
+
+    /**
+     * Copie un tampon ARGB carré dans une image JavaFX
+     */
+    public static Image toImage(int[] argb, int size) {
+        WritableImage image = new WritableImage(size, size);
+        image.getPixelWriter().setPixels(0, 0, size, size, PixelFormat.getIntArgbPreInstance(), argb, 0, size);
+        return image;
     }
 
     /**
@@ -64,4 +121,24 @@ public class QRCodeGenerator {
     public static String generateTicketQRData(String ticketCode, int userId, int matchEventId) {
         return String.format("TICKET:%s:USER:%d:MATCH:%d", ticketCode, userId, matchEventId);
     }
+
+    /**
+     * Génère les données signées du QR Code pour un ticket, avec sa fenêtre de validité
+     * (secondes epoch). Le format reste lisible par les anciens lecteurs :
+     * TICKET:CODE:USER:ID:MATCH:ID:FROM:DEBUT:UNTIL:FIN:SIG:SIGNATURE
+     */
+    public static String generateSignedTicketQRData(String ticketCode, int userId, int matchEventId,
+                                                    long validFrom, long validUntil) {
+        String content = generateTicketQRData(ticketCode, userId, matchEventId)
+                         + ":FROM:" + validFrom + ":UNTIL:" + validUntil;
+        return content + ":SIG:" + TicketSigner.sign(content);
+    }
+
+    private static Map<EncodeHintType, Object> createHints() {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
+        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+        hints.put(EncodeHintType.MARGIN, 1);
+        return Collections.unmodifiableMap(hints);
+    }
 }
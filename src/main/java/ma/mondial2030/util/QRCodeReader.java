@@ -3,6 +3,10 @@ package ma.mondial2030.util;
 import com.google.zxing.*;
 import com.google.zxing.common.HybridBinarizer;
 import javafx.scene.image.Image;
+import ma.mondial2030.metrics.LatencyHistogram;
+import ma.mondial2030.metrics.MetricsRegistry;
+import ma.mondial2030.metrics.ScanStepEvent;
+import ma.mondial2030.security.TicketSigner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,11 +19,19 @@ import java.util.Map;
  */
 public class QRCodeReader {
     private static final Logger logger = LoggerFactory.getLogger(QRCodeReader.class);
+    private static final LatencyHistogram DECODE_FOUND =
+        MetricsRegistry.getInstance().histogram("qr.decode", "result", "found");
+    private static final LatencyHistogram DECODE_NOT_FOUND =
+        MetricsRegistry.getInstance().histogram("qr.decode", "result", "not_found");
+    private static final LatencyHistogram DECODE_ERROR =
+        MetricsRegistry.getInstance().histogram("qr.decode", "result", "error");
 
     /**
      * Lit un QR Code depuis une image
      */
     public static String readQRCode(Image image) {
+        long start = System.nanoTime();
+        ScanStepEvent step = ScanStepEvent.start(ScanStepEvent.DECODE, 0);
         try {
             BufferedImage bufferedImage = javafx.embed.swing.SwingFXUtils.fromFXImage(image, null);
             LuminanceSource source = new BufferedImageLuminanceSource(bufferedImage);
@@ -29,36 +41,82 @@ public class QRCodeReader {
             hints.put(DecodeHintType.CHARACTER_SET, "UTF-8");
 
             Result result = new MultiFormatReader().decode(bitmap, hints);
+            DECODE_FOUND.recordNanos(System.nanoTime() - start);
             return result.getText();
         } catch (NotFoundException e) {
+            DECODE_NOT_FOUND.recordNanos(System.nanoTime() - start);
             logger.warn("QR Code non trouvé dans l'image");
             return null;
         } catch (Exception e) {
+            DECODE_ERROR.recordNanos(System.nanoTime() - start);
             logger.error("Erreur lors de la lecture du QR Code", e);
             return null;
+        } finally {
+            step.finish();
         }
     }
 
     /**
      * Parse les données d'un QR Code de ticket
+     * Reconnaît le format simple et le format signé (FROM/UNTIL/SIG)
      */
     public static TicketQRData parseTicketQRData(String qrData) {
-        if (qrData == null || !qrData.startsWith("TICKET:")) {
+        TicketQRParser.Result parsed = new TicketQRParser.Result();
+        if (!TicketQRParser.parse(qrData, parsed)) {
             return null;
         }
+        if (parsed.isSigned()) {
+            return new TicketQRData(parsed.ticketCode(), parsed.getUserId(), parsed.getMatchEventId(),
+                                    parsed.getValidFrom(), parsed.getValidUntil(),
+                                    parsed.signedContent(), parsed.signature());
+        }
+        return new TicketQRData(parsed.ticketCode(), parsed.getUserId(), parsed.getMatchEventId());
+    }
 
-        try {
-            String[] parts = qrData.split(":");
-            if (parts.length >= 6) {
-                String ticketCode = parts[1];
-                int userId = Integer.parseInt(parts[3]);
-                int matchEventId = Integer.parseInt(parts[5]);
-                return new TicketQRData(ticketCode, userId, matchEventId);
-            }
-        } catch (Exception e) {
-            logger.error("Erreur lors du parsing des données QR Code", e);
+    /**
+     * Vérifie la signature et la fenêtre de validité d'un QR Code de ticket
+     * Calcul purement local : aucune requête en base
+     */
+    public static Verification verifyTicketQRData(TicketQRData data, long nowEpochSeconds) {
+        if (!data.isSigned()) {
+            return Verification.UNSIGNED;
+        }
+        if (!TicketSigner.verify(data.signedContent, data.signature)) {
+            return Verification.BAD_SIGNATURE;
+        }
+        if (nowEpochSeconds < data.validFrom) {
+            return Verification.NOT_YET_VALID;
         }
-        return null;
+        if (nowEpochSeconds > data.validUntil) {
+            return Verification.EXPIRED;
+        }
+        return Verification.VALID;
+    }
+
+    /**
+     * Même vérification, sur le résultat réutilisable de TicketQRParser
+     */
+    public static Verification verifyTicketQRData(TicketQRParser.Result data, long nowEpochSeconds) {
+        if (!data.isSigned()) {
+            return Verification.UNSIGNED;
+        }
+        if (!TicketSigner.verify(data.signedContent(), data.signature())) {
+            return Verification.BAD_SIGNATURE;
+        }
+        if (nowEpochSeconds < data.getValidFrom()) {
+            return Verification.NOT_YET_VALID;
+        }
+        if (nowEpochSeconds > data.getValidUntil()) {
+            return Verification.EXPIRED;
+        }
+        return Verification.VALID;
+    }
+
+    /**
+     * Résultat de la vérification d'un QR Code signé
+     */
+    public enum Verification {
+        UNSIGNED, VALID, BAD_SIGNATURE, NOT_YET_VALID, EXPIRED
     }
 
     /**
@@ -68,6 +126,10 @@ public class QRCodeReader {
         private String ticketCode;
         private int userId;
         private int matchEventId;
+        private long validFrom;
+        private long validUntil;
+        private String signedContent;
+        private String signature;
 
         public TicketQRData(String ticketCode, int userId, int matchEventId) {
             this.ticketCode = ticketCode;
@@ -75,6 +137,15 @@ public class QRCodeReader {
             this.matchEventId = matchEventId;
         }
 
+        public TicketQRData(String ticketCode, int userId, int matchEventId,
+                            long validFrom, long validUntil, String signedContent, String signature) {
+            this(ticketCode, userId, matchEventId);
+            this.validFrom = validFrom;
+            this.validUntil = validUntil;
+            this.signedContent = signedContent;
+            this.signature = signature;
+        }
+
         public String getTicketCode() {
             return ticketCode;
         }
@@ -86,5 +157,17 @@ public class QRCodeReader {
         public int getMatchEventId() {
             return matchEventId;
         }
+
+        public long getValidFrom() {
+            return validFrom;
+        }
+
+        public long getValidUntil() {
+            return validUntil;
+        }
+
+        public boolean isSigned() {
+            return signature != null;
+        }
     }
 }
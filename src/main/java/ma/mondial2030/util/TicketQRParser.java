@@ -0,0 +1,291 @@
+package ma.mondial2030.util;
+
+/**
+ * Analyseur sans allocation des données QR Code de ticket
+ * Parcourt l'entrée caractère par caractère et écrit dans un résultat réutilisable ;
+ * une entrée mal formée est signalée par le type du résultat, jamais par une exception.
+ */
+public final class TicketQRParser {
+    private static final String TICKET_PREFIX = "TICKET:";
+    private static final String USER_LABEL = "USER:";
+    private static final String MATCH_LABEL = "MATCH:";
+    private static final String FROM_LABEL = "FROM:";
+    private static final String UNTIL_LABEL = "UNTIL:";
+    private static final String SIG_LABEL = "SIG:";
+    private static final String LEGACY_PREFIX = "TKT-";
+
+    private TicketQRParser() {
+    }
+
+    /**
+     * Type de données reconnu
+     */
+    public enum Kind {
+        /** Entrée nulle ou vide après suppression des espaces */
+        EMPTY,
+        /** TICKET:CODE:USER:ID:MATCH:ID */
+        FULL,
+        /** TICKET:CODE:USER:ID:MATCH:ID:FROM:DEBUT:UNTIL:FIN:SIG:SIGNATURE */
+        SIGNED,
+        /** Code de ticket seul (TKT-...) */
+        LEGACY_CODE,
+        /** Préfixe TICKET: mais structure invalide (y compris texte après l'id du match) */
+        MALFORMED,
+        /** Autre texte, traité comme un code brut */
+        RAW
+    }
+
+    /**
+     * Analyse input et remplit result ; retourne true pour FULL et SIGNED
+     */
+    public static boolean parse(CharSequence input, Result result) {
+        result.reset(input);
+        if (input == null) {
+            return false;
+        }
+
+        int start = 0;
+        int end = input.length();
+        while (start < end && input.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && input.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        result.start = start;
+        result.end = end;
+
+        if (start == end) {
+            return false;
+        }
+        if (!regionMatches(input, start, end, TICKET_PREFIX)) {
+            result.kind = regionMatches(input, start, end, LEGACY_PREFIX) ? Kind.LEGACY_CODE : Kind.RAW;
+            return false;
+        }
+
+        result.kind = Kind.MALFORMED;
+        int pos = start + TICKET_PREFIX.length();
+
+        // Code du ticket : jusqu'au prochain ':'
+        int codeStart = pos;
+        while (pos < end && input.charAt(pos) != ':') {
+            pos++;
+        }
+        if (pos == codeStart || pos == end) {
+            return false;
+        }
+        int codeEnd = pos++;
+
+        if (!regionMatches(input, pos, end, USER_LABEL)) {
+            return false;
+        }
+        pos += USER_LABEL.length();
+        long userId = readNumber(input, pos, end, Integer.MAX_VALUE);
+        if (userId < 0) {
+            return false;
+        }
+        pos = skipDigits(input, pos, end);
+        if (pos == end || input.charAt(pos++) != ':' || !regionMatches(input, pos, end, MATCH_LABEL)) {
+            return false;
+        }
+        pos += MATCH_LABEL.length();
+        long matchEventId = readNumber(input, pos, end, Integer.MAX_VALUE);
+        if (matchEventId < 0) {
+            return false;
+        }
+        pos = skipDigits(input, pos, end);
+
+        // Après l'id du match : fin de l'entrée, ou suffixe signé complet ; tout autre reste est refusé
+        if (pos < end && !(input.charAt(pos) == ':' && regionMatches(input, pos + 1, end, FROM_LABEL)
+                           && parseSignedTail(input, pos, end, result))) {
+            return false;
+        }
+        result.codeStart = codeStart;
+        result.codeEnd = codeEnd;
+        result.userId = (int) userId;
+        result.matchEventId = (int) matchEventId;
+        if (result.kind != Kind.SIGNED) {
+            result.kind = Kind.FULL;
+        }
+        return true;
+    }
+
+    private static boolean parseSignedTail(CharSequence input, int pos, int end, Result result) {
+        int signedEnd;
+        pos += 1 + FROM_LABEL.length();
+        long validFrom = readNumber(input, pos, end, Long.MAX_VALUE);
+        if (validFrom < 0) {
+            return false;
+        }
+        pos = skipDigits(input, pos, end);
+        if (pos == end || input.charAt(pos++) != ':' || !regionMatches(input, pos, end, UNTIL_LABEL)) {
+            return false;
+        }
+        pos += UNTIL_LABEL.length();
+        long validUntil = readNumber(input, pos, end, Long.MAX_VALUE);
+        if (validUntil < 0) {
+            return false;
+        }
+        pos = skipDigits(input, pos, end);
+        signedEnd = pos;
+        if (pos == end || input.charAt(pos++) != ':' || !regionMatches(input, pos, end, SIG_LABEL)) {
+            return false;
+        }
+        pos += SIG_LABEL.length();
+        int sigStart = pos;
+        while (pos < end && isBase64Url(input.charAt(pos))) {
+            pos++;
+        }
+        if (pos == sigStart || pos != end) {
+            return false;
+        }
+
+        result.validFrom = validFrom;
+        result.validUntil = validUntil;
+        result.signedEnd = signedEnd;
+        result.sigStart = sigStart;
+        result.sigEnd = pos;
+        result.kind = Kind.SIGNED;
+        return true;
+    }
+
+    /**
+     * Lit un entier décimal non signé ; -1 s'il est absent ou dépasse max
+     */
+    private static long readNumber(CharSequence input, int pos, int end, long max) {
+        if (pos >= end) {
+            return -1;
+        }
+        long value = 0;
+        int digits = 0;
+        while (pos < end) {
+            char c = input.charAt(pos);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (value > (max - (c - '0')) / 10) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+            digits++;
+            pos++;
+        }
+        return digits == 0 ? -1 : value;
+    }
+
+    private static int skipDigits(CharSequence input, int pos, int end) {
+        while (pos < end && input.charAt(pos) >= '0' && input.charAt(pos) <= '9') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean regionMatches(CharSequence input, int pos, int end, String expected) {
+        int length = expected.length();
+        if (end - pos < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (input.charAt(pos + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBase64Url(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+    }
+
+    /**
+     * Résultat mutable et réutilisable de l'analyse
+     * Les champs texte sont conservés sous forme de bornes dans l'entrée ;
+     * les chaînes ne sont créées qu'à la demande.
+     */
+    public static final class Result {
+        private CharSequence source;
+        private Kind kind;
+        private int start;
+        private int end;
+        private int codeStart;
+        private int codeEnd;
+        private int userId;
+        private int matchEventId;
+        private long validFrom;
+        private long validUntil;
+        private int signedEnd;
+        private int sigStart;
+        private int sigEnd;
+
+        public Result() {
+            reset(null);
+        }
+
+        private void reset(CharSequence input) {
+            source = input;
+            kind = Kind.EMPTY;
+            start = end = codeStart = codeEnd = signedEnd = sigStart = sigEnd = 0;
+            userId = matchEventId = 0;
+            validFrom = validUntil = 0;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public boolean isSigned() {
+            return kind == Kind.SIGNED;
+        }
+
+        /**
+         * true si les champs utilisateur et match sont renseignés (FULL ou SIGNED)
+         */
+        public boolean hasTicketFields() {
+            return kind == Kind.FULL || kind == Kind.SIGNED;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public int getMatchEventId() {
+            return matchEventId;
+        }
+
+        public long getValidFrom() {
+            return validFrom;
+        }
+
+        public long getValidUntil() {
+            return validUntil;
+        }
+
+        /**
+         * Code du ticket : champ CODE pour les formats complets, sinon l'entrée sans espaces
+         */
+        public String ticketCode() {
+            if (hasTicketFields()) {
+                return slice(codeStart, codeEnd);
+            }
+            return slice(start, end);
+        }
+
+        /**
+         * Partie signée (tout ce qui précède :SIG:), pour le format SIGNED
+         */
+        public String signedContent() {
+            return isSigned() ? slice(start, signedEnd) : null;
+        }
+
+        public String signature() {
+            return isSigned() ? slice(sigStart, sigEnd) : null;
+        }
+
+        private String slice(int from, int to) {
+            if (source instanceof String && from == 0 && to == source.length()) {
+                return (String) source;
+            }
+            return source.subSequence(from, to).toString();
+        }
+    }
+}